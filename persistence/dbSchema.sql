@@ -13,6 +13,10 @@ DROP TABLE IF EXISTS Coupon;
 DROP TABLE IF EXISTS Reservation;
 DROP TABLE IF EXISTS OccupiedSeat;
 DROP TABLE IF EXISTS Cinema;
+DROP TABLE IF EXISTS Sequence;
+DROP TABLE IF EXISTS Outbox;
+DROP TABLE IF EXISTS Report;
+DROP TABLE IF EXISTS ProjectionChange;
 
 -- Creazione tabelle
 
@@ -80,6 +84,8 @@ CREATE TABLE Reservation(
 	FOREIGN KEY(discount) REFERENCES Discount(id) ON UPDATE CASCADE ON DELETE SET NULL
 );
 
+CREATE INDEX ReservationProjection ON Reservation(projection, id);
+
 CREATE TABLE OccupiedSeat(
 	projection INTEGER,
 	row INTEGER,
@@ -105,6 +111,76 @@ CREATE TABLE Cinema(
 	FOREIGN KEY (discountstrategy) REFERENCES Discount(type)
 );
 
+-- Prossimo identificativo da assegnare per ciascuna tabella i cui
+-- identificativi vengono riservati a blocchi dall'applicazione
+
+CREATE TABLE Sequence(
+	name TEXT PRIMARY KEY NOT NULL,
+	next INTEGER NOT NULL CHECK(next > 0)
+);
+
+-- Ricevute degli acquisti da consegnare agli spettatori, registrate nella
+-- stessa transazione dell'acquisto; owner e lease indicano l'istanza che sta
+-- consegnando la ricevuta e fino a quando (in millisecondi) la riserva è valida
+
+CREATE TABLE Outbox(
+	reservation INTEGER PRIMARY KEY NOT NULL,
+	total REAL NOT NULL CHECK(total >= 0),
+	created INTEGER NOT NULL,
+	attempts INTEGER NOT NULL DEFAULT(0) CHECK(attempts >= 0),
+	nextattempt INTEGER NOT NULL DEFAULT(0),
+	delivered INTEGER,
+	owner TEXT,
+	lease INTEGER,
+	FOREIGN KEY(reservation) REFERENCES Reservation(id) ON UPDATE CASCADE ON DELETE CASCADE
+);
+
+CREATE INDEX OutboxPending ON Outbox(delivered, nextattempt);
+
+-- Indice dei report delle prenotazioni archiviati nella cartella savedReports
+
+CREATE TABLE Report(
+	reservation INTEGER PRIMARY KEY NOT NULL,
+	path TEXT NOT NULL,
+	digest TEXT NOT NULL,
+	size INTEGER NOT NULL CHECK(size >= 0),
+	projection INTEGER NOT NULL,
+	expires INTEGER NOT NULL,
+	compressed INTEGER NOT NULL DEFAULT(0) CHECK(compressed == 1 OR compressed == 0)
+);
+
+CREATE INDEX ReportProjection ON Report(compressed, projection);
+CREATE INDEX ReportExpires ON Report(expires);
+
+-- Registro delle modifiche alle proiezioni, alimentato dai trigger, da cui
+-- ciascuna istanza dell'applicazione aggiorna il proprio catalogo
+
+CREATE TABLE ProjectionChange(
+	id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,
+	projection INTEGER NOT NULL
+);
+
+CREATE TRIGGER ProjectionInserted AFTER INSERT ON Projection
+BEGIN
+	INSERT INTO ProjectionChange(projection) VALUES(NEW.id);
+END;
+
+CREATE TRIGGER ProjectionUpdated AFTER UPDATE ON Projection
+BEGIN
+	INSERT INTO ProjectionChange(projection) VALUES(NEW.id);
+	INSERT INTO ProjectionChange(projection) SELECT OLD.id WHERE OLD.id <> NEW.id;
+END;
+
+CREATE TRIGGER ProjectionDeleted AFTER DELETE ON Projection
+BEGIN
+	INSERT INTO ProjectionChange(projection) VALUES(OLD.id);
+END;
+
+CREATE TRIGGER RoomResized AFTER UPDATE OF rows, columns ON Room
+BEGIN
+	INSERT INTO ProjectionChange(projection) SELECT id FROM Projection WHERE room = NEW.id;
+END;
+
 
 
 -- Inserimento dati all'interno delle tabelle create in precedenza
@@ -176,5 +252,7 @@ INSERT INTO OccupiedSeat (projection, row, column, reservation) VALUES (1, 1, 2,
 INSERT INTO OccupiedSeat (projection, row, column, reservation) VALUES (1, 1, 3, 1);
 INSERT INTO OccupiedSeat (projection, row, column, reservation) VALUES (1, 1, 4, 1);
 
+INSERT INTO Sequence (name, next) SELECT "Reservation", IFNULL(MAX(id), 0) + 1 FROM Reservation;
+
 INSERT INTO Cinema (id, name, city, country, zipCode, address, email, mailPassword, adminPassword, logoURL, discountstrategy)
     VALUES (1, "Cinema Armadillo", "Pavia (PV)", "Italia", "27100", "Via A. Ferrata, 5", "cinemaarmadillo@gmail.com", "CinemaArmadillo@1999", "admin", "https://cdn1.iconfinder.com/data/icons/luchesa-2/128/Movie-512.png", "AGE");
@@ -0,0 +1,44 @@
+package cinema.test.benchmark;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Esegue i benchmark JMH di una classe e ne salva i risultati in formato JSON
+ * nella cartella {@value #RESULTS_DIRECTORY}, in modo da poterli confrontare
+ * con quelli di esecuzioni precedenti.
+ *
+ * <p>
+ * Per eseguire tutti i benchmark salvando i risultati in un file che riporta
+ * il commit corrente si usa invece il task Gradle {@code jmh}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Cartella in cui vengono salvati i risultati dei benchmark.
+	 */
+	public static final String RESULTS_DIRECTORY = "build/jmh";
+
+	/**
+	 * Esegue i benchmark di una classe e ne salva i risultati nel file
+	 * {@code <RESULTS_DIRECTORY>/<nome della classe>.json}.
+	 *
+	 * @param benchmark classe che contiene i benchmark.
+	 * @throws RunnerException in caso di errori nell'esecuzione dei benchmark.
+	 */
+	public static void run(Class<?> benchmark) throws RunnerException {
+		File results = new File(RESULTS_DIRECTORY, benchmark.getSimpleName() + ".json");
+		results.getParentFile().mkdirs();
+		new Runner(new OptionsBuilder().include(benchmark.getName()).resultFormat(ResultFormatType.JSON)
+				.result(results.getPath()).build()).run();
+		System.out.println("Risultati salvati in " + results.getPath());
+	}
+
+}
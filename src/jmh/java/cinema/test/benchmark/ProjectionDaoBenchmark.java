@@ -0,0 +1,147 @@
+package cinema.test.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.dao.rdbClasses.ProjectionRdbDao;
+import cinema.model.persistence.util.PersistenceException;
+import cinema.model.projection.Projection;
+import cinema.test.dataset.DatasetGenerator;
+
+/**
+ * Misura il caricamento delle proiezioni dal database tramite
+ * {@link ProjectionRdbDao}: tutte le proiezioni, una proiezione e le proiezioni
+ * di un film.
+ *
+ * <p>
+ * Il database viene generato in un file temporaneo da {@link DatasetGenerator},
+ * aggiungendo {@code projections} proiezioni in cinque sale fino a 120 posti,
+ * con in media dieci prenotazioni e 40 posti occupati per proiezione. Il
+ * benchmark va eseguito dalla cartella principale del progetto.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionDaoBenchmark {
+
+	/**
+	 * Numero di proiezioni aggiunte al database.
+	 */
+	@Param({ "100", "1000" })
+	public int projections;
+
+	/**
+	 * File del database generato.
+	 */
+	private Path database;
+
+	/**
+	 * Pool delle connessioni al database generato.
+	 */
+	private ConnectionPool connectionPool;
+
+	/**
+	 * Interfaccia misurata.
+	 */
+	private ProjectionRdbDao projectionDao;
+
+	/**
+	 * Identificativi delle proiezioni presenti nel database.
+	 */
+	private int[] projectionIds;
+
+	/**
+	 * Identificativi dei film presenti nel database.
+	 */
+	private int[] movieIds;
+
+	/**
+	 * Numero di letture eseguite, usato per scegliere la proiezione o il film.
+	 */
+	private int next;
+
+	/**
+	 * Genera il database e apre il pool di connessioni.
+	 *
+	 * @throws IOException  se non è possibile leggere lo schema o creare il file.
+	 * @throws SQLException se non è possibile generare il database.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, SQLException {
+		database = Files.createTempFile("cinema-benchmark", ".db");
+		String url = "jdbc:sqlite:" + database;
+		new DatasetGenerator(5, 120, projections, 10 * projections, 40L * projections, 0, 0, 1).generate(url);
+		try (Connection connection = DriverManager.getConnection(url)) {
+			projectionIds = DatasetGenerator.readIds(connection, "SELECT id FROM Projection;");
+			movieIds = DatasetGenerator.readIds(connection, "SELECT id FROM Movie;");
+		}
+		connectionPool = new ConnectionPool(url, ConnectionPool.DEFAULT_READERS);
+		projectionDao = new ProjectionRdbDao(connectionPool);
+	}
+
+	/**
+	 * Chiude il pool di connessioni ed elimina il database generato.
+	 *
+	 * @throws IOException se non è possibile eliminare il file.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		connectionPool.close();
+		Files.deleteIfExists(database);
+	}
+
+	@Benchmark
+	public List<Projection> getAllProjections() throws SQLException, PersistenceException {
+		return projectionDao.getAllProjections();
+	}
+
+	@Benchmark
+	public Projection getProjection() throws SQLException, PersistenceException, RoomException {
+		return projectionDao.getProjection(projectionIds[next++ % projectionIds.length]);
+	}
+
+	@Benchmark
+	public List<Projection> getAllProjectionsByMovieId() throws SQLException, PersistenceException, RoomException {
+		return projectionDao.getAllProjectionsByMovieId(movieIds[next++ % movieIds.length]);
+	}
+
+	/**
+	 * Esegue il benchmark e ne salva i risultati.
+	 *
+	 * @param args non utilizzati.
+	 * @throws RunnerException in caso di errori nell'esecuzione del benchmark.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		BenchmarkRunner.run(ProjectionDaoBenchmark.class);
+	}
+
+}
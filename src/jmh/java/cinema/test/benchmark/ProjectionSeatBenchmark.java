@@ -0,0 +1,152 @@
+package cinema.test.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+import cinema.model.Movie;
+import cinema.model.cinema.PhysicalSeat;
+import cinema.model.cinema.Room;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.projection.Projection;
+
+/**
+ * Misura le operazioni sui posti di una proiezione: verifica della
+ * disponibilità, occupazione e rilascio di un posto, occupazione atomica di un
+ * gruppo di posti, conteggio dei posti liberi e coordinate di un posto.
+ *
+ * <p>
+ * La sala ha {@code rows} x {@code rows} posti e ne è occupato circa un terzo.
+ * Ogni operazione che occupa posti li libera subito dopo, in modo che lo stato
+ * della proiezione non cambi durante la misurazione.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionSeatBenchmark {
+
+	/**
+	 * Numero di file (e di posti per fila) della sala.
+	 */
+	@Param({ "10", "30" })
+	public int rows;
+
+	/**
+	 * Proiezione misurata.
+	 */
+	private Projection projection;
+
+	/**
+	 * Posti fisici della sala, scanditi a turno dalle operazioni misurate.
+	 */
+	private PhysicalSeat[] seats;
+
+	/**
+	 * Indici di un gruppo di quattro posti liberi adiacenti.
+	 */
+	private int[] freeGroup;
+
+	/**
+	 * Posto corrente.
+	 */
+	private int next;
+
+	/**
+	 * Prepara la proiezione, occupandone circa un terzo dei posti.
+	 *
+	 * @throws RoomException se la sala non può essere creata.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws RoomException {
+		Movie movie = new Movie(1, "Film", "Descrizione", new ArrayList<String>(), new ArrayList<String>(),
+				new ArrayList<String>(), 4, 120, null, null);
+		projection = new Projection(1, movie, LocalDateTime.now().plusDays(1), 8, new Room(1, rows, rows));
+		seats = new PhysicalSeat[rows * rows];
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < rows; col++) {
+				seats[row * rows + col] = projection.getPhysicalSeat(row, col);
+				// Le prime quattro colonne restano libere per l'occupazione di gruppo
+				if (col >= 4 && (row + col) % 3 == 0)
+					projection.takeSeat(row, col);
+			}
+		}
+		freeGroup = new int[4];
+		for (int col = 0; col < 4; col++)
+			freeGroup[col] = projection.getSeatIndex(rows / 2, col);
+	}
+
+	/**
+	 * Restituisce il prossimo posto da usare.
+	 *
+	 * @return il posto.
+	 */
+	private PhysicalSeat nextSeat() {
+		PhysicalSeat seat = seats[next];
+		next = next + 1 == seats.length ? 0 : next + 1;
+		return seat;
+	}
+
+	@Benchmark
+	public boolean checkIfSeatIsAvailable() throws RoomException {
+		PhysicalSeat seat = nextSeat();
+		return projection.checkIfSeatIsAvailable(seat.getRow(), seat.getCol());
+	}
+
+	@Benchmark
+	public boolean takeAndFreeSeat() throws RoomException {
+		PhysicalSeat seat = nextSeat();
+		boolean taken = projection.takeSeat(seat.getRow(), seat.getCol());
+		if (taken)
+			projection.freeSeat(seat.getRow(), seat.getCol());
+		return taken;
+	}
+
+	@Benchmark
+	public boolean claimAndReleaseSeats() throws RoomException {
+		boolean claimed = projection.claimSeats(freeGroup);
+		if (claimed)
+			projection.releaseSeats(freeGroup);
+		return claimed;
+	}
+
+	@Benchmark
+	public int getNumberAvailableSeat() throws RoomException {
+		return projection.getNumberAvailableSeat();
+	}
+
+	@Benchmark
+	public String getSeatCoordinates() throws RoomException {
+		return projection.getSeatCoordinates(nextSeat());
+	}
+
+	/**
+	 * Esegue il benchmark e ne salva i risultati.
+	 *
+	 * @param args non utilizzati.
+	 * @throws RunnerException in caso di errori nell'esecuzione del benchmark.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		BenchmarkRunner.run(ProjectionSeatBenchmark.class);
+	}
+
+}
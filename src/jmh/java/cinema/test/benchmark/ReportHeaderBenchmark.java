@@ -0,0 +1,141 @@
+package cinema.test.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+import cinema.controller.handlers.ReportHandler;
+import cinema.controller.handlers.ReportStore;
+import cinema.controller.handlers.util.HandlerException;
+import cinema.model.Movie;
+import cinema.model.cinema.Room;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.types.DiscountDay;
+import cinema.model.spectator.Spectator;
+
+/**
+ * Confronta il numero di report generati al secondo quando l'intestazione
+ * (logo, nome e informazioni del cinema) viene impaginata in ogni report e
+ * quando viene impaginata una sola volta in un modello riutilizzato da tutti i
+ * report ({@code -Dcinema.report.headerTemplate}).
+ *
+ * <p>
+ * I report vengono generati in memoria per una prenotazione di quattro posti
+ * costruita senza accedere al database. Il logo viene scaricato dall'URL
+ * indicato con {@code -Dcinema.benchmark.logoURL=<url>}; se non è indicato
+ * viene usato il logo salvato in precedenza dall'applicazione, se presente.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportHeaderBenchmark {
+
+	/**
+	 * Indica se l'intestazione viene impaginata una sola volta in un modello.
+	 */
+	@Param({ "false", "true" })
+	public String headerTemplate;
+
+	/**
+	 * Cartella temporanea dell'archivio dei report, che non viene mai scritto.
+	 */
+	private Path root;
+
+	/**
+	 * Gestore dei report misurato.
+	 */
+	private ReportHandler reportHandler;
+
+	/**
+	 * Prenotazione di cui vengono generati i report.
+	 */
+	private Reservation reservation;
+
+	/**
+	 * Prepara il gestore dei report e la prenotazione.
+	 *
+	 * @throws Exception se non è possibile costruire la prenotazione.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		System.setProperty("cinema.report.headerTemplate", headerTemplate);
+		root = Files.createTempDirectory("report-benchmark");
+		reportHandler = new ReportHandler("Armadillo Cinema", "armadillo.cinema@gmail.com",
+				"Via Roma 1, Pavia - 27100 Italia", System.getProperty("cinema.benchmark.logoURL"),
+				new ReportStore(null, root, ReportStore.DEFAULT_RETENTION_DAYS));
+
+		Movie movie = new Movie(1, "Titolo del film", "Descrizione del film",
+				new ArrayList<String>(Arrays.asList("Drammatico")), new ArrayList<String>(Arrays.asList("Regista")),
+				new ArrayList<String>(Arrays.asList("Attore")), 4, 120, null, null);
+		Projection projection = new Projection(1, movie, LocalDateTime.now().plusDays(1), 8.5, new Room(1, 10, 10));
+		reservation = new Reservation(new DiscountDay(1), 1);
+		reservation.setProjection(projection);
+		reservation.setPurchaser(new Spectator("Mario", "Rossi", "mario.rossi@gmail.com"));
+		List<int[]> seats = new ArrayList<int[]>();
+		for (int col = 0; col < 4; col++)
+			seats.add(new int[] { 4, col });
+		reservation.restorePurchase(seats, 34);
+	}
+
+	/**
+	 * Genera un report in memoria.
+	 *
+	 * @return il contenuto del report, restituito per evitare che la generazione
+	 *         venga eliminata dal compilatore.
+	 * @throws HandlerException se vengono riscontrati errori nella generazione.
+	 */
+	@Benchmark
+	public byte[] renderReport() throws HandlerException {
+		return reportHandler.renderReport(reservation);
+	}
+
+	/**
+	 * Arresta il gestore dei report ed elimina la cartella temporanea.
+	 *
+	 * @throws IOException se non è possibile eliminare la cartella.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reportHandler.shutdown();
+		Files.deleteIfExists(root);
+		System.clearProperty("cinema.report.headerTemplate");
+	}
+
+	/**
+	 * Esegue il benchmark in entrambe le modalità e ne mostra i risultati.
+	 *
+	 * @param args non utilizzati.
+	 * @throws RunnerException in caso di errori nell'esecuzione del benchmark.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		BenchmarkRunner.run(ReportHeaderBenchmark.class);
+	}
+
+}
@@ -0,0 +1,163 @@
+package cinema.test.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+import cinema.model.Movie;
+import cinema.model.cinema.Room;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.IReservationDiscountStrategy;
+import cinema.model.reservation.discount.types.DiscountAge;
+import cinema.model.reservation.discount.types.DiscountDay;
+import cinema.model.reservation.discount.types.DiscountNumberSpectators;
+import cinema.model.reservation.discount.types.util.TypeOfDiscount;
+import cinema.model.reservation.util.SeatAvailabilityException;
+
+/**
+ * Misura le operazioni di una prenotazione con ciascuna strategia di sconto:
+ * selezione e rimozione di un posto, occupazione dei posti selezionati al
+ * momento dell'acquisto e calcolo del totale.
+ *
+ * <p>
+ * La prenotazione usata per il totale ha quattro posti, di cui uno per uno
+ * spettatore sotto l'età minima e uno sopra l'età massima; lo sconto per data
+ * si applica al giorno della proiezione e lo sconto per numero di spettatori a
+ * partire da quattro posti, in modo che ogni strategia applichi lo sconto.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationBenchmark {
+
+	/**
+	 * Strategia di sconto applicata alle prenotazioni.
+	 */
+	@Param({ "AGE", "NUMBER", "DAY" })
+	public TypeOfDiscount discount;
+
+	/**
+	 * Proiezione delle prenotazioni.
+	 */
+	private Projection projection;
+
+	/**
+	 * Strategia di sconto corrispondente a {@link #discount}.
+	 */
+	private IReservationDiscountStrategy strategy;
+
+	/**
+	 * Prenotazione di cui viene calcolato il totale.
+	 */
+	private Reservation reservation;
+
+	/**
+	 * Prenotazione in cui vengono selezionati e rimossi i posti.
+	 */
+	private Reservation selection;
+
+	/**
+	 * Fila corrente dei posti selezionati.
+	 */
+	private int row;
+
+	/**
+	 * Prepara la proiezione e le prenotazioni.
+	 *
+	 * @throws Exception se non è possibile costruire le prenotazioni.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Movie movie = new Movie(1, "Film", "Descrizione", new ArrayList<String>(), new ArrayList<String>(),
+				new ArrayList<String>(), 4, 120, null, null);
+		LocalDateTime dateTime = LocalDateTime.now().plusDays(1);
+		projection = new Projection(1, movie, dateTime, 8, new Room(1, 20, 20));
+		strategy = createStrategy(dateTime);
+		reservation = new Reservation(strategy, 1);
+		reservation.setProjection(projection);
+		for (int col = 0; col < 4; col++)
+			reservation.addSeat(0, col);
+		reservation.setNumberPeopleUnderMinAge(1);
+		reservation.setNumberPeopleOverMaxAge(1);
+		selection = new Reservation(strategy, 2);
+		selection.setProjection(projection);
+	}
+
+	/**
+	 * Crea la strategia di sconto da misurare.
+	 *
+	 * @param dateTime data della proiezione, scontata dalla strategia per data.
+	 * @return la strategia di sconto.
+	 */
+	private IReservationDiscountStrategy createStrategy(LocalDateTime dateTime) {
+		switch (discount) {
+		case AGE:
+			return new DiscountAge(14, 65, 0.15, 1);
+		case NUMBER:
+			return new DiscountNumberSpectators(4, 0.1, 2);
+		default:
+			DiscountDay discountDay = new DiscountDay(3);
+			discountDay.addDayDiscount(dateTime.toLocalDate(), 0.2);
+			return discountDay;
+		}
+	}
+
+	@Benchmark
+	public int addAndRemoveSeat() throws SeatAvailabilityException, RoomException {
+		row = row == 19 ? 1 : row + 1;
+		selection.addSeat(row, 5);
+		int seats = selection.getNSeats();
+		selection.removeSeat(row, 5);
+		return seats;
+	}
+
+	@Benchmark
+	public Reservation selectAndTakeSeats() throws SeatAvailabilityException, RoomException {
+		row = row == 19 ? 1 : row + 1;
+		Reservation purchase = new Reservation(strategy, 3);
+		purchase.setProjection(projection);
+		for (int col = 10; col < 14; col++)
+			purchase.addSeat(row, col);
+		purchase.takeSeat();
+		purchase.freeAllSeats();
+		return purchase;
+	}
+
+	@Benchmark
+	public double getTotal() {
+		return reservation.getTotal();
+	}
+
+	/**
+	 * Esegue il benchmark e ne salva i risultati.
+	 *
+	 * @param args non utilizzati.
+	 * @throws RunnerException in caso di errori nell'esecuzione del benchmark.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		BenchmarkRunner.run(ReservationBenchmark.class);
+	}
+
+}
@@ -0,0 +1,110 @@
+package cinema.test.benchmark;
+
+import java.nio.file.Paths;
+
+import cinema.test.dataset.DatasetGenerator;
+import cinema.test.load.CheckoutLoadTest;
+import cinema.test.load.LatencyHistogram;
+import cinema.test.load.LocalSmtpServer;
+import cinema.view.webgui.VirtualThreadPool;
+
+/**
+ * Confronta le prestazioni del server web quando le richieste vengono eseguite
+ * dal pool di thread predefinito di Jetty e quando vengono eseguite su virtual
+ * thread.
+ *
+ * <p>
+ * Per ciascuna modalità viene eseguito il percorso di acquisto di
+ * {@link CheckoutLoadTest}, fino al pagamento (/buy), su un database appena
+ * generato da {@link DatasetGenerator}, in modo che le due modalità partano
+ * dagli stessi dati. Il pagamento simulato attende
+ * {@code -Dcinema.payment.latencyMillis} millisecondi
+ * ({@value #DEFAULT_PAYMENT_LATENCY_MILLIS} se non indicato) e le ricevute
+ * vengono consegnate a un {@link LocalSmtpServer}, con la latenza indicata da
+ * {@code -Dcinema.load.smtpLatencyMillis}. Il numero di utenti concorrenti e
+ * gli altri parametri del percorso si impostano con le proprietà
+ * {@code cinema.load.*} del test di carico (1000 utenti per impostazione
+ * predefinita).
+ *
+ * <p>
+ * Al termine vengono confrontati, per le due modalità, il numero di acquisti e
+ * di richieste servite al secondo, le latenze dell'acquisto, gli errori, gli
+ * acquisti ancora in elaborazione alla scadenza del server, le ricevute
+ * consegnate e i posti venduti più volte. Il benchmark richiede una versione
+ * di Java che supporti i virtual thread e termina con un errore, senza
+ * eseguire alcuna misurazione, se non sono disponibili.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ThreadModeBenchmark {
+
+	/**
+	 * Cartella dei database generati per ciascuna modalità.
+	 */
+	private static final String DATABASE_FOLDER = "build/benchmark";
+
+	/**
+	 * Latenza del pagamento simulato se non indicata, in millisecondi.
+	 */
+	private static final long DEFAULT_PAYMENT_LATENCY_MILLIS = 200;
+
+	/**
+	 * Esegue il benchmark nelle due modalità e ne mostra i risultati.
+	 *
+	 * @param args non utilizzati.
+	 * @throws Exception in caso di errori nella generazione del database o
+	 *                   nell'avvio o nell'arresto del server.
+	 */
+	public static void main(String[] args) throws Exception {
+		// Un confronto con una sola modalità non ha senso
+		if (!VirtualThreadPool.isSupported())
+			throw new IllegalStateException("Il benchmark richiede i virtual thread (Java 21 o versioni successive), "
+					+ "non disponibili nella versione di Java in uso (" + System.getProperty("java.version") + ").");
+		// La latenza viene letta dal pagamento simulato al primo utilizzo
+		if (System.getProperty("cinema.payment.latencyMillis") == null)
+			System.setProperty("cinema.payment.latencyMillis", String.valueOf(DEFAULT_PAYMENT_LATENCY_MILLIS));
+
+		int port = Integer.getInteger("cinema.load.port", 8090);
+		CheckoutLoadTest platform;
+		CheckoutLoadTest virtual;
+		try (LocalSmtpServer smtp = new LocalSmtpServer(Long.getLong("cinema.load.smtpLatencyMillis", 0))) {
+			platform = CheckoutLoadTest.runLocal(generateDatabase("platform"), smtp, port, false);
+			virtual = CheckoutLoadTest.runLocal(generateDatabase("virtual"), smtp, port, true);
+		}
+
+		System.out.printf("%n%-10s %10s %12s %14s %14s %14s %8s %15s %9s %11s%n", "Modalità", "Acquisti/s",
+				"Richieste/s", "/buy p50 (ms)", "/buy p99 (ms)", "/buy max (ms)", "Errori", "In elaborazione",
+				"Ricevute", "Overselling");
+		print("platform", platform);
+		print("virtual", virtual);
+	}
+
+	/**
+	 * Genera il database di una modalità, in un file distinto perché le istanze
+	 * del cinema avviate in precedenza restano collegate al proprio.
+	 *
+	 * @param name nome della modalità.
+	 * @return l'indirizzo JDBC del database.
+	 * @throws Exception in caso di errori nella generazione del database.
+	 */
+	private static String generateDatabase(String name) throws Exception {
+		return CheckoutLoadTest.generateDatabase(Paths.get(DATABASE_FOLDER, "threadMode-" + name + ".db"));
+	}
+
+	/**
+	 * Mostra i risultati del percorso di acquisto eseguito in una modalità.
+	 *
+	 * @param name nome della modalità.
+	 * @param test test di carico eseguito.
+	 */
+	private static void print(String name, CheckoutLoadTest test) {
+		double seconds = test.getElapsed() / 1e9;
+		LatencyHistogram buy = test.getLatencies("/buy");
+		System.out.printf("%-10s %10.1f %12.1f %14.1f %14.1f %14.1f %8d %15d %9d %11d%n", name,
+				test.getPurchases() / seconds, test.getRequests() / seconds, buy.getPercentileMillis(0.50),
+				buy.getPercentileMillis(0.99), buy.getMaxMillis(), test.getErrors(), test.getPendingPurchases(),
+				test.getReceipts(), test.getOversold());
+	}
+
+}
@@ -0,0 +1,645 @@
+package cinema.test.dataset;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Genera un database SQLite conforme allo schema {@value #SCHEMA} con un numero
+ * configurabile di sale, proiezioni, prenotazioni, posti occupati, coupon e
+ * sconti per giorno, da usare come base realistica per i test di carico e di
+ * scalabilità.
+ *
+ * <p>
+ * Ai dati di esempio dello schema vengono aggiunte:
+ * <ul>
+ * <li>sale con un numero di posti compreso tra {@value #MIN_SEATS} e il massimo
+ * indicato, al più di {@value #MAX_ROWS} file;</li>
+ * <li>proiezioni in quattro fasce orarie al giorno per ogni sala, per metà già
+ * passate e per metà future, di film e prezzi casuali;</li>
+ * <li>prenotazioni acquistate con i relativi posti occupati, adiacenti tra loro,
+ * e la ricevuta già consegnata, distribuite in modo non uniforme tra le
+ * proiezioni; una piccola parte usa un coupon, che risulta quindi già
+ * usato;</li>
+ * <li>coupon e sconti per giorno di proiezione.</li>
+ * </ul>
+ *
+ * <p>
+ * Le righe vengono inserite a lotti in transazioni di grandi dimensioni e
+ * senza journal, in modo che anche un database di diversi GB venga generato in
+ * pochi minuti. I dati dipendono solo dal seme indicato.
+ *
+ * <p>
+ * Il generatore va eseguito dalla cartella principale del progetto, indicando
+ * il file del database da generare, ad esempio:
+ *
+ * <pre>
+ * java -Dcinema.dataset.projections=100000 cinema.test.dataset.DatasetGenerator build/dataset.db
+ * </pre>
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class DatasetGenerator {
+
+	/**
+	 * Schema del database.
+	 */
+	public static final String SCHEMA = "persistence/dbSchema.sql";
+
+	/**
+	 * Numero predefinito di sale aggiunte.
+	 */
+	public static final int DEFAULT_ROOMS = 50;
+
+	/**
+	 * Numero massimo predefinito di posti di una sala.
+	 */
+	public static final int DEFAULT_MAX_SEATS = 2000;
+
+	/**
+	 * Numero predefinito di proiezioni aggiunte.
+	 */
+	public static final int DEFAULT_PROJECTIONS = 100000;
+
+	/**
+	 * Numero predefinito di prenotazioni aggiunte.
+	 */
+	public static final int DEFAULT_RESERVATIONS = 1000000;
+
+	/**
+	 * Numero predefinito di posti occupati aggiunti.
+	 */
+	public static final long DEFAULT_OCCUPIED_SEATS = 10000000;
+
+	/**
+	 * Numero predefinito di coupon aggiunti.
+	 */
+	public static final int DEFAULT_COUPONS = 50000;
+
+	/**
+	 * Numero predefinito di sconti per giorno aggiunti.
+	 */
+	public static final int DEFAULT_DAY_DISCOUNTS = 365;
+
+	/**
+	 * Numero minimo di posti di una sala.
+	 */
+	public static final int MIN_SEATS = 50;
+
+	/**
+	 * Numero massimo di file di una sala, identificate da una lettera.
+	 */
+	public static final int MAX_ROWS = 26;
+
+	/**
+	 * Numero di righe inviate al database in ogni lotto.
+	 */
+	private static final int BATCH_SIZE = 10000;
+
+	/**
+	 * Numero di proiezioni, con le relative prenotazioni, inserite in ogni
+	 * transazione.
+	 */
+	private static final int PROJECTIONS_PER_TRANSACTION = 2000;
+
+	/**
+	 * Probabilità che una prenotazione usi un coupon.
+	 */
+	private static final double COUPON_PROBABILITY = 0.03;
+
+	/**
+	 * Orari delle proiezioni di ogni sala in un giorno.
+	 */
+	private static final LocalTime[] SHOW_TIMES = { LocalTime.of(15, 0), LocalTime.of(17, 30), LocalTime.of(20, 0),
+			LocalTime.of(22, 30) };
+
+	/**
+	 * Nomi degli spettatori.
+	 */
+	private static final String[] NAMES = { "Marco", "Giulia", "Luca", "Francesca", "Andrea", "Chiara", "Matteo",
+			"Sara", "Alessandro", "Elena", "Davide", "Martina", "Simone", "Anna", "Federico", "Valentina" };
+
+	/**
+	 * Cognomi degli spettatori.
+	 */
+	private static final String[] SURNAMES = { "Rossi", "Russo", "Ferrari", "Esposito", "Bianchi", "Romano", "Colombo",
+			"Ricci", "Marino", "Greco", "Bruno", "Gallo", "Conti", "De Luca", "Mancini", "Costa" };
+
+	/**
+	 * Formato della data e ora delle proiezioni.
+	 */
+	private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	/**
+	 * Numero di codici di coupon distinti, pari a 36^11.
+	 */
+	private static final long COUPON_CODES = 131621703842267136L;
+
+	/**
+	 * Numero di sale da aggiungere.
+	 */
+	private final int rooms;
+
+	/**
+	 * Numero massimo di posti di una sala.
+	 */
+	private final int maxSeats;
+
+	/**
+	 * Numero di proiezioni da aggiungere.
+	 */
+	private final int projections;
+
+	/**
+	 * Numero di prenotazioni da aggiungere.
+	 */
+	private final int reservations;
+
+	/**
+	 * Numero di posti occupati da aggiungere.
+	 */
+	private final long occupiedSeats;
+
+	/**
+	 * Numero di coupon da aggiungere.
+	 */
+	private final int coupons;
+
+	/**
+	 * Numero di sconti per giorno da aggiungere.
+	 */
+	private final int dayDiscounts;
+
+	/**
+	 * Generatore dei valori casuali.
+	 */
+	private final Random random;
+
+	/**
+	 * Costruttore del generatore.
+	 *
+	 * @param rooms         numero di sale da aggiungere.
+	 * @param maxSeats      numero massimo di posti di una sala.
+	 * @param projections   numero di proiezioni da aggiungere.
+	 * @param reservations  numero di prenotazioni da aggiungere.
+	 * @param occupiedSeats numero di posti occupati da aggiungere, limitato dalla
+	 *                      capienza delle sale.
+	 * @param coupons       numero di coupon da aggiungere.
+	 * @param dayDiscounts  numero di sconti per giorno da aggiungere.
+	 * @param seed          seme dei valori casuali.
+	 */
+	public DatasetGenerator(int rooms, int maxSeats, int projections, int reservations, long occupiedSeats,
+			int coupons, int dayDiscounts, long seed) {
+		if (rooms <= 0 && projections > 0)
+			throw new IllegalArgumentException("Le proiezioni richiedono almeno una sala.");
+		this.rooms = rooms;
+		this.maxSeats = Math.max(1, maxSeats);
+		this.projections = projections;
+		this.reservations = reservations;
+		this.occupiedSeats = occupiedSeats;
+		this.coupons = coupons;
+		this.dayDiscounts = dayDiscounts;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Genera il database, sostituendo le tabelle eventualmente già presenti.
+	 *
+	 * @param url indirizzo JDBC del database.
+	 * @throws IOException  se non è possibile leggere lo schema.
+	 * @throws SQLException se non è possibile generare il database.
+	 */
+	public void generate(String url) throws IOException, SQLException {
+		long start = System.nanoTime();
+		try (Connection connection = DriverManager.getConnection(url)) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("PRAGMA journal_mode = OFF;");
+				statement.execute("PRAGMA synchronous = OFF;");
+				statement.execute("PRAGMA cache_size = -262144;");
+				statement.execute("PRAGMA temp_store = MEMORY;");
+				for (String sql : readSchema())
+					statement.execute(sql);
+			}
+			connection.setAutoCommit(false);
+			List<int[]> newRooms = insertRooms(connection);
+			insertDayDiscounts(connection);
+			connection.commit();
+			int usedCoupons = insertProjections(connection, newRooms);
+			insertCoupons(connection, usedCoupons);
+			try (Statement statement = connection.createStatement()) {
+				statement.execute(
+						"UPDATE Sequence SET next = (SELECT IFNULL(MAX(id), 0) + 1 FROM Reservation) WHERE name = \"Reservation\";");
+			}
+			connection.commit();
+			connection.setAutoCommit(true);
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("ANALYZE;");
+			}
+			System.out.println("Database generato in " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)
+					+ " s: " + count(connection, "Room") + " sale, " + count(connection, "Projection")
+					+ " proiezioni, " + count(connection, "Reservation") + " prenotazioni, "
+					+ count(connection, "OccupiedSeat") + " posti occupati, " + count(connection, "Coupon")
+					+ " coupon, " + count(connection, "Discount") + " sconti.");
+		}
+	}
+
+	/**
+	 * Aggiunge le sale; la prima ha il numero massimo di posti.
+	 *
+	 * @param connection connessione al database.
+	 * @return identificativo, numero di file e numero di colonne di ogni sala
+	 *         aggiunta.
+	 * @throws SQLException se non è possibile inserire le sale.
+	 */
+	private List<int[]> insertRooms(Connection connection) throws SQLException {
+		List<int[]> newRooms = new ArrayList<int[]>();
+		int firstId = nextId(connection, "Room");
+		int minSeats = Math.min(MIN_SEATS, maxSeats);
+		try (BatchInsert insert = new BatchInsert(connection,
+				"INSERT INTO Room(id, rows, columns) VALUES(?, ?, ?);")) {
+			for (int i = 0; i < rooms; i++) {
+				int capacity = i == 0 ? maxSeats : minSeats + random.nextInt(maxSeats - minSeats + 1);
+				int rows = (int) Math.max(1, Math.min(MAX_ROWS, Math.round(Math.sqrt(capacity / 1.6))));
+				int cols = Math.max(1, capacity / rows);
+				int[] room = { firstId + i, rows, cols };
+				insert.statement.setInt(1, room[0]);
+				insert.statement.setInt(2, room[1]);
+				insert.statement.setInt(3, room[2]);
+				insert.add();
+				newRooms.add(room);
+			}
+		}
+		return newRooms;
+	}
+
+	/**
+	 * Aggiunge gli sconti per giorno, uno ogni tre giorni a partire dalla data
+	 * della prima proiezione.
+	 *
+	 * @param connection connessione al database.
+	 * @throws SQLException se non è possibile inserire gli sconti.
+	 */
+	private void insertDayDiscounts(Connection connection) throws SQLException {
+		LocalDate firstDay = getFirstDay();
+		try (BatchInsert insert = new BatchInsert(connection,
+				"INSERT INTO Discount(type, percentage, date) VALUES(\"DAY\", ?, ?);")) {
+			for (int i = 0; i < dayDiscounts; i++) {
+				insert.statement.setDouble(1, 0.05 * (1 + random.nextInt(6)));
+				insert.statement.setString(2, firstDay.plusDays(3L * i).toString());
+				insert.add();
+			}
+		}
+	}
+
+	/**
+	 * Aggiunge le proiezioni con le relative prenotazioni, posti occupati e
+	 * ricevute, confermando la transazione ogni
+	 * {@value #PROJECTIONS_PER_TRANSACTION} proiezioni.
+	 *
+	 * <p>
+	 * Il numero di prenotazioni e di posti occupati di ogni proiezione è la media
+	 * di quelli ancora da inserire moltiplicata per un fattore casuale, limitato
+	 * dalla capienza della sala, in modo da ottenere in totale circa i valori
+	 * richiesti.
+	 *
+	 * @param connection connessione al database.
+	 * @param newRooms   sale aggiunte.
+	 * @return il numero di coupon usati dalle prenotazioni.
+	 * @throws SQLException se non è possibile inserire le proiezioni.
+	 */
+	private int insertProjections(Connection connection, List<int[]> newRooms) throws SQLException {
+		int[] movies = readIds(connection, "SELECT id FROM Movie;");
+		int[] discount = readIds(connection,
+				"SELECT id FROM Discount WHERE type = (SELECT discountstrategy FROM Cinema) ORDER BY id LIMIT 1;");
+		int firstProjectionId = nextId(connection, "Projection");
+		int reservationId = nextId(connection, "Reservation");
+		LocalDate firstDay = getFirstDay();
+		long seatsLeft = occupiedSeats;
+		long reservationsLeft = reservations;
+		int usedCoupons = 0;
+		long start = System.nanoTime();
+		try (BatchInsert projection = new BatchInsert(connection,
+				"INSERT INTO Projection(id, datetime, price, movie, room) VALUES(?, ?, ?, ?, ?);");
+				BatchInsert reservation = new BatchInsert(connection,
+						"INSERT INTO Reservation(id, date, projection, name, surname, email, paymentcardowner, paymentcard, coupon, discount, numberpeopleunderage, numberpeopleoverage) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);");
+				BatchInsert seat = new BatchInsert(connection,
+						"INSERT INTO OccupiedSeat(projection, row, column, reservation) VALUES(?, ?, ?, ?);");
+				BatchInsert outbox = new BatchInsert(connection,
+						"INSERT INTO Outbox(reservation, total, created, attempts, delivered) VALUES(?, ?, ?, 1, ?);")) {
+			for (int i = 0; i < projections; i++) {
+				int[] room = newRooms.get(i % newRooms.size());
+				int slot = i / newRooms.size();
+				LocalDateTime dateTime = LocalDateTime.of(firstDay.plusDays(slot / SHOW_TIMES.length),
+						SHOW_TIMES[slot % SHOW_TIMES.length]);
+				int projectionId = firstProjectionId + i;
+				double price = 6 + 0.5 * random.nextInt(13);
+				projection.statement.setInt(1, projectionId);
+				projection.statement.setString(2, dateTime.format(DATETIME_FORMAT));
+				projection.statement.setDouble(3, price);
+				projection.statement.setInt(4, movies[random.nextInt(movies.length)]);
+				projection.statement.setInt(5, room[0]);
+				projection.add();
+
+				// Domanda della proiezione tra il 20% e il 180% della media residua
+				double demand = 0.2 + 1.6 * random.nextDouble();
+				int capacity = room[1] * room[2];
+				int seats = (int) Math.min(capacity, Math.round(seatsLeft / (double) (projections - i) * demand));
+				int count = (int) Math.min(seats,
+						Math.round(reservationsLeft / (double) (projections - i) * demand));
+				if (count == 0)
+					seats = 0;
+				seatsLeft -= seats;
+				reservationsLeft -= count;
+
+				// I posti di ogni prenotazione sono adiacenti, separati da quelli
+				// della prenotazione successiva da un numero casuale di posti liberi
+				int free = capacity - seats;
+				int position = random.nextInt(capacity);
+				for (int j = 0; j < count; j++) {
+					int reservationSeats = seats / count + (j < seats % count ? 1 : 0);
+					String name = NAMES[random.nextInt(NAMES.length)];
+					String surname = SURNAMES[random.nextInt(SURNAMES.length)];
+					LocalDate date = dateTime.toLocalDate().minusDays(random.nextInt(15));
+					String coupon = null;
+					double total = price * reservationSeats;
+					if (usedCoupons < coupons && random.nextDouble() < COUPON_PROBABILITY) {
+						coupon = getCouponCode(usedCoupons++);
+						total = Math.max(0, total - getCouponAmount(coupon));
+					}
+					reservation.statement.setInt(1, reservationId);
+					reservation.statement.setString(2, date.toString());
+					reservation.statement.setInt(3, projectionId);
+					reservation.statement.setString(4, name);
+					reservation.statement.setString(5, surname);
+					reservation.statement.setString(6, (name + "." + surname).replace(" ", "").toLowerCase()
+							+ reservationId + "@example.com");
+					reservation.statement.setString(7, name + " " + surname);
+					reservation.statement.setString(8,
+							String.format("4%015d", Math.floorMod(random.nextLong(), 1000000000000000L)));
+					reservation.statement.setString(9, coupon);
+					if (discount.length > 0)
+						reservation.statement.setInt(10, discount[0]);
+					else
+						reservation.statement.setNull(10, Types.INTEGER);
+					reservation.statement.setInt(11, random.nextInt(5) == 0 ? 1 : 0);
+					reservation.statement.setInt(12, random.nextInt(8) == 0 && reservationSeats > 1 ? 1 : 0);
+					reservation.add();
+					for (int k = 0; k < reservationSeats; k++) {
+						seat.statement.setInt(1, projectionId);
+						seat.statement.setInt(2, position / room[2]);
+						seat.statement.setInt(3, position % room[2]);
+						seat.statement.setInt(4, reservationId);
+						seat.add();
+						position = (position + 1) % capacity;
+					}
+					long created = date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+					outbox.statement.setInt(1, reservationId);
+					outbox.statement.setDouble(2, total);
+					outbox.statement.setLong(3, created);
+					outbox.statement.setLong(4, created);
+					outbox.add();
+					int gap = free == 0 ? 0 : random.nextInt(Math.min(free, 2 * free / count + 1) + 1);
+					free -= gap;
+					position = (position + gap) % capacity;
+					reservationId++;
+				}
+
+				if ((i + 1) % PROJECTIONS_PER_TRANSACTION == 0 || i + 1 == projections) {
+					projection.flush();
+					reservation.flush();
+					seat.flush();
+					outbox.flush();
+					connection.commit();
+					System.out.println("Proiezioni: " + (i + 1) + "/" + projections + ", prenotazioni: "
+							+ reservation.rows + ", posti occupati: " + seat.rows + " ("
+							+ TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + " s)");
+				}
+			}
+		}
+		return usedCoupons;
+	}
+
+	/**
+	 * Aggiunge i coupon; i primi sono quelli già usati dalle prenotazioni.
+	 *
+	 * @param connection  connessione al database.
+	 * @param usedCoupons numero di coupon usati dalle prenotazioni.
+	 * @throws SQLException se non è possibile inserire i coupon.
+	 */
+	private void insertCoupons(Connection connection, int usedCoupons) throws SQLException {
+		try (BatchInsert insert = new BatchInsert(connection,
+				"INSERT INTO Coupon(promocode, amount, used) VALUES(?, ?, ?);")) {
+			for (int i = 0; i < coupons; i++) {
+				String code = getCouponCode(i);
+				insert.statement.setString(1, code);
+				insert.statement.setDouble(2, getCouponAmount(code));
+				insert.statement.setInt(3, i < usedCoupons ? 1 : 0);
+				insert.add();
+			}
+		}
+	}
+
+	/**
+	 * Restituisce il codice dell'i-esimo coupon generato, composto da 11 cifre in
+	 * base 36 come quelli emessi dal cinema. Il numero primo per cui viene
+	 * moltiplicato l'indice non divide 36^11, quindi i codici sono distinti.
+	 *
+	 * @param index indice del coupon.
+	 * @return il codice del coupon.
+	 */
+	private static String getCouponCode(int index) {
+		String code = Long.toString(Math.floorMod(index * 1000003L + 48271L, COUPON_CODES), 36).toUpperCase();
+		StringBuilder padded = new StringBuilder("COUPON-");
+		for (int i = code.length(); i < 11; i++)
+			padded.append('0');
+		return padded.append(code).toString();
+	}
+
+	/**
+	 * Restituisce l'importo di un coupon generato, tra 2 e 10 euro.
+	 *
+	 * @param code codice del coupon.
+	 * @return l'importo del coupon.
+	 */
+	private static double getCouponAmount(String code) {
+		return 2 + Math.floorMod(code.hashCode(), 9);
+	}
+
+	/**
+	 * Restituisce il giorno della prima proiezione aggiunta, scelto in modo che
+	 * metà delle proiezioni siano già passate.
+	 *
+	 * @return il giorno della prima proiezione.
+	 */
+	private LocalDate getFirstDay() {
+		long days = rooms == 0 ? 0 : (long) Math.ceil(projections / (double) rooms / SHOW_TIMES.length);
+		return LocalDate.now().minusDays(days / 2);
+	}
+
+	/**
+	 * Legge le istruzioni dello schema del database, escludendo i commenti.
+	 *
+	 * @return le istruzioni SQL.
+	 * @throws IOException se non è possibile leggere lo schema.
+	 */
+	private static List<String> readSchema() throws IOException {
+		StringBuilder schema = new StringBuilder();
+		for (String line : Files.readAllLines(Paths.get(SCHEMA), StandardCharsets.UTF_8)) {
+			if (!line.trim().startsWith("--"))
+				schema.append(line).append('\n');
+		}
+		List<String> statements = new ArrayList<String>();
+		for (String sql : schema.toString().split(";\n")) {
+			if (!sql.trim().isEmpty())
+				statements.add(sql.trim());
+		}
+		return statements;
+	}
+
+	/**
+	 * Esegue un'interrogazione che restituisce una colonna di interi.
+	 *
+	 * @param connection connessione al database.
+	 * @param sql        interrogazione.
+	 * @return i valori della prima colonna.
+	 * @throws SQLException se vengono riscontrati errori nell'interrogazione.
+	 */
+	public static int[] readIds(Connection connection, String sql) throws SQLException {
+		List<Integer> ids = new ArrayList<Integer>();
+		try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+			while (result.next())
+				ids.add(result.getInt(1));
+		}
+		return ids.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Restituisce il primo identificativo libero di una tabella.
+	 *
+	 * @param connection connessione al database.
+	 * @param table      nome della tabella.
+	 * @return il primo identificativo libero.
+	 * @throws SQLException se vengono riscontrati errori nell'interrogazione.
+	 */
+	private static int nextId(Connection connection, String table) throws SQLException {
+		return readIds(connection, "SELECT IFNULL(MAX(id), 0) + 1 FROM " + table + ";")[0];
+	}
+
+	/**
+	 * Restituisce il numero di righe di una tabella.
+	 *
+	 * @param connection connessione al database.
+	 * @param table      nome della tabella.
+	 * @return il numero di righe.
+	 * @throws SQLException se vengono riscontrati errori nell'interrogazione.
+	 */
+	private static int count(Connection connection, String table) throws SQLException {
+		return readIds(connection, "SELECT COUNT(*) FROM " + table + ";")[0];
+	}
+
+	/**
+	 * Genera il database indicato come primo argomento con i valori letti dalle
+	 * proprietà di sistema {@code cinema.dataset.rooms},
+	 * {@code cinema.dataset.maxSeats}, {@code cinema.dataset.projections},
+	 * {@code cinema.dataset.reservations}, {@code cinema.dataset.occupiedSeats},
+	 * {@code cinema.dataset.coupons}, {@code cinema.dataset.dayDiscounts} e
+	 * {@code cinema.dataset.seed}.
+	 *
+	 * @param args file del database da generare.
+	 * @throws IOException  se non è possibile leggere lo schema.
+	 * @throws SQLException se non è possibile generare il database.
+	 */
+	public static void main(String[] args) throws IOException, SQLException {
+		if (args.length != 1) {
+			System.out.println("Uso: DatasetGenerator <file del database>");
+			return;
+		}
+		new DatasetGenerator(Integer.getInteger("cinema.dataset.rooms", DEFAULT_ROOMS),
+				Integer.getInteger("cinema.dataset.maxSeats", DEFAULT_MAX_SEATS),
+				Integer.getInteger("cinema.dataset.projections", DEFAULT_PROJECTIONS),
+				Integer.getInteger("cinema.dataset.reservations", DEFAULT_RESERVATIONS),
+				Long.getLong("cinema.dataset.occupiedSeats", DEFAULT_OCCUPIED_SEATS),
+				Integer.getInteger("cinema.dataset.coupons", DEFAULT_COUPONS),
+				Integer.getInteger("cinema.dataset.dayDiscounts", DEFAULT_DAY_DISCOUNTS),
+				Long.getLong("cinema.dataset.seed", 1)).generate("jdbc:sqlite:" + args[0]);
+	}
+
+	/**
+	 * Inserimento a lotti di righe in una tabella.
+	 */
+	private static class BatchInsert implements AutoCloseable {
+
+		/**
+		 * Istruzione di inserimento, i cui parametri vengono impostati prima di
+		 * {@link #add()}.
+		 */
+		private final PreparedStatement statement;
+
+		/**
+		 * Righe in attesa di essere inviate al database.
+		 */
+		private int pending;
+
+		/**
+		 * Righe inserite in totale.
+		 */
+		private long rows;
+
+		private BatchInsert(Connection connection, String sql) throws SQLException {
+			statement = connection.prepareStatement(sql);
+		}
+
+		/**
+		 * Aggiunge al lotto la riga con i parametri correnti, inviando il lotto
+		 * quando è completo.
+		 *
+		 * @throws SQLException se non è possibile inserire le righe.
+		 */
+		private void add() throws SQLException {
+			statement.addBatch();
+			rows++;
+			if (++pending == BATCH_SIZE)
+				flush();
+		}
+
+		/**
+		 * Invia al database le righe in attesa.
+		 *
+		 * @throws SQLException se non è possibile inserire le righe.
+		 */
+		private void flush() throws SQLException {
+			if (pending > 0)
+				statement.executeBatch();
+			pending = 0;
+		}
+
+		@Override
+		public void close() throws SQLException {
+			try {
+				flush();
+			} finally {
+				statement.close();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,853 @@
+package cinema.test.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import cinema.test.dataset.DatasetGenerator;
+import cinema.view.webgui.WebGUIMain;
+import cinema.view.webgui.WebGUIServer;
+import cinema.view.webgui.WebGUIServlet;
+
+/**
+ * Test di carico end-to-end del server web: un numero configurabile di utenti
+ * virtuali ripete il percorso di acquisto di uno spettatore, dalla pagina
+ * principale fino al pagamento.
+ *
+ * <p>
+ * Ogni utente apre la pagina principale (/), i dettagli di un film
+ * (/movie-details) e il checkout di una delle sue proiezioni (/checkout), da
+ * cui legge i posti liberi; seleziona quindi i posti (/update-seat-status),
+ * aggiorna il carrello (/get-checkout-info), inserisce un coupon
+ * (/apply-coupon) e acquista i biglietti (/buy), attendendo tra un passo e
+ * l'altro un tempo di riflessione casuale. Con probabilità pari alla
+ * contesa gli utenti scelgono i posti più vicini al centro della sala,
+ * contendendoseli tra loro; altrimenti scelgono posti liberi a caso. Se un
+ * posto non può essere selezionato l'utente prova con il successivo.
+ *
+ * <p>
+ * Per impostazione predefinita il server web viene avviato nello stesso
+ * processo, su un database generato da {@link DatasetGenerator} (o su quello
+ * indicato con {@code -Dcinema.load.database=<file>}, che viene modificato dal
+ * test); l'invio delle e-mail viene indirizzato a un {@link LocalSmtpServer} e
+ * il pagamento è quello simulato, la cui latenza e probabilità di successo si
+ * impostano con le proprietà {@code cinema.payment.*}. Con
+ * {@code -Dcinema.load.url=<indirizzo>} viene invece usato un server già
+ * avviato, che va configurato allo stesso modo.
+ *
+ * <p>
+ * Al termine vengono mostrati il throughput, la distribuzione delle latenze e
+ * il numero di errori per rotta, l'esito degli acquisti e il numero di posti
+ * venduti più volte (overselling), che deve essere zero. Se il server è
+ * avviato nello stesso processo i posti venduti vengono anche confrontati con
+ * quelli registrati nel database.
+ *
+ * <p>
+ * Parametri (proprietà di sistema, tutte opzionali):
+ * <ul>
+ * <li>{@code cinema.load.users}: utenti virtuali (1000);</li>
+ * <li>{@code cinema.load.checkouts}: acquisti per utente (1);</li>
+ * <li>{@code cinema.load.rampUpMillis}: intervallo in cui partono gli utenti
+ * (10000);</li>
+ * <li>{@code cinema.load.thinkTimeMillis}: tempo medio di riflessione tra due
+ * passi (500);</li>
+ * <li>{@code cinema.load.projections}: proiezioni tra cui scelgono gli utenti,
+ * le prime in programma (1);</li>
+ * <li>{@code cinema.load.seats}: posti per prenotazione (2);</li>
+ * <li>{@code cinema.load.contention}: probabilità di scegliere i posti
+ * centrali (0.5);</li>
+ * <li>{@code cinema.load.couponProbability}: probabilità di usare un coupon
+ * valido, altrimenti ne viene inserito uno inesistente (0.2);</li>
+ * <li>{@code cinema.load.port}: porta del server avviato dal test (8090);</li>
+ * <li>{@code cinema.load.smtpLatencyMillis}: latenza del server SMTP locale
+ * (0).</li>
+ * </ul>
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class CheckoutLoadTest {
+
+	/**
+	 * Database generato quando non ne viene indicato uno.
+	 */
+	public static final String DEFAULT_DATABASE = "build/load/cinemaDb.db";
+
+	/**
+	 * Rotte del percorso di acquisto, nell'ordine in cui vengono richieste.
+	 */
+	private static final String[] ROUTES = { "/", "/movie-details", "/checkout", "/update-seat-status",
+			"/get-checkout-info", "/apply-coupon", "/buy" };
+
+	/**
+	 * Numero massimo di tentativi di selezione per ogni posto richiesto.
+	 */
+	private static final int ATTEMPTS_PER_SEAT = 5;
+
+	/**
+	 * Attesa massima della consegna delle ricevute al termine del test, in
+	 * secondi.
+	 */
+	private static final long EMAIL_DRAIN_SECONDS = 30;
+
+	/**
+	 * Coupon inesistente inserito dagli utenti che non usano un coupon valido.
+	 */
+	private static final String INVALID_COUPON = "COUPON-LOADTEST";
+
+	/**
+	 * Collegamento ai dettagli di un film nella pagina principale.
+	 */
+	private static final Pattern MOVIE_LINK = Pattern.compile("/movie-details\\?id=(\\d+)");
+
+	/**
+	 * Collegamento al checkout di una proiezione nei dettagli di un film.
+	 */
+	private static final Pattern CHECKOUT_LINK = Pattern.compile("/checkout\\?id=(\\d+)");
+
+	/**
+	 * Identificativo della prenotazione creata dalla pagina di checkout.
+	 */
+	private static final Pattern RESERVATION_ID = Pattern
+			.compile("id=\"reservation-id-buy\" name=\"reservation-id\" value=\"(\\d+)\"");
+
+	/**
+	 * Posto della mappa della sala nella pagina di checkout, con il suo stato.
+	 */
+	private static final Pattern SEAT = Pattern.compile("id=\"seat-(\\d+)-(\\d+)\" status=\"([^\"]*)\"");
+
+	/**
+	 * Indirizzo del server web.
+	 */
+	private final String baseUrl;
+
+	/**
+	 * Coupon validi ancora da usare.
+	 */
+	private final Queue<String> coupons;
+
+	/**
+	 * Numero di utenti virtuali.
+	 */
+	private final int users;
+
+	/**
+	 * Numero di acquisti eseguiti da ogni utente.
+	 */
+	private final int checkoutsPerUser;
+
+	/**
+	 * Intervallo in cui partono gli utenti, in millisecondi.
+	 */
+	private final long rampUpMillis;
+
+	/**
+	 * Tempo medio di riflessione tra due passi, in millisecondi.
+	 */
+	private final long thinkTimeMillis;
+
+	/**
+	 * Numero di proiezioni tra cui scelgono gli utenti.
+	 */
+	private final int projections;
+
+	/**
+	 * Numero di posti di ogni prenotazione.
+	 */
+	private final int seatsPerUser;
+
+	/**
+	 * Probabilità che un utente scelga i posti centrali, contesi con gli altri
+	 * utenti.
+	 */
+	private final double contention;
+
+	/**
+	 * Probabilità che un utente inserisca un coupon valido.
+	 */
+	private final double couponProbability;
+
+	/**
+	 * Latenze delle richieste, per rotta.
+	 */
+	private final Map<String, LatencyHistogram> latencies;
+
+	/**
+	 * Richieste fallite o con una risposta non valida, per rotta.
+	 */
+	private final Map<String, AtomicLong> errors;
+
+	/**
+	 * Prenotazione a cui è stato venduto ogni posto, con chiave
+	 * {@code <proiezione>-<fila>-<colonna>}.
+	 */
+	private final Map<String, Long> soldSeats;
+
+	/**
+	 * Acquisti avviati.
+	 */
+	private final AtomicLong checkouts = new AtomicLong();
+
+	/**
+	 * Acquisti completati.
+	 */
+	private final AtomicLong purchases = new AtomicLong();
+
+	/**
+	 * Acquisti non completati dopo aver selezionato i posti.
+	 */
+	private final AtomicLong failedPurchases = new AtomicLong();
+
+	/**
+	 * Acquisti ancora in corso alla scadenza del tempo massimo di attesa del
+	 * server, il cui esito non è noto al client.
+	 */
+	private final AtomicLong pendingPurchases = new AtomicLong();
+
+	/**
+	 * Acquisti abbandonati perché nessun posto è stato selezionato.
+	 */
+	private final AtomicLong abandoned = new AtomicLong();
+
+	/**
+	 * Posti già occupati o selezionati da altri al momento della selezione.
+	 */
+	private final AtomicLong seatConflicts = new AtomicLong();
+
+	/**
+	 * Coupon accettati.
+	 */
+	private final AtomicLong couponsApplied = new AtomicLong();
+
+	/**
+	 * Coupon rifiutati.
+	 */
+	private final AtomicLong couponsRejected = new AtomicLong();
+
+	/**
+	 * Posti venduti a più prenotazioni.
+	 */
+	private final AtomicLong oversold = new AtomicLong();
+
+	/**
+	 * Ricevute consegnate al server SMTP locale, se il server web è avviato
+	 * nello stesso processo.
+	 */
+	private long receipts;
+
+	/**
+	 * Durata del test, in nanosecondi.
+	 */
+	private long elapsed;
+
+	/**
+	 * Proiezioni tra cui scelgono gli utenti, come coppie {proiezione, film}.
+	 */
+	private List<int[]> targets;
+
+	/**
+	 * Costruttore del test, configurato con le proprietà di sistema
+	 * {@code cinema.load.*}.
+	 *
+	 * @param baseUrl indirizzo del server web.
+	 * @param coupons coupon validi ancora da usare.
+	 */
+	public CheckoutLoadTest(String baseUrl, Queue<String> coupons) {
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+		this.coupons = coupons;
+		this.users = Integer.getInteger("cinema.load.users", 1000);
+		this.checkoutsPerUser = Integer.getInteger("cinema.load.checkouts", 1);
+		this.rampUpMillis = Long.getLong("cinema.load.rampUpMillis", 10000);
+		this.thinkTimeMillis = Long.getLong("cinema.load.thinkTimeMillis", 500);
+		this.projections = Integer.getInteger("cinema.load.projections", 1);
+		this.seatsPerUser = Integer.getInteger("cinema.load.seats", 2);
+		this.contention = Double.parseDouble(System.getProperty("cinema.load.contention", "0.5"));
+		this.couponProbability = Double.parseDouble(System.getProperty("cinema.load.couponProbability", "0.2"));
+		this.latencies = new LinkedHashMap<String, LatencyHistogram>();
+		this.errors = new LinkedHashMap<String, AtomicLong>();
+		for (String route : ROUTES) {
+			latencies.put(route, new LatencyHistogram());
+			errors.put(route, new AtomicLong());
+		}
+		this.soldSeats = new ConcurrentHashMap<String, Long>();
+	}
+
+	/**
+	 * Individua le proiezioni, esegue gli acquisti degli utenti virtuali e ne
+	 * mostra i risultati.
+	 *
+	 * @throws IOException          se non è possibile individuare le
+	 *                              proiezioni.
+	 * @throws InterruptedException se il test viene interrotto.
+	 */
+	public void run() throws IOException, InterruptedException {
+		targets = findTargets();
+		System.out.printf("%d utenti virtuali, %d acquisti per utente, %d proiezioni, %d posti per prenotazione, "
+				+ "contesa %.2f, riflessione %d ms, avvio in %d ms%n", users, checkoutsPerUser, targets.size(),
+				seatsPerUser, contention, thinkTimeMillis, rampUpMillis);
+
+		CountDownLatch done = new CountDownLatch(users);
+		ExecutorService executor = Executors.newFixedThreadPool(users, runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			return thread;
+		});
+		long start = System.nanoTime();
+		for (int u = 0; u < users; u++) {
+			long delay = users == 1 ? 0 : rampUpMillis * u / (users - 1);
+			executor.execute(() -> {
+				try {
+					TimeUnit.MILLISECONDS.sleep(delay);
+					for (int i = 0; i < checkoutsPerUser; i++)
+						checkout(ThreadLocalRandom.current());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		done.await();
+		elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		printResults();
+	}
+
+	/**
+	 * Restituisce la durata del test.
+	 *
+	 * @return la durata, in nanosecondi.
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * Restituisce le latenze delle richieste di una rotta.
+	 *
+	 * @param route rotta del percorso di acquisto.
+	 * @return le latenze della rotta.
+	 */
+	public LatencyHistogram getLatencies(String route) {
+		return latencies.get(route);
+	}
+
+	/**
+	 * Restituisce il numero di richieste eseguite su tutte le rotte.
+	 *
+	 * @return il numero di richieste.
+	 */
+	public long getRequests() {
+		long requests = 0;
+		for (LatencyHistogram histogram : latencies.values())
+			requests += histogram.getCount();
+		return requests;
+	}
+
+	/**
+	 * Restituisce il numero di richieste fallite o con una risposta non valida su
+	 * tutte le rotte.
+	 *
+	 * @return il numero di errori.
+	 */
+	public long getErrors() {
+		long failed = 0;
+		for (AtomicLong count : errors.values())
+			failed += count.get();
+		return failed;
+	}
+
+	/**
+	 * Restituisce il numero di acquisti completati.
+	 *
+	 * @return il numero di acquisti.
+	 */
+	public long getPurchases() {
+		return purchases.get();
+	}
+
+	/**
+	 * Restituisce il numero di acquisti ancora in corso alla scadenza del tempo
+	 * massimo di attesa del server.
+	 *
+	 * @return il numero di acquisti in elaborazione.
+	 */
+	public long getPendingPurchases() {
+		return pendingPurchases.get();
+	}
+
+	/**
+	 * Restituisce il numero di posti venduti a più prenotazioni.
+	 *
+	 * @return il numero di posti venduti più volte.
+	 */
+	public long getOversold() {
+		return oversold.get();
+	}
+
+	/**
+	 * Restituisce il numero di ricevute consegnate al server SMTP locale.
+	 *
+	 * @return il numero di ricevute, 0 se il server web non è avviato nello stesso
+	 *         processo.
+	 */
+	public long getReceipts() {
+		return receipts;
+	}
+
+	/**
+	 * Individua le proiezioni tra cui scelgono gli utenti, seguendo i
+	 * collegamenti della pagina principale e dei dettagli dei film.
+	 *
+	 * @return le prime {@code projections} proiezioni in programma, come coppie
+	 *         {proiezione, film}.
+	 * @throws IOException se non è possibile leggere le pagine o non ci sono
+	 *                     proiezioni in programma.
+	 */
+	private List<int[]> findTargets() throws IOException {
+		List<int[]> found = new ArrayList<int[]>();
+		for (int movie : findIds(MOVIE_LINK, request("/", "", false))) {
+			for (int projection : findIds(CHECKOUT_LINK, request("/movie-details", "id=" + movie, false)))
+				found.add(new int[] { projection, movie });
+		}
+		if (found.isEmpty())
+			throw new IOException("Non ci sono proiezioni in programma.");
+		Collections.sort(found, Comparator.comparingInt((int[] target) -> target[0]));
+		return new ArrayList<int[]>(found.subList(0, Math.min(projections, found.size())));
+	}
+
+	/**
+	 * Esegue il percorso di acquisto di un utente virtuale.
+	 *
+	 * @param random generatore dei valori casuali dell'utente.
+	 * @throws InterruptedException se il test viene interrotto.
+	 */
+	private void checkout(Random random) throws InterruptedException {
+		checkouts.incrementAndGet();
+		int[] target = targets.get(random.nextInt(targets.size()));
+		if (call("/", "", false) == null)
+			return;
+		think(random);
+		if (call("/movie-details", "id=" + target[1], false) == null)
+			return;
+		think(random);
+		String page = call("/checkout", "id=" + target[0], false);
+		if (page == null)
+			return;
+		Matcher reservationMatcher = RESERVATION_ID.matcher(page);
+		if (!reservationMatcher.find()) {
+			errors.get("/checkout").incrementAndGet();
+			return;
+		}
+		long reservationId = Long.parseLong(reservationMatcher.group(1));
+		think(random);
+
+		// Selezione dei posti, provando con i successivi se già occupati
+		List<int[]> seats = new ArrayList<int[]>();
+		int attempts = 0;
+		for (int[] seat : chooseSeats(page, random)) {
+			if (seats.size() == seatsPerUser || attempts++ == seatsPerUser * ATTEMPTS_PER_SEAT)
+				break;
+			String response = call("/update-seat-status", "reservation-id=" + reservationId + "&seat-id=seat-"
+					+ seat[0] + "-" + seat[1] + "&seat-status=selezionato", true);
+			if (response == null)
+				return;
+			if (response.trim().equals("ok"))
+				seats.add(seat);
+			else
+				seatConflicts.incrementAndGet();
+		}
+		if (seats.isEmpty()) {
+			abandoned.incrementAndGet();
+			return;
+		}
+		think(random);
+
+		String info = call("/get-checkout-info", "reservation-id=" + reservationId, true);
+		if (info == null)
+			return;
+		if (!info.startsWith("ok")) {
+			errors.get("/get-checkout-info").incrementAndGet();
+			return;
+		}
+		think(random);
+
+		String coupon = random.nextDouble() < couponProbability ? coupons.poll() : null;
+		String applied = call("/apply-coupon",
+				"reservation-id=" + reservationId + "&coupon-code=" + (coupon != null ? coupon : INVALID_COUPON),
+				true);
+		if (applied == null)
+			return;
+		if (applied.trim().equals("ok"))
+			couponsApplied.incrementAndGet();
+		else
+			couponsRejected.incrementAndGet();
+		think(random);
+
+		String bought = call("/buy", "reservation-id=" + reservationId + "&name=Utente&surname=Virtuale&e-mail="
+				+ encode("utente" + reservationId + "@example.com") + "&cc-name=" + encode("Utente Virtuale")
+				+ "&cc-number=4111111111111111&cc-expiration=" + YearMonth.now().plusYears(2) + "&cc-cvv=123",
+				true);
+		if (bought != null && bought.trim().equals("pending")) {
+			pendingPurchases.incrementAndGet();
+			return;
+		}
+		if (bought == null || !bought.trim().equals("ok")) {
+			failedPurchases.incrementAndGet();
+			return;
+		}
+		purchases.incrementAndGet();
+		for (int[] seat : seats) {
+			if (soldSeats.putIfAbsent(target[0] + "-" + seat[0] + "-" + seat[1], reservationId) != null)
+				oversold.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Sceglie l'ordine in cui provare a selezionare i posti liberi mostrati nella
+	 * pagina di checkout: con probabilità {@code contention} dal centro della
+	 * sala verso l'esterno, come tutti gli altri utenti, altrimenti a caso.
+	 *
+	 * @param page   pagina di checkout.
+	 * @param random generatore dei valori casuali dell'utente.
+	 * @return i posti liberi, come coppie {fila, colonna}.
+	 */
+	private List<int[]> chooseSeats(String page, Random random) {
+		List<int[]> available = new ArrayList<int[]>();
+		int rows = 0;
+		int cols = 0;
+		Matcher matcher = SEAT.matcher(page);
+		while (matcher.find()) {
+			int row = Integer.parseInt(matcher.group(1));
+			int col = Integer.parseInt(matcher.group(2));
+			rows = Math.max(rows, row + 1);
+			cols = Math.max(cols, col + 1);
+			if (matcher.group(3).equals("disponibile"))
+				available.add(new int[] { row, col });
+		}
+		if (random.nextDouble() < contention) {
+			double centerRow = (rows - 1) / 2.0;
+			double centerCol = (cols - 1) / 2.0;
+			Collections.sort(available, Comparator.comparingDouble(
+					(int[] seat) -> Math.pow(seat[0] - centerRow, 2) + Math.pow(seat[1] - centerCol, 2)));
+		} else {
+			Collections.shuffle(available, random);
+		}
+		return available;
+	}
+
+	/**
+	 * Attende un tempo di riflessione casuale, tra la metà e una volta e mezza
+	 * quello medio.
+	 *
+	 * @param random generatore dei valori casuali dell'utente.
+	 * @throws InterruptedException se il test viene interrotto.
+	 */
+	private void think(Random random) throws InterruptedException {
+		if (thinkTimeMillis > 0)
+			TimeUnit.MILLISECONDS.sleep((long) (thinkTimeMillis * (0.5 + random.nextDouble())));
+	}
+
+	/**
+	 * Esegue una richiesta misurandone la latenza.
+	 *
+	 * @param route      rotta richiesta.
+	 * @param parameters parametri della richiesta, già codificati.
+	 * @param post       true per inviare i parametri con una richiesta POST,
+	 *                   come fanno gli script della pagina di checkout.
+	 * @return il contenuto della risposta, o null se la richiesta è fallita.
+	 */
+	private String call(String route, String parameters, boolean post) {
+		long start = System.nanoTime();
+		try {
+			String response = request(route, parameters, post);
+			latencies.get(route).record(System.nanoTime() - start);
+			return response;
+		} catch (IOException e) {
+			latencies.get(route).record(System.nanoTime() - start);
+			errors.get(route).incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * Esegue una richiesta leggendo tutta la risposta.
+	 *
+	 * @param route      rotta richiesta.
+	 * @param parameters parametri della richiesta, già codificati.
+	 * @param post       true per inviare i parametri con una richiesta POST.
+	 * @return il contenuto della risposta.
+	 * @throws IOException se la richiesta fallisce o la risposta non ha codice
+	 *                     200.
+	 */
+	private String request(String route, String parameters, boolean post) throws IOException {
+		String query = post || parameters.isEmpty() ? "" : "?" + parameters;
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + route + query).openConnection();
+		connection.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(30));
+		connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(60));
+		if (post) {
+			byte[] body = parameters.getBytes(StandardCharsets.UTF_8);
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+			connection.setFixedLengthStreamingMode(body.length);
+			try (OutputStream output = connection.getOutputStream()) {
+				output.write(body);
+			}
+		}
+		int status = connection.getResponseCode();
+		// La risposta viene letta per intero in modo da riutilizzare la connessione
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+		try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			if (input != null) {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = input.read(buffer)) != -1)
+					response.write(buffer, 0, read);
+			}
+		}
+		if (status != HttpURLConnection.HTTP_OK)
+			throw new IOException("Risposta " + status + " da " + route);
+		return new String(response.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Mostra il throughput, le latenze e gli errori per rotta e l'esito degli
+	 * acquisti.
+	 */
+	private void printResults() {
+		double seconds = elapsed / 1e9;
+		long requests = getRequests();
+		System.out.printf("%nDurata %.1f s, %.1f richieste/s, %.1f acquisti/s%n%n", seconds, requests / seconds,
+				purchases.get() / seconds);
+
+		System.out.printf("%-20s %10s %8s %8s %10s %10s %10s %10s %10s %10s%n", "Rotta", "Richieste", "Errori",
+				"Errori %", "media (ms)", "p50 (ms)", "p90 (ms)", "p99 (ms)", "p99.9 (ms)", "max (ms)");
+		for (String route : ROUTES) {
+			LatencyHistogram histogram = latencies.get(route);
+			long count = histogram.getCount();
+			long failed = errors.get(route).get();
+			System.out.printf("%-20s %10d %8d %8.2f %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", route, count,
+					failed, count == 0 ? 0 : 100.0 * failed / count, histogram.getMeanMillis(),
+					histogram.getPercentileMillis(0.50), histogram.getPercentileMillis(0.90),
+					histogram.getPercentileMillis(0.99), histogram.getPercentileMillis(0.999),
+					histogram.getMaxMillis());
+		}
+
+		System.out.printf("%n%-20s", "Richieste fino a");
+		for (double limit : LatencyHistogram.DISTRIBUTION_LIMITS_MILLIS)
+			System.out.printf(" %7s", (limit < 1000 ? (int) limit + "ms" : (int) (limit / 1000) + "s"));
+		System.out.printf(" %7s%n", "oltre");
+		for (String route : ROUTES) {
+			System.out.printf("%-20s", route);
+			for (long count : latencies.get(route).getDistribution())
+				System.out.printf(" %7d", count);
+			System.out.println();
+		}
+
+		System.out.printf(
+				"%nAcquisti avviati: %d, completati: %d, in elaborazione alla scadenza: %d, falliti: %d, abbandonati senza posti: %d%n",
+				checkouts.get(), purchases.get(), pendingPurchases.get(), failedPurchases.get(), abandoned.get());
+		System.out.printf("Posti già occupati al momento della selezione: %d%n", seatConflicts.get());
+		System.out.printf("Coupon applicati: %d, rifiutati: %d%n", couponsApplied.get(), couponsRejected.get());
+		System.out.printf("Posti venduti: %d, venduti più volte (overselling): %d%n", soldSeats.size() + oversold.get(),
+				oversold.get());
+	}
+
+	/**
+	 * Confronta i posti venduti con quelli registrati nel database.
+	 *
+	 * @param url indirizzo JDBC del database.
+	 * @return il numero di posti venduti a una prenotazione ma registrati per
+	 *         un'altra o non registrati.
+	 * @throws SQLException se non è possibile leggere il database.
+	 */
+	private long verifySoldSeats(String url) throws SQLException {
+		long mismatches = 0;
+		try (Connection connection = DriverManager.getConnection(url);
+				PreparedStatement statement = connection.prepareStatement(
+						"SELECT reservation FROM OccupiedSeat WHERE projection = ? AND row = ? AND column = ?;")) {
+			for (Map.Entry<String, Long> sold : soldSeats.entrySet()) {
+				String[] seat = sold.getKey().split("-");
+				for (int i = 0; i < seat.length; i++)
+					statement.setInt(i + 1, Integer.parseInt(seat[i]));
+				try (ResultSet result = statement.executeQuery()) {
+					if (!result.next() || result.getLong("reservation") != sold.getValue())
+						mismatches++;
+				}
+			}
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Restituisce gli identificativi distinti trovati in una pagina.
+	 *
+	 * @param pattern collegamento che contiene l'identificativo.
+	 * @param page    contenuto della pagina.
+	 * @return gli identificativi, nell'ordine in cui compaiono.
+	 */
+	private static Set<Integer> findIds(Pattern pattern, String page) {
+		Set<Integer> ids = new LinkedHashSet<Integer>();
+		Matcher matcher = pattern.matcher(page);
+		while (matcher.find())
+			ids.add(Integer.parseInt(matcher.group(1)));
+		return ids;
+	}
+
+	/**
+	 * Codifica il valore di un parametro della richiesta.
+	 *
+	 * @param value valore da codificare.
+	 * @return il valore codificato.
+	 */
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Legge i coupon non ancora usati dal database.
+	 *
+	 * @param url indirizzo JDBC del database.
+	 * @return i codici dei coupon.
+	 * @throws SQLException se non è possibile leggere il database.
+	 */
+	private static Queue<String> readCoupons(String url) throws SQLException {
+		Queue<String> coupons = new ConcurrentLinkedQueue<String>();
+		try (Connection connection = DriverManager.getConnection(url);
+				Statement statement = connection.createStatement();
+				ResultSet result = statement.executeQuery("SELECT promocode FROM Coupon WHERE used = 0;")) {
+			while (result.next())
+				coupons.add(result.getString("promocode"));
+		}
+		return coupons;
+	}
+
+	/**
+	 * Genera il database usato quando non ne viene indicato uno, sostituendo
+	 * quello eventualmente già presente.
+	 *
+	 * @param file file del database.
+	 * @return l'indirizzo JDBC del database.
+	 * @throws IOException  se non è possibile creare il file o leggere lo schema.
+	 * @throws SQLException in caso di errori nella generazione dei dati.
+	 */
+	public static String generateDatabase(Path file) throws IOException, SQLException {
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		Files.deleteIfExists(file);
+		String url = "jdbc:sqlite:" + file;
+		new DatasetGenerator(10, 400, 400, 4000, 20000, 20000, 30, 1).generate(url);
+		return url;
+	}
+
+	/**
+	 * Avvia il server web nello stesso processo ed esegue il test di carico,
+	 * verificando al termine le ricevute consegnate e i posti registrati nel
+	 * database.
+	 *
+	 * @param databaseUrl    indirizzo JDBC del database, che viene modificato dal
+	 *                       test.
+	 * @param smtp           server SMTP a cui vengono inviate le ricevute.
+	 * @param port           porta del server web.
+	 * @param virtualThreads true per eseguire le richieste su virtual thread.
+	 * @return il test eseguito, con i relativi risultati.
+	 * @throws Exception in caso di errori nella lettura del database o
+	 *                   nell'avvio o nell'arresto del server.
+	 */
+	public static CheckoutLoadTest runLocal(String databaseUrl, LocalSmtpServer smtp, int port,
+			boolean virtualThreads) throws Exception {
+		System.setProperty("cinema.persistence.url", databaseUrl);
+		System.setProperty("cinema.email.host", InetAddress.getLoopbackAddress().getHostAddress());
+		System.setProperty("cinema.email.port", String.valueOf(smtp.getPort()));
+		System.out.printf("Server su %s (porta %d, %s), pagamento simulato: latenza %d ms, successo %s%n", databaseUrl,
+				port, virtualThreads ? "virtual thread" : "thread predefiniti",
+				Long.getLong("cinema.payment.latencyMillis", 0),
+				System.getProperty("cinema.payment.successProbability", "1.0"));
+		WebGUIServlet servlet = new WebGUIServlet(WebGUIMain.getPersistenceConcurrency(virtualThreads));
+		servlet.startReceiptDelivery();
+		WebGUIServer server = new WebGUIServer(port, servlet, virtualThreads);
+		server.start();
+		try {
+			long delivered = smtp.getMessages();
+			CheckoutLoadTest test = new CheckoutLoadTest("http://localhost:" + port, readCoupons(databaseUrl));
+			test.run();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(EMAIL_DRAIN_SECONDS);
+			while (smtp.getMessages() - delivered < test.purchases.get() && System.nanoTime() < deadline)
+				TimeUnit.MILLISECONDS.sleep(100);
+			test.receipts = smtp.getMessages() - delivered;
+			System.out.printf("Ricevute consegnate al server SMTP locale: %d su %d%n", test.receipts,
+					test.purchases.get());
+			System.out.printf("Posti venduti non registrati nel database per la stessa prenotazione: %d%n",
+					test.verifySoldSeats(databaseUrl));
+			return test;
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Esegue il test di carico, avviando il server web nello stesso processo se
+	 * non è indicato l'indirizzo di un server già avviato.
+	 *
+	 * @param args non utilizzati.
+	 * @throws Exception in caso di errori nella preparazione del database o
+	 *                   nell'avvio o nell'arresto del server.
+	 */
+	public static void main(String[] args) throws Exception {
+		String url = System.getProperty("cinema.load.url");
+		if (url != null) {
+			new CheckoutLoadTest(url, new ConcurrentLinkedQueue<String>()).run();
+			return;
+		}
+
+		String database = System.getProperty("cinema.load.database");
+		String databaseUrl = database != null ? "jdbc:sqlite:" + database
+				: generateDatabase(Paths.get(DEFAULT_DATABASE));
+		try (LocalSmtpServer smtp = new LocalSmtpServer(Long.getLong("cinema.load.smtpLatencyMillis", 0))) {
+			runLocal(databaseUrl, smtp, Integer.getInteger("cinema.load.port", 8090),
+					WebGUIMain.configureVirtualThreads(Boolean.getBoolean("cinema.virtualThreads")));
+		}
+	}
+
+}
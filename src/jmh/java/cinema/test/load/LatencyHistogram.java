@@ -0,0 +1,192 @@
+package cinema.test.load;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Istogramma delle latenze di una rotta, aggiornabile da più thread senza
+ * sincronizzazione.
+ *
+ * <p>
+ * Le latenze vengono registrate in microsecondi in intervalli di ampiezza
+ * crescente: fino a {@value #LINEAR_BUCKETS} microsecondi ogni intervallo
+ * contiene un solo valore, oltre ogni potenza di due è suddivisa in
+ * {@value #SUB_BUCKETS} intervalli, in modo che l'errore relativo dei
+ * percentili resti sotto il 3% con un numero fisso di contatori.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Limiti superiori, in millisecondi, degli intervalli della distribuzione
+	 * restituita da {@link #getDistribution()}.
+	 */
+	public static final double[] DISTRIBUTION_LIMITS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000,
+			5000 };
+
+	/**
+	 * Numero di intervalli che contengono un solo valore.
+	 */
+	private static final int LINEAR_BUCKETS = 64;
+
+	/**
+	 * Numero di intervalli in cui è suddivisa ogni potenza di due oltre
+	 * {@value #LINEAR_BUCKETS} microsecondi.
+	 */
+	private static final int SUB_BUCKETS = 32;
+
+	/**
+	 * Esponente della prima potenza di due suddivisa in intervalli.
+	 */
+	private static final int FIRST_EXPONENT = 6;
+
+	/**
+	 * Esponente dell'ultima potenza di due registrata (circa 38 ore).
+	 */
+	private static final int LAST_EXPONENT = 36;
+
+	/**
+	 * Numero di latenze registrate in ogni intervallo.
+	 */
+	private final AtomicLongArray counts;
+
+	/**
+	 * Numero di latenze registrate.
+	 */
+	private final AtomicLong count;
+
+	/**
+	 * Somma delle latenze registrate, in microsecondi.
+	 */
+	private final AtomicLong total;
+
+	/**
+	 * Latenza massima registrata, in microsecondi.
+	 */
+	private final AtomicLong max;
+
+	/**
+	 * Costruttore dell'istogramma vuoto.
+	 */
+	public LatencyHistogram() {
+		counts = new AtomicLongArray(LINEAR_BUCKETS + (LAST_EXPONENT - FIRST_EXPONENT + 1) * SUB_BUCKETS);
+		count = new AtomicLong();
+		total = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Registra una latenza.
+	 *
+	 * @param nanos latenza, in nanosecondi.
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+		counts.incrementAndGet(getBucket(micros));
+		count.incrementAndGet();
+		total.addAndGet(micros);
+		max.accumulateAndGet(micros, Math::max);
+	}
+
+	/**
+	 * Restituisce il numero di latenze registrate.
+	 *
+	 * @return il numero di latenze.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Restituisce la latenza media.
+	 *
+	 * @return la latenza media, in millisecondi, o 0 se non ci sono latenze.
+	 */
+	public double getMeanMillis() {
+		long n = count.get();
+		return n == 0 ? 0 : total.get() / 1000.0 / n;
+	}
+
+	/**
+	 * Restituisce la latenza massima.
+	 *
+	 * @return la latenza massima, in millisecondi.
+	 */
+	public double getMaxMillis() {
+		return max.get() / 1000.0;
+	}
+
+	/**
+	 * Restituisce il percentile indicato delle latenze registrate, pari al limite
+	 * superiore dell'intervallo che lo contiene.
+	 *
+	 * @param percentile percentile richiesto (tra 0 e 1).
+	 * @return il percentile, in millisecondi, o 0 se non ci sono latenze.
+	 */
+	public double getPercentileMillis(double percentile) {
+		long n = count.get();
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile * n));
+		long seen = 0;
+		for (int bucket = 0; bucket < counts.length(); bucket++) {
+			seen += counts.get(bucket);
+			if (seen >= rank)
+				return Math.min(getUpperBound(bucket), max.get()) / 1000.0;
+		}
+		return getMaxMillis();
+	}
+
+	/**
+	 * Restituisce il numero di latenze comprese in ciascun intervallo di
+	 * {@link #DISTRIBUTION_LIMITS_MILLIS}; l'ultimo elemento contiene le latenze
+	 * superiori all'ultimo limite.
+	 *
+	 * @return il numero di latenze per intervallo.
+	 */
+	public long[] getDistribution() {
+		long[] distribution = new long[DISTRIBUTION_LIMITS_MILLIS.length + 1];
+		int limit = 0;
+		for (int bucket = 0; bucket < counts.length(); bucket++) {
+			while (limit < DISTRIBUTION_LIMITS_MILLIS.length
+					&& getUpperBound(bucket) > DISTRIBUTION_LIMITS_MILLIS[limit] * 1000)
+				limit++;
+			distribution[limit] += counts.get(bucket);
+		}
+		return distribution;
+	}
+
+	/**
+	 * Restituisce l'intervallo che contiene una latenza.
+	 *
+	 * @param micros latenza, in microsecondi.
+	 * @return l'indice dell'intervallo.
+	 */
+	private static int getBucket(long micros) {
+		if (micros < LINEAR_BUCKETS)
+			return (int) micros;
+		int exponent = Math.min(LAST_EXPONENT, 63 - Long.numberOfLeadingZeros(micros));
+		if (exponent == LAST_EXPONENT && micros >= 2L << LAST_EXPONENT)
+			return LINEAR_BUCKETS + (LAST_EXPONENT - FIRST_EXPONENT + 1) * SUB_BUCKETS - 1;
+		int subBucket = (int) ((micros >> (exponent - 5)) & (SUB_BUCKETS - 1));
+		return LINEAR_BUCKETS + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Restituisce la latenza massima contenuta in un intervallo.
+	 *
+	 * @param bucket indice dell'intervallo.
+	 * @return la latenza massima, in microsecondi.
+	 */
+	private static long getUpperBound(int bucket) {
+		if (bucket < LINEAR_BUCKETS)
+			return bucket;
+		int exponent = FIRST_EXPONENT + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		return (1L << exponent) + ((subBucket + 1L) << (exponent - 5)) - 1;
+	}
+
+}
@@ -0,0 +1,183 @@
+package cinema.test.load;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server SMTP locale che accetta e scarta tutte le e-mail ricevute, usato al
+ * posto del server del cinema durante i test di carico.
+ *
+ * <p>
+ * Il server implementa solo i comandi usati da JavaMail per l'invio (senza
+ * autenticazione né STARTTLS, che quindi non vengono richiesti) e conta i
+ * messaggi ricevuti. Per simulare un server remoto è possibile indicare una
+ * latenza applicata alla ricezione di ogni messaggio.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class LocalSmtpServer implements AutoCloseable {
+
+	/**
+	 * Socket in ascolto sulla porta del server.
+	 */
+	private final ServerSocket serverSocket;
+
+	/**
+	 * Thread che gestiscono le connessioni dei client.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Latenza applicata alla ricezione di ogni messaggio, in millisecondi.
+	 */
+	private final long latencyMillis;
+
+	/**
+	 * Numero di messaggi ricevuti.
+	 */
+	private final AtomicLong messages;
+
+	/**
+	 * Dimensione complessiva dei messaggi ricevuti, in caratteri.
+	 */
+	private final AtomicLong size;
+
+	/**
+	 * Avvia il server su una porta libera dell'interfaccia locale.
+	 *
+	 * @param latencyMillis latenza applicata alla ricezione di ogni messaggio, in
+	 *                      millisecondi.
+	 * @throws IOException se non è possibile aprire la porta.
+	 */
+	public LocalSmtpServer(long latencyMillis) throws IOException {
+		this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+		this.latencyMillis = latencyMillis;
+		this.messages = new AtomicLong();
+		this.size = new AtomicLong();
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "smtp-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.execute(this::accept);
+	}
+
+	/**
+	 * Restituisce la porta su cui il server è in ascolto.
+	 *
+	 * @return la porta del server.
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Restituisce il numero di messaggi ricevuti.
+	 *
+	 * @return il numero di messaggi.
+	 */
+	public long getMessages() {
+		return messages.get();
+	}
+
+	/**
+	 * Restituisce la dimensione complessiva dei messaggi ricevuti.
+	 *
+	 * @return la dimensione dei messaggi, in caratteri.
+	 */
+	public long getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Accetta le connessioni finché il server non viene chiuso.
+	 */
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				executor.execute(() -> handle(socket));
+			} catch (IOException e) {
+				// Il server è stato chiuso
+			}
+		}
+	}
+
+	/**
+	 * Gestisce una connessione SMTP fino al comando QUIT o alla sua chiusura.
+	 *
+	 * @param socket connessione del client.
+	 */
+	private void handle(Socket socket) {
+		try (Socket client = socket;
+				BufferedReader input = new BufferedReader(
+						new InputStreamReader(client.getInputStream(), StandardCharsets.ISO_8859_1));
+				OutputStream output = client.getOutputStream()) {
+			reply(output, "220 localhost ESMTP");
+			String line;
+			while ((line = input.readLine()) != null) {
+				String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+				if (command.equals("EHLO") || command.equals("HELO")) {
+					reply(output, "250 localhost");
+				} else if (command.equals("DATA")) {
+					reply(output, "354 End data with <CR><LF>.<CR><LF>");
+					long length = 0;
+					while ((line = input.readLine()) != null && !line.equals("."))
+						length += line.length() + 2;
+					if (latencyMillis > 0)
+						TimeUnit.MILLISECONDS.sleep(latencyMillis);
+					messages.incrementAndGet();
+					size.addAndGet(length);
+					reply(output, "250 OK");
+				} else if (command.equals("QUIT")) {
+					reply(output, "221 Bye");
+					return;
+				} else if (command.equals("MAIL") || command.equals("RCPT") || command.equals("RSET")
+						|| command.equals("NOOP")) {
+					reply(output, "250 OK");
+				} else {
+					reply(output, "502 Command not implemented");
+				}
+			}
+		} catch (IOException e) {
+			// Il client ha chiuso la connessione
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Invia una risposta al client.
+	 *
+	 * @param output flusso verso il client.
+	 * @param reply  risposta, senza terminatore di riga.
+	 * @throws IOException se non è possibile inviare la risposta.
+	 */
+	private static void reply(OutputStream output, String reply) throws IOException {
+		output.write((reply + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+		output.flush();
+	}
+
+	/**
+	 * Chiude il server e le connessioni aperte.
+	 */
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		executor.shutdownNow();
+	}
+
+}
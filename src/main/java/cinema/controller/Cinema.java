@@ -1,14 +1,36 @@
 package cinema.controller;
 
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import cinema.controller.util.*;
 import cinema.controller.handlers.EmailHandler;
+import cinema.controller.handlers.OutboxWorker;
+import cinema.controller.handlers.ReportBatchJob;
+import cinema.controller.handlers.ReportBatchProgress;
+import cinema.controller.handlers.ReportStore;
+import cinema.controller.handlers.ReservationRegistry;
+import cinema.controller.handlers.SeatHoldHandler;
 import cinema.controller.handlers.util.HandlerException;
 import cinema.model.cinema.Room;
 import cinema.model.cinema.util.RoomException;
@@ -17,6 +39,8 @@ import cinema.model.payment.util.PaymentErrorException;
 import cinema.model.persistence.PersistenceFacade;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.projection.Projection;
+import cinema.model.projection.ProjectionCatalog;
+import cinema.model.projection.ProjectionSeatMap;
 import cinema.model.projection.util.ProjectionException;
 import cinema.model.reservation.discount.IReservationDiscountStrategy;
 import cinema.model.reservation.discount.coupon.Coupon;
@@ -39,25 +63,97 @@ import cinema.model.spectator.util.InvalidSpectatorInfoException;
  */
 public class Cinema {
 
+	/**
+	 * Numero predefinito di thread dedicati al pagamento e alla registrazione
+	 * degli acquisti.
+	 */
+	public static final int DEFAULT_PURCHASE_WORKERS = 16;
+
+	/**
+	 * Indirizzo JDBC predefinito del database, sostituibile con
+	 * {@code -Dcinema.persistence.url=<indirizzo>}.
+	 */
+	public static final String DEFAULT_DATABASE_URL = "jdbc:sqlite:persistence/cinemaDb.db";
+
+	/**
+	 * Intervallo predefinito, in secondi, tra due allineamenti del catalogo delle
+	 * proiezioni con il meccanismo di persistenza.
+	 */
+	public static final long DEFAULT_PROJECTION_REFRESH_SECONDS = 30;
+
+	/**
+	 * Numero massimo di acquisti in attesa di un thread libero.
+	 */
+	private static final int MAX_QUEUED_PURCHASES = 256;
+
+	/**
+	 * Numero massimo di modifiche alle proiezioni o di posti occupati letti ad
+	 * ogni interrogazione durante l'allineamento del catalogo.
+	 */
+	private static final int REFRESH_BATCH_SIZE = 1000;
+
 	/**
 	 * HashMap contenente le informazioni generali del cinema.
 	 */
-	private HashMap<String, String> cinemaInfo;
+	private volatile HashMap<String, String> cinemaInfo;
 
 	/**
 	 * Gestisce l'invio dell'e-mail da parte del cinema.
 	 */
 	private EmailHandler emailHandler;
 
+	/**
+	 * Consegna le ricevute degli acquisti registrate nel meccanismo di
+	 * persistenza.
+	 */
+	private OutboxWorker outboxWorker;
+
+	/**
+	 * Genera in blocco i report delle prenotazioni acquistate.
+	 */
+	private ReportBatchJob reportBatchJob;
+
 	/**
 	 * HashMap contenente le informazioni della proiezione associata all'id.
 	 */
 	private HashMap<Integer, Projection> newProjections;
 
 	/**
-	 * Lista contenente tutte le prenotazioni generate dal cinema.
+	 * Catalogo in memoria delle proiezioni rese persistenti.
+	 */
+	private ProjectionCatalog projectionCatalog;
+
+	/**
+	 * Esecutore dell'allineamento periodico del catalogo delle proiezioni.
+	 */
+	private ScheduledExecutorService projectionRefresher;
+
+	/**
+	 * Identificativo dell'ultima modifica alle proiezioni recepita dal catalogo.
+	 */
+	private long lastProjectionChangeId;
+
+	/**
+	 * Identificativo dell'ultimo posto occupato recepito dal catalogo.
+	 */
+	private long lastOccupiedSeatId;
+
+	/**
+	 * Gestore delle occupazioni temporanee dei posti selezionati durante il
+	 * checkout.
 	 */
-	private List<Reservation> cinemaReservations;
+	private SeatHoldHandler seatHoldHandler;
+
+	/**
+	 * Registro delle prenotazioni in corso generate dal cinema.
+	 */
+	private ReservationRegistry reservationRegistry;
+
+	/**
+	 * Esecutore delle fasi di pagamento e registrazione degli acquisti avviati con
+	 * {@link #buyReservationAsync(long)}.
+	 */
+	private ThreadPoolExecutor purchaseExecutor;
 
 	/**
 	 * Corrente strategia di sconto applicata dal cinema.
@@ -71,18 +167,96 @@ public class Cinema {
 
 	/**
 	 * Costruttore del cinema.
+	 * 
+	 * @throws IllegalStateException qualora non sia possibile leggere dal
+	 *                               meccanismo di persistenza le informazioni
+	 *                               del cinema o le proiezioni.
 	 */
 	public Cinema() {
+		this(0);
+	}
+
+	/**
+	 * Costruttore del cinema che limita il numero di thread che accedono
+	 * contemporaneamente al meccanismo di persistenza dei dati.
+	 * 
+	 * @param persistenceConcurrency numero massimo di thread che usano o attendono
+	 *                               una connessione al meccanismo di persistenza
+	 *                               dei dati, o 0 per non porre limiti.
+	 * @throws IllegalStateException qualora non sia possibile leggere dal
+	 *                               meccanismo di persistenza le informazioni
+	 *                               del cinema o le proiezioni.
+	 */
+	public Cinema(int persistenceConcurrency) {
 		try {
-			persistenceFacade = new PersistenceFacade("jdbc:sqlite:persistence/cinemaDb.db");
+			persistenceFacade = new PersistenceFacade(System.getProperty("cinema.persistence.url", DEFAULT_DATABASE_URL),
+					persistenceConcurrency);
 			cinemaInfo = persistenceFacade.getAllCinemaInfo(1);
 			cinemaDiscount = getDiscountByStrategy(TypeOfDiscount.valueOf(cinemaInfo.get("discountStrategy")));
+			// Le modifiche successive alla lettura del catalogo vengono recepite da
+			// refreshProjections(); quelle già incluse vengono applicate di nuovo
+			// senza effetti
+			lastProjectionChangeId = persistenceFacade.getLastProjectionChangeId();
+			lastOccupiedSeatId = persistenceFacade.getLastOccupiedSeatId();
+			projectionCatalog = new ProjectionCatalog(persistenceFacade.getAllProjections());
 		} catch (SQLException | PersistenceException | DiscountNotFoundException e) {
-			System.out.println(e.getMessage());
+			// Senza informazioni del cinema e catalogo nessuna operazione può riuscire
+			throw new IllegalStateException("Impossibile avviare il cinema: " + e.getMessage(), e);
 		}
+		// Gli acquisti effettuati da altre istanze sullo stesso database e le
+		// modifiche alle informazioni del cinema vengono recepiti ogni
+		// -Dcinema.projectionRefresh=<secondi> (0 per disattivare)
+		long refreshSeconds = Long.getLong("cinema.projectionRefresh", DEFAULT_PROJECTION_REFRESH_SECONDS);
+		projectionRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "projection-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (refreshSeconds > 0)
+			projectionRefresher.scheduleWithFixedDelay(() -> {
+				try {
+					refreshProjections();
+					refreshCinemaInfo();
+				} catch (PersistenceException e) {
+					System.out.println(e.getMessage());
+				}
+			}, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+		// Il periodo di conservazione dei report archiviati dopo la proiezione è
+		// configurabile con -Dcinema.report.retentionDays=<giorni>
+		ReportStore reportStore = new ReportStore(persistenceFacade, Paths.get("./savedReports"),
+				Integer.getInteger("cinema.report.retentionDays", ReportStore.DEFAULT_RETENTION_DAYS));
 		emailHandler = new EmailHandler(cinemaInfo.get("name"), cinemaInfo.get("email"), cinemaInfo.get("mailPassword"),
-				getLocation(), cinemaInfo.get("logoURL"));
-		cinemaReservations = new ArrayList<Reservation>();
+				getLocation(), cinemaInfo.get("logoURL"), reportStore);
+		// La durata delle occupazioni temporanee dei posti è configurabile con
+		// -Dcinema.seatHoldTtl=<secondi>
+		seatHoldHandler = new SeatHoldHandler(Long.getLong("cinema.seatHoldTtl", SeatHoldHandler.DEFAULT_TTL_SECONDS));
+		reservationRegistry = new ReservationRegistry(persistenceFacade, seatHoldHandler,
+				ReservationRegistry.DEFAULT_TTL_MILLIS);
+		// Il numero di thread dedicati agli acquisti è configurabile con
+		// -Dcinema.purchaseWorkers=<thread>
+		int purchaseWorkers = Integer.getInteger("cinema.purchaseWorkers", DEFAULT_PURCHASE_WORKERS);
+		AtomicInteger purchaseThreads = new AtomicInteger();
+		purchaseExecutor = new ThreadPoolExecutor(purchaseWorkers, purchaseWorkers, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(MAX_QUEUED_PURCHASES), runnable -> {
+					Thread thread = new Thread(runnable, "purchase-" + purchaseThreads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		purchaseExecutor.allowCoreThreadTimeOut(true);
+		// Dimensione dei lotti, intervallo di controllo e durata della riserva delle
+		// ricevute da consegnare sono configurabili con
+		// -Dcinema.outbox.batchSize=<ricevute>, -Dcinema.outbox.interval=<millisecondi>
+		// e -Dcinema.outbox.lease=<millisecondi>; la consegna inizia solo con
+		// startReceiptDelivery()
+		outboxWorker = new OutboxWorker(persistenceFacade, emailHandler, projectionCatalog, () -> cinemaDiscount,
+				Integer.getInteger("cinema.outbox.batchSize", OutboxWorker.DEFAULT_BATCH_SIZE),
+				Long.getLong("cinema.outbox.interval", OutboxWorker.DEFAULT_POLL_INTERVAL_MILLIS),
+				Long.getLong("cinema.outbox.lease", OutboxWorker.DEFAULT_LEASE_MILLIS));
+		// Il numero di thread che generano i report in blocco è configurabile con
+		// -Dcinema.report.batchWorkers=<thread>
+		reportBatchJob = new ReportBatchJob(persistenceFacade, emailHandler.getReportHandler(), projectionCatalog,
+				() -> cinemaDiscount,
+				Integer.getInteger("cinema.report.batchWorkers", Runtime.getRuntime().availableProcessors()));
 		newProjections = new HashMap<>();
 	}
 
@@ -94,9 +268,9 @@ public class Cinema {
 	 *                              l'uso di meccanismi di persistenza.
 	 */
 	public long createReservation() throws PersistenceException {
-		Reservation r = new Reservation(cinemaDiscount, persistenceFacade.getLastReservationId() + 1);
-		cinemaReservations.add(r);
+		Reservation r = new Reservation(cinemaDiscount, persistenceFacade.getNextReservationId());
 		persistenceFacade.putEmptyReservation(r);
+		reservationRegistry.add(r);
 		return r.getProgressive();
 	}
 
@@ -109,11 +283,7 @@ public class Cinema {
 	 *                              esista.
 	 */
 	public Reservation getReservation(long progressive) throws ReservationException {
-		for (Reservation r : cinemaReservations) {
-			if (r.getProgressive() == progressive)
-				return r;
-		}
-		throw new ReservationException("La prenotazione " + progressive + " non esiste.");
+		return reservationRegistry.get(progressive);
 	}
 
 	/**
@@ -128,6 +298,7 @@ public class Cinema {
 	 */
 	public void removeProjection(int projectionId) throws ProjectionException, PersistenceException {
 		persistenceFacade.removeProjection(projectionId);
+		projectionCatalog.remove(projectionId);
 	}
 
 	/**
@@ -138,7 +309,143 @@ public class Cinema {
 	 *                              l'uso di meccanismi di persistenza.
 	 */
 	public List<Projection> getProjections() throws PersistenceException {
-		return persistenceFacade.getAllProjections();
+		return projectionCatalog.getAll();
+	}
+
+	/**
+	 * Allinea il catalogo delle proiezioni al meccanismo di persistenza, in modo
+	 * da recepire le proiezioni aggiunte o rimosse e i posti acquistati da altre
+	 * istanze dell'applicazione. Viene eseguito periodicamente in background.
+	 * 
+	 * <p>
+	 * L'allineamento è incrementale: vengono lette solo le proiezioni modificate
+	 * e i posti occupati dopo l'allineamento precedente, quindi il suo costo non
+	 * dipende dal numero complessivo di proiezioni e di posti venduti.
+	 * 
+	 * @return numero di posti acquistati altrove e non ancora occupati in memoria.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public synchronized int refreshProjections() throws PersistenceException {
+		return refreshChangedProjections() + refreshOccupiedSeats();
+	}
+
+	/**
+	 * Recepisce nel catalogo le proiezioni aggiunte, modificate o rimosse dopo
+	 * l'allineamento precedente, rileggendole dal meccanismo di persistenza.
+	 * 
+	 * @return numero di posti occupati nelle proiezioni già presenti.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	private int refreshChangedProjections() throws PersistenceException {
+		int takenSeats = 0;
+		SortedMap<Long, Integer> changes;
+		do {
+			// Le proiezioni modificate nel catalogo dopo questa versione non vengono
+			// toccate, perché la lettura potrebbe precedere la loro modifica
+			long since = projectionCatalog.getVersion();
+			changes = persistenceFacade.getProjectionChanges(lastProjectionChangeId, REFRESH_BATCH_SIZE);
+			if (changes.isEmpty())
+				break;
+			Map<Integer, Projection> projections = new HashMap<Integer, Projection>();
+			for (Integer projectionId : changes.values()) {
+				if (projections.containsKey(projectionId))
+					continue;
+				try {
+					projections.put(projectionId, persistenceFacade.getProjection(projectionId));
+				} catch (RoomException e) {
+					System.out.println(e.getMessage());
+				}
+			}
+			takenSeats += projectionCatalog.merge(projections, since);
+			lastProjectionChangeId = changes.lastKey();
+		} while (changes.size() == REFRESH_BATCH_SIZE);
+		return takenSeats;
+	}
+
+	/**
+	 * Occupa nel catalogo i posti occupati nel meccanismo di persistenza dopo
+	 * l'allineamento precedente.
+	 * 
+	 * @return numero di posti che risultavano ancora liberi nel catalogo.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	private int refreshOccupiedSeats() throws PersistenceException {
+		int takenSeats = 0;
+		SortedMap<Long, int[]> seats;
+		do {
+			seats = persistenceFacade.getOccupiedSeatsAfter(lastOccupiedSeatId, REFRESH_BATCH_SIZE);
+			if (seats.isEmpty())
+				break;
+			// I posti vengono raggruppati per proiezione e occupati insieme
+			Map<Projection, ProjectionSeatMap> seatMaps = new HashMap<Projection, ProjectionSeatMap>();
+			for (int[] seat : seats.values()) {
+				Projection projection = projectionCatalog.get(seat[0]);
+				if (projection == null)
+					continue;
+				try {
+					ProjectionSeatMap seatMap = seatMaps.get(projection);
+					if (seatMap == null) {
+						seatMap = new ProjectionSeatMap(projection.getId(), projection.getRoom().getNumberOfRows(),
+								projection.getRoom().getNumberOfCols());
+						seatMaps.put(projection, seatMap);
+					}
+					seatMap.setOccupied(seat[1], seat[2]);
+				} catch (RoomException e) {
+					System.out.println(e.getMessage());
+				}
+			}
+			for (Map.Entry<Projection, ProjectionSeatMap> seatMap : seatMaps.entrySet()) {
+				try {
+					takenSeats += seatMap.getKey().occupySeats(seatMap.getValue());
+				} catch (RoomException e) {
+					System.out.println(e.getMessage());
+				}
+			}
+			lastOccupiedSeatId = seats.lastKey();
+		} while (seats.size() == REFRESH_BATCH_SIZE);
+		return takenSeats;
+	}
+
+	/**
+	 * Occupa in memoria i posti di una proiezione risultati occupati nel
+	 * meccanismo di persistenza.
+	 * 
+	 * @param projection proiezione da allineare.
+	 */
+	private void refreshProjectionSeats(Projection projection) {
+		try {
+			ProjectionSeatMap seatMap = persistenceFacade.getProjectionSeatMap(projection.getId());
+			if (seatMap != null)
+				projection.occupySeats(seatMap);
+		} catch (PersistenceException | RoomException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Ricarica le informazioni del cinema dal meccanismo di persistenza e, se
+	 * sono cambiate, rigenera l'intestazione dei report, in modo da recepire
+	 * modifiche al nome, all'indirizzo, all'e-mail o al logo del cinema.
+	 * 
+	 * <p>
+	 * Il metodo viene eseguito periodicamente insieme all'aggiornamento delle
+	 * proiezioni. L'intestazione non viene rigenerata se le informazioni non sono
+	 * cambiate, per evitare di scaricare nuovamente il logo.
+	 * 
+	 * @return true se le informazioni del cinema sono cambiate, false altrimenti.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public boolean refreshCinemaInfo() throws PersistenceException {
+		HashMap<String, String> info = persistenceFacade.getAllCinemaInfo(1);
+		if (info.equals(cinemaInfo))
+			return false;
+		cinemaInfo = info;
+		emailHandler.setCinemaInfo(info.get("name"), info.get("email"), getLocation(), info.get("logoURL"));
+		return true;
 	}
 
 	/**
@@ -151,10 +458,8 @@ public class Cinema {
 	 *                              l'uso di meccanismi di persistenza.
 	 */
 	public void createProjectionWithID(int projectionId) throws ProjectionException, PersistenceException {
-		for (Projection projection : getProjections()) {
-			if (projection.getId() == projectionId)
-				throw new ProjectionException("La proiezione con id " + projectionId + " è già esistente.");
-		}
+		if (projectionCatalog.get(projectionId) != null)
+			throw new ProjectionException("La proiezione con id " + projectionId + " è già esistente.");
 		Projection newProjection = new Projection();
 		newProjection.setId(projectionId);
 		newProjections.put(projectionId, newProjection);
@@ -237,6 +542,7 @@ public class Cinema {
 			throw new ProjectionException("La proiezione " + projectionId + " non esiste tra le nuove proiezioni.");
 		}
 		persistenceFacade.putProjection(projection);
+		projectionCatalog.put(projection);
 	}
 
 	/**
@@ -252,10 +558,8 @@ public class Cinema {
 		List<Integer> movieProjections = new ArrayList<>();
 		Movie m = getMovie(movieId);
 		if (m != null) {
-			for (Projection p : getProjections()) {
-				if (p.getMovie().getId() == movieId) {
-					movieProjections.add(p.getId());
-				}
+			for (Projection p : projectionCatalog.getByMovie(movieId)) {
+				movieProjections.add(p.getId());
 			}
 		}
 		return movieProjections;
@@ -278,11 +582,7 @@ public class Cinema {
 		List<Projection> movieProjections = new ArrayList<Projection>();
 		Movie m = getMovie(movieId);
 		if (m != null) {
-			for (Projection p : getProjections()) {
-				if ((p.getMovie().getId() == movieId) && (p.getDateTime().isAfter(LocalDateTime.now()))) {
-					movieProjections.add(p);
-				}
-			}
+			movieProjections = projectionCatalog.getUpcomingByMovie(movieId, LocalDateTime.now());
 		}
 		if (movieProjections.size() != 0)
 			return movieProjections;
@@ -310,22 +610,7 @@ public class Cinema {
 	 *                              l'uso di meccanismi di persistenza.
 	 */
 	public List<Movie> getCurrentlyAvailableMovies() throws PersistenceException {
-		List<Movie> movies = new ArrayList<Movie>();
-		for (Projection p : getProjections()) {
-			if ((p.getDateTime() != null) && (p.getDateTime().isAfter(LocalDateTime.now()))) {
-				boolean alreadyExists = false;
-				for (Movie m : movies) {
-					if (p.getMovie().getId() == m.getId()) {
-						alreadyExists = true;
-						break;
-					}
-				}
-				if (!alreadyExists) {
-					movies.add(p.getMovie());
-				}
-			}
-		}
-		return movies;
+		return projectionCatalog.getUpcomingMovies(LocalDateTime.now());
 	}
 
 	/**
@@ -373,11 +658,9 @@ public class Cinema {
 	 *                              l'uso di meccanismi di persistenza.
 	 */
 	public Projection getProjection(int projectionId) throws ProjectionException, PersistenceException {
-		for (Projection p : getProjections()) {
-			if (p.getId() == projectionId) {
-				return p;
-			}
-		}
+		Projection projection = projectionCatalog.get(projectionId);
+		if (projection != null)
+			return projection;
 		throw new ProjectionException("La proiezione con id " + projectionId + " non esiste.");
 	}
 
@@ -393,16 +676,11 @@ public class Cinema {
 	 */
 	public Projection getCurrentlyAvailableProjection(int projectionId)
 			throws ProjectionException, PersistenceException {
-		for (Projection p : getProjections()) {
-			if ((p.getId() == projectionId) && (p.getDateTime().isAfter(LocalDateTime.now()))) {
-				return p;
-			}
-			if ((p.getId() == projectionId) && (p.getDateTime().isBefore(LocalDateTime.now()))) {
-				throw new ProjectionException(
-						"La proiezione selezionata con ID " + projectionId + " non è più disponibile.");
-			}
+		Projection p = getProjection(projectionId);
+		if (p.getDateTime().isAfter(LocalDateTime.now())) {
+			return p;
 		}
-		throw new ProjectionException("La proiezione con id " + projectionId + " non esiste.");
+		throw new ProjectionException("La proiezione selezionata con ID " + projectionId + " non è più disponibile.");
 	}
 
 	/**
@@ -558,6 +836,22 @@ public class Cinema {
 		return persistenceFacade.getOccupiedSeat(projectionId, row, col);
 	}
 
+	/**
+	 * Restituisce l'occupazione di tutti i posti di una proiezione.
+	 * 
+	 * @param projectionId codice identificativo della proiezione.
+	 * @return mappa dei posti della proiezione.
+	 * @throws RoomException        qualora vi siano errori legati alla gestione
+	 *                              della sala del cinema.
+	 * @throws ProjectionException  qualora la proiezione cercata non esista.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public ProjectionSeatMap getProjectionSeatMap(int projectionId)
+			throws RoomException, ProjectionException, PersistenceException {
+		return getProjection(projectionId).getSeatMap();
+	}
+
 	/**
 	 * Restituisce la proiezione associata alla prenotazione.
 	 * 
@@ -566,11 +860,7 @@ public class Cinema {
 	 * @throws ReservationException qualora la prenotazine inserita non esista.
 	 */
 	public int getReservationProjection(long reservationId) throws ReservationException {
-		for (Reservation reservation : cinemaReservations) {
-			if (reservation.getProgressive() == reservationId)
-				return reservation.getProjection().getId();
-		}
-		throw new ReservationException("La prenotazione " + reservationId + " non esiste.");
+		return getReservation(reservationId).getProjection().getId();
 	}
 
 	/**
@@ -588,7 +878,7 @@ public class Cinema {
 	 */
 	public void addSeatToReservation(long reservationId, int row, int col)
 			throws RoomException, SeatAvailabilityException, ReservationException {
-		getReservation(reservationId).addSeat(row, col);
+		seatHoldHandler.hold(getReservation(reservationId), row, col);
 	}
 
 	/**
@@ -604,7 +894,7 @@ public class Cinema {
 	 */
 	public void removeSeatFromReservation(long reservationId, int row, int col)
 			throws RoomException, ReservationException {
-		getReservation(reservationId).removeSeat(row, col);
+		seatHoldHandler.release(getReservation(reservationId), row, col);
 	}
 
 	/**
@@ -717,22 +1007,170 @@ public class Cinema {
 	 */
 	public void buyReservation(long reservationId) throws NumberFormatException, SeatAvailabilityException,
 			RoomException, ReservationException, PaymentErrorException, ReservationException, PersistenceException {
+		Reservation reservation = claimReservationSeats(reservationId);
+		boolean purchased = false;
 		try {
-			getReservation(reservationId).buy();
+			payReservation(reservation);
+			persistPurchase(reservation);
+			purchased = true;
+		} finally {
+			finishPurchase(reservationId, purchased);
+		}
+	}
+
+	/**
+	 * Avvia l'acquisto di una prenotazione senza bloccare il thread chiamante
+	 * durante il pagamento e la registrazione dell'acquisto.
+	 *
+	 * <p>
+	 * L'acquisto procede per fasi: i posti vengono occupati nel thread chiamante,
+	 * mentre il pagamento e la registrazione nel meccanismo di persistenza
+	 * vengono eseguiti da un insieme limitato di thread dedicati. Se tutti i
+	 * thread sono occupati e la coda degli acquisti in attesa è piena l'acquisto
+	 * viene rifiutato subito, liberando i posti occupati. In caso di errore in
+	 * una qualsiasi fase il risultato viene completato con una
+	 * {@code CompletionException} che contiene l'eccezione che sarebbe stata
+	 * lanciata da {@link #buyReservation(long)}.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @return il risultato dell'acquisto, completato al termine di tutte le fasi.
+	 */
+	public CompletableFuture<Void> buyReservationAsync(long reservationId) {
+		Reservation reservation;
+		try {
+			reservation = claimReservationSeats(reservationId);
+		} catch (ReservationException | RoomException | SeatAvailabilityException e) {
+			CompletableFuture<Void> failed = new CompletableFuture<Void>();
+			failed.completeExceptionally(new CompletionException(e));
+			return failed;
+		}
+		CompletableFuture<Void> purchase;
+		try {
+			purchase = CompletableFuture.runAsync(() -> runPurchaseStep(() -> payReservation(reservation)),
+					purchaseExecutor).thenRun(() -> runPurchaseStep(() -> persistPurchase(reservation)));
+		} catch (RejectedExecutionException e) {
+			purchase = new CompletableFuture<Void>();
+			try {
+				reservation.freeAllSeats();
+				purchase.completeExceptionally(new CompletionException(
+						new ReservationException("Troppi acquisti in corso, riprovare più tardi.")));
+			} catch (RoomException roomException) {
+				purchase.completeExceptionally(new CompletionException(roomException));
+			}
+		}
+		return purchase.whenComplete((result, exception) -> finishPurchase(reservationId, exception == null));
+	}
+
+	/**
+	 * Prima fase dell'acquisto: segna l'inizio dell'acquisto e occupa i posti
+	 * selezionati.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @return la prenotazione da acquistare.
+	 * @throws ReservationException      qualora l'id della prenotazione inserita
+	 *                                   non esista o la prenotazione sia già in
+	 *                                   acquisto.
+	 * @throws RoomException             qualora la sala cercata non sia presente
+	 *                                   all'interno del cinema.
+	 * @throws SeatAvailabilityException qualora un posto richiesto non sia
+	 *                                   disponibile.
+	 */
+	private Reservation claimReservationSeats(long reservationId)
+			throws ReservationException, RoomException, SeatAvailabilityException {
+		Reservation reservation = getReservation(reservationId);
+		// Durante l'acquisto la prenotazione non può essere considerata abbandonata
+		reservationRegistry.beginPurchase(reservationId);
+		try {
+			reservation.takeSeat();
+		} catch (RoomException | SeatAvailabilityException e) {
+			reservationRegistry.endPurchase(reservationId, false);
+			throw e;
+		}
+		return reservation;
+	}
+
+	/**
+	 * Seconda fase dell'acquisto: pagamento della prenotazione. Se il pagamento
+	 * non va a buon fine la prenotazione viene eliminata dal meccanismo di
+	 * persistenza.
+	 *
+	 * @param reservation prenotazione da pagare.
+	 * @throws RoomException         qualora la sala cercata non sia presente
+	 *                               all'interno del cinema.
+	 * @throws ReservationException  qualora la prenotazione non sia completa.
+	 * @throws PaymentErrorException qualora vi siano errori riscontrati nelle
+	 *                               procedure di pagamento.
+	 * @throws PersistenceException  qualora vi siano errori riscontrati durante
+	 *                               l'uso di meccanismi di persistenza.
+	 */
+	private void payReservation(Reservation reservation)
+			throws RoomException, ReservationException, PaymentErrorException, PersistenceException {
+		try {
+			reservation.payTakenSeats();
 		} catch (PaymentErrorException e) {
-			persistenceFacade.deleteReservation(reservationId);
+			persistenceFacade.deleteReservation(reservation.getProgressive());
 			throw new PaymentErrorException(e.getMessage());
 		}
-		/*
-		 * Se la reservation è associata ad un coupon, una volta terminato il metodo
-		 * buy, il coupon viene segnato come già utilizzato in modo da impedirne il
-		 * riutilizzo.
-		 */
-		Coupon coupon = getReservation(reservationId).getCoupon();
-		if (coupon != null) {
-			persistenceFacade.setCouponUsed(coupon.getCode());
+	}
+
+	/**
+	 * Terza fase dell'acquisto: i dati della prenotazione, i posti occupati e
+	 * l'eventuale coupon (che viene segnato come già utilizzato in modo da
+	 * impedirne il riutilizzo) vengono resi persistenti in un'unica transazione.
+	 * Se questa fallisce i posti occupati in memoria vengono liberati per non
+	 * divergere dal meccanismo di persistenza.
+	 *
+	 * @param reservation prenotazione acquistata.
+	 * @throws RoomException             qualora la sala cercata non sia presente
+	 *                                   all'interno del cinema.
+	 * @throws SeatAvailabilityException qualora un posto risulti già occupato nel
+	 *                                   meccanismo di persistenza.
+	 * @throws PersistenceException      qualora vi siano errori riscontrati
+	 *                                   durante l'uso di meccanismi di
+	 *                                   persistenza.
+	 */
+	private void persistPurchase(Reservation reservation)
+			throws RoomException, SeatAvailabilityException, PersistenceException {
+		try {
+			persistenceFacade.commitPurchase(reservation);
+		} catch (SeatAvailabilityException | PersistenceException e) {
+			reservation.freeAllSeats();
+			// Il posto può essere stato acquistato da un'altra istanza: la mappa in
+			// memoria viene allineata senza attendere il prossimo aggiornamento
+			if (e instanceof SeatAvailabilityException)
+				refreshProjectionSeats(reservation.getProjection());
+			throw e;
+		}
+	}
+
+	/**
+	 * Ultima fase dell'acquisto, eseguita sia in caso di successo che di errore.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @param purchased     true se l'acquisto è andato a buon fine.
+	 */
+	private void finishPurchase(long reservationId, boolean purchased) {
+		if (purchased) {
+			seatHoldHandler.clear(reservationId);
+			// La ricevuta è stata registrata insieme all'acquisto e viene inviata in
+			// background
+			outboxWorker.wakeUp();
+		}
+		reservationRegistry.endPurchase(reservationId, purchased);
+	}
+
+	/**
+	 * Esegue una fase dell'acquisto all'interno di un {@code CompletableFuture},
+	 * incapsulando le eccezioni in una {@code CompletionException}.
+	 *
+	 * @param step fase da eseguire.
+	 */
+	private static void runPurchaseStep(PurchaseStep step) {
+		try {
+			step.run();
+		} catch (Exception e) {
+			throw new CompletionException(e);
 		}
-		persistenceFacade.setReservationFields(getReservation(reservationId));
 	}
 
 	/**
@@ -751,19 +1189,83 @@ public class Cinema {
 	 * Invia un e-mail allo spettatore che ha completato la compilazione della
 	 * prenotazione (comprende il report).
 	 * 
+	 * <p>
+	 * Non è necessario chiamare questo metodo dopo l'acquisto: la ricevuta viene
+	 * registrata insieme all'acquisto e consegnata in background. Il metodo
+	 * permette di inviare di nuovo l'e-mail su richiesta.
+	 * 
 	 * @param reservationId codice identificativo della prenotazione.
-	 * @return il thread che gestisce l'invio dell'e-mail.
+	 * @return il risultato dell'invio asincrono dell'e-mail.
 	 * @throws ReservationException qualora l'id della prenotazione inserita non
 	 *                              esista.
-	 * @throws HandlerException     qualora ci siano errori riscontrati durante le
-	 *                              procedure di generazione dei report delle
-	 *                              prenotazioni e conseguente invio di e-mail allo
-	 *                              spettatore.
+	 * @throws HandlerException     qualora l'invio non possa essere accodato
+	 *                              perché ci sono troppe e-mail in attesa.
 	 */
-	public Thread sendReservationEmail(long reservationId) throws ReservationException, HandlerException {
+	public Future<Void> sendReservationEmail(long reservationId) throws ReservationException, HandlerException {
 		return emailHandler.sendEmail(getReservation(reservationId));
 	}
 
+	/**
+	 * Avvia la consegna in background delle ricevute degli acquisti, compresi
+	 * quelli effettuati da altre istanze che condividono lo stesso database.
+	 * 
+	 * <p>
+	 * La consegna va avviata dalle istanze che devono inviare e-mail (il server
+	 * web e l'interfaccia da riga di comando dello spettatore): le ricevute degli
+	 * acquisti effettuati da un'istanza che non la avvia restano in attesa e
+	 * vengono inviate da un'altra istanza.
+	 */
+	public void startReceiptDelivery() {
+		outboxWorker.start();
+	}
+
+	/**
+	 * Rimette in coda l'invio di tutte le ricevute degli acquisti la cui consegna
+	 * è fallita. Le ricevute vengono inviate subito se questa istanza ha avviato
+	 * la consegna con {@link #startReceiptDelivery()}, altrimenti da un'altra
+	 * istanza che l'ha avviata.
+	 * 
+	 * @return il numero di ricevute rimesse in coda.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public int resendFailedReservationEmails() throws PersistenceException {
+		return outboxWorker.requeueFailed();
+	}
+
+	/**
+	 * Genera di nuovo e archivia i report di tutte le prenotazioni acquistate per
+	 * una proiezione, ad esempio dopo un cambio di sala.
+	 * 
+	 * @param projectionId identificativo della proiezione.
+	 * @param progress     riceve l'avanzamento della generazione.
+	 * @return l'avanzamento finale della generazione.
+	 * @throws ProjectionException  qualora la proiezione non esista.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public ReportBatchProgress reprintProjectionReports(int projectionId, Consumer<ReportBatchProgress> progress)
+			throws ProjectionException, PersistenceException {
+		if (projectionCatalog.get(projectionId) == null)
+			throw new ProjectionException("La proiezione con id " + projectionId + " non esiste.");
+		return reportBatchJob.renderProjection(projectionId, progress);
+	}
+
+	/**
+	 * Genera di nuovo e archivia i report di tutte le prenotazioni acquistate per
+	 * le proiezioni di un giorno.
+	 * 
+	 * @param day      giorno delle proiezioni.
+	 * @param progress riceve l'avanzamento della generazione.
+	 * @return l'avanzamento finale della generazione.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public ReportBatchProgress reprintDayReports(LocalDate day, Consumer<ReportBatchProgress> progress)
+			throws PersistenceException {
+		return reportBatchJob.renderDay(day, progress);
+	}
+
 	/**
 	 * Imposta la strategia di sconto applicata dal cinema.
 	 * 
@@ -952,12 +1454,7 @@ public class Cinema {
 	 *                              l'uso di meccanismi di persistenza.
 	 */
 	public Movie getProjectionMovie(int projectionId) throws ProjectionException, PersistenceException {
-		for (Projection projection : getProjections()) {
-			if (projection.getId() == projectionId) {
-				return projection.getMovie();
-			}
-		}
-		throw new ProjectionException("La proiezione con id " + projectionId + " non esiste.");
+		return getProjection(projectionId).getMovie();
 	}
 
 	/**
@@ -971,12 +1468,7 @@ public class Cinema {
 	 *                              l'uso di meccanismi di persistenza.
 	 */
 	public LocalDateTime getProjectionDateTime(int projectionId) throws ProjectionException, PersistenceException {
-		for (Projection projection : getProjections()) {
-			if (projection.getId() == projectionId) {
-				return projection.getDateTime();
-			}
-		}
-		throw new ProjectionException("La proiezione con id " + projectionId + " non esiste.");
+		return getProjection(projectionId).getDateTime();
 	}
 
 	/**
@@ -990,12 +1482,53 @@ public class Cinema {
 	 *                              l'uso di meccanismi di persistenza.
 	 */
 	public Room getProjectionRoom(int projectionId) throws ProjectionException, PersistenceException {
-		for (Projection projection : getProjections()) {
-			if (projection.getId() == projectionId) {
-				return projection.getRoom();
-			}
-		}
-		throw new ProjectionException("La proiezione con id " + projectionId + " non esiste.");
+		return getProjection(projectionId).getRoom();
+	}
+
+	/**
+	 * Restituisce le statistiche di funzionamento del cinema dall'avvio: le
+	 * prenotazioni create, acquistate e scadute, l'invio delle e-mail e la
+	 * consegna delle ricevute.
+	 * 
+	 * @return le statistiche, indicizzate per nome in ordine di presentazione.
+	 */
+	public LinkedHashMap<String, Number> getStatistics() {
+		LinkedHashMap<String, Number> statistics = new LinkedHashMap<>();
+		statistics.put("activeReservations", reservationRegistry.getActiveReservations());
+		statistics.put("createdReservations", reservationRegistry.getCreatedReservations());
+		statistics.put("purchasedReservations", reservationRegistry.getPurchasedReservations());
+		statistics.put("expiredReservations", reservationRegistry.getExpiredReservations());
+		statistics.put("releasedSeats", reservationRegistry.getReleasedSeats());
+		statistics.put("emailQueueDepth", emailHandler.getQueueDepth());
+		statistics.put("sentEmails", emailHandler.getSentEmails());
+		statistics.put("failedEmails", emailHandler.getFailedEmails());
+		statistics.put("emailRetries", emailHandler.getRetries());
+		statistics.put("averageEmailSendMillis", emailHandler.getAverageSendMillis());
+		statistics.put("maxEmailSendMillis", emailHandler.getMaxSendMillis());
+		statistics.put("inFlightReceipts", outboxWorker.getInFlightMessages());
+		statistics.put("deliveredReceipts", outboxWorker.getDeliveredMessages());
+		statistics.put("failedReceiptDeliveries", outboxWorker.getFailedDeliveries());
+		return statistics;
+	}
+
+	/**
+	 * Restituisce il gestore della consegna delle ricevute, che espone anche le
+	 * statistiche sulle ricevute consegnate e sui tentativi falliti.
+	 * 
+	 * @return il gestore della consegna delle ricevute.
+	 */
+	public OutboxWorker getOutboxWorker() {
+		return outboxWorker;
+	}
+
+	/**
+	 * Restituisce il registro delle prenotazioni in corso, che espone anche le
+	 * statistiche sulle prenotazioni create, acquistate e scadute.
+	 * 
+	 * @return il registro delle prenotazioni.
+	 */
+	public ReservationRegistry getReservationRegistry() {
+		return reservationRegistry;
 	}
 
 	public String getName() {
@@ -1014,4 +1547,13 @@ public class Cinema {
 		return cinemaInfo.get("adminPassword");
 	}
 
+	/**
+	 * Fase dell'acquisto che può lanciare le eccezioni del dominio.
+	 */
+	@FunctionalInterface
+	private interface PurchaseStep {
+
+		void run() throws Exception;
+	}
+
 }
@@ -1,21 +1,34 @@
 package cinema.controller.handlers;
 
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.activation.DataHandler;
 import javax.activation.DataSource;
-import javax.activation.FileDataSource;
+import javax.mail.Address;
+import javax.mail.AuthenticationFailedException;
 import javax.mail.BodyPart;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Multipart;
 import javax.mail.PasswordAuthentication;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
 import javax.mail.Transport;
+import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
+import javax.mail.util.ByteArrayDataSource;
 
 import cinema.model.reservation.Reservation;
 import cinema.controller.handlers.util.HandlerException;
@@ -23,12 +36,61 @@ import cinema.controller.handlers.util.HandlerException;
 /**
  * Gestisce l'invio dell'e-mail, da parte del cinema, all'utente che ha concluso
  * una prenotazione.
+ *
+ * <p>
+ * Le e-mail vengono inviate da un numero fissato di thread dedicati, che
+ * prelevano gli invii da una coda limitata: quando la coda è piena chi richiede
+ * un invio attende che si liberi un posto, per un tempo limitato, prima di
+ * ricevere un errore. Ogni thread mantiene aperta la propria connessione SMTP e
+ * la riutilizza per gli invii successivi, riaprendola solo se è stata chiusa.
+ * Gli invii falliti per errori temporanei vengono ripetuti, fino a
+ * {@value #MAX_ATTEMPTS} tentativi, con un'attesa che raddoppia ad ogni
+ * tentativo. Il report allegato viene generato in memoria e salvato su disco
+ * solo se l'archiviazione dei report è attiva (si veda {@link ReportHandler}).
  * 
  * @author Screaming Hairy Armadillo Team
  *
  */
 public class EmailHandler {
 
+	/**
+	 * Numero predefinito di thread dedicati all'invio delle e-mail.
+	 */
+	public static final int DEFAULT_WORKERS = 4;
+
+	/**
+	 * Server SMTP predefinito, sostituibile con
+	 * {@code -Dcinema.email.host=<host>} (ad esempio con un server locale durante
+	 * i test di carico).
+	 */
+	public static final String DEFAULT_SMTP_HOST = "smtp.gmail.com";
+
+	/**
+	 * Porta predefinita del server SMTP, sostituibile con
+	 * {@code -Dcinema.email.port=<porta>}.
+	 */
+	public static final int DEFAULT_SMTP_PORT = 587;
+
+	/**
+	 * Numero massimo di e-mail in attesa di essere inviate.
+	 */
+	private static final int QUEUE_CAPACITY = 1000;
+
+	/**
+	 * Tempo massimo di attesa di un posto libero nella coda, in secondi.
+	 */
+	private static final long QUEUE_TIMEOUT_SECONDS = 5;
+
+	/**
+	 * Numero massimo di tentativi di invio di un'e-mail.
+	 */
+	private static final int MAX_ATTEMPTS = 5;
+
+	/**
+	 * Attesa prima del primo nuovo tentativo di invio, in millisecondi.
+	 */
+	private static final long INITIAL_BACKOFF_MILLIS = 1000;
+
 	/**
 	 * E-mail del cinema.
 	 */
@@ -42,107 +104,294 @@ public class EmailHandler {
 	/**
 	 * Nome del cinema.
 	 */
-	private String name;
+	private volatile String name;
+
+	/**
+	 * Gestore dei report allegati alle e-mail, creato una sola volta e condiviso
+	 * da tutti gli invii.
+	 */
+	private ReportHandler reportHandler;
+
+	/**
+	 * Thread dedicati all'invio delle e-mail.
+	 */
+	private ThreadPoolExecutor executor;
 
 	/**
-	 * Ubicazione del cinema.
+	 * Esecutore che riaccoda gli invii da ripetere, una volta trascorsa l'attesa.
 	 */
-	private String location;
+	private ScheduledExecutorService retryScheduler;
 
 	/**
-	 * URL del logo del cinema.
+	 * Connessione SMTP aperta da ciascun thread di invio.
 	 */
-	private String logoURL;
+	private ThreadLocal<Transport> transport;
+
+	/**
+	 * Sessione e-mail condivisa da tutti gli invii.
+	 */
+	private Session session;
+
+	/**
+	 * Numero di e-mail inviate.
+	 */
+	private AtomicLong sentEmails;
+
+	/**
+	 * Numero di e-mail non inviate dopo tutti i tentativi.
+	 */
+	private AtomicLong failedEmails;
+
+	/**
+	 * Numero di nuovi tentativi di invio.
+	 */
+	private AtomicLong retries;
+
+	/**
+	 * Tempo complessivo impiegato per gli invii riusciti, in nanosecondi.
+	 */
+	private AtomicLong totalSendNanos;
+
+	/**
+	 * Tempo massimo impiegato per un invio riuscito, in nanosecondi.
+	 */
+	private AtomicLong maxSendNanos;
 
 	/**
 	 * Costruttore del gestore dell'e-mail.
 	 * 
-	 * @param name     nome del cinema.
-	 * @param email    e-mail del cinema.
-	 * @param password password dell'e-mail del cinema.
-	 * @param location ubicazione del cinema.
-	 * @param logoURL  URL del logo del cinema (iconfinder.com).
+	 * @param name        nome del cinema.
+	 * @param email       e-mail del cinema.
+	 * @param password    password dell'e-mail del cinema.
+	 * @param location    ubicazione del cinema.
+	 * @param logoURL     URL del logo del cinema (iconfinder.com).
+	 * @param reportStore archivio su disco dei report.
 	 */
-	public EmailHandler(String name, String email, String password, String location, String logoURL) {
+	public EmailHandler(String name, String email, String password, String location, String logoURL,
+			ReportStore reportStore) {
 		this.name = name;
 		this.email = email;
 		this.password = password;
-		this.location = location;
-		this.logoURL = logoURL;
+		this.reportHandler = new ReportHandler(name, email, location, logoURL, reportStore);
+		this.transport = new ThreadLocal<Transport>();
+		this.sentEmails = new AtomicLong();
+		this.failedEmails = new AtomicLong();
+		this.retries = new AtomicLong();
+		this.totalSendNanos = new AtomicLong();
+		this.maxSendNanos = new AtomicLong();
+		// Il numero di thread dedicati all'invio è configurabile con
+		// -Dcinema.email.workers=<thread>
+		int workers = Integer.getInteger("cinema.email.workers", DEFAULT_WORKERS);
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), runnable -> {
+					Thread thread = new Thread(runnable, "email-" + threads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, (runnable, pool) -> {
+					// Coda piena: chi richiede l'invio attende che si liberi un posto
+					try {
+						if (!pool.isShutdown()
+								&& pool.getQueue().offer(runnable, QUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+							return;
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					throw new RejectedExecutionException("Coda delle e-mail piena.");
+				});
+		this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "email-retry");
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 
 	/**
 	 * Invia l'e-mail allo spettatore.
 	 * 
+	 * <p>
+	 * L'invio viene accodato ed eseguito in modo asincrono da uno dei thread
+	 * dedicati; il report della prenotazione viene generato in memoria prima
+	 * dell'invio e allegato direttamente all'e-mail, senza passare dal disco.
+	 * 
 	 * @param reservation prenotazione da inviare.
-	 * @return il Thread, già avviato, utilizzato per l'invio asincrono dell'e-mail
-	 *         allo spettatore.
-	 * @throws HandlerException se ci fosse un problema nella spedizione del report
-	 *                          o nella sua generazione.
-	 */
-	public Thread sendEmail(Reservation reservation) throws HandlerException {
-		ReportHandler reportHandler = new ReportHandler(name, email, location, logoURL);
-		Thread emailThread = new Thread() {
-			@Override
-			public void run() {
-				try {
-					// Prima di inviare l'email si verifica che il report sia già stato generato,
-					// se non è ancora stato generato lo genero
-					if (reservation.getReportLocation() == null) {
-						reportHandler.createReport(reservation);
-					}
-
-					// Stabilisce le informazioni sul sender ed il receiver dell'email
-					String to = reservation.getPurchaser().getEmail(); // Receiver email
-					String user = email; // Sender email (cinema)
-
-					// Configura le proprietà dell'email
-					Properties properties = setUpMainProperties(user, password);
-
-					// Genera una nuova sessione mail
-					Session session = startNewSession(user, password, properties);
-
-					// Tenta la composizione del messaggio e l'invio dell'email
-					createMessageAndSendEmail(session, user, to, reservation);
-				} catch (HandlerException exception) {
-					System.out.println(exception.getMessage());
-				}
-			}
-		};
-		emailThread.start();
-		return emailThread;
+	 * @return il risultato dell'invio asincrono dell'e-mail allo spettatore,
+	 *         completato con un'eccezione se l'e-mail non può essere inviata.
+	 * @throws HandlerException se la coda delle e-mail resta piena per tutto il
+	 *                          tempo massimo di attesa.
+	 */
+	public CompletableFuture<Void> sendEmail(Reservation reservation) throws HandlerException {
+		EmailTask task = new EmailTask(reservation);
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			throw new HandlerException("Troppe e-mail in attesa di invio, riprova più tardi.");
+		}
+		return task.result;
 	}
 
 	/**
-	 * Effettua le creazione del messaggio da inviare e invia l'e-mail.
+	 * Effettua le creazione del messaggio da inviare e invia l'e-mail, usando la
+	 * connessione SMTP del thread corrente.
 	 * 
-	 * @param session     sessione e-mail generata per la specifica prenotazione.
+	 * @param session     sessione e-mail condivisa da tutti gli invii.
 	 * @param user        mittente dell'e-mail (cinema).
 	 * @param to          destinatario dell'e-mail (spettatore).
 	 * @param reservation prenotazione da inviare.
-	 * @throws HandlerException se ci fosse un problema nella spedizione del report
-	 *                          o nella sua generazione.
+	 * @param report      contenuto del report della prenotazione.
+	 * @throws MessagingException se ci fosse un problema nella composizione o
+	 *                            nella spedizione dell'e-mail.
 	 */
-	private void createMessageAndSendEmail(Session session, String user, String to, Reservation reservation)
-			throws HandlerException {
-		try {
-			// Configura le proprietà basilari dell'email
-			Message message = createBasicMailProperties(session, user, to, reservation);
+	private void createMessageAndSendEmail(Session session, String user, String to, Reservation reservation,
+			byte[] report) throws MessagingException {
+		// Configura le proprietà basilari dell'email
+		Message message = createBasicMailProperties(session, user, to, reservation);
+
+		// Crea il body dell'email
+		BodyPart messageBodyPart1 = createMailBody(reservation);
+
+		// Aggiunge, all'email, il report della prenotazione in allegato
+		MimeBodyPart messageBodyPart2 = createMailReport(reservation, report);
 
-			// Crea il body dell'email
-			BodyPart messageBodyPart1 = createMailBody(reservation);
+		// Crea un campo multipart comprendente body e allegato
+		addBodyAndReportToMail(message, messageBodyPart1, messageBodyPart2);
+
+		// Invia l'email
+		message.saveChanges();
+		getTransport(session).sendMessage(message, message.getAllRecipients());
+	}
+
+	/**
+	 * Restituisce la connessione SMTP del thread corrente, aprendola se non è
+	 * ancora aperta o se è stata chiusa dal server.
+	 *
+	 * @param session sessione e-mail condivisa da tutti gli invii.
+	 * @return la connessione SMTP aperta.
+	 * @throws MessagingException se non è possibile aprire la connessione.
+	 */
+	private Transport getTransport(Session session) throws MessagingException {
+		Transport current = transport.get();
+		if (current != null && current.isConnected())
+			return current;
+		if (current == null) {
+			current = session.getTransport("smtp");
+			transport.set(current);
+		}
+		current.connect();
+		return current;
+	}
 
-			// Aggiunge, all'email, il report della prenotazione in allegato
-			MimeBodyPart messageBodyPart2 = createMailReport(reservation);
+	/**
+	 * Chiude la connessione SMTP del thread corrente dopo un errore, in modo che
+	 * il tentativo successivo ne apra una nuova.
+	 */
+	private void closeTransport() {
+		Transport current = transport.get();
+		transport.remove();
+		if (current == null)
+			return;
+		try {
+			current.close();
+		} catch (MessagingException e) {
+			// La connessione non è più utilizzabile in ogni caso
+		}
+	}
 
-			// Crea un campo multipart comprendente body e allegato
-			addBodyAndReportToMail(message, messageBodyPart1, messageBodyPart2);
+	/**
+	 * Aggiorna le informazioni del cinema riportate nelle e-mail e nei report
+	 * allegati. L'account da cui vengono inviate le e-mail non cambia.
+	 *
+	 * @param name     nome del cinema.
+	 * @param email    e-mail del cinema, riportata nei report.
+	 * @param location ubicazione del cinema.
+	 * @param logoURL  URL del logo del cinema (iconfinder.com).
+	 */
+	public void setCinemaInfo(String name, String email, String location, String logoURL) {
+		this.name = name;
+		reportHandler.setCinemaInfo(name, email, location, logoURL);
+	}
 
-			// Invia l'email
-			Transport.send(message);
-		} catch (MessagingException ex) {
-			throw new HandlerException("Si è verificato un problema nella spedizione via email del tuo report.");
+	/**
+	 * Restituisce la sessione e-mail condivisa, creandola al primo invio.
+	 *
+	 * @return la sessione e-mail.
+	 */
+	private synchronized Session getSession() {
+		if (session == null) {
+			// Configura le proprietà dell'email e genera la sessione mail
+			Properties properties = setUpMainProperties(email, password);
+			session = startNewSession(email, password, properties);
 		}
+		return session;
+	}
+
+	/**
+	 * Registra la durata di un invio riuscito.
+	 *
+	 * @param nanos durata dell'invio, in nanosecondi.
+	 */
+	private void recordSend(long nanos) {
+		sentEmails.incrementAndGet();
+		totalSendNanos.addAndGet(nanos);
+		maxSendNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * Restituisce il gestore dei report allegati alle e-mail.
+	 *
+	 * @return il gestore dei report.
+	 */
+	public ReportHandler getReportHandler() {
+		return reportHandler;
+	}
+
+	/**
+	 * Interrompe l'invio delle e-mail e chiude le connessioni.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		retryScheduler.shutdownNow();
+		reportHandler.shutdown();
+	}
+
+	/**
+	 * Restituisce il numero di e-mail in attesa di essere inviate.
+	 *
+	 * @return numero di e-mail in coda.
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	public long getSentEmails() {
+		return sentEmails.get();
+	}
+
+	public long getFailedEmails() {
+		return failedEmails.get();
+	}
+
+	public long getRetries() {
+		return retries.get();
+	}
+
+	/**
+	 * Restituisce la durata media di un invio riuscito.
+	 *
+	 * @return durata media di un invio, in millisecondi.
+	 */
+	public double getAverageSendMillis() {
+		long sent = sentEmails.get();
+		return sent == 0 ? 0 : totalSendNanos.get() / 1e6 / sent;
+	}
+
+	/**
+	 * Restituisce la durata massima di un invio riuscito.
+	 *
+	 * @return durata massima di un invio, in millisecondi.
+	 */
+	public double getMaxSendMillis() {
+		return maxSendNanos.get() / 1e6;
 	}
 
 	/**
@@ -165,13 +414,13 @@ public class EmailHandler {
 	 * Crea l'allegato dell'e-mail. Allega il report della prenotazione.
 	 * 
 	 * @param reservation prenotazione da inviare.
+	 * @param report      contenuto del report della prenotazione.
 	 * @return il report allegato all'email.
 	 * @throws MessagingException se ci sono problemi nella generazione dell'e-mail.
 	 */
-	private MimeBodyPart createMailReport(Reservation reservation) throws MessagingException {
+	private MimeBodyPart createMailReport(Reservation reservation, byte[] report) throws MessagingException {
 		MimeBodyPart messageBodyPart2 = new MimeBodyPart();
-		String filename = reservation.getReportLocation();
-		DataSource source = new FileDataSource(filename);
+		DataSource source = new ByteArrayDataSource(report, "application/pdf");
 		messageBodyPart2.setDataHandler(new DataHandler(source));
 		messageBodyPart2.setFileName("Reservation_" + Long.toString(reservation.getProgressive()) + ".pdf");
 		return messageBodyPart2;
@@ -242,14 +491,132 @@ public class EmailHandler {
 	 */
 	private Properties setUpMainProperties(String user, String password) {
 		Properties properties = System.getProperties();
-		String host = "smtp.gmail.com";
+		String host = System.getProperty("cinema.email.host", DEFAULT_SMTP_HOST);
 		properties.put("mail.smtp.starttls.enable", "true");
 		properties.put("mail.smtp.host", host);
 		properties.put("mail.smtp.user", user);
 		properties.put("mail.smtp.password", password);
-		properties.put("mail.smtp.port", "587");
+		properties.put("mail.smtp.port", String.valueOf(Integer.getInteger("cinema.email.port", DEFAULT_SMTP_PORT)));
 		properties.put("mail.smtp.auth", "true");
 		return properties;
 	}
 
+	/**
+	 * Invio di un'e-mail, che può essere ripetuto in caso di errori temporanei.
+	 */
+	private class EmailTask implements Runnable {
+
+		/**
+		 * Prenotazione da inviare.
+		 */
+		private final Reservation reservation;
+
+		/**
+		 * Risultato dell'invio.
+		 */
+		private final CompletableFuture<Void> result;
+
+		/**
+		 * Numero di tentativi effettuati.
+		 */
+		private int attempts;
+
+		/**
+		 * Report della prenotazione, generato al primo tentativo e riutilizzato dai
+		 * successivi.
+		 */
+		private byte[] report;
+
+		/**
+		 * Costruttore dell'invio.
+		 *
+		 * @param reservation prenotazione da inviare.
+		 */
+		private EmailTask(Reservation reservation) {
+			this.reservation = reservation;
+			this.result = new CompletableFuture<Void>();
+		}
+
+		@Override
+		public void run() {
+			attempts++;
+			try {
+				// Prima di inviare l'email si verifica che il report sia già stato generato,
+				// se non è ancora stato generato lo recupero dall'archivio o lo genero in
+				// memoria
+				if (report == null)
+					report = reportHandler.getReport(reservation);
+
+				// Stabilisce le informazioni sul sender ed il receiver dell'email
+				String to = reservation.getPurchaser().getEmail(); // Receiver email
+				String user = email; // Sender email (cinema)
+
+				// Tenta la composizione del messaggio e l'invio dell'email
+				long start = System.nanoTime();
+				createMessageAndSendEmail(getSession(), user, to, reservation, report);
+				recordSend(System.nanoTime() - start);
+				result.complete(null);
+			} catch (HandlerException exception) {
+				fail(exception);
+			} catch (MessagingException exception) {
+				closeTransport();
+				if (isPermanent(exception) || attempts >= MAX_ATTEMPTS) {
+					fail(new HandlerException("Si è verificato un problema nella spedizione via email del tuo report."));
+				} else {
+					retries.incrementAndGet();
+					retryScheduler.schedule(this::retry, INITIAL_BACKOFF_MILLIS << (attempts - 1),
+							TimeUnit.MILLISECONDS);
+				}
+			} catch (RuntimeException exception) {
+				// Il risultato va completato comunque, altrimenti chi attende l'invio
+				// resterebbe bloccato
+				closeTransport();
+				fail(new HandlerException("Si è verificato un problema nella spedizione via email del tuo report."));
+			}
+		}
+
+		/**
+		 * Verifica se un errore di invio non può essere risolto da un nuovo
+		 * tentativo: un indirizzo non valido, rifiutato dal server o credenziali
+		 * del cinema non accettate dal server.
+		 *
+		 * @param exception errore riscontrato nell'invio.
+		 * @return true se l'invio non va ritentato.
+		 */
+		private boolean isPermanent(MessagingException exception) {
+			if (exception instanceof AddressException || exception instanceof AuthenticationFailedException)
+				return true;
+			if (exception instanceof SendFailedException) {
+				Address[] invalidAddresses = ((SendFailedException) exception).getInvalidAddresses();
+				return invalidAddresses != null && invalidAddresses.length > 0;
+			}
+			return false;
+		}
+
+		/**
+		 * Riaccoda l'invio una volta trascorsa l'attesa.
+		 * 
+		 * <p>
+		 * L'invio viene inserito direttamente nella coda, senza attendere che si
+		 * liberi un posto: il thread dei nuovi tentativi è unico e, se restasse
+		 * bloccato su una coda piena, ritarderebbe tutti gli altri tentativi. I
+		 * thread di invio sono già stati avviati dal primo tentativo.
+		 */
+		private void retry() {
+			if (executor.isShutdown() || !executor.getQueue().offer(this))
+				fail(new HandlerException("Troppe e-mail in attesa di invio."));
+		}
+
+		/**
+		 * Segna l'invio come fallito.
+		 *
+		 * @param exception errore che ha impedito l'invio.
+		 */
+		private void fail(HandlerException exception) {
+			failedEmails.incrementAndGet();
+			System.out.println(exception.getMessage());
+			result.completeExceptionally(exception);
+		}
+	}
+
 }
@@ -0,0 +1,257 @@
+package cinema.controller.handlers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Esegue dei compiti dopo un certo ritardo, con la precisione di un intervallo
+ * di tempo fissato (tick).
+ *
+ * <p>
+ * I compiti sono distribuiti su una ruota di {@code wheelSize} posizioni, una
+ * per tick: ogni compito viene inserito nella posizione corrispondente alla sua
+ * scadenza, insieme al numero di giri completi della ruota che devono ancora
+ * trascorrere. Un solo thread in background avanza di una posizione ad ogni tick
+ * ed esegue i compiti scaduti della posizione corrente. Inserimento e
+ * cancellazione richiedono tempo costante, indipendentemente dal numero di
+ * compiti in attesa: la struttura è adatta a gestire molti compiti con ritardi
+ * lunghi, quasi tutti cancellati prima della scadenza.
+ *
+ * <p>
+ * I compiti vengono eseguiti dal thread della ruota e devono quindi essere
+ * brevi.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class HashedWheelTimer {
+
+	/**
+	 * Durata di un tick, in millisecondi.
+	 */
+	private final long tickMillis;
+
+	/**
+	 * Posizioni della ruota, ciascuna con i compiti che scadono in quella
+	 * posizione (accedute solo dal thread della ruota).
+	 */
+	private final ArrayList<ArrayList<Timeout>> wheel;
+
+	/**
+	 * Compiti inseriti e non ancora assegnati ad una posizione della ruota.
+	 */
+	private final ConcurrentLinkedQueue<Timeout> pendingTimeouts;
+
+	/**
+	 * Istante di avvio della ruota, in nanosecondi.
+	 */
+	private final long startTime;
+
+	/**
+	 * Thread che fa avanzare la ruota.
+	 */
+	private final Thread worker;
+
+	/**
+	 * Indica se la ruota è stata fermata.
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * Costruttore della ruota, che avvia il thread in background.
+	 *
+	 * @param name       nome del thread della ruota.
+	 * @param tickMillis durata di un tick, in millisecondi.
+	 * @param wheelSize  numero di posizioni della ruota.
+	 */
+	public HashedWheelTimer(String name, long tickMillis, int wheelSize) {
+		if (tickMillis <= 0 || wheelSize <= 0)
+			throw new IllegalArgumentException("La durata del tick e la dimensione della ruota devono essere positive.");
+		this.tickMillis = tickMillis;
+		this.wheel = new ArrayList<ArrayList<Timeout>>(wheelSize);
+		for (int i = 0; i < wheelSize; i++)
+			wheel.add(new ArrayList<Timeout>());
+		this.pendingTimeouts = new ConcurrentLinkedQueue<Timeout>();
+		this.startTime = System.nanoTime();
+		this.stopped = false;
+		this.worker = new Thread(this::run, name);
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Pianifica l'esecuzione di un compito dopo il ritardo indicato.
+	 *
+	 * @param task  compito da eseguire.
+	 * @param delay ritardo dopo il quale eseguire il compito.
+	 * @param unit  unità di misura del ritardo.
+	 * @return il riferimento al compito, che permette di cancellarlo.
+	 */
+	public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+		long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+		Timeout timeout = new Timeout(task, deadline);
+		pendingTimeouts.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Ferma la ruota; i compiti in attesa non vengono più eseguiti.
+	 */
+	public void stop() {
+		stopped = true;
+		worker.interrupt();
+	}
+
+	/**
+	 * Ciclo del thread della ruota: attende ogni tick, assegna alle posizioni i
+	 * nuovi compiti ed esegue quelli scaduti della posizione corrente.
+	 */
+	private void run() {
+		long tick = 0;
+		long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		while (!stopped) {
+			long sleepNanos = (tick + 1) * tickNanos - (System.nanoTime() - startTime);
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					if (stopped)
+						return;
+				}
+				continue;
+			}
+			transferPendingTimeouts(tick);
+			expireTimeouts(wheel.get((int) (tick % wheel.size())));
+			tick++;
+		}
+	}
+
+	/**
+	 * Assegna i compiti appena inseriti alla posizione della ruota corrispondente
+	 * alla loro scadenza.
+	 *
+	 * @param currentTick tick corrente.
+	 */
+	private void transferPendingTimeouts(long currentTick) {
+		long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		Timeout timeout;
+		while ((timeout = pendingTimeouts.poll()) != null) {
+			if (timeout.isCancelled())
+				continue;
+			// Un compito già scaduto viene eseguito al tick corrente
+			long expirationTick = Math.max(currentTick, timeout.deadline / tickNanos);
+			timeout.remainingRounds = (expirationTick - currentTick) / wheel.size();
+			wheel.get((int) (expirationTick % wheel.size())).add(timeout);
+		}
+	}
+
+	/**
+	 * Esegue i compiti scaduti di una posizione della ruota, rimuovendo anche
+	 * quelli cancellati.
+	 *
+	 * @param bucket posizione della ruota.
+	 */
+	private void expireTimeouts(ArrayList<Timeout> bucket) {
+		Iterator<Timeout> iterator = bucket.iterator();
+		while (iterator.hasNext()) {
+			Timeout timeout = iterator.next();
+			if (timeout.isCancelled()) {
+				iterator.remove();
+			} else if (timeout.remainingRounds > 0) {
+				timeout.remainingRounds--;
+			} else {
+				iterator.remove();
+				timeout.expire();
+			}
+		}
+	}
+
+	/**
+	 * Compito pianificato sulla ruota.
+	 */
+	public static class Timeout {
+
+		/**
+		 * Compito in attesa di essere eseguito.
+		 */
+		private static final int WAITING = 0;
+
+		/**
+		 * Compito cancellato.
+		 */
+		private static final int CANCELLED = 1;
+
+		/**
+		 * Compito eseguito.
+		 */
+		private static final int EXPIRED = 2;
+
+		/**
+		 * Compito da eseguire.
+		 */
+		private final Runnable task;
+
+		/**
+		 * Scadenza del compito, in nanosecondi dall'avvio della ruota.
+		 */
+		private final long deadline;
+
+		/**
+		 * Stato del compito.
+		 */
+		private final AtomicInteger state;
+
+		/**
+		 * Giri completi della ruota che devono ancora trascorrere prima della
+		 * scadenza (acceduto solo dal thread della ruota).
+		 */
+		private long remainingRounds;
+
+		/**
+		 * Costruttore del compito pianificato.
+		 *
+		 * @param task     compito da eseguire.
+		 * @param deadline scadenza del compito.
+		 */
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+			this.state = new AtomicInteger(WAITING);
+		}
+
+		/**
+		 * Cancella il compito, se non è ancora stato eseguito.
+		 *
+		 * @return true se il compito è stato cancellato, false se era già stato
+		 *         eseguito o cancellato.
+		 */
+		public boolean cancel() {
+			return state.compareAndSet(WAITING, CANCELLED);
+		}
+
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state.get() == EXPIRED;
+		}
+
+		/**
+		 * Esegue il compito, a meno che non sia stato cancellato.
+		 */
+		private void expire() {
+			if (!state.compareAndSet(WAITING, EXPIRED))
+				return;
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,416 @@
+package cinema.controller.handlers;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import cinema.controller.handlers.util.HandlerException;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.OutboxMessage;
+import cinema.model.persistence.PersistenceFacade;
+import cinema.model.persistence.util.PersistenceException;
+import cinema.model.projection.Projection;
+import cinema.model.projection.ProjectionCatalog;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.IReservationDiscountStrategy;
+import cinema.model.reservation.util.ReservationException;
+import cinema.model.spectator.Spectator;
+import cinema.model.spectator.util.InvalidSpectatorInfoException;
+
+/**
+ * Consegna agli spettatori le ricevute degli acquisti registrate nella tabella
+ * {@code Outbox}.
+ *
+ * <p>
+ * Ogni acquisto registra la propria ricevuta nella stessa transazione in cui
+ * viene reso persistente: una volta avviato con {@link #start()}, un thread in
+ * background legge periodicamente le ricevute in attesa, un lotto alla volta,
+ * ricostruisce dal meccanismo di persistenza la prenotazione acquistata e la
+ * invia tramite {@link EmailHandler}, che ne genera il report. Solo quando
+ * l'invio è riuscito la ricevuta viene segnata come consegnata: se
+ * l'applicazione si arresta prima, la ricevuta viene inviata al riavvio. Una
+ * ricevuta può quindi essere inviata più di una volta, ma non viene mai persa.
+ *
+ * <p>
+ * Più istanze dell'applicazione possono condividere lo stesso database: prima
+ * dell'invio ogni ricevuta viene riservata nel meccanismo di persistenza per un
+ * tempo limitato, e viene inviata solo se la riserva è riuscita. Una ricevuta
+ * riservata da un'istanza che si arresta prima della consegna viene inviata da
+ * un'altra istanza alla scadenza della riserva.
+ *
+ * <p>
+ * Le consegne fallite vengono ripetute con un'attesa che raddoppia ad ogni
+ * tentativo, fino a {@value #MAX_ATTEMPTS} tentativi, dopo i quali la ricevuta
+ * resta in attesa finché non viene rimessa in coda con
+ * {@link #requeueFailed()}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class OutboxWorker {
+
+	/**
+	 * Numero predefinito di ricevute lette ad ogni controllo.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 50;
+
+	/**
+	 * Intervallo predefinito tra due controlli delle ricevute in attesa, in
+	 * millisecondi.
+	 */
+	public static final long DEFAULT_POLL_INTERVAL_MILLIS = 5000;
+
+	/**
+	 * Numero massimo di tentativi di consegna di una ricevuta.
+	 */
+	public static final int MAX_ATTEMPTS = 10;
+
+	/**
+	 * Durata predefinita della riserva di una ricevuta in corso di invio, in
+	 * millisecondi: deve superare il tempo massimo di un invio, compresi i nuovi
+	 * tentativi effettuati da {@link EmailHandler}.
+	 */
+	public static final long DEFAULT_LEASE_MILLIS = 10 * 60 * 1000L;
+
+	/**
+	 * Attesa prima del primo nuovo tentativo di consegna, in millisecondi.
+	 */
+	private static final long INITIAL_RETRY_DELAY_MILLIS = 60 * 1000L;
+
+	/**
+	 * Attesa massima tra due tentativi di consegna, in millisecondi.
+	 */
+	private static final long MAX_RETRY_DELAY_MILLIS = 60 * 60 * 1000L;
+
+	/**
+	 * Permette di leggere le ricevute in attesa e di registrarne la consegna.
+	 */
+	private final PersistenceFacade persistenceFacade;
+
+	/**
+	 * Gestore dell'invio delle e-mail.
+	 */
+	private final EmailHandler emailHandler;
+
+	/**
+	 * Catalogo delle proiezioni, da cui vengono recuperate le proiezioni delle
+	 * prenotazioni ricostruite.
+	 */
+	private final ProjectionCatalog projectionCatalog;
+
+	/**
+	 * Restituisce la strategia di sconto corrente del cinema, richiesta per
+	 * costruire le prenotazioni.
+	 */
+	private final Supplier<IReservationDiscountStrategy> discountStrategy;
+
+	/**
+	 * Numero massimo di ricevute inviate ad ogni controllo.
+	 */
+	private final int batchSize;
+
+	/**
+	 * Intervallo tra due controlli delle ricevute in attesa, in millisecondi.
+	 */
+	private final long pollIntervalMillis;
+
+	/**
+	 * Durata della riserva di una ricevuta in corso di invio, in millisecondi.
+	 */
+	private final long leaseMillis;
+
+	/**
+	 * Identificativo di questa istanza, registrato nelle ricevute riservate.
+	 */
+	private final String owner;
+
+	/**
+	 * Thread che legge le ricevute in attesa.
+	 */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Indica se il controllo periodico delle ricevute è stato avviato.
+	 */
+	private final AtomicBoolean started;
+
+	/**
+	 * Prenotazioni la cui ricevuta è in corso di invio, da non leggere di nuovo.
+	 */
+	private final Set<Long> inFlight;
+
+	/**
+	 * Indica se è già stato richiesto un controllo immediato.
+	 */
+	private final AtomicBoolean wakeUpPending;
+
+	/**
+	 * Numero di ricevute consegnate.
+	 */
+	private final AtomicLong deliveredMessages;
+
+	/**
+	 * Numero di tentativi di consegna falliti.
+	 */
+	private final AtomicLong failedDeliveries;
+
+	/**
+	 * Costruttore del gestore delle ricevute; il controllo delle ricevute in
+	 * attesa inizia solo con {@link #start()}.
+	 *
+	 * @param persistenceFacade  permette di accedere alle ricevute in attesa.
+	 * @param emailHandler       gestore dell'invio delle e-mail.
+	 * @param projectionCatalog  catalogo delle proiezioni.
+	 * @param discountStrategy   restituisce la strategia di sconto corrente del
+	 *                           cinema.
+	 * @param batchSize          numero massimo di ricevute inviate ad ogni
+	 *                           controllo.
+	 * @param pollIntervalMillis intervallo tra due controlli delle ricevute in
+	 *                           attesa, in millisecondi.
+	 * @param leaseMillis        durata della riserva di una ricevuta in corso di
+	 *                           invio, in millisecondi.
+	 */
+	public OutboxWorker(PersistenceFacade persistenceFacade, EmailHandler emailHandler,
+			ProjectionCatalog projectionCatalog, Supplier<IReservationDiscountStrategy> discountStrategy,
+			int batchSize, long pollIntervalMillis, long leaseMillis) {
+		this.persistenceFacade = persistenceFacade;
+		this.emailHandler = emailHandler;
+		this.projectionCatalog = projectionCatalog;
+		this.discountStrategy = discountStrategy;
+		this.batchSize = batchSize;
+		this.pollIntervalMillis = pollIntervalMillis;
+		this.leaseMillis = leaseMillis;
+		this.owner = UUID.randomUUID().toString();
+		this.started = new AtomicBoolean();
+		this.inFlight = ConcurrentHashMap.newKeySet();
+		this.wakeUpPending = new AtomicBoolean();
+		this.deliveredMessages = new AtomicLong();
+		this.failedDeliveries = new AtomicLong();
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "email-outbox");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Avvia il controllo periodico delle ricevute in attesa; le chiamate
+	 * successive alla prima non hanno effetto.
+	 */
+	public void start() {
+		if (!started.compareAndSet(false, true))
+			return;
+		// Il primo controllo consegna le ricevute rimaste in attesa prima del riavvio
+		executor.scheduleWithFixedDelay(this::drain, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Richiede un controllo immediato delle ricevute in attesa, ad esempio dopo
+	 * un acquisto, senza attendere il controllo periodico. Se il gestore non è
+	 * stato avviato la richiesta viene ignorata: le ricevute verranno consegnate
+	 * dall'istanza che gestisce le consegne.
+	 */
+	public void wakeUp() {
+		if (!started.get() || !wakeUpPending.compareAndSet(false, true))
+			return;
+		try {
+			executor.execute(() -> {
+				wakeUpPending.set(false);
+				drain();
+			});
+		} catch (RejectedExecutionException e) {
+			// Il gestore è stato arrestato
+			wakeUpPending.set(false);
+		}
+	}
+
+	/**
+	 * Rimette in attesa tutte le ricevute la cui consegna è fallita, in modo che
+	 * vengano inviate di nuovo.
+	 *
+	 * @return il numero di ricevute rimesse in attesa.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public int requeueFailed() throws PersistenceException {
+		int requeued = persistenceFacade.resetFailedOutboxMessages();
+		if (requeued > 0)
+			wakeUp();
+		return requeued;
+	}
+
+	/**
+	 * Legge un lotto di ricevute in attesa e avvia l'invio di quelle che riesce a
+	 * riservare. Se il lotto è pieno viene richiesto subito un nuovo controllo.
+	 */
+	private void drain() {
+		List<OutboxMessage> messages;
+		try {
+			// Le ricevute riservate, anche da questa istanza, non vengono lette
+			messages = persistenceFacade.getPendingOutboxMessages(batchSize, MAX_ATTEMPTS);
+		} catch (PersistenceException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+		for (OutboxMessage message : messages) {
+			// Una riserva scaduta durante un invio lento non deve causare un secondo
+			// invio da questa istanza
+			if (!inFlight.add(message.getReservationId()))
+				continue;
+			try {
+				if (!persistenceFacade.claimOutboxMessage(message.getReservationId(), owner, leaseMillis)) {
+					// Riservata nel frattempo da un'altra istanza
+					inFlight.remove(message.getReservationId());
+					continue;
+				}
+			} catch (PersistenceException e) {
+				System.out.println(e.getMessage());
+				inFlight.remove(message.getReservationId());
+				return;
+			}
+			try {
+				deliver(message);
+			} catch (HandlerException e) {
+				// Coda delle e-mail piena: la ricevuta torna disponibile e si riprova al
+				// prossimo controllo
+				release(message);
+				return;
+			}
+		}
+		if (messages.size() == batchSize)
+			wakeUp();
+	}
+
+	/**
+	 * Ricostruisce la prenotazione di una ricevuta e ne accoda l'invio,
+	 * registrandone l'esito al termine.
+	 *
+	 * @param message ricevuta da inviare.
+	 * @throws HandlerException se la coda delle e-mail è piena.
+	 */
+	private void deliver(OutboxMessage message) throws HandlerException {
+		Reservation reservation;
+		try {
+			reservation = restoreReservation(message);
+		} catch (ReservationException | RoomException | InvalidSpectatorInfoException e) {
+			System.out.println(e.getMessage());
+			recordFailure(message);
+			return;
+		}
+		emailHandler.sendEmail(reservation).whenComplete((result, exception) -> {
+			if (exception == null)
+				recordDelivery(message);
+			else
+				recordFailure(message);
+		});
+	}
+
+	/**
+	 * Ricostruisce la prenotazione acquistata a cui si riferisce una ricevuta.
+	 *
+	 * @param message ricevuta da inviare.
+	 * @return la prenotazione acquistata.
+	 * @throws ReservationException          se la proiezione della prenotazione
+	 *                                       non esiste più.
+	 * @throws RoomException                 se un posto acquistato non esiste
+	 *                                       nella sala della proiezione.
+	 * @throws InvalidSpectatorInfoException se i dati dello spettatore non sono
+	 *                                       validi.
+	 */
+	private Reservation restoreReservation(OutboxMessage message)
+			throws ReservationException, RoomException, InvalidSpectatorInfoException {
+		Projection projection = projectionCatalog.get(message.getProjectionId());
+		if (projection == null)
+			throw new ReservationException(
+					"La proiezione della prenotazione " + message.getReservationId() + " non esiste.");
+		Reservation reservation = new Reservation(discountStrategy.get(), message.getReservationId());
+		reservation.setProjection(projection);
+		reservation.setPurchaser(new Spectator(message.getName(), message.getSurname(), message.getEmail()));
+		reservation.restorePurchase(message.getSeats(), message.getTotal());
+		return reservation;
+	}
+
+	/**
+	 * Annulla la riserva di una ricevuta non inviata.
+	 *
+	 * @param message ricevuta non inviata.
+	 */
+	private void release(OutboxMessage message) {
+		try {
+			persistenceFacade.releaseOutboxMessage(message.getReservationId(), owner);
+		} catch (PersistenceException e) {
+			// La ricevuta verrà inviata alla scadenza della riserva
+			System.out.println(e.getMessage());
+		} finally {
+			inFlight.remove(message.getReservationId());
+		}
+	}
+
+	/**
+	 * Segna una ricevuta come consegnata. Se la registrazione fallisce la
+	 * ricevuta resta in attesa e verrà inviata di nuovo.
+	 *
+	 * @param message ricevuta consegnata.
+	 */
+	private void recordDelivery(OutboxMessage message) {
+		try {
+			persistenceFacade.setOutboxMessageDelivered(message.getReservationId());
+			deliveredMessages.incrementAndGet();
+		} catch (PersistenceException e) {
+			System.out.println(e.getMessage());
+		} finally {
+			inFlight.remove(message.getReservationId());
+		}
+	}
+
+	/**
+	 * Registra un tentativo di consegna fallito, rimandando il successivo.
+	 *
+	 * @param message ricevuta non consegnata.
+	 */
+	private void recordFailure(OutboxMessage message) {
+		failedDeliveries.incrementAndGet();
+		long delay = Math.min(INITIAL_RETRY_DELAY_MILLIS << Math.min(message.getAttempts(), 16),
+				MAX_RETRY_DELAY_MILLIS);
+		try {
+			persistenceFacade.setOutboxMessageFailed(message.getReservationId(), owner, delay);
+		} catch (PersistenceException e) {
+			System.out.println(e.getMessage());
+		} finally {
+			inFlight.remove(message.getReservationId());
+		}
+	}
+
+	/**
+	 * Interrompe il controllo periodico delle ricevute in attesa.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Restituisce il numero di ricevute in corso di invio.
+	 *
+	 * @return numero di ricevute in corso di invio.
+	 */
+	public int getInFlightMessages() {
+		return inFlight.size();
+	}
+
+	public long getDeliveredMessages() {
+		return deliveredMessages.get();
+	}
+
+	public long getFailedDeliveries() {
+		return failedDeliveries.get();
+	}
+
+}
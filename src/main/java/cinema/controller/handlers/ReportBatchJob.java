@@ -0,0 +1,244 @@
+package cinema.controller.handlers;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import cinema.controller.handlers.util.HandlerException;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.PersistenceFacade;
+import cinema.model.persistence.PurchasedReservation;
+import cinema.model.persistence.util.PersistenceException;
+import cinema.model.projection.Projection;
+import cinema.model.projection.ProjectionCatalog;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.IReservationDiscountStrategy;
+import cinema.model.reservation.util.ReservationException;
+import cinema.model.spectator.Spectator;
+import cinema.model.spectator.util.InvalidSpectatorInfoException;
+
+/**
+ * Genera in blocco i report di tutte le prenotazioni acquistate per una
+ * proiezione o per le proiezioni di un giorno, ad esempio per ristamparli
+ * quando cambia la sala di una proiezione.
+ *
+ * <p>
+ * Le prenotazioni vengono lette dal meccanismo di persistenza un lotto alla
+ * volta, senza caricarle tutte in memoria: mentre i report di un lotto vengono
+ * generati viene già letto il lotto successivo. I report vengono generati in
+ * parallelo da un pool fork-join creato per ogni esecuzione, i cui thread
+ * riutilizzano ciascuno il proprio buffer di generazione (si veda
+ * {@link ReportHandler#renderReport(Reservation)}), e vengono salvati nel
+ * {@link ReportStore}. Al termine di ogni lotto viene notificato l'avanzamento.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ReportBatchJob {
+
+	/**
+	 * Numero di prenotazioni lette dal meccanismo di persistenza per ogni lotto.
+	 */
+	public static final int PAGE_SIZE = 200;
+
+	/**
+	 * Permette di leggere le prenotazioni acquistate.
+	 */
+	private final PersistenceFacade persistenceFacade;
+
+	/**
+	 * Gestore dei report, che li genera e li archivia.
+	 */
+	private final ReportHandler reportHandler;
+
+	/**
+	 * Catalogo delle proiezioni, da cui vengono recuperate le proiezioni delle
+	 * prenotazioni ricostruite.
+	 */
+	private final ProjectionCatalog projectionCatalog;
+
+	/**
+	 * Restituisce la strategia di sconto corrente del cinema, richiesta per
+	 * costruire le prenotazioni.
+	 */
+	private final Supplier<IReservationDiscountStrategy> discountStrategy;
+
+	/**
+	 * Numero di thread che generano i report.
+	 */
+	private final int parallelism;
+
+	/**
+	 * Costruttore del generatore di report in blocco.
+	 *
+	 * @param persistenceFacade permette di leggere le prenotazioni acquistate.
+	 * @param reportHandler     gestore dei report.
+	 * @param projectionCatalog catalogo delle proiezioni.
+	 * @param discountStrategy  restituisce la strategia di sconto corrente del
+	 *                          cinema.
+	 * @param parallelism       numero di thread che generano i report.
+	 */
+	public ReportBatchJob(PersistenceFacade persistenceFacade, ReportHandler reportHandler,
+			ProjectionCatalog projectionCatalog, Supplier<IReservationDiscountStrategy> discountStrategy,
+			int parallelism) {
+		this.persistenceFacade = persistenceFacade;
+		this.reportHandler = reportHandler;
+		this.projectionCatalog = projectionCatalog;
+		this.discountStrategy = discountStrategy;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Genera e archivia i report di tutte le prenotazioni acquistate per una
+	 * proiezione.
+	 *
+	 * @param projectionId identificativo della proiezione.
+	 * @param listener     riceve l'avanzamento al termine di ogni lotto.
+	 * @return l'avanzamento finale.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public ReportBatchProgress renderProjection(int projectionId, Consumer<ReportBatchProgress> listener)
+			throws PersistenceException {
+		return run((afterId, limit) -> persistenceFacade.getPurchasedReservations(projectionId, afterId, limit),
+				listener);
+	}
+
+	/**
+	 * Genera e archivia i report di tutte le prenotazioni acquistate per le
+	 * proiezioni di un giorno.
+	 *
+	 * @param day      giorno delle proiezioni.
+	 * @param listener riceve l'avanzamento al termine di ogni lotto.
+	 * @return l'avanzamento finale.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public ReportBatchProgress renderDay(LocalDate day, Consumer<ReportBatchProgress> listener)
+			throws PersistenceException {
+		return run((afterId, limit) -> persistenceFacade.getPurchasedReservations(day, afterId, limit), listener);
+	}
+
+	/**
+	 * Legge le prenotazioni un lotto alla volta e ne genera i report in
+	 * parallelo.
+	 *
+	 * @param source   restituisce i lotti di prenotazioni da elaborare.
+	 * @param listener riceve l'avanzamento al termine di ogni lotto.
+	 * @return l'avanzamento finale.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	private ReportBatchProgress run(ReservationSource source, Consumer<ReportBatchProgress> listener)
+			throws PersistenceException {
+		AtomicLong completed = new AtomicLong();
+		AtomicLong failed = new AtomicLong();
+		long start = System.nanoTime();
+		ForkJoinPool pool = createPool();
+		try {
+			List<PurchasedReservation> page = source.getPage(0, PAGE_SIZE);
+			while (!page.isEmpty()) {
+				List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(page.size());
+				for (PurchasedReservation purchase : page)
+					tasks.add(pool.submit(() -> render(purchase, completed, failed)));
+				// La lettura del lotto successivo si sovrappone alla generazione
+				List<PurchasedReservation> next = page.size() < PAGE_SIZE ? Collections.emptyList()
+						: source.getPage(page.get(page.size() - 1).getReservationId(), PAGE_SIZE);
+				for (ForkJoinTask<?> task : tasks)
+					task.join();
+				listener.accept(new ReportBatchProgress(completed.get(), failed.get(), System.nanoTime() - start));
+				page = next;
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return new ReportBatchProgress(completed.get(), failed.get(), System.nanoTime() - start);
+	}
+
+	/**
+	 * Genera e archivia il report di una prenotazione acquistata.
+	 *
+	 * @param purchase  prenotazione acquistata.
+	 * @param completed contatore dei report generati.
+	 * @param failed    contatore dei report non generati.
+	 */
+	private void render(PurchasedReservation purchase, AtomicLong completed, AtomicLong failed) {
+		try {
+			reportHandler.createReport(restoreReservation(purchase));
+			completed.incrementAndGet();
+		} catch (ReservationException | RoomException | InvalidSpectatorInfoException | HandlerException e) {
+			System.out.println(e.getMessage());
+			failed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Ricostruisce una prenotazione acquistata. Se l'importo pagato non è
+	 * registrato viene usato il prezzo pieno dei posti acquistati.
+	 *
+	 * @param purchase prenotazione acquistata.
+	 * @return la prenotazione ricostruita.
+	 * @throws ReservationException          se la proiezione della prenotazione
+	 *                                       non esiste più.
+	 * @throws RoomException                 se un posto acquistato non esiste
+	 *                                       nella sala della proiezione.
+	 * @throws InvalidSpectatorInfoException se i dati dello spettatore non sono
+	 *                                       validi.
+	 */
+	private Reservation restoreReservation(PurchasedReservation purchase)
+			throws ReservationException, RoomException, InvalidSpectatorInfoException {
+		Projection projection = projectionCatalog.get(purchase.getProjectionId());
+		if (projection == null)
+			throw new ReservationException(
+					"La proiezione della prenotazione " + purchase.getReservationId() + " non esiste.");
+		Reservation reservation = new Reservation(discountStrategy.get(), purchase.getReservationId());
+		reservation.setProjection(projection);
+		reservation.setPurchaser(new Spectator(purchase.getName(), purchase.getSurname(), purchase.getEmail()));
+		double total = purchase.getTotal() != null ? purchase.getTotal()
+				: projection.getPrice() * purchase.getSeats().size();
+		reservation.restorePurchase(purchase.getSeats(), total);
+		return reservation;
+	}
+
+	/**
+	 * Crea il pool di thread che genera i report di un'esecuzione.
+	 *
+	 * @return il pool di thread.
+	 */
+	private ForkJoinPool createPool() {
+		AtomicInteger threads = new AtomicInteger();
+		return new ForkJoinPool(parallelism, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("report-batch-" + threads.incrementAndGet());
+			return thread;
+		}, null, false);
+	}
+
+	/**
+	 * Restituisce i lotti di prenotazioni acquistate da elaborare.
+	 */
+	private interface ReservationSource {
+
+		/**
+		 * Restituisce un lotto di prenotazioni in ordine di identificativo.
+		 *
+		 * @param afterId identificativo dell'ultima prenotazione del lotto
+		 *                precedente, o 0.
+		 * @param limit   numero massimo di prenotazioni da restituire.
+		 * @return il lotto di prenotazioni, vuoto se non ce ne sono altre.
+		 * @throws PersistenceException qualora vi siano errori riscontrati durante
+		 *                              l'uso di meccanismi di persistenza.
+		 */
+		List<PurchasedReservation> getPage(long afterId, int limit) throws PersistenceException;
+
+	}
+
+}
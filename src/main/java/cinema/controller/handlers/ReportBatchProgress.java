@@ -0,0 +1,70 @@
+package cinema.controller.handlers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rappresenta l'avanzamento di una generazione di report in blocco eseguita da
+ * {@link ReportBatchJob}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ReportBatchProgress {
+
+	/**
+	 * Numero di report generati e archiviati.
+	 */
+	private long completedReports;
+
+	/**
+	 * Numero di report che non è stato possibile generare o archiviare.
+	 */
+	private long failedReports;
+
+	/**
+	 * Tempo trascorso dall'inizio della generazione, in nanosecondi.
+	 */
+	private long elapsedNanos;
+
+	/**
+	 * Costruttore dell'avanzamento.
+	 *
+	 * @param completedReports numero di report generati e archiviati.
+	 * @param failedReports    numero di report non generati.
+	 * @param elapsedNanos     tempo trascorso dall'inizio, in nanosecondi.
+	 */
+	public ReportBatchProgress(long completedReports, long failedReports, long elapsedNanos) {
+		this.completedReports = completedReports;
+		this.failedReports = failedReports;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public long getCompletedReports() {
+		return completedReports;
+	}
+
+	public long getFailedReports() {
+		return failedReports;
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	/**
+	 * Restituisce il numero di report generati al secondo dall'inizio della
+	 * generazione.
+	 *
+	 * @return report generati al secondo.
+	 */
+	public double getReportsPerSecond() {
+		return elapsedNanos == 0 ? 0 : completedReports * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Report generati: %d   Errori: %d   Report/s: %.1f   Tempo: %.1f s", completedReports,
+				failedReports, getReportsPerSecond(), elapsedNanos / 1e9);
+	}
+
+}
@@ -1,13 +1,23 @@
 package cinema.controller.handlers;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.format.TextStyle;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import com.itextpdf.text.BadElementException;
 import com.itextpdf.text.Document;
@@ -18,10 +28,13 @@ import com.itextpdf.text.Image;
 import com.itextpdf.text.Paragraph;
 import com.itextpdf.text.Phrase;
 import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfImportedPage;
 import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfReader;
 import com.itextpdf.text.pdf.PdfWriter;
 
 import cinema.model.cinema.PhysicalSeat;
+import cinema.model.cinema.Room;
 import cinema.model.cinema.util.RoomException;
 import cinema.model.reservation.Reservation;
 import cinema.controller.handlers.util.HandlerException;
@@ -30,66 +43,248 @@ import cinema.controller.handlers.util.HandlerException;
  * Crea un report, in formato .pdf, contenente tutte le informazioni inerenti
  * alla prenotazione.
  * 
+ * <p>
+ * Le parti comuni a tutti i report vengono preparate una sola volta e
+ * condivise tra i report, anche generati in parallelo: i font, i paragrafi di
+ * intestazione con i dati del cinema e il logo. Il logo viene scaricato alla
+ * creazione del gestore e salvato in un file locale, da cui viene letto se il
+ * download non riesce: la generazione di un report non accede mai alla rete.
+ * 
+ * <p>
+ * L'intestazione (logo, nome e informazioni del cinema) viene inoltre
+ * impaginata una sola volta in un documento modello, la cui pagina viene
+ * importata in ogni report come oggetto grafico riutilizzabile: per ogni
+ * report vengono impaginate solo le parti relative alla prenotazione. Il
+ * modello viene rigenerato con {@link #setCinemaInfo(String, String, String,
+ * String)} quando cambiano le informazioni del cinema, e può essere
+ * disattivato con {@code -Dcinema.report.headerTemplate=false}.
+ * 
+ * <p>
+ * I report salvati su disco vengono archiviati in un {@link ReportStore}.
+ * 
  * @author Screaming Hairy Armadillo Team
  *
  */
 public class ReportHandler {
 
 	/**
-	 * Nome del cinema.
+	 * File locale in cui viene salvato il logo del cinema, letto se non è
+	 * possibile scaricarlo.
+	 */
+	private static final String LOGO_FILE = "./savedReports/logo";
+
+	/**
+	 * Tempo massimo di attesa del download del logo, in millisecondi.
+	 */
+	private static final int LOGO_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(5);
+
+	/**
+	 * Font utilizzati nei report, condivisi e mai modificati.
 	 */
-	private String name;
+	private static final Map<String, Font> ALL_FONTS = createAllFonts();
 
 	/**
-	 * E-mail del cinema.
+	 * Dimensione iniziale del buffer in cui vengono generati i report, in byte.
 	 */
-	private String email;
+	private static final int RENDER_BUFFER_SIZE = 64 * 1024;
 
 	/**
-	 * Ubicazione del cinema.
+	 * Dimensione oltre la quale il buffer di un thread non viene riutilizzato, in
+	 * byte.
 	 */
-	private String location;
+	private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
 
 	/**
-	 * URL del logo del cinema.
+	 * Indica se l'intestazione dei report viene impaginata una sola volta in un
+	 * documento modello.
 	 */
-	private String logoURL;
+	private boolean headerTemplateEnabled;
 
 	/**
-	 * Costruttore del gestore del report.
+	 * Intestazione comune a tutti i report, sostituita per intero quando cambiano
+	 * le informazioni del cinema.
+	 */
+	private volatile ReportHeader header;
+
+	/**
+	 * Buffer in cui ciascun thread genera i report in memoria.
+	 */
+	private ThreadLocal<ByteArrayOutputStream> renderBuffer;
+
+	/**
+	 * Archivio su disco dei report.
+	 */
+	private ReportStore reportStore;
+
+	/**
+	 * Thread che salva su disco i report inviati, null se l'archiviazione non è
+	 * attiva.
+	 */
+	private ExecutorService archiveExecutor;
+
+	/**
+	 * Costruttore del gestore del report. Prepara le parti comuni a tutti i
+	 * report, scaricando il logo del cinema e impaginando l'intestazione.
 	 * 
+	 * @param name        nome del cinema.
+	 * @param email       e-mail del cinema.
+	 * @param location    ubicazione del cinema.
+	 * @param logoURL     URL del logo del cinema (iconfinder.com).
+	 * @param reportStore archivio su disco dei report.
+	 */
+	public ReportHandler(String name, String email, String location, String logoURL, ReportStore reportStore) {
+		this.reportStore = reportStore;
+		this.headerTemplateEnabled = Boolean
+				.parseBoolean(System.getProperty("cinema.report.headerTemplate", "true"));
+		this.header = new ReportHeader(name, email, location, logoURL);
+		this.renderBuffer = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(RENDER_BUFFER_SIZE));
+		// L'archiviazione su disco dei report inviati si attiva con
+		// -Dcinema.report.archive=true
+		if (Boolean.getBoolean("cinema.report.archive")) {
+			this.archiveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "report-archive");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Aggiorna le informazioni del cinema riportate nell'intestazione dei report,
+	 * scaricando di nuovo il logo e impaginando di nuovo l'intestazione. I report
+	 * in corso di generazione usano l'intestazione precedente.
+	 *
 	 * @param name     nome del cinema.
 	 * @param email    e-mail del cinema.
 	 * @param location ubicazione del cinema.
 	 * @param logoURL  URL del logo del cinema (iconfinder.com).
 	 */
-	public ReportHandler(String name, String email, String location, String logoURL) {
-		this.name = name;
-		this.email = email;
-		this.location = location;
-		this.logoURL = logoURL;
+	public void setCinemaInfo(String name, String email, String location, String logoURL) {
+		header = new ReportHeader(name, email, location, logoURL);
 	}
 
 	/**
-	 * Crea la ricevuta contenente i dati della prenotazione.
+	 * Crea la ricevuta contenente i dati della prenotazione e la salva su disco.
 	 *
 	 * @param reservation prenotazione della quale si vuole generare la ricevuta.
 	 * @throws HandlerException se vengono riscontrati errori nella creazione della
 	 *                          ricevuta di prenotazione.
 	 */
 	public void createReport(Reservation reservation) throws HandlerException {
-		// Posizione in cui il report sarà salvato
-		String FILE = "./savedReports/Reservation_" + Long.toString(reservation.getProgressive()) + ".pdf";
-		HashMap<String, Font> allFonts = createAllFonts(); // impostazione dei font che verranno utilizzati nel report
+		// se tutto va bene aggiunge il report all'archivio contenente tutti i report
+		// emessi dal cinema
+		reservation.setReportLocation(reportStore.put(reservation, renderReport(reservation)));
+	}
+
+	/**
+	 * Restituisce la ricevuta di una prenotazione, letta dall'archivio se
+	 * l'archiviazione dei report è attiva e la ricevuta è già stata archiviata,
+	 * altrimenti generata in memoria (e archiviata, se l'archiviazione è attiva).
+	 *
+	 * @param reservation prenotazione della quale si vuole la ricevuta.
+	 * @return il contenuto del file .pdf della ricevuta.
+	 * @throws HandlerException se vengono riscontrati errori nella creazione della
+	 *                          ricevuta di prenotazione.
+	 */
+	public byte[] getReport(Reservation reservation) throws HandlerException {
+		if (archiveExecutor != null) {
+			byte[] report = reportStore.get(reservation.getProgressive());
+			if (report != null)
+				return report;
+		}
+		byte[] report = renderReport(reservation);
+		archiveReport(reservation, report);
+		return report;
+	}
+
+	/**
+	 * Crea la ricevuta contenente i dati della prenotazione in memoria, senza
+	 * accedere al disco.
+	 *
+	 * <p>
+	 * Il documento viene generato in un buffer riutilizzato dagli altri report
+	 * generati dallo stesso thread.
+	 *
+	 * @param reservation prenotazione della quale si vuole generare la ricevuta.
+	 * @return il contenuto del file .pdf della ricevuta.
+	 * @throws HandlerException se vengono riscontrati errori nella creazione della
+	 *                          ricevuta di prenotazione.
+	 */
+	public byte[] renderReport(Reservation reservation) throws HandlerException {
+		ByteArrayOutputStream output = renderBuffer.get();
+		output.reset();
+		try {
+			writeReport(reservation, output);
+			return output.toByteArray();
+		} finally {
+			// Un buffer cresciuto per un report molto grande non viene trattenuto
+			if (output.size() > MAX_RETAINED_BUFFER_SIZE)
+				renderBuffer.remove();
+		}
+	}
+
+	/**
+	 * Salva su disco una ricevuta generata con {@link #renderReport(Reservation)},
+	 * se l'archiviazione dei report è attiva.
+	 *
+	 * <p>
+	 * Il salvataggio viene eseguito in modo asincrono da un thread dedicato; al
+	 * termine viene impostata la posizione del report nella prenotazione.
+	 *
+	 * @param reservation prenotazione a cui si riferisce la ricevuta.
+	 * @param report      contenuto del file .pdf della ricevuta.
+	 */
+	public void archiveReport(Reservation reservation, byte[] report) {
+		if (archiveExecutor == null)
+			return;
+		try {
+			archiveExecutor.execute(() -> {
+				try {
+					reservation.setReportLocation(reportStore.put(reservation, report));
+				} catch (HandlerException e) {
+					System.out.println(e.getMessage());
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// L'archiviazione dei report è stata interrotta
+		}
+	}
+
+	/**
+	 * Indica se i report inviati vengono anche salvati su disco.
+	 *
+	 * @return True: archiviazione attiva, False: non attiva.
+	 */
+	public boolean isArchiving() {
+		return archiveExecutor != null;
+	}
+
+	/**
+	 * Interrompe l'archiviazione dei report.
+	 */
+	public void shutdown() {
+		if (archiveExecutor != null)
+			archiveExecutor.shutdown();
+		reportStore.shutdown();
+	}
+
+	/**
+	 * Genera la ricevuta contenente i dati della prenotazione.
+	 *
+	 * @param reservation prenotazione della quale si vuole generare la ricevuta.
+	 * @param output      destinazione del file .pdf generato.
+	 * @throws HandlerException se vengono riscontrati errori nella creazione della
+	 *                          ricevuta di prenotazione.
+	 */
+	private void writeReport(Reservation reservation, OutputStream output) throws HandlerException {
+		Map<String, Font> allFonts = ALL_FONTS; // font che verranno utilizzati nel report
+		ReportHeader header = this.header; // intestazione con le informazioni correnti del cinema
 		try {
-			Document document = createEmptyDocument(FILE); // Genera un documento vuoto
+			Document document = new Document(); // Genera un documento vuoto
+			PdfWriter writer = PdfWriter.getInstance(document, output);
 			document.open(); // Apre il documento
 			addDocumentProperties(document, reservation); // Aggiunge le proprietà al documenti
-			Image image = createReportLogoImage(); // Crea una nuova immagine con il logo del cinema
-			Paragraph titleP = createReportTitleParagraph(allFonts); // Crea un paragrafo contenente il titolo del
-																		// cinema
-			Paragraph infoCinemaP = createCinemaInfoParagraph(allFonts); // Crea un paragrafo contenente alcune
-																			// proprietà del cinema
+			addHeaderToDocument(document, writer, header); // Aggiunge l'intestazione con i dati del cinema
 			Paragraph filmP = createFilmTitleParagraph(allFonts, reservation); // Crea un paragrafo contenente il
 																				// titolo del
 			// film associato alla prenotazioni
@@ -103,26 +298,61 @@ public class ReportHandler {
 			insertFieldsIntoTable(table, reservation); // Aggiunge alla tabella i posti selezionati
 			Paragraph totalP = createTotalParagraph(allFonts, reservation); // Crea un paragrafo con il totale della
 																			// prenotazione
-			addAllInfoToDocument(document, image, titleP, infoCinemaP, filmP, infoFilmP, infoReservationP, table,
-					totalP); // Aggiunge al documento tutte le informazioni precedentemente create
+			// Aggiunge al documento tutte le informazioni precedentemente create
+			addAllInfoToDocument(document, filmP, infoFilmP, infoReservationP, table, totalP);
 			document.close(); // Chiude del documento
-			reservation.setReportLocation(FILE); // se tutto va bene aggiunge il report alla cartella contenente tutti i
-													// report
-			// emessi dal cinema
 		} catch (Exception e) {
 			throw new HandlerException("Si è verificato un problema nella generazione del report.");
 		}
 	}
 
 	/**
-	 * Aggiugne al documento (report) tutte le informazioni e i paragrafi utili a
-	 * generarlo.
+	 * Aggiunge al documento l'intestazione con i dati del cinema. Se il modello
+	 * dell'intestazione è disponibile la sua pagina viene disegnata sotto il
+	 * contenuto del report e il testo successivo viene spostato sotto
+	 * l'intestazione; altrimenti l'intestazione viene impaginata nel documento.
+	 * 
+	 * @param document documento che formalmente rappresenta il nostro report.
+	 * @param writer   scrittore associato al documento.
+	 * @param header   intestazione da aggiungere.
+	 * @throws DocumentException se si verificano problemi nella generazione del
+	 *                           documento.
+	 * @throws IOException       se il modello dell'intestazione non è leggibile.
+	 */
+	private void addHeaderToDocument(Document document, PdfWriter writer, ReportHeader header)
+			throws DocumentException, IOException {
+		if (header.template == null) {
+			addHeaderParagraphs(document, header);
+			return;
+		}
+		PdfImportedPage page = writer.getImportedPage(header.getTemplateReader(), 1);
+		writer.getDirectContentUnder().addTemplate(page, 0, 0);
+		float height = document.top() - header.templateBottom;
+		if (height > 0)
+			document.add(new Paragraph(height, "\u00a0"));
+	}
+
+	/**
+	 * Impagina nel documento il logo e i paragrafi dell'intestazione.
+	 * 
+	 * @param document documento in cui impaginare l'intestazione.
+	 * @param header   intestazione da impaginare.
+	 * @throws DocumentException se si verificano problemi nella generazione del
+	 *                           documento.
+	 */
+	private void addHeaderParagraphs(Document document, ReportHeader header) throws DocumentException {
+		if (header.logo != null)
+			document.add(Image.getInstance(header.logo)); // Copia del logo del cinema
+		document.add(header.titleParagraph);
+		document.add(header.cinemaInfoParagraph);
+	}
+
+	/**
+	 * Aggiugne al documento (report) tutte le informazioni e i paragrafi relativi
+	 * alla prenotazione.
 	 * 
 	 * @param document         documento che formalmente rappresenta il nostro
 	 *                         report.
-	 * @param image            immagine con il logo del cinema.
-	 * @param titleP           paragrafo con il titolo del cinema.
-	 * @param infoCinemaP      paragrafo che contiene le proprietà del cinema.
 	 * @param filmP            paragrafo che contiene il titolo del film associato
 	 *                         alla prenotazione.
 	 * @param infoFilmP        paragrafo che contiene le informazioni del film
@@ -135,12 +365,8 @@ public class ReportHandler {
 	 * @throws DocumentException se si verificano problemi nella generazione del
 	 *                           documento.
 	 */
-	private void addAllInfoToDocument(Document document, Image image, Paragraph titleP, Paragraph infoCinemaP,
-			Paragraph filmP, Paragraph infoFilmP, Paragraph infoReservationP, PdfPTable table, Paragraph totalP)
-			throws DocumentException {
-		document.add(image);
-		document.add(titleP);
-		document.add(infoCinemaP);
+	private void addAllInfoToDocument(Document document, Paragraph filmP, Paragraph infoFilmP,
+			Paragraph infoReservationP, PdfPTable table, Paragraph totalP) throws DocumentException {
 		document.add(filmP);
 		document.add(infoFilmP);
 		document.add(infoReservationP);
@@ -151,11 +377,11 @@ public class ReportHandler {
 	/**
 	 * Genera un paragrafo contenente il totale della prenotazione.
 	 * 
-	 * @param allFonts    HashMap che contiene tutti i font utili.
+	 * @param allFonts    mappa che contiene tutti i font utili.
 	 * @param reservation prenotazione di cui si vuole creare il report.
 	 * @return il paragrafo che contiene il totale della prenotazione.
 	 */
-	private Paragraph createTotalParagraph(HashMap<String, Font> allFonts, Reservation reservation) {
+	private Paragraph createTotalParagraph(Map<String, Font> allFonts, Reservation reservation) {
 		Paragraph totalP = new Paragraph("Totale   " + String.format("%.02f", reservation.getTotal()) + " EUR",
 				allFonts.get("subFont3"));
 		totalP.setSpacingBefore(60);
@@ -178,14 +404,11 @@ public class ReportHandler {
 		c1.setMinimumHeight(30);
 		table.addCell(c1);
 		for (PhysicalSeat s : reservation.getSeats()) {
-			String seatCoordinates = reservation.getProjection().getSeatCoordinates(s);
-			if (seatCoordinates != null) {
-				PdfPCell cSeat = new PdfPCell(new Phrase("Fila " + seatCoordinates.replaceAll("\\d", "") + ",   Posto "
-						+ seatCoordinates.replaceAll("[\\D]", "")));
-				cSeat.setVerticalAlignment(Element.ALIGN_MIDDLE);
-				cSeat.setMinimumHeight(20);
-				table.addCell(cSeat);
-			}
+			PdfPCell cSeat = new PdfPCell(
+					new Phrase("Fila " + Room.rowIndexToRowLetter(s.getRow()) + ",   Posto " + (s.getCol() + 1)));
+			cSeat.setVerticalAlignment(Element.ALIGN_MIDDLE);
+			cSeat.setMinimumHeight(20);
+			table.addCell(cSeat);
 		}
 	}
 
@@ -204,11 +427,11 @@ public class ReportHandler {
 	 * Genera un paragrafo contenente alcune informazioni riassuntive sulla
 	 * prenotazione effettuata.
 	 * 
-	 * @param allFonts    HashMap che contiene tutti i font utili.
+	 * @param allFonts    mappa che contiene tutti i font utili.
 	 * @param reservation prenotazione di cui si vuole creare il report.
 	 * @return il paragrafo che contiene le informazioni della prenotazione.
 	 */
-	private Paragraph createReservationPropertiesParagraph(HashMap<String, Font> allFonts, Reservation reservation) {
+	private Paragraph createReservationPropertiesParagraph(Map<String, Font> allFonts, Reservation reservation) {
 		String dayOfWeek = reservation.getProjection().getDateTime().getDayOfWeek().getDisplayName(TextStyle.FULL,
 				Locale.ITALIAN);
 		String month = reservation.getProjection().getDateTime().getMonth().getDisplayName(TextStyle.FULL,
@@ -229,12 +452,12 @@ public class ReportHandler {
 	/**
 	 * Genera un paragrafo contente alcune informazioni riassuntive sul film.
 	 * 
-	 * @param allFonts    HashMap che contiene tutti i font utili.
+	 * @param allFonts    mappa che contiene tutti i font utili.
 	 * @param reservation prenotazione di cui si vuole creare il report.
 	 * @return il paragrafo che contiene le informazioni del film associato alla
 	 *         prenotazione.
 	 */
-	private Paragraph createFilmPropertiesParagraph(HashMap<String, Font> allFonts, Reservation reservation) {
+	private Paragraph createFilmPropertiesParagraph(Map<String, Font> allFonts, Reservation reservation) {
 		Paragraph infoFilmP = new Paragraph("Regista/i:  "
 				+ reservation.getProjection().getMovie().getDirectors().toString().replaceAll("\\[", "").replaceAll(
 						"\\]", "")
@@ -247,12 +470,12 @@ public class ReportHandler {
 	/**
 	 * Genera un paragrafo contenente il titolo del film.
 	 * 
-	 * @param allFonts    HashMap che contiene tutti i font utili.
+	 * @param allFonts    mappa che contiene tutti i font utili.
 	 * @param reservation prenotazione di cui si vuole creare il report.
 	 * @return il paragrafo che contiene il titolo del film associato alla
 	 *         prenotazione.
 	 */
-	private Paragraph createFilmTitleParagraph(HashMap<String, Font> allFonts, Reservation reservation) {
+	private Paragraph createFilmTitleParagraph(Map<String, Font> allFonts, Reservation reservation) {
 		Paragraph FilmP = new Paragraph(">  " + reservation.getProjection().getMovie().getTitle(),
 				allFonts.get("subFont"));
 		FilmP.setSpacingBefore(40);
@@ -262,10 +485,12 @@ public class ReportHandler {
 	/**
 	 * Genera un paragrafo contenente alcune proprietà riassuntive del cinema.
 	 * 
-	 * @param allFonts HashMap che contiene tutti i font utili.
+	 * @param allFonts mappa che contiene tutti i font utili.
+	 * @param location ubicazione del cinema.
+	 * @param email    e-mail del cinema.
 	 * @return il paragrafo che contiene le proprietà del cinema.
 	 */
-	private Paragraph createCinemaInfoParagraph(HashMap<String, Font> allFonts) {
+	private Paragraph createCinemaInfoParagraph(Map<String, Font> allFonts, String location, String email) {
 		Paragraph infoCinemaP = new Paragraph(location + "\n" + email + "\n", allFonts.get("smallFont"));
 		infoCinemaP.setSpacingBefore(10);
 		infoCinemaP.setAlignment(Element.ALIGN_CENTER);
@@ -275,10 +500,11 @@ public class ReportHandler {
 	/**
 	 * Genera un paragrafo contenente il titolo del report (nome del cinema).
 	 * 
-	 * @param allFonts HashMap che contiene tutti i font utili.
+	 * @param allFonts mappa che contiene tutti i font utili.
+	 * @param name     nome del cinema.
 	 * @return il paragrafo con il titolo del cinema.
 	 */
-	private Paragraph createReportTitleParagraph(HashMap<String, Font> allFonts) {
+	private Paragraph createReportTitleParagraph(Map<String, Font> allFonts, String name) {
 		Paragraph titleP = new Paragraph(name + "\n", allFonts.get("catFont"));
 		titleP.setSpacingBefore(80);
 		titleP.setAlignment(Element.ALIGN_CENTER);
@@ -289,19 +515,80 @@ public class ReportHandler {
 	 * Crea una nuova immagine contenente il logo del cinema e setta le sue
 	 * dimensioni.
 	 * 
-	 * @return l'immagine con il logo del cinema.
-	 * @throws BadElementException   se l'immagine non viene generata nel modo
-	 *                               corretto.
-	 * @throws MalformedURLException se l'URL è malformato.
-	 * @throws IOException           se l'immagine non viene generata con un input
-	 *                               corretto.
-	 */
-	private Image createReportLogoImage() throws BadElementException, MalformedURLException, IOException {
-		String imageUrl = logoURL;
-		Image image = Image.getInstance(new URL(imageUrl));
-		image.scalePercent(20f);
-		image.setAbsolutePosition(250f, 715f);
-		return image;
+	 * <p>
+	 * Il logo viene scaricato e salvato nel file locale {@value #LOGO_FILE}; se
+	 * il download non riesce viene letto il logo salvato in precedenza. Un errore
+	 * nel salvataggio non impedisce l'uso del logo scaricato.
+	 * 
+	 * @param logoURL URL del logo del cinema.
+	 * @return l'immagine con il logo del cinema, null se il logo non è
+	 *         disponibile.
+	 */
+	private Image createReportLogoImage(String logoURL) {
+		Path logoFile = Paths.get(LOGO_FILE);
+		byte[] logoBytes;
+		try {
+			logoBytes = downloadLogo(logoURL);
+		} catch (IOException downloadException) {
+			try {
+				logoBytes = Files.readAllBytes(logoFile);
+			} catch (IOException fileException) {
+				System.out.println("Logo del cinema non disponibile, i report verranno generati senza logo.");
+				return null;
+			}
+			return createLogoImage(logoBytes);
+		}
+		// Il logo scaricato viene usato anche se non può essere salvato
+		try {
+			Files.createDirectories(logoFile.toAbsolutePath().getParent());
+			Files.write(logoFile, logoBytes);
+		} catch (IOException e) {
+			System.out.println("Impossibile salvare il logo del cinema in " + LOGO_FILE + ".");
+		}
+		return createLogoImage(logoBytes);
+	}
+
+	/**
+	 * Crea l'immagine del logo del cinema a partire dal suo contenuto e setta le
+	 * sue dimensioni.
+	 * 
+	 * @param logoBytes contenuto del logo del cinema.
+	 * @return l'immagine con il logo del cinema, null se il contenuto non è
+	 *         un'immagine valida.
+	 */
+	private Image createLogoImage(byte[] logoBytes) {
+		try {
+			Image image = Image.getInstance(logoBytes);
+			image.scalePercent(20f);
+			image.setAbsolutePosition(250f, 715f);
+			return image;
+		} catch (BadElementException | IOException e) {
+			System.out.println("Logo del cinema non valido, i report verranno generati senza logo.");
+			return null;
+		}
+	}
+
+	/**
+	 * Scarica il logo del cinema dal suo URL.
+	 * 
+	 * @param logoURL URL del logo del cinema.
+	 * @return il contenuto del logo.
+	 * @throws IOException se il logo non può essere scaricato.
+	 */
+	private byte[] downloadLogo(String logoURL) throws IOException {
+		if (logoURL == null)
+			throw new IOException("URL del logo non impostato.");
+		URLConnection connection = new URL(logoURL).openConnection();
+		connection.setConnectTimeout(LOGO_TIMEOUT_MILLIS);
+		connection.setReadTimeout(LOGO_TIMEOUT_MILLIS);
+		try (InputStream input = connection.getInputStream()) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1)
+				output.write(buffer, 0, read);
+			return output.toByteArray();
+		}
 	}
 
 	/**
@@ -319,27 +606,11 @@ public class ReportHandler {
 	}
 
 	/**
-	 * Crea un documento e lo apre in lettura.
-	 * 
-	 * @param FILE si referisce al percorso relativo dove verrà salvato il report.
-	 * @return documento che formalmente rappresenta il nostro report.
-	 * @throws FileNotFoundException se si verificano errori nell'apertura del file
-	 *                               dove verrà salvato il report.
-	 * @throws DocumentException     se si verificano problemi nella generazione del
-	 *                               documento.
-	 */
-	private Document createEmptyDocument(String FILE) throws FileNotFoundException, DocumentException {
-		Document document = new Document();
-		PdfWriter.getInstance(document, new FileOutputStream(FILE));
-		return document;
-	}
-
-	/**
-	 * Genera tutti i font che verranno utilizzati nel report.
+	 * Genera tutti i font che verranno utilizzati nei report.
 	 * 
-	 * @return allFonts HashMap che contiene tutti i font utili.
+	 * @return allFonts mappa non modificabile che contiene tutti i font utili.
 	 */
-	private HashMap<String, Font> createAllFonts() {
+	private static Map<String, Font> createAllFonts() {
 		HashMap<String, Font> allFonts = new HashMap<String, Font>();
 
 		Font catFont = new Font(Font.FontFamily.HELVETICA, 33, Font.BOLD);
@@ -355,7 +626,105 @@ public class ReportHandler {
 		allFonts.put("subFont25", subFont25);
 		allFonts.put("subFont3", subFont3);
 		allFonts.put("smallFont", smallFont);
-		return allFonts;
+		return Collections.unmodifiableMap(allFonts);
+	}
+
+	/**
+	 * Intestazione comune a tutti i report, con le informazioni del cinema. Non
+	 * viene mai modificata dopo la creazione, quindi è condivisa tra i report
+	 * generati in parallelo.
+	 * 
+	 * <p>
+	 * Il lettore del modello non può essere usato da più thread
+	 * contemporaneamente, quindi ogni thread ne crea uno solo e lo riutilizza per
+	 * tutti i report successivi; i lettori vengono abbandonati insieme
+	 * all'intestazione quando cambiano le informazioni del cinema.
+	 */
+	private class ReportHeader {
+
+		/**
+		 * Logo del cinema già ridimensionato e posizionato, di cui ogni report usa
+		 * una copia; null se il logo non è disponibile.
+		 */
+		private final Image logo;
+
+		/**
+		 * Paragrafo con il titolo del report (nome del cinema).
+		 */
+		private final Paragraph titleParagraph;
+
+		/**
+		 * Paragrafo con le informazioni del cinema.
+		 */
+		private final Paragraph cinemaInfoParagraph;
+
+		/**
+		 * Documento .pdf di una pagina contenente solo l'intestazione impaginata;
+		 * null se il modello è disattivato o non è stato possibile generarlo.
+		 */
+		private final byte[] template;
+
+		/**
+		 * Posizione verticale in cui termina l'intestazione nella pagina del
+		 * modello.
+		 */
+		private final float templateBottom;
+
+		/**
+		 * Lettore del modello dell'intestazione di ogni thread.
+		 */
+		private final ThreadLocal<PdfReader> templateReader;
+
+		/**
+		 * Prepara l'intestazione e, se attivo, ne impagina il modello.
+		 * 
+		 * @param name     nome del cinema.
+		 * @param email    e-mail del cinema.
+		 * @param location ubicazione del cinema.
+		 * @param logoURL  URL del logo del cinema.
+		 */
+		private ReportHeader(String name, String email, String location, String logoURL) {
+			this.logo = createReportLogoImage(logoURL);
+			this.titleParagraph = createReportTitleParagraph(ALL_FONTS, name);
+			this.cinemaInfoParagraph = createCinemaInfoParagraph(ALL_FONTS, location, email);
+			byte[] template = null;
+			float templateBottom = 0;
+			if (headerTemplateEnabled) {
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				try {
+					Document document = new Document();
+					PdfWriter writer = PdfWriter.getInstance(document, output);
+					document.open();
+					addHeaderParagraphs(document, this);
+					templateBottom = writer.getVerticalPosition(false);
+					document.close();
+					template = output.toByteArray();
+				} catch (DocumentException e) {
+					// I report impaginano l'intestazione ogni volta
+					System.out.println("Impossibile generare il modello dell'intestazione dei report.");
+				}
+			}
+			this.template = template;
+			this.templateBottom = templateBottom;
+			this.templateReader = new ThreadLocal<PdfReader>();
+		}
+
+		/**
+		 * Restituisce il lettore del modello dell'intestazione del thread corrente,
+		 * creandolo al primo utilizzo.
+		 * 
+		 * @return il lettore del modello dell'intestazione.
+		 * @throws IOException se il modello dell'intestazione non è leggibile.
+		 */
+		private PdfReader getTemplateReader() throws IOException {
+			PdfReader reader = templateReader.get();
+			if (reader == null) {
+				reader = new PdfReader(template);
+				templateReader.set(reader);
+			}
+			return reader;
+		}
+
 	}
 
 }
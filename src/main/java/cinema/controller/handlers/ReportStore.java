@@ -0,0 +1,326 @@
+package cinema.controller.handlers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import cinema.controller.handlers.util.HandlerException;
+import cinema.model.persistence.PersistenceFacade;
+import cinema.model.persistence.ReportEntry;
+import cinema.model.persistence.util.PersistenceException;
+import cinema.model.reservation.Reservation;
+
+/**
+ * Archivia su disco i report delle prenotazioni.
+ *
+ * <p>
+ * I report vengono suddivisi in sottocartelle in base al prefisso
+ * dell'identificativo della prenotazione ({@value #SHARD_SIZE} prenotazioni
+ * consecutive per cartella), in modo che nessuna cartella contenga troppi
+ * file. Ogni report viene scritto in un file temporaneo e poi rinominato,
+ * quindi un report archiviato è sempre completo. Un indice nel meccanismo di
+ * persistenza associa ad ogni prenotazione il file del suo report e
+ * l'impronta SHA-256 del contenuto, che viene verificata ad ogni lettura.
+ *
+ * <p>
+ * Un thread in background comprime (gzip) i report delle proiezioni già
+ * iniziate, che vengono letti raramente, ed elimina quelli scaduti: un report
+ * viene conservato fino alla data della proiezione più un periodo di
+ * conservazione configurabile.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ReportStore {
+
+	/**
+	 * Numero predefinito di giorni per cui un report viene conservato dopo la
+	 * proiezione.
+	 */
+	public static final int DEFAULT_RETENTION_DAYS = 90;
+
+	/**
+	 * Numero di prenotazioni consecutive i cui report sono salvati nella stessa
+	 * cartella.
+	 */
+	private static final int SHARD_SIZE = 1000;
+
+	/**
+	 * Intervallo tra due esecuzioni della manutenzione dei report, in minuti.
+	 */
+	private static final long MAINTENANCE_INTERVAL_MINUTES = 60;
+
+	/**
+	 * Numero di report compressi o eliminati per ogni lettura dell'indice durante
+	 * la manutenzione.
+	 */
+	private static final int MAINTENANCE_BATCH_SIZE = 500;
+
+	/**
+	 * Permette di accedere all'indice dei report.
+	 */
+	private final PersistenceFacade persistenceFacade;
+
+	/**
+	 * Cartella in cui vengono archiviati i report.
+	 */
+	private final Path root;
+
+	/**
+	 * Periodo di conservazione dei report dopo la proiezione, in millisecondi.
+	 */
+	private final long retentionMillis;
+
+	/**
+	 * Thread che esegue la manutenzione dei report.
+	 */
+	private final ScheduledExecutorService maintenance;
+
+	/**
+	 * Costruttore dell'archivio dei report, che avvia la manutenzione periodica.
+	 *
+	 * @param persistenceFacade permette di accedere all'indice dei report.
+	 * @param root              cartella in cui vengono archiviati i report.
+	 * @param retentionDays     numero di giorni per cui un report viene
+	 *                          conservato dopo la proiezione.
+	 */
+	public ReportStore(PersistenceFacade persistenceFacade, Path root, int retentionDays) {
+		this.persistenceFacade = persistenceFacade;
+		this.root = root;
+		this.retentionMillis = TimeUnit.DAYS.toMillis(retentionDays);
+		this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "report-maintenance");
+			thread.setDaemon(true);
+			return thread;
+		});
+		maintenance.scheduleWithFixedDelay(this::runMaintenance, MAINTENANCE_INTERVAL_MINUTES,
+				MAINTENANCE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Archivia il report di una prenotazione, sostituendo quello eventualmente già
+	 * archiviato.
+	 *
+	 * @param reservation prenotazione a cui si riferisce il report.
+	 * @param report      contenuto del file .pdf del report.
+	 * @return il percorso del file in cui è stato archiviato il report.
+	 * @throws HandlerException se non è possibile archiviare il report.
+	 */
+	public String put(Reservation reservation, byte[] report) throws HandlerException {
+		long reservationId = reservation.getProgressive();
+		String path = getShard(reservationId) + "/Reservation_" + reservationId + ".pdf";
+		long projectionTime = reservation.getProjection().getDateTime().atZone(ZoneId.systemDefault()).toInstant()
+				.toEpochMilli();
+		try {
+			ReportEntry previous = persistenceFacade.getReport(reservationId);
+			writeAtomically(root.resolve(path), report);
+			persistenceFacade.putReport(new ReportEntry(reservationId, path, digest(report), report.length,
+					projectionTime, projectionTime + retentionMillis, false));
+			// Un report precedente già compresso ha un nome diverso
+			if (previous != null && !previous.getPath().equals(path))
+				Files.deleteIfExists(root.resolve(previous.getPath()));
+		} catch (IOException | PersistenceException e) {
+			throw new HandlerException("Impossibile archiviare il report della prenotazione " + reservationId + ".");
+		}
+		return root.resolve(path).toString();
+	}
+
+	/**
+	 * Restituisce il report archiviato di una prenotazione.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @return il contenuto del file .pdf del report, o null se il report non è
+	 *         archiviato o il file non corrisponde all'impronta registrata
+	 *         nell'indice.
+	 * @throws HandlerException se non è possibile accedere all'indice dei report.
+	 */
+	public byte[] get(long reservationId) throws HandlerException {
+		ReportEntry entry;
+		try {
+			entry = persistenceFacade.getReport(reservationId);
+		} catch (PersistenceException e) {
+			throw new HandlerException("Impossibile leggere l'indice dei report.");
+		}
+		if (entry == null)
+			return null;
+		try {
+			byte[] content = Files.readAllBytes(root.resolve(entry.getPath()));
+			if (entry.isCompressed())
+				content = gunzip(content);
+			return digest(content).equals(entry.getDigest()) ? content : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Comprime i report delle proiezioni già iniziate ed elimina i report
+	 * scaduti.
+	 *
+	 * <p>
+	 * Il metodo viene eseguito periodicamente dal thread in background, ma può
+	 * anche essere chiamato direttamente.
+	 */
+	public void runMaintenance() {
+		try {
+			List<ReportEntry> entries;
+			do {
+				entries = persistenceFacade.getExpiredReports(MAINTENANCE_BATCH_SIZE);
+				for (ReportEntry entry : entries)
+					expire(entry);
+			} while (entries.size() == MAINTENANCE_BATCH_SIZE);
+			do {
+				entries = persistenceFacade.getReportsToCompress(MAINTENANCE_BATCH_SIZE);
+				for (ReportEntry entry : entries)
+					compress(entry);
+			} while (entries.size() == MAINTENANCE_BATCH_SIZE);
+		} catch (PersistenceException | IOException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Interrompe la manutenzione periodica dei report.
+	 */
+	public void shutdown() {
+		maintenance.shutdownNow();
+	}
+
+	/**
+	 * Elimina un report scaduto. La voce dell'indice viene eliminata dopo il
+	 * file, in modo che un'interruzione non lasci file non indicizzati.
+	 *
+	 * @param entry report da eliminare.
+	 * @throws IOException          se non è possibile eliminare il file.
+	 * @throws PersistenceException se non è possibile aggiornare l'indice.
+	 */
+	private void expire(ReportEntry entry) throws IOException, PersistenceException {
+		Files.deleteIfExists(root.resolve(entry.getPath()));
+		persistenceFacade.deleteReport(entry.getReservationId());
+	}
+
+	/**
+	 * Comprime un report. Il file originale viene eliminato solo dopo che
+	 * l'indice è stato aggiornato con il file compresso.
+	 *
+	 * @param entry report da comprimere.
+	 * @throws IOException          se non è possibile leggere o scrivere i file.
+	 * @throws PersistenceException se non è possibile aggiornare l'indice.
+	 */
+	private void compress(ReportEntry entry) throws IOException, PersistenceException {
+		Path source = root.resolve(entry.getPath());
+		byte[] compressed;
+		try {
+			compressed = gzip(Files.readAllBytes(source));
+		} catch (IOException e) {
+			// Il file non esiste più: il report non può essere servito
+			persistenceFacade.deleteReport(entry.getReservationId());
+			return;
+		}
+		String path = entry.getPath() + ".gz";
+		writeAtomically(root.resolve(path), compressed);
+		persistenceFacade.setReportCompressed(entry.getReservationId(), path, compressed.length);
+		Files.deleteIfExists(source);
+	}
+
+	/**
+	 * Restituisce la cartella, relativa alla cartella dei report, in cui viene
+	 * salvato il report di una prenotazione.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @return il nome della cartella.
+	 */
+	private static String getShard(long reservationId) {
+		return Long.toString(reservationId / SHARD_SIZE);
+	}
+
+	/**
+	 * Scrive un file in modo atomico, scrivendo prima un file temporaneo nella
+	 * stessa cartella e poi rinominandolo.
+	 *
+	 * @param target  file da scrivere.
+	 * @param content contenuto del file.
+	 * @throws IOException se non è possibile scrivere il file.
+	 */
+	private static void writeAtomically(Path target, byte[] content) throws IOException {
+		Files.createDirectories(target.getParent());
+		Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temporary, content);
+			try {
+				Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Calcola l'impronta SHA-256 di un contenuto.
+	 *
+	 * @param content contenuto di cui calcolare l'impronta.
+	 * @return l'impronta, in esadecimale.
+	 */
+	private static String digest(byte[] content) {
+		try {
+			StringBuilder hex = new StringBuilder(64);
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(content))
+				hex.append(String.format("%02x", b));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 è disponibile in ogni implementazione di Java
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Comprime un contenuto in formato gzip.
+	 *
+	 * @param content contenuto da comprimere.
+	 * @return il contenuto compresso.
+	 * @throws IOException se si verificano errori nella compressione.
+	 */
+	private static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+		try (OutputStream output = new GZIPOutputStream(compressed)) {
+			output.write(content);
+		}
+		return compressed.toByteArray();
+	}
+
+	/**
+	 * Decomprime un contenuto in formato gzip.
+	 *
+	 * @param compressed contenuto compresso.
+	 * @return il contenuto decompresso.
+	 * @throws IOException se il contenuto non è in formato gzip valido.
+	 */
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream(compressed.length * 2);
+		try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1)
+				content.write(buffer, 0, read);
+		}
+		return content.toByteArray();
+	}
+
+}
@@ -0,0 +1,311 @@
+package cinema.controller.handlers;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.PersistenceFacade;
+import cinema.model.persistence.util.PersistenceException;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.ReservationException;
+
+/**
+ * Mantiene le prenotazioni in corso indicizzate per identificativo e rimuove
+ * quelle abbandonate.
+ *
+ * <p>
+ * Ogni accesso ad una prenotazione ne aggiorna l'istante di ultimo utilizzo.
+ * Un thread in background controlla periodicamente le prenotazioni: quelle non
+ * acquistate e inutilizzate da più del tempo massimo di inattività vengono
+ * considerate abbandonate, i loro posti vengono liberati e la riga vuota creata
+ * nel meccanismo di persistenza viene eliminata. Le prenotazioni acquistate
+ * vengono invece solo rimosse dalla memoria, una volta trascorso lo stesso tempo
+ * dall'ultimo utilizzo.
+ *
+ * <p>
+ * Lo stato di ogni prenotazione evita che una prenotazione venga considerata
+ * abbandonata mentre il suo acquisto è in corso.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ReservationRegistry {
+
+	/**
+	 * Tempo massimo di inattività predefinito di una prenotazione, in
+	 * millisecondi (15 minuti).
+	 */
+	public static final long DEFAULT_TTL_MILLIS = 15 * 60 * 1000L;
+
+	/**
+	 * Prenotazione in corso, che può essere modificata e acquistata.
+	 */
+	private static final int OPEN = 0;
+
+	/**
+	 * Prenotazione di cui è in corso l'acquisto.
+	 */
+	private static final int PURCHASING = 1;
+
+	/**
+	 * Prenotazione acquistata.
+	 */
+	private static final int PURCHASED = 2;
+
+	/**
+	 * Prenotazione scaduta perché abbandonata.
+	 */
+	private static final int EXPIRED = 3;
+
+	/**
+	 * Prenotazioni in memoria indicizzate per identificativo.
+	 */
+	private final ConcurrentHashMap<Long, Entry> reservations;
+
+	/**
+	 * Permette di eliminare le prenotazioni abbandonate dal meccanismo di
+	 * persistenza dei dati.
+	 */
+	private final PersistenceFacade persistenceFacade;
+
+	/**
+	 * Gestore delle occupazioni temporanee dei posti delle prenotazioni.
+	 */
+	private final SeatHoldHandler seatHoldHandler;
+
+	/**
+	 * Tempo massimo di inattività di una prenotazione, in millisecondi.
+	 */
+	private final long ttlMillis;
+
+	/**
+	 * Esecutore del controllo periodico delle prenotazioni abbandonate.
+	 */
+	private final ScheduledExecutorService reaper;
+
+	/**
+	 * Numero di prenotazioni create.
+	 */
+	private final AtomicLong createdReservations;
+
+	/**
+	 * Numero di prenotazioni acquistate.
+	 */
+	private final AtomicLong purchasedReservations;
+
+	/**
+	 * Numero di prenotazioni scadute perché abbandonate.
+	 */
+	private final AtomicLong expiredReservations;
+
+	/**
+	 * Numero di posti liberati dalle prenotazioni scadute.
+	 */
+	private final AtomicLong releasedSeats;
+
+	/**
+	 * Costruttore del registro delle prenotazioni, che avvia il controllo
+	 * periodico delle prenotazioni abbandonate.
+	 *
+	 * @param persistenceFacade permette di eliminare le prenotazioni abbandonate
+	 *                          dal meccanismo di persistenza dei dati.
+	 * @param seatHoldHandler   gestore delle occupazioni temporanee dei posti
+	 *                          delle prenotazioni.
+	 * @param ttlMillis         tempo massimo di inattività di una prenotazione,
+	 *                          in millisecondi.
+	 */
+	public ReservationRegistry(PersistenceFacade persistenceFacade, SeatHoldHandler seatHoldHandler, long ttlMillis) {
+		this.reservations = new ConcurrentHashMap<Long, Entry>();
+		this.persistenceFacade = persistenceFacade;
+		this.seatHoldHandler = seatHoldHandler;
+		this.ttlMillis = ttlMillis;
+		this.createdReservations = new AtomicLong();
+		this.purchasedReservations = new AtomicLong();
+		this.expiredReservations = new AtomicLong();
+		this.releasedSeats = new AtomicLong();
+		this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "reservation-reaper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1000, ttlMillis / 4);
+		reaper.scheduleWithFixedDelay(this::reapExpiredReservations, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Aggiunge una nuova prenotazione al registro.
+	 *
+	 * @param reservation prenotazione da aggiungere.
+	 */
+	public void add(Reservation reservation) {
+		reservations.put(reservation.getProgressive(), new Entry(reservation));
+		createdReservations.incrementAndGet();
+	}
+
+	/**
+	 * Restituisce una prenotazione, dato il suo id, aggiornandone l'istante di
+	 * ultimo utilizzo.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @return la prenotazione corrispondente all'id inserito.
+	 * @throws ReservationException qualora la prenotazione non esista o sia
+	 *                              scaduta.
+	 */
+	public Reservation get(long reservationId) throws ReservationException {
+		Entry entry = reservations.get(reservationId);
+		if (entry == null || entry.state.get() == EXPIRED)
+			throw new ReservationException("La prenotazione " + reservationId + " non esiste.");
+		entry.lastTouched = System.currentTimeMillis();
+		return entry.reservation;
+	}
+
+	/**
+	 * Segna l'inizio dell'acquisto di una prenotazione, che da questo momento non
+	 * può più scadere.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @throws ReservationException qualora la prenotazione non esista, sia
+	 *                              scaduta o sia già stata acquistata.
+	 */
+	public void beginPurchase(long reservationId) throws ReservationException {
+		Entry entry = reservations.get(reservationId);
+		if (entry == null || !entry.state.compareAndSet(OPEN, PURCHASING))
+			throw new ReservationException(
+					"La prenotazione " + reservationId + " non esiste, è scaduta o è già stata acquistata.");
+		entry.lastTouched = System.currentTimeMillis();
+	}
+
+	/**
+	 * Segna la fine dell'acquisto di una prenotazione.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @param purchased     true se l'acquisto è andato a buon fine, false se la
+	 *                      prenotazione può essere ancora modificata.
+	 */
+	public void endPurchase(long reservationId, boolean purchased) {
+		Entry entry = reservations.get(reservationId);
+		if (entry == null)
+			return;
+		entry.lastTouched = System.currentTimeMillis();
+		if (entry.state.compareAndSet(PURCHASING, purchased ? PURCHASED : OPEN) && purchased)
+			purchasedReservations.incrementAndGet();
+	}
+
+	/**
+	 * Rimuove dal registro le prenotazioni inutilizzate da più del tempo massimo
+	 * di inattività, liberando i posti ed eliminando dal meccanismo di persistenza
+	 * quelle non acquistate.
+	 *
+	 * <p>
+	 * Il metodo viene eseguito periodicamente dal thread in background, ma può
+	 * anche essere chiamato direttamente. I contatori del registro sono
+	 * consultabili tramite le statistiche del cinema.
+	 */
+	public void reapExpiredReservations() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<Long, Entry>> iterator = reservations.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next().getValue();
+			if (now - entry.lastTouched < ttlMillis)
+				continue;
+			if (entry.state.get() == PURCHASED) {
+				iterator.remove();
+			} else if (entry.state.compareAndSet(OPEN, EXPIRED)) {
+				iterator.remove();
+				expire(entry.reservation);
+			}
+		}
+	}
+
+	/**
+	 * Libera i posti di una prenotazione abbandonata e la elimina dal meccanismo
+	 * di persistenza dei dati.
+	 *
+	 * @param reservation prenotazione abbandonata.
+	 */
+	private void expire(Reservation reservation) {
+		expiredReservations.incrementAndGet();
+		seatHoldHandler.clear(reservation.getProgressive());
+		try {
+			releasedSeats.addAndGet(reservation.freeAllSeats());
+			persistenceFacade.deleteReservation(reservation.getProgressive());
+		} catch (RoomException | PersistenceException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Interrompe il controllo periodico delle prenotazioni abbandonate.
+	 */
+	public void shutdown() {
+		reaper.shutdownNow();
+	}
+
+	/**
+	 * Restituisce il numero di prenotazioni attualmente in memoria.
+	 *
+	 * @return numero di prenotazioni in memoria.
+	 */
+	public int getActiveReservations() {
+		return reservations.size();
+	}
+
+	public long getCreatedReservations() {
+		return createdReservations.get();
+	}
+
+	public long getPurchasedReservations() {
+		return purchasedReservations.get();
+	}
+
+	public long getExpiredReservations() {
+		return expiredReservations.get();
+	}
+
+	public long getReleasedSeats() {
+		return releasedSeats.get();
+	}
+
+	public long getTtlMillis() {
+		return ttlMillis;
+	}
+
+	/**
+	 * Prenotazione mantenuta nel registro.
+	 */
+	private static class Entry {
+
+		/**
+		 * Prenotazione.
+		 */
+		private final Reservation reservation;
+
+		/**
+		 * Stato della prenotazione.
+		 */
+		private final AtomicInteger state;
+
+		/**
+		 * Istante dell'ultimo utilizzo della prenotazione, in millisecondi.
+		 */
+		private volatile long lastTouched;
+
+		/**
+		 * Costruttore della prenotazione mantenuta nel registro.
+		 *
+		 * @param reservation prenotazione.
+		 */
+		private Entry(Reservation reservation) {
+			this.reservation = reservation;
+			this.state = new AtomicInteger(OPEN);
+			this.lastTouched = System.currentTimeMillis();
+		}
+	}
+
+}
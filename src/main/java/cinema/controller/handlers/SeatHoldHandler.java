@@ -0,0 +1,182 @@
+package cinema.controller.handlers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cinema.controller.handlers.HashedWheelTimer.Timeout;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.SeatAvailabilityException;
+
+/**
+ * Gestisce l'occupazione temporanea dei posti selezionati durante il checkout.
+ *
+ * <p>
+ * Quando uno spettatore seleziona un posto, questo viene occupato nella
+ * proiezione per un tempo limitato, in modo che gli altri spettatori lo vedano
+ * subito come non disponibile. L'occupazione temporanea termina quando il posto
+ * viene deselezionato, quando la prenotazione viene acquistata oppure alla
+ * scadenza del tempo, gestita da un {@link HashedWheelTimer} condiviso da tutte
+ * le occupazioni.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatHoldHandler {
+
+	/**
+	 * Durata predefinita dell'occupazione temporanea di un posto, in secondi.
+	 */
+	public static final long DEFAULT_TTL_SECONDS = 5 * 60;
+
+	/**
+	 * Durata di un tick della ruota, in millisecondi.
+	 */
+	private static final long TICK_MILLIS = 500;
+
+	/**
+	 * Numero di posizioni della ruota (un giro completo dura poco più di 4
+	 * minuti).
+	 */
+	private static final int WHEEL_SIZE = 512;
+
+	/**
+	 * Durata dell'occupazione temporanea di un posto, in secondi.
+	 */
+	private final long ttlSeconds;
+
+	/**
+	 * Ruota che gestisce la scadenza delle occupazioni temporanee.
+	 */
+	private final HashedWheelTimer timer;
+
+	/**
+	 * Scadenze delle occupazioni temporanee, per identificativo della prenotazione
+	 * e indice del posto nella proiezione.
+	 */
+	private final ConcurrentHashMap<Long, Map<Integer, Timeout>> holds;
+
+	/**
+	 * Numero di occupazioni temporanee scadute.
+	 */
+	private final AtomicLong expiredHolds;
+
+	/**
+	 * Costruttore del gestore delle occupazioni temporanee.
+	 *
+	 * @param ttlSeconds durata dell'occupazione temporanea di un posto, in
+	 *                   secondi.
+	 */
+	public SeatHoldHandler(long ttlSeconds) {
+		this.ttlSeconds = ttlSeconds;
+		this.timer = new HashedWheelTimer("seat-hold-timer", TICK_MILLIS, WHEEL_SIZE);
+		this.holds = new ConcurrentHashMap<Long, Map<Integer, Timeout>>();
+		this.expiredHolds = new AtomicLong();
+	}
+
+	/**
+	 * Aggiunge un posto ad una prenotazione occupandolo temporaneamente.
+	 *
+	 * @param reservation prenotazione a cui aggiungere il posto.
+	 * @param row         fila del posto.
+	 * @param col         posto all'interno della fila {@code row}.
+	 * @throws SeatAvailabilityException se il posto è già stato selezionato o
+	 *                                   occupato.
+	 * @throws RoomException             se il posto non esiste nella sala della
+	 *                                   proiezione.
+	 */
+	public void hold(Reservation reservation, int row, int col) throws SeatAvailabilityException, RoomException {
+		int index = reservation.holdSeat(row, col);
+		Map<Integer, Timeout> reservationHolds = holds.computeIfAbsent(reservation.getProgressive(),
+				id -> new ConcurrentHashMap<Integer, Timeout>());
+		Timeout[] timeout = new Timeout[1];
+		timeout[0] = timer.newTimeout(() -> expire(reservation, index, timeout[0]), ttlSeconds, TimeUnit.SECONDS);
+		Timeout previous = reservationHolds.put(index, timeout[0]);
+		if (previous != null)
+			previous.cancel();
+	}
+
+	/**
+	 * Rimuove un posto da una prenotazione, annullandone l'occupazione
+	 * temporanea.
+	 *
+	 * @param reservation prenotazione da cui rimuovere il posto.
+	 * @param row         fila del posto.
+	 * @param col         posto all'interno della fila {@code row}.
+	 * @throws RoomException se il posto non esiste nella sala della proiezione.
+	 */
+	public void release(Reservation reservation, int row, int col) throws RoomException {
+		int index = reservation.getProjection().getSeatIndex(row, col);
+		Map<Integer, Timeout> reservationHolds = holds.get(reservation.getProgressive());
+		if (reservationHolds != null) {
+			Timeout timeout = reservationHolds.remove(index);
+			if (timeout != null)
+				timeout.cancel();
+		}
+		reservation.removeSeat(row, col);
+	}
+
+	/**
+	 * Annulla le scadenze di tutte le occupazioni temporanee di una prenotazione,
+	 * dopo il suo acquisto o quando viene abbandonata.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 */
+	public void clear(long reservationId) {
+		Map<Integer, Timeout> reservationHolds = holds.remove(reservationId);
+		if (reservationHolds != null) {
+			for (Timeout timeout : reservationHolds.values())
+				timeout.cancel();
+		}
+	}
+
+	/**
+	 * Termina l'occupazione temporanea scaduta di un posto. Il posto resta
+	 * selezionato nella prenotazione, ma può essere occupato da altri spettatori.
+	 *
+	 * @param reservation prenotazione che occupa il posto.
+	 * @param index       indice del posto nella proiezione.
+	 * @param timeout     scadenza dell'occupazione.
+	 */
+	private void expire(Reservation reservation, int index, Timeout timeout) {
+		Map<Integer, Timeout> reservationHolds = holds.get(reservation.getProgressive());
+		if (reservationHolds == null || !reservationHolds.remove(index, timeout))
+			return;
+		try {
+			if (reservation.releaseHold(index))
+				expiredHolds.incrementAndGet();
+		} catch (RoomException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Interrompe la gestione delle scadenze.
+	 */
+	public void shutdown() {
+		timer.stop();
+	}
+
+	/**
+	 * Restituisce il numero di posti attualmente occupati temporaneamente.
+	 *
+	 * @return numero di occupazioni temporanee in corso.
+	 */
+	public int getActiveHolds() {
+		int active = 0;
+		for (Map<Integer, Timeout> reservationHolds : holds.values())
+			active += reservationHolds.size();
+		return active;
+	}
+
+	public long getExpiredHolds() {
+		return expiredHolds.get();
+	}
+
+	public long getTtlSeconds() {
+		return ttlSeconds;
+	}
+
+}
@@ -11,6 +11,10 @@ import cinema.model.cinema.util.TypeOfSeat;
  * associati che tengono invece conto dello stato del posto fisico per una
  * specifica proiezione di uno specifico film.
  *
+ * <p>
+ * Il posto conosce la propria posizione all'interno della sala, in modo che le
+ * sue coordinate possano essere ottenute in tempo costante.
+ *
  * @author Screaming Hairy Armadillo Team
  *
  */
@@ -23,6 +27,16 @@ public class PhysicalSeat {
 	@SuppressWarnings("unused")
 	private TypeOfSeat type;
 
+	/**
+	 * Fila del posto all'interno della sala (a partire da zero).
+	 */
+	private final int row;
+
+	/**
+	 * Numero del posto all'interno della fila (a partire da zero).
+	 */
+	private final int col;
+
 	/**
 	 * Costruttore del posto fisico.
 	 *
@@ -31,9 +45,31 @@ public class PhysicalSeat {
 	 * {@code TypeOfSeat.NORMAL}.
 	 *
 	 * @param type tipo del posto fisico.
+	 * @param row  fila del posto all'interno della sala.
+	 * @param col  numero del posto all'interno della fila.
 	 */
-	public PhysicalSeat(TypeOfSeat type) {
+	public PhysicalSeat(TypeOfSeat type, int row, int col) {
 		this.type = type;
+		this.row = row;
+		this.col = col;
+	}
+
+	/**
+	 * Restituisce le coordinate del posto nel formato usato dal cinema (ad esempio
+	 * "B12" per il dodicesimo posto della seconda fila).
+	 *
+	 * @return coordinate del posto.
+	 */
+	public String getCoordinates() {
+		return Room.rowIndexToRowLetter(row) + (col + 1);
+	}
+
+	public int getRow() {
+		return row;
+	}
+
+	public int getCol() {
+		return col;
 	}
 
 }
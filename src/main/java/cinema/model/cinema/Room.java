@@ -43,7 +43,7 @@ public class Room {
 		for (int i = 0; i < rows; i++) {
 			ArrayList<PhysicalSeat> row = new ArrayList<PhysicalSeat>();
 			for (int j = 0; j < cols; j++) {
-				row.add(new PhysicalSeat(TypeOfSeat.NORMAL));
+				row.add(new PhysicalSeat(TypeOfSeat.NORMAL, i, j));
 			}
 			seats.add(row);
 		}
@@ -1,6 +1,7 @@
 package cinema.model.payment;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import cinema.model.payment.methods.paymentCard.PaymentCard;
 
@@ -14,6 +15,12 @@ import cinema.model.payment.methods.paymentCard.PaymentCard;
  * invece il metodo di pagamento simula il comportamento reale ma non esegue
  * nessuna transazione effettiva.
  *
+ * <p>
+ * Per i test di carico la simulazione può riprodurre la latenza e gli errori
+ * del servizio reale: la durata di ogni pagamento è configurabile con
+ * {@code -Dcinema.payment.latencyMillis=<millisecondi>} e la probabilità di
+ * successo con {@code -Dcinema.payment.successProbability=<0.0-1.0>}.
+ *
  * @author Screaming Hairy Armadillo Team
  *
  */
@@ -33,7 +40,14 @@ public class GreatNorthernAccountingAdapter implements IPaymentAdapter {
 	 * questa costante imposta la percentuale di successo (0.0 = 0%, 1.0 = 100%) di
 	 * ogni chiamata al metodo che effettua il pagamento.
 	 */
-	private final double SUCCESS_PROBABILITY = 1.0;
+	private static final double SUCCESS_PROBABILITY = Double
+			.parseDouble(System.getProperty("cinema.payment.successProbability", "1.0"));
+
+	/**
+	 * Durata simulata di ogni chiamata al metodo che effettua il pagamento, in
+	 * millisecondi.
+	 */
+	private static final long LATENCY_MILLIS = Long.getLong("cinema.payment.latencyMillis", 0);
 
 	/**
 	 * Costruttore dell'adattatore del servizio di pagamento digitale
@@ -48,12 +62,20 @@ public class GreatNorthernAccountingAdapter implements IPaymentAdapter {
 	/**
 	 * Effettua il pagamento mediante la carta di credito specificata.
 	 * 
-	 * Il pagamento simulato ha probabilità di successo
-	 * {@code} SUCCESS_PROBABILITY}.
+	 * Il pagamento simulato dura {@code LATENCY_MILLIS} millisecondi e ha
+	 * probabilità di successo {@code SUCCESS_PROBABILITY}.
 	 */
 	@Override
 	public boolean pay(double amount) {
-		return new Random().nextDouble() < SUCCESS_PROBABILITY;
+		if (LATENCY_MILLIS > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(LATENCY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return ThreadLocalRandom.current().nextDouble() < SUCCESS_PROBABILITY;
 	}
 
 }
@@ -0,0 +1,358 @@
+package cinema.model.persistence;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gestisce le connessioni al database relazionale SQLite usate dai DAO.
+ *
+ * <p>
+ * Il pool mantiene una sola connessione dedicata alle scritture, usata da un
+ * thread alla volta, e un numero fissato di connessioni dedicate alle letture.
+ * Il database viene usato in modalità WAL, in cui le letture non vengono
+ * bloccate dalle scritture in corso: le richieste di consultazione del
+ * catalogo possono quindi procedere in parallelo alla registrazione degli
+ * acquisti.
+ *
+ * <p>
+ * Le connessioni vanno ottenute con {@link #getReader()} o
+ * {@link #getWriter()} e restituite chiudendo il {@link PooledConnection}
+ * ottenuto, tipicamente con un blocco try-with-resources. Un thread che
+ * possiede già una connessione la ottiene di nuovo in caso di richieste
+ * annidate; un thread che possiede la connessione di scrittura la usa anche
+ * per le letture, in modo da vedere le modifiche della propria transazione.
+ *
+ * <p>
+ * Avviando l'applicazione con la proprietà di sistema
+ * {@code -Dcinema.persistence.debug=true} ogni connessione registra le
+ * istruzioni e i {@code ResultSet} aperti durante il suo uso e segnala, con il
+ * punto del codice in cui sono stati creati, quelli non ancora chiusi quando
+ * viene restituita (si veda {@link ResourceTracker}); un thread che attende una
+ * connessione per più di {@value #BORROW_WARNING_MILLIS} ms segnala inoltre
+ * dove sono state ottenute le connessioni in uso, mai restituite.
+ *
+ * <p>
+ * Il pool può inoltre limitare il numero di thread che usano o attendono una
+ * connessione (si veda {@link #ConnectionPool(String, int, int)}): i thread
+ * in eccesso attendono il proprio turno in ordine di arrivo e, trascorso il
+ * tempo massimo di attesa, la richiesta fallisce invece di accodarsi
+ * indefinitamente. Il limite è pensato per l'esecuzione delle richieste web su
+ * virtual thread, il cui numero non è limitato dal server.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ConnectionPool implements AutoCloseable {
+
+	/**
+	 * Numero predefinito di connessioni dedicate alle letture.
+	 */
+	public static final int DEFAULT_READERS = 4;
+
+	/**
+	 * Impostazioni applicate a ciascuna connessione: scritture sincronizzate sul
+	 * disco solo ai checkpoint del WAL, cache di 16 MiB, lettura del database
+	 * mappata in memoria (fino a 256 MiB) e attesa fino a 5 secondi in caso di
+	 * database occupato.
+	 */
+	private static final String[] CONNECTION_PRAGMAS = { "PRAGMA synchronous = NORMAL;",
+			"PRAGMA cache_size = -16384;", "PRAGMA mmap_size = 268435456;", "PRAGMA busy_timeout = 5000;",
+			"PRAGMA temp_store = MEMORY;" };
+
+	/**
+	 * Tempo massimo di attesa per l'accesso al database quando il numero di
+	 * thread che lo usano è limitato, in millisecondi.
+	 */
+	private static final long ADMISSION_TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * Attesa di una connessione oltre la quale, se il rilevamento delle risorse
+	 * non chiuse è attivo, vengono segnalate le connessioni in uso, in
+	 * millisecondi.
+	 */
+	private static final long BORROW_WARNING_MILLIS = 10000;
+
+	/**
+	 * Indica se il rilevamento delle risorse non chiuse è attivo.
+	 */
+	static final boolean DEBUG = Boolean.getBoolean("cinema.persistence.debug");
+
+	/**
+	 * Numero di istruzioni e {@code ResultSet} non chiusi prima della
+	 * restituzione della connessione, contati solo se {@link #DEBUG} è attivo.
+	 */
+	private final AtomicInteger leakedResources;
+
+	/**
+	 * Numero di connessioni dedicate alle letture; se è zero anche le letture
+	 * usano la connessione di scrittura.
+	 */
+	private final int readersCount;
+
+	/**
+	 * Connessione dedicata alle scritture.
+	 */
+	private final PooledConnection writer;
+
+	/**
+	 * Lock che garantisce l'uso esclusivo della connessione di scrittura.
+	 */
+	private final ReentrantLock writerLock;
+
+	/**
+	 * Connessioni di lettura attualmente disponibili.
+	 */
+	private final BlockingQueue<PooledConnection> readers;
+
+	/**
+	 * Connessione di lettura posseduta da ciascun thread.
+	 */
+	private final ThreadLocal<PooledConnection> borrowedReader;
+
+	/**
+	 * Tutte le connessioni aperte dal pool.
+	 */
+	private final ArrayList<PooledConnection> connections;
+
+	/**
+	 * Permessi di accesso al database, uno per ogni thread che usa o attende una
+	 * connessione; null se il numero di thread non è limitato.
+	 */
+	private final Semaphore admission;
+
+	/**
+	 * Numero di connessioni ottenute e non ancora restituite da ciascun thread,
+	 * usato per richiedere un solo permesso anche in caso di richieste annidate.
+	 */
+	private final ThreadLocal<int[]> admittedDepth;
+
+	/**
+	 * Costruttore del pool di connessioni, che non limita il numero di thread che
+	 * usano o attendono una connessione.
+	 *
+	 * @param url          URI del database relazionale.
+	 * @param readersCount numero di connessioni dedicate alle letture.
+	 * @throws SQLException se occorrono degli errori nella connessione al
+	 *                      database.
+	 */
+	public ConnectionPool(String url, int readersCount) throws SQLException {
+		this(url, readersCount, 0);
+	}
+
+	/**
+	 * Costruttore del pool di connessioni che limita il numero di thread che
+	 * usano o attendono una connessione.
+	 *
+	 * @param url            URI del database relazionale.
+	 * @param readersCount   numero di connessioni dedicate alle letture.
+	 * @param maxConcurrency numero massimo di thread che usano o attendono una
+	 *                       connessione, o 0 per non porre limiti.
+	 * @throws SQLException se occorrono degli errori nella connessione al
+	 *                      database.
+	 */
+	public ConnectionPool(String url, int readersCount, int maxConcurrency) throws SQLException {
+		this.readersCount = readersCount;
+		admission = maxConcurrency > 0 ? new Semaphore(maxConcurrency, true) : null;
+		admittedDepth = ThreadLocal.withInitial(() -> new int[1]);
+		leakedResources = new AtomicInteger();
+		connections = new ArrayList<PooledConnection>();
+		writerLock = new ReentrantLock();
+		readers = new ArrayBlockingQueue<PooledConnection>(Math.max(1, readersCount));
+		borrowedReader = new ThreadLocal<PooledConnection>();
+		try {
+			writer = open(url, true, "di scrittura");
+			for (int i = 0; i < readersCount; i++)
+				readers.add(open(url, false, "di lettura " + (i + 1)));
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Ottiene una connessione da usare per le letture.
+	 *
+	 * <p>
+	 * Se non ci sono connessioni di lettura disponibili il thread attende che ne
+	 * venga restituita una.
+	 *
+	 * @return connessione da restituire chiudendola una volta terminato l'uso.
+	 * @throws SQLException se il thread viene interrotto durante l'attesa o se
+	 *                      l'accesso al database non viene concesso entro il
+	 *                      tempo massimo di attesa.
+	 */
+	public PooledConnection getReader() throws SQLException {
+		if (readersCount == 0 || writerLock.isHeldByCurrentThread())
+			return getWriter();
+		admit();
+		PooledConnection reader = borrowedReader.get();
+		if (reader == null) {
+			try {
+				if (DEBUG) {
+					while ((reader = readers.poll(BORROW_WARNING_MILLIS, TimeUnit.MILLISECONDS)) == null)
+						reportBorrowedConnections();
+				} else {
+					reader = readers.take();
+				}
+			} catch (InterruptedException e) {
+				leave();
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrotto in attesa di una connessione al database.");
+			}
+			borrowedReader.set(reader);
+		}
+		reader.acquire();
+		return reader;
+	}
+
+	/**
+	 * Ottiene la connessione da usare per le scritture, attendendo che gli altri
+	 * thread abbiano finito di usarla.
+	 *
+	 * @return connessione da restituire chiudendola una volta terminato l'uso.
+	 * @throws SQLException se l'accesso al database non viene concesso entro il
+	 *                      tempo massimo di attesa.
+	 */
+	public PooledConnection getWriter() throws SQLException {
+		admit();
+		if (DEBUG) {
+			try {
+				while (!writerLock.tryLock(BORROW_WARNING_MILLIS, TimeUnit.MILLISECONDS))
+					writer.reportBorrow();
+			} catch (InterruptedException e) {
+				leave();
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrotto in attesa di una connessione al database.");
+			}
+		} else {
+			writerLock.lock();
+		}
+		writer.acquire();
+		return writer;
+	}
+
+	/**
+	 * Restituisce al pool una connessione ottenuta in precedenza.
+	 *
+	 * @param connection connessione da restituire.
+	 */
+	void release(PooledConnection connection) {
+		int depth = connection.release();
+		if (connection == writer) {
+			writerLock.unlock();
+		} else if (depth == 0) {
+			borrowedReader.remove();
+			readers.offer(connection);
+		}
+		leave();
+	}
+
+	/**
+	 * Ottiene il permesso di accesso al database per il thread corrente, se non
+	 * lo possiede già e se il numero di thread è limitato.
+	 *
+	 * @throws SQLException se il permesso non viene concesso entro il tempo
+	 *                      massimo di attesa o il thread viene interrotto.
+	 */
+	private void admit() throws SQLException {
+		if (admission == null)
+			return;
+		int[] depth = admittedDepth.get();
+		if (depth[0] > 0) {
+			depth[0]++;
+			return;
+		}
+		try {
+			if (!admission.tryAcquire(ADMISSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+				throw new SQLException("Troppe richieste al database in corso.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrotto in attesa di una connessione al database.");
+		}
+		depth[0] = 1;
+	}
+
+	/**
+	 * Restituisce il permesso di accesso al database quando il thread corrente
+	 * non usa più alcuna connessione.
+	 */
+	private void leave() {
+		if (admission == null)
+			return;
+		int[] depth = admittedDepth.get();
+		if (--depth[0] == 0)
+			admission.release();
+	}
+
+	/**
+	 * Chiude tutte le connessioni aperte dal pool.
+	 */
+	@Override
+	public void close() {
+		for (PooledConnection connection : connections)
+			connection.closeConnection();
+	}
+
+	/**
+	 * Restituisce il numero di istruzioni e {@code ResultSet} segnalati perché non
+	 * chiusi prima della restituzione della connessione.
+	 *
+	 * @return numero di risorse non chiuse, o -1 se il rilevamento non è attivo.
+	 */
+	public int getLeakedResources() {
+		return DEBUG ? leakedResources.get() : -1;
+	}
+
+	/**
+	 * Registra le risorse rimaste aperte alla restituzione di una connessione.
+	 *
+	 * @param count numero di risorse rimaste aperte.
+	 */
+	void resourcesLeaked(int count) {
+		if (count > 0)
+			leakedResources.addAndGet(count);
+	}
+
+	/**
+	 * Segnala dove sono state ottenute le connessioni attualmente in uso.
+	 */
+	private void reportBorrowedConnections() {
+		for (PooledConnection connection : connections)
+			connection.reportBorrow();
+	}
+
+	/**
+	 * Apre e configura una nuova connessione.
+	 *
+	 * @param url    URI del database relazionale.
+	 * @param writer true se la connessione è dedicata alle scritture.
+	 * @param name   descrizione della connessione, usata nelle segnalazioni.
+	 * @return la connessione aperta.
+	 * @throws SQLException se occorrono degli errori nella connessione al
+	 *                      database.
+	 */
+	private PooledConnection open(String url, boolean writer, String name) throws SQLException {
+		Connection connection = DriverManager.getConnection(url);
+		PooledConnection pooledConnection = new PooledConnection(connection, this, name);
+		connections.add(pooledConnection);
+		try (Statement statement = connection.createStatement()) {
+			if (writer)
+				statement.execute("PRAGMA journal_mode = WAL;");
+			for (String pragma : CONNECTION_PRAGMAS)
+				statement.execute(pragma);
+			if (!writer)
+				statement.execute("PRAGMA query_only = ON;");
+		}
+		return pooledConnection;
+	}
+
+}
@@ -0,0 +1,117 @@
+package cinema.model.persistence;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cinema.model.persistence.dao.interfaces.ISequenceDao;
+
+/**
+ * Assegna identificativi univoci riservandoli a blocchi dal meccanismo di
+ * persistenza dei dati (schema hi/lo).
+ * 
+ * <p>
+ * Gli identificativi del blocco corrente vengono distribuiti tramite un
+ * {@code AtomicLong}, senza lock e senza accedere al meccanismo di persistenza;
+ * solo quando il blocco si esaurisce ne viene riservato uno nuovo. Gli
+ * identificativi sono crescenti all'interno della stessa istanza
+ * dell'applicazione e non vengono mai riassegnati, anche dopo un riavvio: gli
+ * identificativi riservati e non usati vanno persi.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class IdBlockAllocator {
+
+	/**
+	 * Numero predefinito di identificativi riservati con ciascun accesso al
+	 * meccanismo di persistenza.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 32;
+
+	/**
+	 * Interfaccia con la persistenza delle sequenze.
+	 */
+	private final ISequenceDao iSequenceDao;
+
+	/**
+	 * Nome della tabella a cui appartengono gli identificativi.
+	 */
+	private final String table;
+
+	/**
+	 * Numero di identificativi riservati con ciascun accesso al meccanismo di
+	 * persistenza.
+	 */
+	private final int blockSize;
+
+	/**
+	 * Blocco di identificativi correntemente in uso.
+	 */
+	private volatile Block block;
+
+	/**
+	 * Costruttore dell'allocatore di identificativi.
+	 * 
+	 * @param iSequenceDao interfaccia con la persistenza delle sequenze.
+	 * @param table        nome della tabella a cui appartengono gli
+	 *                     identificativi.
+	 * @param blockSize    numero di identificativi riservati con ciascun accesso
+	 *                     al meccanismo di persistenza.
+	 */
+	public IdBlockAllocator(ISequenceDao iSequenceDao, String table, int blockSize) {
+		this.iSequenceDao = iSequenceDao;
+		this.table = table;
+		this.blockSize = blockSize;
+		this.block = new Block(0, 0);
+	}
+
+	/**
+	 * Restituisce un nuovo identificativo univoco.
+	 * 
+	 * @return l'identificativo assegnato.
+	 * @throws SQLException se occorrono degli errori nel riservare un nuovo
+	 *                      blocco di identificativi.
+	 */
+	public long nextId() throws SQLException {
+		while (true) {
+			Block current = block;
+			long id = current.next.getAndIncrement();
+			if (id < current.end)
+				return id;
+			synchronized (this) {
+				if (block == current) {
+					long first = iSequenceDao.reserveIds(table, blockSize);
+					block = new Block(first, first + blockSize);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Blocco di identificativi riservati.
+	 */
+	private static class Block {
+
+		/**
+		 * Prossimo identificativo da assegnare.
+		 */
+		private final AtomicLong next;
+
+		/**
+		 * Primo identificativo successivo al blocco.
+		 */
+		private final long end;
+
+		/**
+		 * Costruttore del blocco.
+		 * 
+		 * @param first primo identificativo del blocco.
+		 * @param end   primo identificativo successivo al blocco.
+		 */
+		private Block(long first, long end) {
+			this.next = new AtomicLong(first);
+			this.end = end;
+		}
+	}
+
+}
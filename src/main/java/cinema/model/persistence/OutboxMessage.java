@@ -0,0 +1,126 @@
+package cinema.model.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rappresenta un messaggio della tabella {@code Outbox}: la ricevuta di un
+ * acquisto registrato nel meccanismo di persistenza e non ancora consegnata
+ * allo spettatore.
+ *
+ * <p>
+ * Il messaggio contiene tutti i dati necessari a generare il report della
+ * prenotazione e a inviarlo per e-mail, anche dopo il riavvio
+ * dell'applicazione, quando la prenotazione non è più presente in memoria.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class OutboxMessage {
+
+	/**
+	 * Codice identificativo della prenotazione acquistata.
+	 */
+	private long reservationId;
+
+	/**
+	 * Codice identificativo della proiezione della prenotazione.
+	 */
+	private int projectionId;
+
+	/**
+	 * Nome dello spettatore che ha effettuato l'acquisto.
+	 */
+	private String name;
+
+	/**
+	 * Cognome dello spettatore che ha effettuato l'acquisto.
+	 */
+	private String surname;
+
+	/**
+	 * E-mail dello spettatore che ha effettuato l'acquisto.
+	 */
+	private String email;
+
+	/**
+	 * Importo pagato al momento dell'acquisto.
+	 */
+	private double total;
+
+	/**
+	 * Numero di tentativi di consegna falliti.
+	 */
+	private int attempts;
+
+	/**
+	 * Posti acquistati, indicati dalla coppia {fila, colonna}.
+	 */
+	private List<int[]> seats;
+
+	/**
+	 * Costruttore del messaggio, inizialmente senza posti.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @param projectionId  codice identificativo della proiezione.
+	 * @param name          nome dello spettatore.
+	 * @param surname       cognome dello spettatore.
+	 * @param email         e-mail dello spettatore.
+	 * @param total         importo pagato.
+	 * @param attempts      numero di tentativi di consegna falliti.
+	 */
+	public OutboxMessage(long reservationId, int projectionId, String name, String surname, String email,
+			double total, int attempts) {
+		this.reservationId = reservationId;
+		this.projectionId = projectionId;
+		this.name = name;
+		this.surname = surname;
+		this.email = email;
+		this.total = total;
+		this.attempts = attempts;
+		this.seats = new ArrayList<int[]>();
+	}
+
+	/**
+	 * Aggiunge un posto acquistato al messaggio.
+	 *
+	 * @param row fila del posto.
+	 * @param col colonna del posto.
+	 */
+	public void addSeat(int row, int col) {
+		seats.add(new int[] { row, col });
+	}
+
+	public long getReservationId() {
+		return reservationId;
+	}
+
+	public int getProjectionId() {
+		return projectionId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSurname() {
+		return surname;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public double getTotal() {
+		return total;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public List<int[]> getSeats() {
+		return seats;
+	}
+
+}
@@ -1,10 +1,12 @@
 package cinema.model.persistence;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 
 import cinema.model.Movie;
 import cinema.model.cinema.Room;
@@ -14,25 +16,33 @@ import cinema.model.persistence.dao.interfaces.ICouponDao;
 import cinema.model.persistence.dao.interfaces.IDiscountDao;
 import cinema.model.persistence.dao.interfaces.IMovieDao;
 import cinema.model.persistence.dao.interfaces.IOccupiedSeatDao;
+import cinema.model.persistence.dao.interfaces.IOutboxDao;
 import cinema.model.persistence.dao.interfaces.IProjectionDao;
+import cinema.model.persistence.dao.interfaces.IReportDao;
 import cinema.model.persistence.dao.interfaces.IReservationDao;
 import cinema.model.persistence.dao.interfaces.IRoomDao;
+import cinema.model.persistence.dao.interfaces.ISequenceDao;
 import cinema.model.persistence.dao.rdbClasses.CinemaRdbDao;
 import cinema.model.persistence.dao.rdbClasses.CouponRdbDao;
 import cinema.model.persistence.dao.rdbClasses.DiscountRdbDao;
 import cinema.model.persistence.dao.rdbClasses.MovieRdbDao;
 import cinema.model.persistence.dao.rdbClasses.OccupiedSeatRdbDao;
+import cinema.model.persistence.dao.rdbClasses.OutboxRdbDao;
 import cinema.model.persistence.dao.rdbClasses.ProjectionRdbDao;
+import cinema.model.persistence.dao.rdbClasses.ReportRdbDao;
 import cinema.model.persistence.dao.rdbClasses.ReservationRdbDao;
 import cinema.model.persistence.dao.rdbClasses.RoomRdbDao;
+import cinema.model.persistence.dao.rdbClasses.SequenceRdbDao;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.projection.Projection;
+import cinema.model.projection.ProjectionSeatMap;
 import cinema.model.reservation.Reservation;
 import cinema.model.reservation.discount.coupon.Coupon;
 import cinema.model.reservation.discount.coupon.util.CouponException;
 import cinema.model.reservation.discount.types.DiscountAge;
 import cinema.model.reservation.discount.types.DiscountDay;
 import cinema.model.reservation.discount.types.DiscountNumberSpectators;
+import cinema.model.reservation.util.SeatAvailabilityException;
 
 /**
  * Contiene i metodi necessari per interfacciare l'applicazione con un
@@ -48,9 +58,9 @@ import cinema.model.reservation.discount.types.DiscountNumberSpectators;
 public class PersistenceFacade {
 
 	/**
-	 * Connessione al meccanismo di persistenza dei dati.
+	 * Pool delle connessioni al meccanismo di persistenza dei dati.
 	 */
-	Connection connection;
+	ConnectionPool connectionPool;
 
 	/**
 	 * Interfaccia con la persistenza dei dati del film.
@@ -92,6 +102,26 @@ public class PersistenceFacade {
 	 */
 	ICinemaDao iCinemaDao;
 
+	/**
+	 * Interfaccia con la persistenza delle sequenze di identificativi.
+	 */
+	ISequenceDao iSequenceDao;
+
+	/**
+	 * Interfaccia con la persistenza delle ricevute da consegnare.
+	 */
+	IOutboxDao iOutboxDao;
+
+	/**
+	 * Interfaccia con l'indice dei report archiviati.
+	 */
+	IReportDao iReportDao;
+
+	/**
+	 * Allocatore degli identificativi delle nuove prenotazioni.
+	 */
+	IdBlockAllocator reservationIds;
+
 	/**
 	 * Costruttore del facade controller che gestisce la persistenza dei dati.
 	 * 
@@ -100,15 +130,34 @@ public class PersistenceFacade {
 	 *                      meccanismo di persistenza dei dati.
 	 */
 	public PersistenceFacade(String url) throws SQLException {
-		connection = DriverManager.getConnection(url);
-		iMovieDao = new MovieRdbDao(connection);
-		iRoomDao = new RoomRdbDao(connection);
-		iProjectionDao = new ProjectionRdbDao(connection);
-		iCouponDao = new CouponRdbDao(connection);
-		iDiscountDao = new DiscountRdbDao(connection);
-		iOccupiedSeatDao = new OccupiedSeatRdbDao(connection);
-		iReservationDao = new ReservationRdbDao(connection);
-		iCinemaDao = new CinemaRdbDao(connection);
+		this(url, 0);
+	}
+
+	/**
+	 * Costruttore del facade controller che gestisce la persistenza dei dati,
+	 * limitando il numero di thread che accedono contemporaneamente al meccanismo
+	 * di persistenza dei dati.
+	 * 
+	 * @param url            URI del meccanismo di persistenza dei dati.
+	 * @param maxConcurrency numero massimo di thread che usano o attendono una
+	 *                       connessione, o 0 per non porre limiti.
+	 * @throws SQLException se occorrono degli errori nella connessione al
+	 *                      meccanismo di persistenza dei dati.
+	 */
+	public PersistenceFacade(String url, int maxConcurrency) throws SQLException {
+		connectionPool = new ConnectionPool(url, ConnectionPool.DEFAULT_READERS, maxConcurrency);
+		iMovieDao = new MovieRdbDao(connectionPool);
+		iRoomDao = new RoomRdbDao(connectionPool);
+		iProjectionDao = new ProjectionRdbDao(connectionPool);
+		iCouponDao = new CouponRdbDao(connectionPool);
+		iDiscountDao = new DiscountRdbDao(connectionPool);
+		iOccupiedSeatDao = new OccupiedSeatRdbDao(connectionPool);
+		iReservationDao = new ReservationRdbDao(connectionPool);
+		iCinemaDao = new CinemaRdbDao(connectionPool);
+		iSequenceDao = new SequenceRdbDao(connectionPool);
+		iOutboxDao = new OutboxRdbDao(connectionPool);
+		iReportDao = new ReportRdbDao(connectionPool);
+		reservationIds = new IdBlockAllocator(iSequenceDao, "Reservation", IdBlockAllocator.DEFAULT_BLOCK_SIZE);
 	}
 
 	/**
@@ -232,6 +281,43 @@ public class PersistenceFacade {
 		}
 	}
 
+	/**
+	 * Restituisce l'identificativo dell'ultima modifica alle proiezioni registrata
+	 * nel meccanismo di persistenza dei dati.
+	 * 
+	 * @return l'identificativo dell'ultima modifica, o 0 se non ne sono state
+	 *         registrate.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public long getLastProjectionChangeId() throws PersistenceException {
+		try {
+			return this.iProjectionDao.getLastProjectionChangeId();
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce un lotto di modifiche alle proiezioni successive ad una
+	 * modifica già nota, in ordine di registrazione.
+	 * 
+	 * @param afterId vengono restituite solo le modifiche con identificativo
+	 *                maggiore.
+	 * @param limit   numero massimo di modifiche da restituire.
+	 * @return gli identificativi delle proiezioni modificate, indicizzati per
+	 *         identificativo della modifica.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public SortedMap<Long, Integer> getProjectionChanges(long afterId, int limit) throws PersistenceException {
+		try {
+			return this.iProjectionDao.getProjectionChanges(afterId, limit);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
 	/**
 	 * Elimina una determinata proiezione sulla base del suo identificativo.
 	 * 
@@ -399,6 +485,62 @@ public class PersistenceFacade {
 		}
 	}
 
+	/**
+	 * Restituisce l'occupazione di tutti i posti della proiezione indicata con
+	 * {@code projectionId}.
+	 * 
+	 * @param projectionId identificativo della proiezione.
+	 * @return mappa dei posti della proiezione, o null se la proiezione non è
+	 *         presente.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 * @throws RoomException        se vengono riscontrati errori
+	 *                              nell'identificazione dei posti all'interno della
+	 *                              sala.
+	 */
+	public ProjectionSeatMap getProjectionSeatMap(int projectionId) throws PersistenceException, RoomException {
+		try {
+			return this.iOccupiedSeatDao.getOccupiedSeatMap(projectionId);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce l'identificativo dell'ultimo posto occupato registrato nel
+	 * meccanismo di persistenza dei dati.
+	 * 
+	 * @return l'identificativo dell'ultimo posto occupato, o 0 se non ce ne sono.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public long getLastOccupiedSeatId() throws PersistenceException {
+		try {
+			return this.iOccupiedSeatDao.getLastOccupiedSeatId();
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce un lotto di posti occupati registrati dopo un posto già noto, in
+	 * ordine di registrazione.
+	 * 
+	 * @param afterId vengono restituiti solo i posti con identificativo maggiore.
+	 * @param limit   numero massimo di posti da restituire.
+	 * @return i posti occupati, indicati dalla terna {proiezione, fila, colonna} e
+	 *         indicizzati per identificativo.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public SortedMap<Long, int[]> getOccupiedSeatsAfter(long afterId, int limit) throws PersistenceException {
+		try {
+			return this.iOccupiedSeatDao.getOccupiedSeatsAfter(afterId, limit);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
 	/**
 	 * Restituisce l'identificativo dell'ultima prenotazione mantenuta nel
 	 * meccanismo di persistenza dei dati.
@@ -416,6 +558,25 @@ public class PersistenceFacade {
 		}
 	}
 
+	/**
+	 * Restituisce un nuovo identificativo univoco per una prenotazione.
+	 * 
+	 * <p>
+	 * Gli identificativi vengono riservati a blocchi, in modo che la maggior parte
+	 * delle richieste non acceda al meccanismo di persistenza dei dati.
+	 * 
+	 * @return identificativo da assegnare alla nuova prenotazione.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public long getNextReservationId() throws PersistenceException {
+		try {
+			return reservationIds.nextId();
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
 	/**
 	 * Elimina una proiezione dal meccanismo di persistenza dei dati.
 	 * 
@@ -471,6 +632,60 @@ public class PersistenceFacade {
 	public void setReservationFields(Reservation reservation) throws PersistenceException, RoomException {
 		try {
 			iReservationDao.setReservationFields(reservation);
+			iOccupiedSeatDao.putOccupiedSeatsFromReservation(reservation);
+		} catch (SQLException | SeatAvailabilityException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Rende persistente l'acquisto di una prenotazione in un'unica transazione.
+	 * 
+	 * <p>
+	 * Nella stessa transazione vengono resi persistenti i dati della prenotazione,
+	 * l'occupazione dei suoi posti (con un unico batch di inserimenti),
+	 * l'utilizzo dell'eventuale coupon e il messaggio con la ricevuta da
+	 * consegnare allo spettatore: o vengono applicate tutte le modifiche o
+	 * nessuna. La prenotazione a cui si fa riferimento deve essere stata inserita
+	 * nel meccanismo di persistenza precedentemente col metodo
+	 * {@code putEmptyReservation(Reservation newReservation)}.
+	 * 
+	 * <p>
+	 * La transazione usa la connessione di scrittura, che i DAO ottengono di nuovo
+	 * per ciascuna delle modifiche: le altre scritture attendono il termine della
+	 * transazione, mentre le letture proseguono sulle connessioni dedicate. Se una
+	 * delle modifiche fallisce, per qualunque motivo, la transazione viene
+	 * annullata.
+	 * 
+	 * @param reservation prenotazione acquistata.
+	 * @throws PersistenceException      se la richiesta al meccanismo di
+	 *                                   persistenza dei dati fallisce.
+	 * @throws RoomException             se la stanza referenziata nella
+	 *                                   prenotazione non è valida.
+	 * @throws SeatAvailabilityException se almeno uno dei posti della
+	 *                                   prenotazione risulta già occupato nel
+	 *                                   meccanismo di persistenza.
+	 */
+	public void commitPurchase(Reservation reservation)
+			throws PersistenceException, RoomException, SeatAvailabilityException {
+		try (PooledConnection writer = connectionPool.getWriter()) {
+			writer.getConnection().setAutoCommit(false);
+			boolean committed = false;
+			try {
+				iReservationDao.setReservationFields(reservation);
+				iOccupiedSeatDao.putOccupiedSeatsFromReservation(reservation);
+				if (reservation.getCoupon() != null)
+					iCouponDao.setCouponUsed(reservation.getCoupon().getCode());
+				iOutboxDao.putMessage(reservation);
+				writer.getConnection().commit();
+				committed = true;
+			} finally {
+				// Qualunque errore annulla la transazione: riattivare l'autocommit
+				// renderebbe persistenti le modifiche parziali
+				if (!committed)
+					writer.getConnection().rollback();
+				writer.getConnection().setAutoCommit(true);
+			}
 		} catch (SQLException e) {
 			throw new PersistenceException("La richiesta al database non è andata a buon fine");
 		}
@@ -481,12 +696,16 @@ public class PersistenceFacade {
 	 * 
 	 * @param reservation prenotazioni di cui si vuole rendere persistente
 	 *                    l'occupazione dei posti.
-	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
-	 *                              dati fallisce.
-	 * @throws RoomException        se la stanza referenziata nella prenotazione non
-	 *                              è valida.
+	 * @throws PersistenceException      se la richiesta al meccanismo di
+	 *                                   persistenza dei dati fallisce.
+	 * @throws RoomException             se la stanza referenziata nella
+	 *                                   prenotazione non è valida.
+	 * @throws SeatAvailabilityException se almeno uno dei posti della
+	 *                                   prenotazione risulta già occupato nel
+	 *                                   meccanismo di persistenza.
 	 */
-	public void putOccupiedSeatsFromReservation(Reservation reservation) throws PersistenceException, RoomException {
+	public void putOccupiedSeatsFromReservation(Reservation reservation)
+			throws PersistenceException, RoomException, SeatAvailabilityException {
 		try {
 			iOccupiedSeatDao.putOccupiedSeatsFromReservation(reservation);
 		} catch (SQLException e) {
@@ -548,4 +767,274 @@ public class PersistenceFacade {
 		}
 	}
 
+	/**
+	 * Restituisce un lotto di ricevute non ancora consegnate per le quali è
+	 * possibile effettuare un nuovo tentativo di consegna.
+	 * 
+	 * @param limit       numero massimo di ricevute da restituire.
+	 * @param maxAttempts numero di tentativi falliti oltre il quale una ricevuta
+	 *                    non viene più restituita.
+	 * @return le ricevute in attesa di consegna, dalla meno recente.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public List<OutboxMessage> getPendingOutboxMessages(int limit, int maxAttempts) throws PersistenceException {
+		try {
+			return iOutboxDao.getPendingMessages(limit, maxAttempts, System.currentTimeMillis());
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce un lotto di prenotazioni acquistate per una proiezione, con i
+	 * posti e l'importo pagato, in ordine di identificativo.
+	 * 
+	 * @param projectionId identificativo della proiezione.
+	 * @param afterId      vengono restituite solo le prenotazioni con
+	 *                     identificativo maggiore (l'ultimo del lotto
+	 *                     precedente, o 0).
+	 * @param limit        numero massimo di prenotazioni da restituire.
+	 * @return le prenotazioni acquistate.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public List<PurchasedReservation> getPurchasedReservations(int projectionId, long afterId, int limit)
+			throws PersistenceException {
+		try {
+			return setTotals(iReservationDao.getPurchasedReservations(projectionId, afterId, limit));
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce un lotto di prenotazioni acquistate per le proiezioni di un
+	 * giorno, con i posti e l'importo pagato, in ordine di identificativo.
+	 * 
+	 * @param day     giorno delle proiezioni.
+	 * @param afterId vengono restituite solo le prenotazioni con identificativo
+	 *                maggiore (l'ultimo del lotto precedente, o 0).
+	 * @param limit   numero massimo di prenotazioni da restituire.
+	 * @return le prenotazioni acquistate.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public List<PurchasedReservation> getPurchasedReservations(LocalDate day, long afterId, int limit)
+			throws PersistenceException {
+		try {
+			return setTotals(iReservationDao.getPurchasedReservations(day.atStartOfDay(),
+					day.plusDays(1).atStartOfDay(), afterId, limit));
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Imposta nelle prenotazioni acquistate l'importo pagato registrato con la
+	 * ricevuta dell'acquisto, se presente.
+	 * 
+	 * @param reservations prenotazioni di un lotto.
+	 * @return le stesse prenotazioni.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	private List<PurchasedReservation> setTotals(List<PurchasedReservation> reservations) throws SQLException {
+		if (reservations.isEmpty())
+			return reservations;
+		List<Long> reservationIds = new ArrayList<Long>(reservations.size());
+		for (PurchasedReservation reservation : reservations)
+			reservationIds.add(reservation.getReservationId());
+		Map<Long, Double> totals = iOutboxDao.getTotals(reservationIds);
+		for (PurchasedReservation reservation : reservations)
+			reservation.setTotal(totals.get(reservation.getReservationId()));
+		return reservations;
+	}
+
+	/**
+	 * Segna come consegnata la ricevuta di una prenotazione.
+	 * 
+	 * @param reservationId identificativo della prenotazione.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public void setOutboxMessageDelivered(long reservationId) throws PersistenceException {
+		try {
+			iOutboxDao.setMessageDelivered(reservationId, System.currentTimeMillis());
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Riserva la ricevuta di una prenotazione per la consegna, in modo che non
+	 * venga inviata anche da altre istanze dell'applicazione.
+	 * 
+	 * @param reservationId identificativo della prenotazione.
+	 * @param owner         identificativo dell'istanza che consegna la ricevuta.
+	 * @param leaseMillis   durata della riserva, in millisecondi.
+	 * @return true se la ricevuta è stata riservata, false se è già stata
+	 *         consegnata o riservata da un'altra istanza.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public boolean claimOutboxMessage(long reservationId, String owner, long leaseMillis) throws PersistenceException {
+		long now = System.currentTimeMillis();
+		try {
+			return iOutboxDao.claimMessage(reservationId, owner, now, now + leaseMillis);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Annulla la riserva della ricevuta di una prenotazione non inviata.
+	 * 
+	 * @param reservationId identificativo della prenotazione.
+	 * @param owner         identificativo dell'istanza che ha riservato la
+	 *                      ricevuta.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public void releaseOutboxMessage(long reservationId, String owner) throws PersistenceException {
+		try {
+			iOutboxDao.releaseMessage(reservationId, owner);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Registra un tentativo fallito di consegna della ricevuta di una
+	 * prenotazione.
+	 * 
+	 * @param reservationId identificativo della prenotazione.
+	 * @param owner         identificativo dell'istanza che ha riservato la
+	 *                      ricevuta.
+	 * @param retryDelay    attesa prima del prossimo tentativo, in millisecondi.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public void setOutboxMessageFailed(long reservationId, String owner, long retryDelay)
+			throws PersistenceException {
+		try {
+			iOutboxDao.setMessageFailed(reservationId, owner, System.currentTimeMillis() + retryDelay);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Rimette in attesa tutte le ricevute la cui consegna è fallita.
+	 * 
+	 * @return il numero di ricevute rimesse in attesa.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public int resetFailedOutboxMessages() throws PersistenceException {
+		try {
+			return iOutboxDao.resetFailedMessages();
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Inserisce nell'indice dei report archiviati il report di una prenotazione,
+	 * sostituendo quello eventualmente già presente.
+	 * 
+	 * @param entry voce dell'indice da inserire.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public void putReport(ReportEntry entry) throws PersistenceException {
+		try {
+			iReportDao.putReport(entry);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce la voce dell'indice del report archiviato di una prenotazione.
+	 * 
+	 * @param reservationId identificativo della prenotazione.
+	 * @return la voce dell'indice, o null se la prenotazione non ha un report
+	 *         archiviato.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public ReportEntry getReport(long reservationId) throws PersistenceException {
+		try {
+			return iReportDao.getReport(reservationId);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce i report archiviati non compressi delle proiezioni già
+	 * iniziate.
+	 * 
+	 * @param limit numero massimo di report da restituire.
+	 * @return i report da comprimere.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public List<ReportEntry> getReportsToCompress(int limit) throws PersistenceException {
+		try {
+			return iReportDao.getReportsToCompress(System.currentTimeMillis(), limit);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce i report archiviati scaduti.
+	 * 
+	 * @param limit numero massimo di report da restituire.
+	 * @return i report da eliminare.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public List<ReportEntry> getExpiredReports(int limit) throws PersistenceException {
+		try {
+			return iReportDao.getExpiredReports(System.currentTimeMillis(), limit);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Registra la compressione del report archiviato di una prenotazione.
+	 * 
+	 * @param reservationId identificativo della prenotazione.
+	 * @param path          percorso del file compresso.
+	 * @param size          dimensione del file compresso, in byte.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public void setReportCompressed(long reservationId, String path, long size) throws PersistenceException {
+		try {
+			iReportDao.setReportCompressed(reservationId, path, size);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Elimina dall'indice il report archiviato di una prenotazione.
+	 * 
+	 * @param reservationId identificativo della prenotazione.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public void deleteReport(long reservationId) throws PersistenceException {
+		try {
+			iReportDao.deleteReport(reservationId);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,197 @@
+package cinema.model.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connessione al database ottenuta da un {@link ConnectionPool}.
+ *
+ * <p>
+ * La chiusura di questo oggetto non chiude la connessione sottostante, ma la
+ * restituisce al pool da cui è stata ottenuta.
+ *
+ * <p>
+ * Le istruzioni preparate vengono mantenute in una cache associata alla
+ * connessione, indicizzata per testo SQL: la stessa istruzione viene preparata
+ * una sola volta e riutilizzata dalle richieste successive. Le istruzioni
+ * ottenute con {@link #prepareStatement(String)} appartengono quindi alla
+ * connessione e non vanno chiuse dal chiamante, che deve invece chiudere i
+ * {@code ResultSet} ottenuti. Le istruzioni usate meno di recente vengono chiuse
+ * quando la cache supera {@value #STATEMENT_CACHE_SIZE} elementi.
+ *
+ * <p>
+ * Con {@code -Dcinema.persistence.debug=true} la connessione sottostante e le
+ * istruzioni preparate vengono restituite avvolte da un {@link ResourceTracker},
+ * che segnala le istruzioni e i {@code ResultSet} non chiusi al termine
+ * dell'uso della connessione.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class PooledConnection implements AutoCloseable {
+
+	/**
+	 * Numero massimo di istruzioni preparate mantenute per ciascuna connessione.
+	 */
+	static final int STATEMENT_CACHE_SIZE = 32;
+
+	/**
+	 * Connessione al database.
+	 */
+	private final Connection connection;
+
+	/**
+	 * Pool a cui appartiene la connessione.
+	 */
+	private final ConnectionPool pool;
+
+	/**
+	 * Numero di richieste annidate per cui la connessione è in uso dal thread
+	 * che la possiede.
+	 */
+	private int depth;
+
+	/**
+	 * Istruzioni preparate sulla connessione, indicizzate per testo SQL in ordine
+	 * di utilizzo.
+	 */
+	private final LinkedHashMap<String, PreparedStatement> statements;
+
+	/**
+	 * Registro delle risorse aperte durante l'uso della connessione, o null se il
+	 * rilevamento non è attivo.
+	 */
+	private final ResourceTracker tracker;
+
+	/**
+	 * Connessione restituita ai DAO, avvolta dal registro delle risorse se il
+	 * rilevamento è attivo.
+	 */
+	private final Connection exposedConnection;
+
+	/**
+	 * Costruttore della connessione.
+	 *
+	 * @param connection connessione al database.
+	 * @param pool       pool a cui appartiene la connessione.
+	 * @param name       descrizione della connessione, usata nelle segnalazioni.
+	 */
+	PooledConnection(Connection connection, ConnectionPool pool, String name) {
+		this.connection = connection;
+		this.pool = pool;
+		this.depth = 0;
+		this.tracker = ConnectionPool.DEBUG ? new ResourceTracker(name) : null;
+		this.exposedConnection = tracker == null ? connection : tracker.wrap(connection);
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= STATEMENT_CACHE_SIZE)
+					return false;
+				closeStatement(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Restituisce l'istruzione preparata corrispondente a {@code sql}, preparandola
+	 * solo se non è già presente nella cache. I parametri e i batch di
+	 * un'istruzione riutilizzata vengono azzerati.
+	 *
+	 * @param sql istruzione SQL da preparare.
+	 * @return l'istruzione preparata, da non chiudere.
+	 * @throws SQLException se occorrono degli errori nella preparazione.
+	 */
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		PreparedStatement statement = statements.get(sql);
+		if (statement == null || statement.isClosed()) {
+			statement = connection.prepareStatement(sql);
+			statements.put(sql, statement);
+		} else {
+			statement.clearParameters();
+			statement.clearBatch();
+		}
+		return tracker == null ? statement : tracker.wrap(statement);
+	}
+
+	/**
+	 * Restituisce la connessione al pool.
+	 */
+	@Override
+	public void close() {
+		pool.release(this);
+	}
+
+	/**
+	 * Chiude tutte le istruzioni preparate e la connessione sottostante.
+	 */
+	void closeConnection() {
+		for (PreparedStatement statement : statements.values())
+			closeStatement(statement);
+		statements.clear();
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			// La connessione non è più utilizzabile in ogni caso
+		}
+	}
+
+	/**
+	 * Chiude un'istruzione preparata rimossa dalla cache.
+	 *
+	 * @param statement istruzione da chiudere.
+	 */
+	private void closeStatement(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// L'istruzione non è più utilizzabile in ogni caso
+		}
+	}
+
+	/**
+	 * Segna la connessione come in uso per una nuova richiesta.
+	 */
+	void acquire() {
+		if (depth++ == 0 && tracker != null)
+			tracker.borrowed();
+	}
+
+	/**
+	 * Segna come terminata una delle richieste che usano la connessione; se
+	 * nessuna richiesta la usa più, segnala le risorse rimaste aperte.
+	 *
+	 * @return numero di richieste che usano ancora la connessione.
+	 */
+	int release() {
+		if (--depth == 0 && tracker != null)
+			pool.resourcesLeaked(tracker.returned());
+		return depth;
+	}
+
+	/**
+	 * Segnala il punto in cui la connessione è stata ottenuta, se è in uso e il
+	 * rilevamento delle risorse non chiuse è attivo.
+	 */
+	void reportBorrow() {
+		if (tracker != null)
+			tracker.reportBorrow();
+	}
+
+	/**
+	 * Restituisce la connessione sottostante. Le istruzioni create direttamente
+	 * su di essa, e i relativi {@code ResultSet}, vanno chiusi dal chiamante.
+	 *
+	 * @return la connessione al database.
+	 */
+	public Connection getConnection() {
+		return exposedConnection;
+	}
+
+}
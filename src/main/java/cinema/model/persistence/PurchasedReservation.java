@@ -0,0 +1,116 @@
+package cinema.model.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rappresenta una prenotazione acquistata letta dal meccanismo di persistenza,
+ * con tutti i dati necessari a rigenerarne il report.
+ *
+ * <p>
+ * L'importo pagato è noto solo per gli acquisti registrati dopo
+ * l'introduzione della tabella {@code Outbox}; per gli acquisti precedenti è
+ * null.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class PurchasedReservation {
+
+	/**
+	 * Codice identificativo della prenotazione.
+	 */
+	private long reservationId;
+
+	/**
+	 * Codice identificativo della proiezione della prenotazione.
+	 */
+	private int projectionId;
+
+	/**
+	 * Nome dello spettatore che ha effettuato l'acquisto.
+	 */
+	private String name;
+
+	/**
+	 * Cognome dello spettatore che ha effettuato l'acquisto.
+	 */
+	private String surname;
+
+	/**
+	 * E-mail dello spettatore che ha effettuato l'acquisto.
+	 */
+	private String email;
+
+	/**
+	 * Importo pagato al momento dell'acquisto, null se non registrato.
+	 */
+	private Double total;
+
+	/**
+	 * Posti acquistati, indicati dalla coppia {fila, colonna}.
+	 */
+	private List<int[]> seats;
+
+	/**
+	 * Costruttore della prenotazione acquistata, inizialmente senza posti e senza
+	 * importo pagato.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @param projectionId  codice identificativo della proiezione.
+	 * @param name          nome dello spettatore.
+	 * @param surname       cognome dello spettatore.
+	 * @param email         e-mail dello spettatore.
+	 */
+	public PurchasedReservation(long reservationId, int projectionId, String name, String surname, String email) {
+		this.reservationId = reservationId;
+		this.projectionId = projectionId;
+		this.name = name;
+		this.surname = surname;
+		this.email = email;
+		this.seats = new ArrayList<int[]>();
+	}
+
+	/**
+	 * Aggiunge un posto acquistato alla prenotazione.
+	 *
+	 * @param row fila del posto.
+	 * @param col colonna del posto.
+	 */
+	public void addSeat(int row, int col) {
+		seats.add(new int[] { row, col });
+	}
+
+	public long getReservationId() {
+		return reservationId;
+	}
+
+	public int getProjectionId() {
+		return projectionId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSurname() {
+		return surname;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public Double getTotal() {
+		return total;
+	}
+
+	public void setTotal(Double total) {
+		this.total = total;
+	}
+
+	public List<int[]> getSeats() {
+		return seats;
+	}
+
+}
@@ -0,0 +1,99 @@
+package cinema.model.persistence;
+
+/**
+ * Rappresenta una voce dell'indice dei report archiviati su disco: per ogni
+ * prenotazione indica il file che ne contiene il report e le informazioni
+ * necessarie a verificarlo, comprimerlo ed eliminarlo.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ReportEntry {
+
+	/**
+	 * Codice identificativo della prenotazione.
+	 */
+	private long reservationId;
+
+	/**
+	 * Percorso del file del report, relativo alla cartella dei report.
+	 */
+	private String path;
+
+	/**
+	 * Impronta SHA-256 del contenuto del report non compresso, in esadecimale.
+	 */
+	private String digest;
+
+	/**
+	 * Dimensione del file del report, in byte.
+	 */
+	private long size;
+
+	/**
+	 * Istante della proiezione della prenotazione, in millisecondi.
+	 */
+	private long projectionTime;
+
+	/**
+	 * Istante a partire dal quale il report può essere eliminato, in
+	 * millisecondi.
+	 */
+	private long expires;
+
+	/**
+	 * Indica se il file del report è compresso.
+	 */
+	private boolean compressed;
+
+	/**
+	 * Costruttore della voce dell'indice.
+	 *
+	 * @param reservationId  codice identificativo della prenotazione.
+	 * @param path           percorso del file, relativo alla cartella dei report.
+	 * @param digest         impronta SHA-256 del contenuto non compresso.
+	 * @param size           dimensione del file, in byte.
+	 * @param projectionTime istante della proiezione, in millisecondi.
+	 * @param expires        istante di scadenza del report, in millisecondi.
+	 * @param compressed     true se il file è compresso.
+	 */
+	public ReportEntry(long reservationId, String path, String digest, long size, long projectionTime, long expires,
+			boolean compressed) {
+		this.reservationId = reservationId;
+		this.path = path;
+		this.digest = digest;
+		this.size = size;
+		this.projectionTime = projectionTime;
+		this.expires = expires;
+		this.compressed = compressed;
+	}
+
+	public long getReservationId() {
+		return reservationId;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getDigest() {
+		return digest;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getProjectionTime() {
+		return projectionTime;
+	}
+
+	public long getExpires() {
+		return expires;
+	}
+
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+}
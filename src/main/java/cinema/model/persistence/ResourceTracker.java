@@ -0,0 +1,209 @@
+package cinema.model.persistence;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rileva le risorse JDBC ottenute durante l'uso di una connessione del pool e
+ * non ancora chiuse quando la connessione viene restituita.
+ *
+ * <p>
+ * Il rilevamento è attivo solo con {@code -Dcinema.persistence.debug=true}: la
+ * connessione sottostante e le istruzioni preparate della cache vengono
+ * restituite ai DAO avvolte in un proxy che registra, insieme al punto del
+ * codice in cui sono stati creati, le istruzioni ottenute direttamente dalla
+ * connessione (ad esempio con {@code createStatement()}) e tutti i
+ * {@code ResultSet}. La chiusura di una risorsa la rimuove dal registro; le
+ * risorse ancora aperte alla restituzione della connessione vengono segnalate,
+ * con il punto in cui sono state create, e rimosse dal registro.
+ *
+ * <p>
+ * Il registro tiene anche traccia del punto in cui la connessione è stata
+ * ottenuta, segnalato dal pool quando un altro thread attende troppo a lungo
+ * una connessione mai restituita.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+class ResourceTracker {
+
+	/**
+	 * Descrizione della connessione, usata nelle segnalazioni.
+	 */
+	private final String connectionName;
+
+	/**
+	 * Risorse aperte, con il punto del codice in cui sono state create.
+	 */
+	private final Map<Object, Throwable> openResources;
+
+	/**
+	 * Punto del codice in cui la connessione è stata ottenuta, o null se la
+	 * connessione è disponibile.
+	 */
+	private volatile Throwable borrowSite;
+
+	/**
+	 * Istante in cui la connessione è stata ottenuta, in millisecondi.
+	 */
+	private volatile long borrowedAt;
+
+	/**
+	 * Costruttore del registro.
+	 *
+	 * @param connectionName descrizione della connessione.
+	 */
+	ResourceTracker(String connectionName) {
+		this.connectionName = connectionName;
+		this.openResources = new IdentityHashMap<Object, Throwable>();
+	}
+
+	/**
+	 * Registra che la connessione è stata ottenuta dal pool.
+	 */
+	void borrowed() {
+		borrowedAt = System.currentTimeMillis();
+		borrowSite = new Throwable("Connessione " + connectionName + " ottenuta qui");
+	}
+
+	/**
+	 * Registra che la connessione è stata restituita al pool e segnala le risorse
+	 * ancora aperte.
+	 *
+	 * @return numero di risorse ancora aperte.
+	 */
+	int returned() {
+		borrowSite = null;
+		List<Throwable> leaks;
+		synchronized (openResources) {
+			leaks = new ArrayList<Throwable>(openResources.values());
+			openResources.clear();
+		}
+		for (Throwable site : leaks) {
+			System.err.println("[ConnectionPool] " + site.getMessage()
+					+ " e non chiuso prima della restituzione della connessione " + connectionName + ":");
+			site.printStackTrace();
+		}
+		return leaks.size();
+	}
+
+	/**
+	 * Segnala il punto in cui la connessione è stata ottenuta, se è in uso.
+	 */
+	void reportBorrow() {
+		Throwable site = borrowSite;
+		if (site == null)
+			return;
+		System.err.println("[ConnectionPool] Connessione " + connectionName + " in uso da "
+				+ (System.currentTimeMillis() - borrowedAt) + " ms (possibile connessione mai restituita):");
+		site.printStackTrace();
+	}
+
+	/**
+	 * Avvolge la connessione sottostante in modo da registrare le istruzioni
+	 * create dal chiamante e i relativi {@code ResultSet}.
+	 *
+	 * @param connection connessione sottostante.
+	 * @return la connessione da passare ai DAO.
+	 */
+	Connection wrap(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new Handler(connection));
+	}
+
+	/**
+	 * Avvolge un'istruzione preparata della cache, che appartiene alla connessione
+	 * e non viene registrata, in modo da registrare i {@code ResultSet} ottenuti.
+	 *
+	 * @param statement istruzione della cache.
+	 * @return l'istruzione da passare ai DAO.
+	 */
+	PreparedStatement wrap(PreparedStatement statement) {
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new Handler(statement));
+	}
+
+	/**
+	 * Registra una risorsa creata dal chiamante e la avvolge in un proxy.
+	 *
+	 * @param resource risorsa creata.
+	 * @return il proxy della risorsa.
+	 */
+	private Object track(Object resource) {
+		Class<?> type;
+		if (resource instanceof ResultSet)
+			type = ResultSet.class;
+		else if (resource instanceof CallableStatement)
+			type = CallableStatement.class;
+		else if (resource instanceof PreparedStatement)
+			type = PreparedStatement.class;
+		else
+			type = Statement.class;
+		Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new Handler(resource));
+		synchronized (openResources) {
+			openResources.put(proxy, new Throwable(type.getSimpleName() + " creato qui"));
+		}
+		return proxy;
+	}
+
+	/**
+	 * Inoltra le chiamate alla risorsa JDBC avvolta, registrando le risorse che
+	 * essa crea e la sua chiusura.
+	 */
+	private class Handler implements InvocationHandler {
+
+		/**
+		 * Risorsa avvolta.
+		 */
+		private final Object target;
+
+		/**
+		 * Costruttore del gestore delle chiamate.
+		 *
+		 * @param target risorsa avvolta.
+		 */
+		private Handler(Object target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "close":
+				synchronized (openResources) {
+					openResources.remove(proxy);
+				}
+				break;
+			default:
+				break;
+			}
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+			// Le istruzioni create dalla connessione e tutti i ResultSet vanno chiusi
+			// dal chiamante
+			if (result instanceof ResultSet || (target instanceof Connection && result instanceof Statement))
+				return track(result);
+			return result;
+		}
+	}
+
+}
@@ -1,10 +1,13 @@
 package cinema.model.persistence.dao.interfaces;
 
 import java.sql.SQLException;
+import java.util.SortedMap;
 
 import cinema.model.cinema.util.RoomException;
 import cinema.model.projection.Projection;
+import cinema.model.projection.ProjectionSeatMap;
 import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.SeatAvailabilityException;
 
 /**
  * Contiene i metodi necessari per mantenere la persistenza dei dati riguardanti
@@ -25,16 +28,20 @@ public interface IOccupiedSeatDao {
 	public void setOccupiedSeats(Projection projection) throws SQLException;
 
 	/**
-	 * Occupa localmente i posti di una proiezioni in modo da sincronizzare i dati
-	 * locali con il meccanismo di persistenza dei dati.
+	 * Rende persistente l'occupazione dei posti di una prenotazione.
 	 * 
 	 * @param reservation prenotazione di cui si vuole occupare i posti.
-	 * @throws SQLException  se vengono riscontrati errori nell'interazione col
-	 *                       meccanismo di persistenza.
-	 * @throws RoomException se vengono riscontrati errori nell'identificazione dei
-	 *                       posti all'interno della sala.
+	 * @throws SQLException              se vengono riscontrati errori
+	 *                                   nell'interazione col meccanismo di
+	 *                                   persistenza.
+	 * @throws RoomException             se vengono riscontrati errori
+	 *                                   nell'identificazione dei posti all'interno
+	 *                                   della sala.
+	 * @throws SeatAvailabilityException se almeno uno dei posti risulta già
+	 *                                   occupato nel meccanismo di persistenza.
 	 */
-	public void putOccupiedSeatsFromReservation(Reservation reservation) throws SQLException, RoomException;
+	public void putOccupiedSeatsFromReservation(Reservation reservation)
+			throws SQLException, RoomException, SeatAvailabilityException;
 
 	/**
 	 * Controlla se il posto della proiezione {@code projectionId} identificato
@@ -50,4 +57,40 @@ public interface IOccupiedSeatDao {
 	 */
 	public boolean getSeatOccupationStatus(int projectionId, int row, int column) throws SQLException;
 
+	/**
+	 * Restituisce l'occupazione di tutti i posti della proiezione
+	 * {@code projectionId} recuperandola con una sola interrogazione.
+	 * 
+	 * @param projectionId identificativo della proiezione.
+	 * @return mappa dei posti della proiezione, o null se la proiezione non è
+	 *         presente.
+	 * @throws SQLException  se vengono riscontrati errori nell'interazione col
+	 *                       meccanismo di persistenza.
+	 * @throws RoomException se vengono riscontrati errori nell'identificazione dei
+	 *                       posti all'interno della sala.
+	 */
+	public ProjectionSeatMap getOccupiedSeatMap(int projectionId) throws SQLException, RoomException;
+
+	/**
+	 * Restituisce l'identificativo dell'ultimo posto occupato registrato.
+	 * 
+	 * @return l'identificativo dell'ultimo posto occupato, o 0 se non ce ne sono.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione col
+	 *                      meccanismo di persistenza.
+	 */
+	public long getLastOccupiedSeatId() throws SQLException;
+
+	/**
+	 * Restituisce un lotto di posti occupati registrati dopo un posto già noto, in
+	 * ordine di registrazione.
+	 * 
+	 * @param afterId vengono restituiti solo i posti con identificativo maggiore.
+	 * @param limit   numero massimo di posti da restituire.
+	 * @return i posti occupati, indicati dalla terna {proiezione, fila, colonna} e
+	 *         indicizzati per identificativo.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione col
+	 *                      meccanismo di persistenza.
+	 */
+	public SortedMap<Long, int[]> getOccupiedSeatsAfter(long afterId, int limit) throws SQLException;
+
 }
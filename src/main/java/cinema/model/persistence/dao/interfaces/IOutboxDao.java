@@ -0,0 +1,129 @@
+package cinema.model.persistence.dao.interfaces;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import cinema.model.persistence.OutboxMessage;
+import cinema.model.reservation.Reservation;
+
+/**
+ * Contiene i metodi necessari per mantenere la persistenza delle ricevute degli
+ * acquisti in attesa di essere consegnate agli spettatori.
+ *
+ * <p>
+ * Ogni acquisto registra un messaggio nella stessa transazione in cui vengono
+ * resi persistenti i dati della prenotazione: in questo modo nessuna ricevuta
+ * viene persa se l'applicazione si arresta prima di averla inviata. Ogni
+ * prenotazione ha al più un messaggio, che resta in attesa finché non viene
+ * segnato come consegnato.
+ *
+ * <p>
+ * Più istanze dell'applicazione possono consegnare i messaggi dello stesso
+ * database: prima dell'invio ogni messaggio viene riservato da un'istanza per
+ * un tempo limitato, durante il quale le altre istanze lo ignorano.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public interface IOutboxDao {
+	/**
+	 * Registra il messaggio con la ricevuta di una prenotazione acquistata, se non
+	 * è già presente.
+	 *
+	 * @param reservation prenotazione acquistata.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public void putMessage(Reservation reservation) throws SQLException;
+
+	/**
+	 * Restituisce i messaggi non ancora consegnati, non riservati e per i quali è
+	 * possibile effettuare un nuovo tentativo di consegna, dal meno recente.
+	 *
+	 * @param limit       numero massimo di messaggi da restituire.
+	 * @param maxAttempts numero di tentativi falliti oltre il quale un messaggio
+	 *                    non viene più restituito.
+	 * @param now         istante corrente, in millisecondi.
+	 * @return i messaggi in attesa di consegna.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public List<OutboxMessage> getPendingMessages(int limit, int maxAttempts, long now) throws SQLException;
+
+	/**
+	 * Riserva il messaggio di una prenotazione per la consegna, se non è già
+	 * stato consegnato e non è riservato da un'altra istanza.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @param owner         identificativo dell'istanza che consegna il messaggio.
+	 * @param now           istante corrente, in millisecondi.
+	 * @param leaseUntil    istante fino al quale il messaggio resta riservato, in
+	 *                      millisecondi.
+	 * @return true se il messaggio è stato riservato, false se è già stato
+	 *         consegnato o riservato da un'altra istanza.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public boolean claimMessage(long reservationId, String owner, long now, long leaseUntil) throws SQLException;
+
+	/**
+	 * Annulla la riserva del messaggio di una prenotazione senza registrare un
+	 * tentativo di consegna, in modo che possa essere consegnato subito da
+	 * un'altra istanza.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @param owner         identificativo dell'istanza che ha riservato il
+	 *                      messaggio.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public void releaseMessage(long reservationId, String owner) throws SQLException;
+
+	/**
+	 * Segna come consegnato il messaggio di una prenotazione.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @param time          istante della consegna, in millisecondi.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public void setMessageDelivered(long reservationId, long time) throws SQLException;
+
+	/**
+	 * Registra un tentativo di consegna fallito del messaggio di una prenotazione
+	 * e ne annulla la riserva. Il tentativo non viene registrato se il messaggio
+	 * è stato nel frattempo riservato da un'altra istanza.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @param owner         identificativo dell'istanza che ha riservato il
+	 *                      messaggio.
+	 * @param nextAttempt   istante a partire dal quale il messaggio può essere
+	 *                      consegnato di nuovo, in millisecondi.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public void setMessageFailed(long reservationId, String owner, long nextAttempt) throws SQLException;
+
+	/**
+	 * Azzera i tentativi falliti di tutti i messaggi non ancora consegnati, in modo
+	 * che vengano consegnati di nuovo.
+	 *
+	 * @return il numero di messaggi rimessi in attesa.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public int resetFailedMessages() throws SQLException;
+
+	/**
+	 * Restituisce gli importi pagati registrati nei messaggi di un lotto di
+	 * prenotazioni, consegnati o meno.
+	 *
+	 * @param reservationIds identificativi delle prenotazioni.
+	 * @return gli importi pagati, indicizzati per identificativo della
+	 *         prenotazione.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public Map<Long, Double> getTotals(List<Long> reservationIds) throws SQLException;
+}
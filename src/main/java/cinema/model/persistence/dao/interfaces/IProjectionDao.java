@@ -2,6 +2,7 @@ package cinema.model.persistence.dao.interfaces;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.SortedMap;
 
 import cinema.model.cinema.util.RoomException;
 import cinema.model.persistence.util.PersistenceException;
@@ -83,4 +84,30 @@ public interface IProjectionDao {
 	 */
 	public void putProjection(Projection newProjection) throws SQLException;
 
+	/**
+	 * Restituisce l'identificativo dell'ultima modifica registrata alle
+	 * proiezioni (inserimento, modifica o eliminazione di una proiezione, o
+	 * modifica delle dimensioni della sua sala).
+	 * 
+	 * @return l'identificativo dell'ultima modifica, o 0 se non ne sono state
+	 *         registrate.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public long getLastProjectionChangeId() throws SQLException;
+
+	/**
+	 * Restituisce un lotto di modifiche alle proiezioni successive ad una
+	 * modifica già nota, in ordine di registrazione.
+	 * 
+	 * @param afterId vengono restituite solo le modifiche con identificativo
+	 *                maggiore.
+	 * @param limit   numero massimo di modifiche da restituire.
+	 * @return gli identificativi delle proiezioni modificate, indicizzati per
+	 *         identificativo della modifica.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public SortedMap<Long, Integer> getProjectionChanges(long afterId, int limit) throws SQLException;
+
 }
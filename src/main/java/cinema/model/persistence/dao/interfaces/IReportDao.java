@@ -0,0 +1,83 @@
+package cinema.model.persistence.dao.interfaces;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import cinema.model.persistence.ReportEntry;
+
+/**
+ * Contiene i metodi necessari per mantenere l'indice dei report delle
+ * prenotazioni archiviati su disco.
+ *
+ * <p>
+ * L'indice associa ad ogni prenotazione al più un report, recuperabile
+ * direttamente tramite l'identificativo della prenotazione.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public interface IReportDao {
+	/**
+	 * Inserisce nell'indice il report di una prenotazione, sostituendo quello
+	 * eventualmente già presente.
+	 *
+	 * @param entry voce dell'indice da inserire.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public void putReport(ReportEntry entry) throws SQLException;
+
+	/**
+	 * Restituisce la voce dell'indice del report di una prenotazione.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @return la voce dell'indice, o null se la prenotazione non ha un report
+	 *         archiviato.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public ReportEntry getReport(long reservationId) throws SQLException;
+
+	/**
+	 * Restituisce i report non compressi delle proiezioni iniziate prima
+	 * dell'istante indicato.
+	 *
+	 * @param projectionBefore istante, in millisecondi.
+	 * @param limit            numero massimo di report da restituire.
+	 * @return i report da comprimere.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public List<ReportEntry> getReportsToCompress(long projectionBefore, int limit) throws SQLException;
+
+	/**
+	 * Restituisce i report scaduti all'istante indicato.
+	 *
+	 * @param now   istante corrente, in millisecondi.
+	 * @param limit numero massimo di report da restituire.
+	 * @return i report da eliminare.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public List<ReportEntry> getExpiredReports(long now, int limit) throws SQLException;
+
+	/**
+	 * Registra la compressione del report di una prenotazione.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @param path          percorso del file compresso.
+	 * @param size          dimensione del file compresso, in byte.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public void setReportCompressed(long reservationId, String path, long size) throws SQLException;
+
+	/**
+	 * Elimina dall'indice il report di una prenotazione.
+	 *
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public void deleteReport(long reservationId) throws SQLException;
+}
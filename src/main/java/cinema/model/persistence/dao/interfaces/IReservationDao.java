@@ -1,8 +1,11 @@
 package cinema.model.persistence.dao.interfaces;
 
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
 
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.PurchasedReservation;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.reservation.Reservation;
 
@@ -72,4 +75,46 @@ public interface IReservationDao {
 	 */
 	public void deleteReservation(long reservationId) throws SQLException;
 
+	/**
+	 * Restituisce un lotto di prenotazioni acquistate per una proiezione, con i
+	 * posti acquistati, in ordine di identificativo.
+	 *
+	 * <p>
+	 * Per leggere tutte le prenotazioni un lotto alla volta si passa come
+	 * {@code afterId} l'identificativo dell'ultima prenotazione del lotto
+	 * precedente. L'importo pagato non viene impostato.
+	 *
+	 * @param projectionId identificativo della proiezione.
+	 * @param afterId      vengono restituite solo le prenotazioni con
+	 *                     identificativo maggiore.
+	 * @param limit        numero massimo di prenotazioni da restituire.
+	 * @return le prenotazioni acquistate.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public List<PurchasedReservation> getPurchasedReservations(int projectionId, long afterId, int limit)
+			throws SQLException;
+
+	/**
+	 * Restituisce un lotto di prenotazioni acquistate per le proiezioni comprese
+	 * in un intervallo di tempo, con i posti acquistati, in ordine di
+	 * identificativo.
+	 *
+	 * <p>
+	 * Per leggere tutte le prenotazioni un lotto alla volta si passa come
+	 * {@code afterId} l'identificativo dell'ultima prenotazione del lotto
+	 * precedente. L'importo pagato non viene impostato.
+	 *
+	 * @param from    inizio dell'intervallo (incluso).
+	 * @param to      fine dell'intervallo (escluso).
+	 * @param afterId vengono restituite solo le prenotazioni con identificativo
+	 *                maggiore.
+	 * @param limit   numero massimo di prenotazioni da restituire.
+	 * @return le prenotazioni acquistate.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public List<PurchasedReservation> getPurchasedReservations(LocalDateTime from, LocalDateTime to, long afterId,
+			int limit) throws SQLException;
+
 }
@@ -0,0 +1,33 @@
+package cinema.model.persistence.dao.interfaces;
+
+import java.sql.SQLException;
+
+/**
+ * Contiene i metodi necessari per riservare blocchi di identificativi univoci
+ * per le entità gestite dal sistema.
+ * 
+ * <p>
+ * Ogni sequenza è associata ad una tabella e mantiene in modo persistente il
+ * prossimo identificativo da assegnare: un blocco riservato non viene mai più
+ * restituito, anche dopo il riavvio dell'applicazione o da parte di altre
+ * istanze dell'applicazione che condividono lo stesso meccanismo di
+ * persistenza.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public interface ISequenceDao {
+	/**
+	 * Riserva un blocco di identificativi consecutivi per la tabella indicata.
+	 * 
+	 * <p>
+	 * Il blocco non contiene mai identificativi già presenti nella tabella.
+	 * 
+	 * @param table nome della tabella a cui appartengono gli identificativi.
+	 * @param size  numero di identificativi da riservare.
+	 * @return il primo identificativo del blocco riservato.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public long reserveIds(String table, int size) throws SQLException;
+}
@@ -1,11 +1,12 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
 import cinema.model.persistence.dao.interfaces.ICinemaDao;
 
 /**
@@ -18,18 +19,18 @@ import cinema.model.persistence.dao.interfaces.ICinemaDao;
 public class CinemaRdbDao implements ICinemaDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool delle connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
 	 */
-	public CinemaRdbDao(Connection connection) {
-		this.connection = connection;
+	public CinemaRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
@@ -39,21 +40,24 @@ public class CinemaRdbDao implements ICinemaDao {
 	@Override
 	public HashMap<String, String> getAllCinemaInfo(int cinemaId) throws SQLException {
 		String sql = "SELECT * FROM Cinema WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, cinemaId);
-		ResultSet result = pstatement.executeQuery();
-		HashMap<String, String> cinemaInfo = new HashMap<String, String>();
-		cinemaInfo.put("name", result.getString("name"));
-		cinemaInfo.put("city", result.getString("city"));
-		cinemaInfo.put("country", result.getString("country"));
-		cinemaInfo.put("zipCode", result.getString("zipCode"));
-		cinemaInfo.put("address", result.getString("address"));
-		cinemaInfo.put("email", result.getString("email"));
-		cinemaInfo.put("mailPassword", result.getString("mailPassword"));
-		cinemaInfo.put("adminPassword", result.getString("adminPassword"));
-		cinemaInfo.put("logoURL", result.getString("logoURL"));
-		cinemaInfo.put("discountStrategy", result.getString("discountstrategy"));
-		return cinemaInfo;
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, cinemaId);
+			try (ResultSet result = pstatement.executeQuery()) {
+				HashMap<String, String> cinemaInfo = new HashMap<String, String>();
+				cinemaInfo.put("name", result.getString("name"));
+				cinemaInfo.put("city", result.getString("city"));
+				cinemaInfo.put("country", result.getString("country"));
+				cinemaInfo.put("zipCode", result.getString("zipCode"));
+				cinemaInfo.put("address", result.getString("address"));
+				cinemaInfo.put("email", result.getString("email"));
+				cinemaInfo.put("mailPassword", result.getString("mailPassword"));
+				cinemaInfo.put("adminPassword", result.getString("adminPassword"));
+				cinemaInfo.put("logoURL", result.getString("logoURL"));
+				cinemaInfo.put("discountStrategy", result.getString("discountstrategy"));
+				return cinemaInfo;
+			}
+		}
 	}
 
 	/**
@@ -63,10 +67,12 @@ public class CinemaRdbDao implements ICinemaDao {
 	@Override
 	public void setPassword(int cinemaId, String newPassword) throws SQLException {
 		String sql = "UPDATE Cinema SET adminPassword = ? WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setString(1, newPassword);
-		pstatement.setInt(2, cinemaId);
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setString(1, newPassword);
+			pstatement.setInt(2, cinemaId);
+			pstatement.executeUpdate();
+		}
 	}
 
 	/**
@@ -76,10 +82,12 @@ public class CinemaRdbDao implements ICinemaDao {
 	@Override
 	public void setDiscountStrategy(int cinemaId, String discountStrategyName) throws SQLException {
 		String sql = "UPDATE Cinema SET discountstrategy = ? WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setString(1, discountStrategyName);
-		pstatement.setInt(2, cinemaId);
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setString(1, discountStrategyName);
+			pstatement.setInt(2, cinemaId);
+			pstatement.executeUpdate();
+		}
 	}
 
 }
@@ -1,11 +1,12 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
 import cinema.model.persistence.dao.interfaces.ICouponDao;
 import cinema.model.reservation.discount.coupon.Coupon;
 import cinema.model.reservation.discount.coupon.util.CouponException;
@@ -20,18 +21,18 @@ import cinema.model.reservation.discount.coupon.util.CouponException;
 public class CouponRdbDao implements ICouponDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool delle connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
 	 */
-	public CouponRdbDao(Connection connection) {
-		this.connection = connection;
+	public CouponRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
@@ -41,14 +42,15 @@ public class CouponRdbDao implements ICouponDao {
 	@Override
 	public ArrayList<Coupon> getAllCoupons() throws SQLException, CouponException {
 		String sql = "SELECT * FROM Coupon;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Coupon> coupons = new ArrayList<Coupon>();
-		while (result.next()) {
-			coupons.add(
-					new Coupon(result.getString("promocode"), result.getDouble("amount"), result.getBoolean("used")));
+		try (PooledConnection connection = connectionPool.getReader();
+				ResultSet result = connection.prepareStatement(sql).executeQuery()) {
+			ArrayList<Coupon> coupons = new ArrayList<Coupon>();
+			while (result.next()) {
+				coupons.add(new Coupon(result.getString("promocode"), result.getDouble("amount"),
+						result.getBoolean("used")));
+			}
+			return coupons;
 		}
-		return coupons;
 	}
 
 	/**
@@ -58,11 +60,13 @@ public class CouponRdbDao implements ICouponDao {
 	@Override
 	public Coupon getCoupon(String promocode) throws SQLException, CouponException {
 		String sql = "SELECT * FROM Coupon WHERE promocode = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setString(1, promocode);
-		ResultSet result = pstatement.executeQuery();
-		Coupon coupon = new Coupon(promocode, result.getDouble("amount"), result.getBoolean("used"));
-		return coupon;
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setString(1, promocode);
+			try (ResultSet result = pstatement.executeQuery()) {
+				return new Coupon(promocode, result.getDouble("amount"), result.getBoolean("used"));
+			}
+		}
 	}
 
 	/**
@@ -72,9 +76,11 @@ public class CouponRdbDao implements ICouponDao {
 	@Override
 	public void setCouponUsed(String promocode) throws SQLException {
 		String sql = "UPDATE Coupon SET used = 1 WHERE promocode = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setString(1, promocode);
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setString(1, promocode);
+			pstatement.executeUpdate();
+		}
 	}
 
 }
\ No newline at end of file
@@ -1,12 +1,13 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
 import cinema.model.persistence.dao.interfaces.IDiscountDao;
 import cinema.model.reservation.discount.types.DiscountAge;
 import cinema.model.reservation.discount.types.DiscountDay;
@@ -22,18 +23,18 @@ import cinema.model.reservation.discount.types.DiscountNumberSpectators;
 public class DiscountRdbDao implements IDiscountDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool delle connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
 	 */
-	public DiscountRdbDao(Connection connection) {
-		this.connection = connection;
+	public DiscountRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
@@ -43,15 +44,16 @@ public class DiscountRdbDao implements IDiscountDao {
 	@Override
 	public DiscountDay getAllDayDiscounts() throws SQLException {
 		String sql = "SELECT * FROM Discount WHERE type = \"DAY\";";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		DiscountDay discounts = new DiscountDay(result.getInt("id"));
-		while (result.next()) {
-			discounts.addDayDiscount(
-					LocalDate.parse(result.getString("date"), DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-					result.getDouble("percentage"));
+		try (PooledConnection connection = connectionPool.getReader();
+				ResultSet result = connection.prepareStatement(sql).executeQuery()) {
+			DiscountDay discounts = new DiscountDay(result.getInt("id"));
+			while (result.next()) {
+				discounts.addDayDiscount(
+						LocalDate.parse(result.getString("date"), DateTimeFormatter.ofPattern("yyyy-MM-dd")),
+						result.getDouble("percentage"));
+			}
+			return discounts;
 		}
-		return discounts;
 	}
 
 	/**
@@ -61,10 +63,11 @@ public class DiscountRdbDao implements IDiscountDao {
 	@Override
 	public DiscountAge getAgeDiscounts() throws SQLException {
 		String sql = "SELECT * FROM Discount WHERE type = \"AGE\";";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		return new DiscountAge(result.getInt("minage"), result.getInt("maxage"), result.getDouble("percentage"),
-				result.getInt("id"));
+		try (PooledConnection connection = connectionPool.getReader();
+				ResultSet result = connection.prepareStatement(sql).executeQuery()) {
+			return new DiscountAge(result.getInt("minage"), result.getInt("maxage"), result.getDouble("percentage"),
+					result.getInt("id"));
+		}
 	}
 
 	/**
@@ -74,10 +77,11 @@ public class DiscountRdbDao implements IDiscountDao {
 	@Override
 	public DiscountNumberSpectators getGroupDiscounts() throws SQLException {
 		String sql = "SELECT * FROM Discount WHERE type = \"NUMBER\";";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		return new DiscountNumberSpectators(result.getInt("numberpeople"), result.getDouble("percentage"),
-				result.getInt("id"));
+		try (PooledConnection connection = connectionPool.getReader();
+				ResultSet result = connection.prepareStatement(sql).executeQuery()) {
+			return new DiscountNumberSpectators(result.getInt("numberpeople"), result.getDouble("percentage"),
+					result.getInt("id"));
+		}
 	}
 
 }
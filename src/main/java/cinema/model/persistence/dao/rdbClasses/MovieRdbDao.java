@@ -1,6 +1,5 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -8,6 +7,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 import cinema.model.Movie;
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
 import cinema.model.persistence.dao.interfaces.IMovieDao;
 
 /**
@@ -20,18 +21,18 @@ import cinema.model.persistence.dao.interfaces.IMovieDao;
 public class MovieRdbDao implements IMovieDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool delle connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
 	 */
-	public MovieRdbDao(Connection connection) {
-		this.connection = connection;
+	public MovieRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
@@ -41,16 +42,13 @@ public class MovieRdbDao implements IMovieDao {
 	@Override
 	public Movie getMovie(int id) throws SQLException {
 		String sql = "SELECT * FROM Movie WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, id);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<String> genres = new ArrayList<String>(Arrays.asList(result.getString("genres").split(",")));
-		ArrayList<String> cast = new ArrayList<String>(Arrays.asList(result.getString("cast").split(",")));
-		ArrayList<String> directors = new ArrayList<String>(Arrays.asList(result.getString("directors").split(",")));
-		Movie movie = new Movie(id, result.getString("title"), result.getString("description"), genres, directors, cast,
-				result.getInt("rating"), result.getInt("duration"), result.getString("imageurl"),
-				result.getString("trailerurl"));
-		return movie;
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, id);
+			try (ResultSet result = pstatement.executeQuery()) {
+				return getMovieFromResult(result, id);
+			}
+		}
 	}
 
 	/**
@@ -60,19 +58,36 @@ public class MovieRdbDao implements IMovieDao {
 	@Override
 	public ArrayList<Movie> getAllMovies() throws SQLException {
 		String sql = "SELECT * FROM Movie;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Movie> movies = new ArrayList<Movie>();
-		while (result.next()) {
-			ArrayList<String> genres = new ArrayList<String>(Arrays.asList(result.getString("genres").split(",")));
-			ArrayList<String> cast = new ArrayList<String>(Arrays.asList(result.getString("cast").split(",")));
-			ArrayList<String> directors = new ArrayList<String>(
-					Arrays.asList(result.getString("directors").split(",")));
-			movies.add(new Movie(result.getInt("id"), result.getString("title"), result.getString("description"),
-					genres, directors, cast, result.getInt("rating"), result.getInt("duration"),
-					result.getString("imageurl"), result.getString("trailerurl")));
+		try (PooledConnection connection = connectionPool.getReader();
+				ResultSet result = connection.prepareStatement(sql).executeQuery()) {
+			ArrayList<Movie> movies = new ArrayList<Movie>();
+			while (result.next()) {
+				movies.add(getMovieFromResult(result, result.getInt("id")));
+			}
+			return movies;
 		}
-		return movies;
+	}
+
+	/**
+	 * Costruisce il film descritto dalla riga corrente di {@code result}.
+	 * 
+	 * <p>
+	 * Il metodo è condiviso con le interrogazioni che recuperano i film insieme ad
+	 * altre tabelle, purché la riga contenga le colonne della tabella
+	 * {@code Movie} con i loro nomi originali.
+	 * 
+	 * @param result risultato di un'interrogazione posizionato sulla riga del film.
+	 * @param id     codice identificativo del film.
+	 * @return il film descritto dalla riga corrente.
+	 * @throws SQLException se vengono riscontrati errori nella lettura della riga.
+	 */
+	static Movie getMovieFromResult(ResultSet result, int id) throws SQLException {
+		ArrayList<String> genres = new ArrayList<String>(Arrays.asList(result.getString("genres").split(",")));
+		ArrayList<String> cast = new ArrayList<String>(Arrays.asList(result.getString("cast").split(",")));
+		ArrayList<String> directors = new ArrayList<String>(Arrays.asList(result.getString("directors").split(",")));
+		return new Movie(id, result.getString("title"), result.getString("description"), genres, directors, cast,
+				result.getInt("rating"), result.getInt("duration"), result.getString("imageurl"),
+				result.getString("trailerurl"));
 	}
 
 }
@@ -1,16 +1,20 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import cinema.model.cinema.PhysicalSeat;
-import cinema.model.cinema.Room;
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
 import cinema.model.persistence.dao.interfaces.IOccupiedSeatDao;
 import cinema.model.projection.Projection;
+import cinema.model.projection.ProjectionSeatMap;
 import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.SeatAvailabilityException;
 
 /**
  * Si interfaccia con un database relazionale per implementare la persistenza
@@ -23,18 +27,18 @@ import cinema.model.reservation.Reservation;
 public class OccupiedSeatRdbDao implements IOccupiedSeatDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool delle connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
 	 */
-	public OccupiedSeatRdbDao(Connection connection) {
-		this.connection = connection;
+	public OccupiedSeatRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
@@ -45,22 +49,24 @@ public class OccupiedSeatRdbDao implements IOccupiedSeatDao {
 	@Override
 	public void setOccupiedSeats(Projection projection) throws SQLException {
 		String sql = "SELECT * FROM OccupiedSeat WHERE projection = ?";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, projection.getId());
-		ResultSet result = pstatement.executeQuery();
-		while (result.next()) {
-			int row = result.getInt("row");
-			int column = result.getInt("column");
-			try {
-				projection.takeSeat(row, column);
-			} catch (RoomException e) {
-				// Trattando dati sul database non si entra mai in questo catch essendo che non
-				// si scatena
-				// mai l'eccezione siccome i dati sono validi se sono nel database
-				System.out.println(e.getMessage());
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, projection.getId());
+			try (ResultSet result = pstatement.executeQuery()) {
+				while (result.next()) {
+					int row = result.getInt("row");
+					int column = result.getInt("column");
+					try {
+						projection.takeSeat(row, column);
+					} catch (RoomException e) {
+						// Trattando dati sul database non si entra mai in questo catch essendo che non
+						// si scatena
+						// mai l'eccezione siccome i dati sono validi se sono nel database
+						System.out.println(e.getMessage());
+					}
+				}
 			}
 		}
-
 	}
 
 	/**
@@ -70,34 +76,137 @@ public class OccupiedSeatRdbDao implements IOccupiedSeatDao {
 	@Override
 	public boolean getSeatOccupationStatus(int projectionId, int row, int column) throws SQLException {
 		String sql = "SELECT * FROM OccupiedSeat WHERE projection = ? AND row = ? AND column = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, projectionId);
-		pstatement.setInt(2, row);
-		pstatement.setInt(3, column);
-		ResultSet result = pstatement.executeQuery();
-		if (result.next())
-			return false;
-		return true;
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, projectionId);
+			pstatement.setInt(2, row);
+			pstatement.setInt(3, column);
+			try (ResultSet result = pstatement.executeQuery()) {
+				return !result.next();
+			}
+		}
 	}
 
 	/**
 	 * Esegue la query sul database relazionale che implementa le persistenza
 	 * dell'occupazione dei posti di una prenotazione il cui pagamento è andato a
 	 * buon fine.
+	 * 
+	 * <p>
+	 * Gli inserimenti di tutti i posti vengono inviati al database in un unico
+	 * batch. La violazione della chiave primaria della tabella
+	 * {@code OccupiedSeat} indica che uno dei posti è già stato occupato.
 	 */
 	@Override
-	public void putOccupiedSeatsFromReservation(Reservation reservation) throws SQLException, RoomException {
-		for (PhysicalSeat ps : reservation.getSeats()) {
-			String coordinates = reservation.getProjection().getSeatCoordinates(ps);
-			int row = Room.rowLetterToRowIndex(coordinates.replaceAll("\\d", ""));
-			int col = Integer.valueOf(coordinates.replaceAll("[\\D]", "")) - 1;
-			String sql = "INSERT INTO OccupiedSeat(projection, row, column, reservation) VALUES(?, ?, ?, ?);";
+	public void putOccupiedSeatsFromReservation(Reservation reservation)
+			throws SQLException, RoomException, SeatAvailabilityException {
+		String sql = "INSERT INTO OccupiedSeat(projection, row, column, reservation) VALUES(?, ?, ?, ?);";
+		try (PooledConnection connection = connectionPool.getWriter()) {
 			PreparedStatement pstatement = connection.prepareStatement(sql);
-			pstatement.setInt(1, reservation.getProjection().getId());
-			pstatement.setInt(2, row);
-			pstatement.setInt(3, col);
-			pstatement.setLong(4, reservation.getProgressive());
-			pstatement.executeUpdate();
+			for (PhysicalSeat ps : reservation.getSeats()) {
+				pstatement.setInt(1, reservation.getProjection().getId());
+				pstatement.setInt(2, ps.getRow());
+				pstatement.setInt(3, ps.getCol());
+				pstatement.setLong(4, reservation.getProgressive());
+				pstatement.addBatch();
+			}
+			try {
+				pstatement.executeBatch();
+			} catch (SQLException e) {
+				if (isConstraintViolation(e))
+					throw new SeatAvailabilityException("Uno dei posti selezionati è già stato occupato.");
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Verifica se un errore del database relazionale è dovuto alla violazione di un
+	 * vincolo (per questa tabella, la chiave primaria).
+	 * 
+	 * <p>
+	 * SQLite segnala la violazione con il codice di errore 19
+	 * ({@code SQLITE_CONSTRAINT}); le eccezioni lanciate durante l'esecuzione di un
+	 * batch ne riportano solo il nome nel messaggio.
+	 * 
+	 * @param e errore riscontrato.
+	 * @return true se l'errore è dovuto alla violazione di un vincolo.
+	 */
+	private static boolean isConstraintViolation(SQLException e) {
+		for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+			if ((cause.getErrorCode() & 0xff) == 19
+					|| (cause.getMessage() != null && cause.getMessage().contains("SQLITE_CONSTRAINT")))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Esegue la query sul database relazionale che recupera, insieme alle
+	 * dimensioni della sala, tutti i posti occupati di una proiezione.
+	 */
+	@Override
+	public ProjectionSeatMap getOccupiedSeatMap(int projectionId) throws SQLException, RoomException {
+		String sql = "SELECT Room.rows AS rows, Room.columns AS columns, OccupiedSeat.row AS seatRow, "
+				+ "OccupiedSeat.column AS seatColumn FROM Projection JOIN Room ON Projection.room = Room.id "
+				+ "LEFT JOIN OccupiedSeat ON OccupiedSeat.projection = Projection.id WHERE Projection.id = ?;";
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, projectionId);
+			try (ResultSet result = pstatement.executeQuery()) {
+				ProjectionSeatMap seatMap = null;
+				while (result.next()) {
+					if (seatMap == null)
+						seatMap = new ProjectionSeatMap(projectionId, result.getInt("rows"), result.getInt("columns"));
+					int row = result.getInt("seatRow");
+					if (result.wasNull())
+						continue;
+					seatMap.setOccupied(row, result.getInt("seatColumn"));
+				}
+				return seatMap;
+			}
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare l'identificativo
+	 * dell'ultimo posto occupato, usando il {@code rowid} della tabella
+	 * {@code OccupiedSeat}.
+	 */
+	@Override
+	public long getLastOccupiedSeatId() throws SQLException {
+		String sql = "SELECT IFNULL(MAX(rowid), 0) AS lastid FROM OccupiedSeat;";
+		try (PooledConnection connection = connectionPool.getReader();
+				ResultSet result = connection.prepareStatement(sql).executeQuery()) {
+			return result.getLong("lastid");
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare i posti occupati
+	 * dopo un posto già noto.
+	 * 
+	 * <p>
+	 * I posti occupati non vengono mai eliminati e le scritture sul database sono
+	 * serializzate, quindi il {@code rowid} cresce nell'ordine in cui gli acquisti
+	 * vengono resi persistenti: la ricerca sulla chiave {@code rowid} restituisce
+	 * esattamente i posti occupati dopo quello indicato.
+	 */
+	@Override
+	public SortedMap<Long, int[]> getOccupiedSeatsAfter(long afterId, int limit) throws SQLException {
+		String sql = "SELECT rowid AS id, projection, row, column FROM OccupiedSeat WHERE rowid > ? "
+				+ "ORDER BY rowid LIMIT ?;";
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, afterId);
+			pstatement.setInt(2, limit);
+			try (ResultSet result = pstatement.executeQuery()) {
+				SortedMap<Long, int[]> seats = new TreeMap<Long, int[]>();
+				while (result.next())
+					seats.put(result.getLong("id"),
+							new int[] { result.getInt("projection"), result.getInt("row"), result.getInt("column") });
+				return seats;
+			}
 		}
 	}
 
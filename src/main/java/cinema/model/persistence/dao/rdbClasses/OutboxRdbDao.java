@@ -0,0 +1,255 @@
+package cinema.model.persistence.dao.rdbClasses;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.OutboxMessage;
+import cinema.model.persistence.PooledConnection;
+import cinema.model.persistence.dao.interfaces.IOutboxDao;
+import cinema.model.reservation.Reservation;
+
+/**
+ * Si interfaccia con un database relazionale per implementare la persistenza
+ * delle ricevute da consegnare, memorizzate nella tabella {@code Outbox}.
+ *
+ * <p>
+ * I messaggi in attesa vengono letti insieme ai dati della prenotazione e ai
+ * posti occupati con un'unica interrogazione, un lotto alla volta. Un messaggio
+ * viene riservato con un aggiornamento condizionato (colonne {@code owner} e
+ * {@code lease}), che riesce per una sola istanza dell'applicazione.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class OutboxRdbDao implements IOutboxDao {
+
+	/**
+	 * Pool delle connessioni al database.
+	 */
+	private ConnectionPool connectionPool;
+
+	/**
+	 * Indica se è già stata verificata l'esistenza della tabella dei messaggi.
+	 */
+	private volatile boolean initialized;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database relazionale.
+	 *
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
+	 */
+	public OutboxRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+		this.initialized = false;
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per registrare il messaggio di una
+	 * prenotazione acquistata. Se il chiamante ha aperto una transazione sulla
+	 * connessione di scrittura il messaggio ne fa parte.
+	 */
+	@Override
+	public void putMessage(Reservation reservation) throws SQLException {
+		createOutboxTable();
+		String sql = "INSERT OR IGNORE INTO Outbox(reservation, total, created) VALUES(?, ?, ?);";
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, reservation.getProgressive());
+			pstatement.setDouble(2, reservation.getTotal());
+			pstatement.setLong(3, System.currentTimeMillis());
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare un lotto di
+	 * messaggi in attesa, con i dati dello spettatore e i posti acquistati.
+	 */
+	@Override
+	public List<OutboxMessage> getPendingMessages(int limit, int maxAttempts, long now) throws SQLException {
+		createOutboxTable();
+		String sql = "SELECT Outbox.reservation AS reservation, Outbox.total AS total, Outbox.attempts AS attempts, "
+				+ "Reservation.projection AS projection, Reservation.name AS name, Reservation.surname AS surname, "
+				+ "Reservation.email AS email, OccupiedSeat.row AS seatRow, OccupiedSeat.column AS seatColumn "
+				+ "FROM (SELECT * FROM Outbox WHERE delivered IS NULL AND attempts < ? AND nextattempt <= ? "
+				+ "AND (lease IS NULL OR lease < ?) ORDER BY created, reservation LIMIT ?) AS Outbox "
+				+ "JOIN Reservation ON Reservation.id = Outbox.reservation "
+				+ "LEFT JOIN OccupiedSeat ON OccupiedSeat.reservation = Outbox.reservation "
+				+ "ORDER BY Outbox.created, Outbox.reservation;";
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, maxAttempts);
+			pstatement.setLong(2, now);
+			pstatement.setLong(3, now);
+			pstatement.setInt(4, limit);
+			try (ResultSet result = pstatement.executeQuery()) {
+				Map<Long, OutboxMessage> messages = new LinkedHashMap<Long, OutboxMessage>();
+				while (result.next()) {
+					long reservationId = result.getLong("reservation");
+					OutboxMessage message = messages.get(reservationId);
+					if (message == null) {
+						message = new OutboxMessage(reservationId, result.getInt("projection"),
+								result.getString("name"), result.getString("surname"), result.getString("email"),
+								result.getDouble("total"), result.getInt("attempts"));
+						messages.put(reservationId, message);
+					}
+					int row = result.getInt("seatRow");
+					if (result.wasNull())
+						continue;
+					message.addSeat(row, result.getInt("seatColumn"));
+				}
+				return new ArrayList<OutboxMessage>(messages.values());
+			}
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per riservare un messaggio: la
+	 * riserva riesce solo se nessun'altra istanza possiede una riserva ancora
+	 * valida.
+	 */
+	@Override
+	public boolean claimMessage(long reservationId, String owner, long now, long leaseUntil) throws SQLException {
+		createOutboxTable();
+		String sql = "UPDATE Outbox SET owner = ?, lease = ? WHERE reservation = ? AND delivered IS NULL "
+				+ "AND (lease IS NULL OR lease < ?);";
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setString(1, owner);
+			pstatement.setLong(2, leaseUntil);
+			pstatement.setLong(3, reservationId);
+			pstatement.setLong(4, now);
+			return pstatement.executeUpdate() == 1;
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per annullare la riserva di un
+	 * messaggio.
+	 */
+	@Override
+	public void releaseMessage(long reservationId, String owner) throws SQLException {
+		createOutboxTable();
+		String sql = "UPDATE Outbox SET owner = NULL, lease = NULL WHERE reservation = ? AND owner = ?;";
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, reservationId);
+			pstatement.setString(2, owner);
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per segnare un messaggio come
+	 * consegnato.
+	 */
+	@Override
+	public void setMessageDelivered(long reservationId, long time) throws SQLException {
+		createOutboxTable();
+		String sql = "UPDATE Outbox SET delivered = ?, owner = NULL, lease = NULL WHERE reservation = ?;";
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, time);
+			pstatement.setLong(2, reservationId);
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per registrare un tentativo di
+	 * consegna fallito.
+	 */
+	@Override
+	public void setMessageFailed(long reservationId, String owner, long nextAttempt) throws SQLException {
+		createOutboxTable();
+		String sql = "UPDATE Outbox SET attempts = attempts + 1, nextattempt = ?, owner = NULL, lease = NULL "
+				+ "WHERE reservation = ? AND owner = ? AND delivered IS NULL;";
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, nextAttempt);
+			pstatement.setLong(2, reservationId);
+			pstatement.setString(3, owner);
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per rimettere in attesa i messaggi
+	 * non consegnati.
+	 */
+	@Override
+	public int resetFailedMessages() throws SQLException {
+		createOutboxTable();
+		String sql = "UPDATE Outbox SET attempts = 0, nextattempt = 0 WHERE delivered IS NULL AND attempts > 0;";
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			return connection.prepareStatement(sql).executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare gli importi pagati
+	 * di un lotto di prenotazioni, cercando per chiave primaria solo gli
+	 * identificativi richiesti.
+	 */
+	@Override
+	public Map<Long, Double> getTotals(List<Long> reservationIds) throws SQLException {
+		if (reservationIds.isEmpty())
+			return new HashMap<Long, Double>();
+		createOutboxTable();
+		String sql = "SELECT reservation, total FROM Outbox WHERE reservation IN ("
+				+ String.join(", ", Collections.nCopies(reservationIds.size(), "?")) + ");";
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			for (int i = 0; i < reservationIds.size(); i++)
+				pstatement.setLong(i + 1, reservationIds.get(i));
+			try (ResultSet result = pstatement.executeQuery()) {
+				Map<Long, Double> totals = new HashMap<Long, Double>();
+				while (result.next())
+					totals.put(result.getLong("reservation"), result.getDouble("total"));
+				return totals;
+			}
+		}
+	}
+
+	/**
+	 * Crea la tabella dei messaggi se il database è stato creato prima della sua
+	 * introduzione, e aggiunge le colonne della riserva se la tabella è stata
+	 * creata prima della loro introduzione.
+	 *
+	 * @throws SQLException se vengono riscontrati errori nella creazione.
+	 */
+	private void createOutboxTable() throws SQLException {
+		if (initialized)
+			return;
+		try (PooledConnection writer = connectionPool.getWriter();
+				Statement statement = writer.getConnection().createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS Outbox(reservation INTEGER PRIMARY KEY NOT NULL, "
+					+ "total REAL NOT NULL CHECK(total >= 0), created INTEGER NOT NULL, "
+					+ "attempts INTEGER NOT NULL DEFAULT(0) CHECK(attempts >= 0), "
+					+ "nextattempt INTEGER NOT NULL DEFAULT(0), delivered INTEGER, owner TEXT, lease INTEGER, "
+					+ "FOREIGN KEY(reservation) REFERENCES Reservation(id) ON UPDATE CASCADE ON DELETE CASCADE);");
+			statement.execute("CREATE INDEX IF NOT EXISTS OutboxPending ON Outbox(delivered, nextattempt);");
+			boolean leaseColumns = false;
+			try (ResultSet columns = statement.executeQuery("PRAGMA table_info(Outbox);")) {
+				while (columns.next())
+					leaseColumns |= columns.getString("name").equals("lease");
+			}
+			if (!leaseColumns) {
+				statement.execute("ALTER TABLE Outbox ADD COLUMN owner TEXT;");
+				statement.execute("ALTER TABLE Outbox ADD COLUMN lease INTEGER;");
+			}
+		}
+		initialized = true;
+	}
+
+}
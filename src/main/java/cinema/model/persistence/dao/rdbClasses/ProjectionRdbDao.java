@@ -1,16 +1,22 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import cinema.model.Movie;
 import cinema.model.cinema.Room;
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
 import cinema.model.persistence.dao.interfaces.IProjectionDao;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.projection.Projection;
@@ -25,18 +31,25 @@ import cinema.model.projection.Projection;
 public class ProjectionRdbDao implements IProjectionDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool delle connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
+
+	/**
+	 * Indica se la tabella delle modifiche alle proiezioni e i relativi trigger
+	 * sono già stati creati.
+	 */
+	private volatile boolean initialized;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
 	 */
-	public ProjectionRdbDao(Connection connection) {
-		this.connection = connection;
+	public ProjectionRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+		this.initialized = false;
 	}
 
 	/**
@@ -47,17 +60,8 @@ public class ProjectionRdbDao implements IProjectionDao {
 	 */
 	@Override
 	public Projection getProjection(int id) throws SQLException, PersistenceException, RoomException {
-		String sql = "SELECT * FROM Projection WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, id);
-		ResultSet result = pstatement.executeQuery();
-		Movie movie = new MovieRdbDao(connection).getMovie(result.getInt("movie"));
-		Room room = new RoomRdbDao(connection).getRoom(result.getInt("room"));
-		Projection projection = new Projection(id, movie,
-				LocalDateTime.parse(result.getString("datetime"), DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")),
-				result.getDouble("price"), room);
-		new OccupiedSeatRdbDao(connection).setOccupiedSeats(projection);
-		return projection;
+		ArrayList<Projection> projections = getProjections("Projection.id = ?", id);
+		return projections.isEmpty() ? null : projections.get(0);
 	}
 
 	/**
@@ -69,20 +73,7 @@ public class ProjectionRdbDao implements IProjectionDao {
 	@Override
 	public ArrayList<Projection> getAllProjectionsByMovieId(int movieId)
 			throws SQLException, PersistenceException, RoomException {
-		String sql = "SELECT * FROM Projection WHERE movie = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, movieId);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Projection> projections = new ArrayList<Projection>();
-		while (result.next()) {
-			Movie movie = new MovieRdbDao(connection).getMovie(result.getInt("movie"));
-			Room room = new RoomRdbDao(connection).getRoom(result.getInt("room"));
-			Projection projection = new Projection(movieId, movie, LocalDateTime.parse(result.getString("datetime"),
-					DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")), result.getDouble("price"), room);
-			new OccupiedSeatRdbDao(connection).setOccupiedSeats(projection);
-			projections.add(projection);
-		}
-		return projections;
+		return getProjections("Projection.movie = ?", movieId);
 	}
 
 	/**
@@ -91,28 +82,88 @@ public class ProjectionRdbDao implements IProjectionDao {
 	 */
 	@Override
 	public ArrayList<Projection> getAllProjections() throws SQLException, PersistenceException {
-		String sql = "SELECT * FROM Projection;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Projection> projections = new ArrayList<Projection>();
-		MovieRdbDao moviePersistence = new MovieRdbDao(connection);
-		RoomRdbDao roomPersistence = new RoomRdbDao(connection);
-		OccupiedSeatRdbDao seatPersistence = new OccupiedSeatRdbDao(connection);
-		while (result.next()) {
-			Movie movie = moviePersistence.getMovie(result.getInt("movie"));
-			Room room = null;
-			try {
-				room = roomPersistence.getRoom(result.getInt("room"));
-			} catch (SQLException | RoomException e) {
-				throw new PersistenceException("La richiesta al database non è andata a buon fine.");
+		try {
+			return getProjections(null, 0);
+		} catch (RoomException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine.");
+		}
+	}
+
+	/**
+	 * Recupera le proiezioni che soddisfano la condizione {@code condition}
+	 * eseguendo due sole query sul database relazionale.
+	 * 
+	 * <p>
+	 * La prima query recupera le proiezioni insieme ai relativi film e sale
+	 * attraverso un JOIN; film e sale uguali vengono creati una sola volta e
+	 * condivisi tra le proiezioni. La seconda query recupera in un unico passaggio
+	 * tutti i posti occupati delle proiezioni trovate, ordinati per proiezione.
+	 * 
+	 * @param condition condizione sulla tabella {@code Projection} con un solo
+	 *                  parametro, o null per recuperare tutte le proiezioni.
+	 * @param parameter valore del parametro della condizione.
+	 * @return le proiezioni che soddisfano la condizione, nell'ordine del database.
+	 * @throws SQLException  se vengono riscontrati errori nell'interazione col
+	 *                       meccanismo di persistenza.
+	 * @throws RoomException se vengono riscontrati errori nell'identificazione dei
+	 *                       posti all'interno della sala.
+	 */
+	private ArrayList<Projection> getProjections(String condition, int parameter)
+			throws SQLException, RoomException {
+		String where = condition == null ? "" : " WHERE " + condition;
+		String sql = "SELECT Movie.*, Projection.id AS projectionId, Projection.datetime AS datetime, "
+				+ "Projection.price AS price, Room.id AS roomId, Room.rows AS rows, Room.columns AS columns "
+				+ "FROM Projection JOIN Movie ON Projection.movie = Movie.id JOIN Room ON Projection.room = Room.id"
+				+ where + " ORDER BY Projection.id;";
+		HashMap<Integer, Movie> movies = new HashMap<Integer, Movie>();
+		HashMap<Integer, Room> rooms = new HashMap<Integer, Room>();
+		LinkedHashMap<Integer, Projection> projections = new LinkedHashMap<Integer, Projection>();
+		// Entrambe le query sono eseguite sulla stessa connessione
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			if (condition != null)
+				pstatement.setInt(1, parameter);
+			try (ResultSet result = pstatement.executeQuery()) {
+				while (result.next()) {
+					int movieId = result.getInt("id");
+					Movie movie = movies.get(movieId);
+					if (movie == null) {
+						movie = MovieRdbDao.getMovieFromResult(result, movieId);
+						movies.put(movieId, movie);
+					}
+					int roomId = result.getInt("roomId");
+					Room room = rooms.get(roomId);
+					if (room == null) {
+						room = new Room(roomId, result.getInt("rows"), result.getInt("columns"));
+						rooms.put(roomId, room);
+					}
+					int projectionId = result.getInt("projectionId");
+					projections.put(projectionId, new Projection(projectionId, movie, LocalDateTime
+							.parse(result.getString("datetime"), DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")),
+							result.getDouble("price"), room));
+				}
+			}
+			if (projections.isEmpty())
+				return new ArrayList<Projection>();
+
+			sql = "SELECT OccupiedSeat.projection AS projection, OccupiedSeat.row AS row, OccupiedSeat.column AS column "
+					+ "FROM OccupiedSeat JOIN Projection ON OccupiedSeat.projection = Projection.id" + where
+					+ " ORDER BY OccupiedSeat.projection;";
+			pstatement = connection.prepareStatement(sql);
+			if (condition != null)
+				pstatement.setInt(1, parameter);
+			try (ResultSet result = pstatement.executeQuery()) {
+				Projection projection = null;
+				while (result.next()) {
+					int projectionId = result.getInt("projection");
+					if (projection == null || projection.getId() != projectionId)
+						projection = projections.get(projectionId);
+					if (projection != null)
+						projection.takeSeat(result.getInt("row"), result.getInt("column"));
+				}
 			}
-			Projection projection = new Projection(result.getInt("id"), movie, LocalDateTime
-					.parse(result.getString("datetime"), DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")),
-					result.getDouble("price"), room);
-			seatPersistence.setOccupiedSeats(projection);
-			projections.add(projection);
 		}
-		return projections;
+		return new ArrayList<Projection>(projections.values());
 	}
 
 	/**
@@ -122,9 +173,11 @@ public class ProjectionRdbDao implements IProjectionDao {
 	@Override
 	public void removeProjection(int id) throws SQLException {
 		String sql = "DELETE FROM Projection WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, id);
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, id);
+			pstatement.executeUpdate();
+		}
 	}
 
 	/**
@@ -135,13 +188,81 @@ public class ProjectionRdbDao implements IProjectionDao {
 	@Override
 	public void putProjection(Projection newProjection) throws SQLException {
 		String sql = "INSERT INTO Projection(id, datetime, price, movie, room) VALUES(?, ?, ?, ?, ?);";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, newProjection.getId());
-		pstatement.setString(2, newProjection.getDateTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-		pstatement.setDouble(3, newProjection.getPrice());
-		pstatement.setInt(4, newProjection.getMovie().getId());
-		pstatement.setInt(5, newProjection.getRoom().getNumber());
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, newProjection.getId());
+			pstatement.setString(2, newProjection.getDateTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+			pstatement.setDouble(3, newProjection.getPrice());
+			pstatement.setInt(4, newProjection.getMovie().getId());
+			pstatement.setInt(5, newProjection.getRoom().getNumber());
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare l'identificativo
+	 * dell'ultima modifica registrata nella tabella {@code ProjectionChange}.
+	 */
+	@Override
+	public long getLastProjectionChangeId() throws SQLException {
+		createChangeTable();
+		String sql = "SELECT IFNULL(MAX(id), 0) AS lastid FROM ProjectionChange;";
+		try (PooledConnection connection = connectionPool.getReader();
+				ResultSet result = connection.prepareStatement(sql).executeQuery()) {
+			return result.getLong("lastid");
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare le modifiche alle
+	 * proiezioni successive ad una modifica già nota.
+	 */
+	@Override
+	public SortedMap<Long, Integer> getProjectionChanges(long afterId, int limit) throws SQLException {
+		createChangeTable();
+		String sql = "SELECT id, projection FROM ProjectionChange WHERE id > ? ORDER BY id LIMIT ?;";
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, afterId);
+			pstatement.setInt(2, limit);
+			try (ResultSet result = pstatement.executeQuery()) {
+				SortedMap<Long, Integer> changes = new TreeMap<Long, Integer>();
+				while (result.next())
+					changes.put(result.getLong("id"), result.getInt("projection"));
+				return changes;
+			}
+		}
+	}
+
+	/**
+	 * Crea la tabella delle modifiche alle proiezioni e i trigger che la
+	 * alimentano, se il database è stato creato prima della loro introduzione.
+	 * 
+	 * <p>
+	 * I trigger registrano ogni inserimento, modifica ed eliminazione di una
+	 * proiezione e ogni modifica delle dimensioni di una sala, indipendentemente
+	 * dall'istanza dell'applicazione che la effettua.
+	 *
+	 * @throws SQLException se vengono riscontrati errori nella creazione.
+	 */
+	private void createChangeTable() throws SQLException {
+		if (initialized)
+			return;
+		try (PooledConnection writer = connectionPool.getWriter();
+				Statement statement = writer.getConnection().createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS ProjectionChange("
+					+ "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, projection INTEGER NOT NULL);");
+			statement.execute("CREATE TRIGGER IF NOT EXISTS ProjectionInserted AFTER INSERT ON Projection "
+					+ "BEGIN INSERT INTO ProjectionChange(projection) VALUES(NEW.id); END;");
+			statement.execute("CREATE TRIGGER IF NOT EXISTS ProjectionUpdated AFTER UPDATE ON Projection "
+					+ "BEGIN INSERT INTO ProjectionChange(projection) VALUES(NEW.id); "
+					+ "INSERT INTO ProjectionChange(projection) SELECT OLD.id WHERE OLD.id <> NEW.id; END;");
+			statement.execute("CREATE TRIGGER IF NOT EXISTS ProjectionDeleted AFTER DELETE ON Projection "
+					+ "BEGIN INSERT INTO ProjectionChange(projection) VALUES(OLD.id); END;");
+			statement.execute("CREATE TRIGGER IF NOT EXISTS RoomResized AFTER UPDATE OF rows, columns ON Room "
+					+ "BEGIN INSERT INTO ProjectionChange(projection) SELECT id FROM Projection WHERE room = NEW.id; END;");
+		}
+		initialized = true;
 	}
 
 }
@@ -0,0 +1,199 @@
+package cinema.model.persistence.dao.rdbClasses;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
+import cinema.model.persistence.ReportEntry;
+import cinema.model.persistence.dao.interfaces.IReportDao;
+
+/**
+ * Si interfaccia con un database relazionale per mantenere l'indice dei report
+ * archiviati, memorizzato nella tabella {@code Report}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ReportRdbDao implements IReportDao {
+
+	/**
+	 * Colonne della tabella lette per ricostruire una voce dell'indice.
+	 */
+	private static final String COLUMNS = "reservation, path, digest, size, projection, expires, compressed";
+
+	/**
+	 * Pool delle connessioni al database.
+	 */
+	private ConnectionPool connectionPool;
+
+	/**
+	 * Indica se è già stata verificata l'esistenza della tabella dell'indice.
+	 */
+	private volatile boolean initialized;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database relazionale.
+	 *
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
+	 */
+	public ReportRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+		this.initialized = false;
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per inserire o sostituire la voce
+	 * dell'indice di un report.
+	 */
+	@Override
+	public void putReport(ReportEntry entry) throws SQLException {
+		createReportTable();
+		String sql = "INSERT OR REPLACE INTO Report(" + COLUMNS + ") VALUES(?, ?, ?, ?, ?, ?, ?);";
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, entry.getReservationId());
+			pstatement.setString(2, entry.getPath());
+			pstatement.setString(3, entry.getDigest());
+			pstatement.setLong(4, entry.getSize());
+			pstatement.setLong(5, entry.getProjectionTime());
+			pstatement.setLong(6, entry.getExpires());
+			pstatement.setInt(7, entry.isCompressed() ? 1 : 0);
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare la voce dell'indice
+	 * di un report tramite la chiave primaria.
+	 */
+	@Override
+	public ReportEntry getReport(long reservationId) throws SQLException {
+		createReportTable();
+		String sql = "SELECT " + COLUMNS + " FROM Report WHERE reservation = ?;";
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, reservationId);
+			try (ResultSet result = pstatement.executeQuery()) {
+				return result.next() ? readEntry(result) : null;
+			}
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare i report da
+	 * comprimere.
+	 */
+	@Override
+	public List<ReportEntry> getReportsToCompress(long projectionBefore, int limit) throws SQLException {
+		createReportTable();
+		String sql = "SELECT " + COLUMNS + " FROM Report WHERE compressed = 0 AND projection < ? LIMIT ?;";
+		return getReports(sql, projectionBefore, limit);
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare i report scaduti.
+	 */
+	@Override
+	public List<ReportEntry> getExpiredReports(long now, int limit) throws SQLException {
+		createReportTable();
+		String sql = "SELECT " + COLUMNS + " FROM Report WHERE expires <= ? LIMIT ?;";
+		return getReports(sql, now, limit);
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per registrare la compressione di
+	 * un report.
+	 */
+	@Override
+	public void setReportCompressed(long reservationId, String path, long size) throws SQLException {
+		createReportTable();
+		String sql = "UPDATE Report SET path = ?, size = ?, compressed = 1 WHERE reservation = ?;";
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setString(1, path);
+			pstatement.setLong(2, size);
+			pstatement.setLong(3, reservationId);
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per eliminare la voce dell'indice
+	 * di un report.
+	 */
+	@Override
+	public void deleteReport(long reservationId) throws SQLException {
+		createReportTable();
+		String sql = "DELETE FROM Report WHERE reservation = ?;";
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, reservationId);
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue un'interrogazione che restituisce più voci dell'indice.
+	 *
+	 * @param sql   interrogazione con due parametri: un istante e il numero
+	 *              massimo di voci.
+	 * @param time  istante, in millisecondi.
+	 * @param limit numero massimo di voci da restituire.
+	 * @return le voci dell'indice.
+	 * @throws SQLException se vengono riscontrati errori nell'interrogazione.
+	 */
+	private List<ReportEntry> getReports(String sql, long time, int limit) throws SQLException {
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, time);
+			pstatement.setInt(2, limit);
+			try (ResultSet result = pstatement.executeQuery()) {
+				List<ReportEntry> entries = new ArrayList<ReportEntry>();
+				while (result.next())
+					entries.add(readEntry(result));
+				return entries;
+			}
+		}
+	}
+
+	/**
+	 * Ricostruisce una voce dell'indice dalla riga corrente del risultato.
+	 *
+	 * @param result risultato posizionato sulla riga da leggere.
+	 * @return la voce dell'indice.
+	 * @throws SQLException se vengono riscontrati errori nella lettura.
+	 */
+	private ReportEntry readEntry(ResultSet result) throws SQLException {
+		return new ReportEntry(result.getLong("reservation"), result.getString("path"), result.getString("digest"),
+				result.getLong("size"), result.getLong("projection"), result.getLong("expires"),
+				result.getInt("compressed") == 1);
+	}
+
+	/**
+	 * Crea la tabella dell'indice se il database è stato creato prima della sua
+	 * introduzione.
+	 *
+	 * @throws SQLException se vengono riscontrati errori nella creazione.
+	 */
+	private void createReportTable() throws SQLException {
+		if (initialized)
+			return;
+		try (PooledConnection writer = connectionPool.getWriter();
+				Statement statement = writer.getConnection().createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS Report(reservation INTEGER PRIMARY KEY NOT NULL, "
+					+ "path TEXT NOT NULL, digest TEXT NOT NULL, size INTEGER NOT NULL CHECK(size >= 0), "
+					+ "projection INTEGER NOT NULL, expires INTEGER NOT NULL, "
+					+ "compressed INTEGER NOT NULL DEFAULT(0) CHECK(compressed == 1 OR compressed == 0));");
+			statement.execute("CREATE INDEX IF NOT EXISTS ReportProjection ON Report(compressed, projection);");
+			statement.execute("CREATE INDEX IF NOT EXISTS ReportExpires ON Report(expires);");
+		}
+		initialized = true;
+	}
+
+}
@@ -1,10 +1,19 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
+import cinema.model.persistence.PurchasedReservation;
 import cinema.model.persistence.dao.interfaces.IReservationDao;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.reservation.Reservation;
@@ -19,18 +28,35 @@ import cinema.model.reservation.Reservation;
 public class ReservationRdbDao implements IReservationDao {
 
 	/**
-	 * Connessione al database.
+	 * Formato della data e dell'ora delle proiezioni nel database.
 	 */
-	private Connection connection;
+	private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	/**
+	 * Interrogazione che legge un lotto di prenotazioni acquistate con i relativi
+	 * posti; il segnaposto viene sostituito dalla condizione sulle proiezioni.
+	 */
+	private static final String PURCHASED_RESERVATIONS = "SELECT Reservation.id AS reservation, "
+			+ "Reservation.projection AS projection, Reservation.name AS name, Reservation.surname AS surname, "
+			+ "Reservation.email AS email, OccupiedSeat.row AS seatRow, OccupiedSeat.column AS seatColumn "
+			+ "FROM (SELECT Reservation.* FROM Reservation JOIN Projection ON Projection.id = Reservation.projection "
+			+ "WHERE %s AND Reservation.id > ? AND Reservation.name IS NOT NULL "
+			+ "ORDER BY Reservation.id LIMIT ?) AS Reservation "
+			+ "LEFT JOIN OccupiedSeat ON OccupiedSeat.reservation = Reservation.id ORDER BY Reservation.id;";
+
+	/**
+	 * Pool delle connessioni al database.
+	 */
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
 	 */
-	public ReservationRdbDao(Connection connection) {
-		this.connection = connection;
+	public ReservationRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
@@ -41,22 +67,23 @@ public class ReservationRdbDao implements IReservationDao {
 	@Override
 	public void setReservationFields(Reservation reservation) throws SQLException, PersistenceException, RoomException {
 		String sql = "UPDATE Reservation SET date = ?, projection = ?, name = ?, surname = ?, email = ?, paymentcardowner = ?, paymentcard = ?, coupon = ?, discount = ?, numberpeopleunderage = ?, numberpeopleoverage = ? WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setString(1, reservation.getDate().toString());
-		pstatement.setLong(2, reservation.getProjection().getId());
-		pstatement.setString(3, reservation.getPurchaser().getName());
-		pstatement.setString(4, reservation.getPurchaser().getSurname());
-		pstatement.setString(5, reservation.getPurchaser().getEmail());
-		pstatement.setString(6, reservation.getPaymentCard().getOwner());
-		pstatement.setString(7, reservation.getPaymentCard().getNumber());
-		if (reservation.getCoupon() != null)
-			pstatement.setString(8, reservation.getCoupon().getCode());
-		pstatement.setInt(9, reservation.getDiscountId());
-		pstatement.setInt(10, reservation.getNumberPeopleUntilMinAge());
-		pstatement.setLong(11, reservation.getNumberPeopleOverMaxAge());
-		pstatement.setLong(12, reservation.getProgressive());
-		pstatement.executeUpdate();
-		new OccupiedSeatRdbDao(connection).putOccupiedSeatsFromReservation(reservation);
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setString(1, reservation.getDate().toString());
+			pstatement.setLong(2, reservation.getProjection().getId());
+			pstatement.setString(3, reservation.getPurchaser().getName());
+			pstatement.setString(4, reservation.getPurchaser().getSurname());
+			pstatement.setString(5, reservation.getPurchaser().getEmail());
+			pstatement.setString(6, reservation.getPaymentCard().getOwner());
+			pstatement.setString(7, reservation.getPaymentCard().getNumber());
+			if (reservation.getCoupon() != null)
+				pstatement.setString(8, reservation.getCoupon().getCode());
+			pstatement.setInt(9, reservation.getDiscountId());
+			pstatement.setInt(10, reservation.getNumberPeopleUntilMinAge());
+			pstatement.setLong(11, reservation.getNumberPeopleOverMaxAge());
+			pstatement.setLong(12, reservation.getProgressive());
+			pstatement.executeUpdate();
+		}
 	}
 
 	/**
@@ -66,9 +93,11 @@ public class ReservationRdbDao implements IReservationDao {
 	@Override
 	public void putEmptyReservation(Reservation newReservation) throws SQLException {
 		String sql = "INSERT INTO Reservation(id) VALUES(?);";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setLong(1, newReservation.getProgressive());
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, newReservation.getProgressive());
+			pstatement.executeUpdate();
+		}
 	}
 
 	/**
@@ -78,8 +107,10 @@ public class ReservationRdbDao implements IReservationDao {
 	@Override
 	public long getLastReservationId() throws SQLException {
 		String sql = "SELECT MAX(id) AS maxid FROM Reservation;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		return pstatement.executeQuery().getLong("maxid");
+		try (PooledConnection connection = connectionPool.getReader();
+				ResultSet result = connection.prepareStatement(sql).executeQuery()) {
+			return result.getLong("maxid");
+		}
 	}
 
 	/**
@@ -90,9 +121,74 @@ public class ReservationRdbDao implements IReservationDao {
 	@Override
 	public void deleteReservation(long reservationId) throws SQLException {
 		String sql = "DELETE FROM Reservation WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setLong(1, reservationId);
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.getWriter()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setLong(1, reservationId);
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare un lotto di
+	 * prenotazioni acquistate per una proiezione.
+	 */
+	@Override
+	public List<PurchasedReservation> getPurchasedReservations(int projectionId, long afterId, int limit)
+			throws SQLException {
+		String sql = String.format(PURCHASED_RESERVATIONS, "Projection.id = ?");
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, projectionId);
+			pstatement.setLong(2, afterId);
+			pstatement.setInt(3, limit);
+			return readPurchasedReservations(pstatement);
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare un lotto di
+	 * prenotazioni acquistate per le proiezioni di un intervallo di tempo.
+	 */
+	@Override
+	public List<PurchasedReservation> getPurchasedReservations(LocalDateTime from, LocalDateTime to, long afterId,
+			int limit) throws SQLException {
+		String sql = String.format(PURCHASED_RESERVATIONS, "Projection.datetime >= ? AND Projection.datetime < ?");
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setString(1, from.format(DATE_TIME_FORMAT));
+			pstatement.setString(2, to.format(DATE_TIME_FORMAT));
+			pstatement.setLong(3, afterId);
+			pstatement.setInt(4, limit);
+			return readPurchasedReservations(pstatement);
+		}
+	}
+
+	/**
+	 * Esegue un'interrogazione sulle prenotazioni acquistate e raggruppa i posti
+	 * di ciascuna prenotazione.
+	 *
+	 * @param pstatement interrogazione da eseguire, con i parametri già impostati.
+	 * @return le prenotazioni acquistate, in ordine di identificativo.
+	 * @throws SQLException se vengono riscontrati errori nell'interrogazione.
+	 */
+	private List<PurchasedReservation> readPurchasedReservations(PreparedStatement pstatement) throws SQLException {
+		try (ResultSet result = pstatement.executeQuery()) {
+			Map<Long, PurchasedReservation> reservations = new LinkedHashMap<Long, PurchasedReservation>();
+			while (result.next()) {
+				long reservationId = result.getLong("reservation");
+				PurchasedReservation reservation = reservations.get(reservationId);
+				if (reservation == null) {
+					reservation = new PurchasedReservation(reservationId, result.getInt("projection"),
+							result.getString("name"), result.getString("surname"), result.getString("email"));
+					reservations.put(reservationId, reservation);
+				}
+				int row = result.getInt("seatRow");
+				if (result.wasNull())
+					continue;
+				reservation.addSeat(row, result.getInt("seatColumn"));
+			}
+			return new ArrayList<PurchasedReservation>(reservations.values());
+		}
 	}
 
 }
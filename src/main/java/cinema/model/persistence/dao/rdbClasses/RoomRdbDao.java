@@ -1,6 +1,5 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -8,6 +7,8 @@ import java.util.ArrayList;
 
 import cinema.model.cinema.Room;
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
 import cinema.model.persistence.dao.interfaces.IRoomDao;
 
 /**
@@ -20,18 +21,18 @@ import cinema.model.persistence.dao.interfaces.IRoomDao;
 public class RoomRdbDao implements IRoomDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool delle connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
 	 */
-	public RoomRdbDao(Connection connection) {
-		this.connection = connection;
+	public RoomRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
@@ -41,11 +42,13 @@ public class RoomRdbDao implements IRoomDao {
 	@Override
 	public Room getRoom(int id) throws SQLException, RoomException {
 		String sql = "SELECT * FROM Room WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, id);
-		ResultSet result = pstatement.executeQuery();
-		Room room = new Room(id, result.getInt("rows"), result.getInt("columns"));
-		return room;
+		try (PooledConnection connection = connectionPool.getReader()) {
+			PreparedStatement pstatement = connection.prepareStatement(sql);
+			pstatement.setInt(1, id);
+			try (ResultSet result = pstatement.executeQuery()) {
+				return new Room(id, result.getInt("rows"), result.getInt("columns"));
+			}
+		}
 	}
 
 	/**
@@ -55,13 +58,14 @@ public class RoomRdbDao implements IRoomDao {
 	@Override
 	public ArrayList<Room> getAllRooms() throws SQLException, RoomException {
 		String sql = "SELECT * FROM Room;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Room> rooms = new ArrayList<Room>();
-		while (result.next()) {
-			rooms.add(new Room(result.getInt("id"), result.getInt("rows"), result.getInt("columns")));
+		try (PooledConnection connection = connectionPool.getReader();
+				ResultSet result = connection.prepareStatement(sql).executeQuery()) {
+			ArrayList<Room> rooms = new ArrayList<Room>();
+			while (result.next()) {
+				rooms.add(new Room(result.getInt("id"), result.getInt("rows"), result.getInt("columns")));
+			}
+			return rooms;
 		}
-		return rooms;
 	}
 
 }
@@ -0,0 +1,111 @@
+package cinema.model.persistence.dao.rdbClasses;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import cinema.model.persistence.ConnectionPool;
+import cinema.model.persistence.PooledConnection;
+import cinema.model.persistence.dao.interfaces.ISequenceDao;
+
+/**
+ * Si interfaccia con un database relazionale per riservare blocchi di
+ * identificativi, memorizzati nella tabella {@code Sequence}.
+ * 
+ * <p>
+ * Ogni blocco viene riservato con un'unica modifica della riga della sequenza,
+ * letta nella stessa transazione: il lock di scrittura di SQLite garantisce che
+ * due istanze dell'applicazione che condividono il database non ottengano mai
+ * lo stesso blocco.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SequenceRdbDao implements ISequenceDao {
+
+	/**
+	 * Pool delle connessioni al database.
+	 */
+	private ConnectionPool connectionPool;
+
+	/**
+	 * Indica se è già stata verificata l'esistenza della tabella delle sequenze.
+	 */
+	private volatile boolean initialized;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database relazionale.
+	 * 
+	 * @param connectionPool pool delle connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
+	 */
+	public SequenceRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+		this.initialized = false;
+	}
+
+	/**
+	 * Esegue sul database relazionale, in un'unica transazione, l'avanzamento
+	 * della sequenza associata a {@code table} e la lettura del nuovo valore.
+	 * 
+	 * <p>
+	 * La sequenza non resta mai indietro rispetto al massimo identificativo
+	 * presente nella tabella, in modo da non collidere con le righe inserite
+	 * senza passare dalla sequenza. Il nome della tabella non può essere passato
+	 * come parametro della query e deve quindi provenire dall'applicazione.
+	 */
+	@Override
+	public long reserveIds(String table, int size) throws SQLException {
+		try (PooledConnection writer = connectionPool.getWriter()) {
+			Connection connection = writer.getConnection();
+			if (!initialized)
+				createSequenceTable(connection);
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try {
+				PreparedStatement pstatement = writer.prepareStatement("INSERT OR IGNORE INTO Sequence(name, next) "
+						+ "SELECT ?, IFNULL(MAX(id), 0) + 1 FROM " + table + ";");
+				pstatement.setString(1, table);
+				pstatement.executeUpdate();
+				pstatement = writer.prepareStatement("UPDATE Sequence SET next = MAX(next, (SELECT IFNULL(MAX(id), 0) + 1 "
+						+ "FROM " + table + ")) + ? WHERE name = ?;");
+				pstatement.setInt(1, size);
+				pstatement.setString(2, table);
+				pstatement.executeUpdate();
+				pstatement = writer.prepareStatement("SELECT next FROM Sequence WHERE name = ?;");
+				pstatement.setString(1, table);
+				long next;
+				try (ResultSet result = pstatement.executeQuery()) {
+					next = result.getLong("next");
+				}
+				if (autoCommit)
+					connection.commit();
+				return next - size;
+			} catch (SQLException e) {
+				if (autoCommit)
+					connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(autoCommit);
+			}
+		}
+	}
+
+	/**
+	 * Crea la tabella delle sequenze se il database è stato creato prima della
+	 * sua introduzione.
+	 * 
+	 * @param connection connessione di scrittura.
+	 * @throws SQLException se vengono riscontrati errori nella creazione.
+	 */
+	private void createSequenceTable(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS Sequence(name TEXT PRIMARY KEY NOT NULL, "
+					+ "next INTEGER NOT NULL CHECK(next > 0));");
+		}
+		initialized = true;
+	}
+
+}
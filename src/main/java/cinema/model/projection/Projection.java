@@ -46,9 +46,9 @@ public class Projection implements Comparable<Projection> {
 	private double price;
 
 	/**
-	 * Posti della sala in cui il film è proiettato.
+	 * Stato di occupazione dei posti della sala in cui il film è proiettato.
 	 */
-	private ArrayList<ArrayList<ProjectionSeat>> seats;
+	private ProjectionSeatState seats;
 
 	/**
 	 * Costruttore della proiezione.
@@ -65,22 +65,14 @@ public class Projection implements Comparable<Projection> {
 		this.dateTime = dateTime;
 		this.price = Math.round(price * 100.0) / 100.0;
 		this.room = room;
-		this.seats = new ArrayList<ArrayList<ProjectionSeat>>();
-		for (int i = 0; i < room.getNumberOfRows(); i++) {
-			ArrayList<ProjectionSeat> row = new ArrayList<ProjectionSeat>();
-			for (int j = 0; j < room.getNumberOfCols(); j++) {
-				row.add(new ProjectionSeat(room.getSeat(i, j), true));
-			}
-			seats.add(row);
-		}
+		this.seats = new ProjectionSeatState(room.getNumberOfRows(), room.getNumberOfCols());
 	}
 
 	/**
-	 * Costruttore di default che inizializza solamente l'ArrayList di posti
-	 * (vuoto).
+	 * Costruttore di default; lo stato dei posti viene inizializzato quando viene
+	 * associata la sala.
 	 */
 	public Projection() {
-		seats = new ArrayList<ArrayList<ProjectionSeat>>();
 	}
 
 	/**
@@ -100,23 +92,14 @@ public class Projection implements Comparable<Projection> {
 	}
 
 	/**
-	 * Associa la proiezione ad una specifica sala e ne inizializza i
-	 * {@code ProjectionSeat}.
+	 * Associa la proiezione ad una specifica sala e ne inizializza lo stato dei
+	 * posti (tutti liberi).
 	 *
 	 * @param room sala nella quale si svolge la proiezione.
 	 */
 	public void setRoom(Room room) {
 		this.room = room;
-		if (seats.size() != 0) {
-			seats.removeAll(seats);
-		}
-		for (int i = 0; i < room.getNumberOfRows(); i++) {
-			ArrayList<ProjectionSeat> row = new ArrayList<ProjectionSeat>();
-			for (int j = 0; j < room.getNumberOfCols(); j++) {
-				row.add(new ProjectionSeat(room.getSeat(i, j), true));
-			}
-			seats.add(row);
-		}
+		this.seats = new ProjectionSeatState(room.getNumberOfRows(), room.getNumberOfCols());
 	}
 
 	/**
@@ -153,12 +136,7 @@ public class Projection implements Comparable<Projection> {
 	 * @throws RoomException qualora il posto selezionato non esista.
 	 */
 	public boolean checkIfSeatIsAvailable(int row, int col) throws RoomException {
-		try {
-			return seats.get(row).get(col).isAvailable();
-		} catch (IndexOutOfBoundsException e) {
-			throw new RoomException(
-					"Il posto selezionato (" + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + " non esiste.");
-		}
+		return seats.isAvailable(row, col);
 	}
 
 	/**
@@ -169,15 +147,7 @@ public class Projection implements Comparable<Projection> {
 	 *                       del cinema.
 	 */
 	public int getNumberAvailableSeat() throws RoomException {
-		int availableSeats = 0;
-		for (int i = 0; i < this.getRoom().getNumberOfRows(); i++) {
-			for (int j = 0; j < this.getRoom().getNumberOfCols(); j++) {
-				if (checkIfSeatIsAvailable(i, j)) {
-					availableSeats++;
-				}
-			}
-		}
-		return availableSeats;
+		return seats.getNumberAvailableSeats();
 	}
 
 	/**
@@ -191,11 +161,7 @@ public class Projection implements Comparable<Projection> {
 	 *                       del cinema.
 	 */
 	public boolean takeSeat(int row, int col) throws RoomException {
-		if (checkIfSeatIsAvailable(row, col)) {
-			seats.get(row).get(col).setAvailable(false);
-			return true;
-		}
-		return false;
+		return seats.take(row, col);
 	}
 
 	/**
@@ -209,11 +175,62 @@ public class Projection implements Comparable<Projection> {
 	 *                       del cinema.
 	 */
 	public boolean freeSeat(int row, int col) throws RoomException {
-		if (!checkIfSeatIsAvailable(row, col)) {
-			seats.get(row).get(col).setAvailable(true);
-			return true;
-		}
-		return false;
+		return seats.free(row, col);
+	}
+
+	/**
+	 * Occupa i posti risultati occupati in una mappa dei posti della stessa
+	 * proiezione, ad esempio letta dal meccanismo di persistenza dopo acquisti
+	 * effettuati da un'altra istanza dell'applicazione.
+	 *
+	 * @param seatMap mappa dei posti della proiezione.
+	 * @return numero di posti che risultavano ancora liberi.
+	 * @throws RoomException qualora la mappa si riferisca ad una sala di
+	 *                       dimensioni diverse.
+	 */
+	public int occupySeats(ProjectionSeatMap seatMap) throws RoomException {
+		if (seatMap.getNumberOfRows() != seats.getNumberOfRows()
+				|| seatMap.getNumberOfCols() != seats.getNumberOfCols())
+			throw new RoomException("La mappa dei posti non corrisponde alla sala della proiezione " + id + ".");
+		return seats.occupy(seatMap.getOccupiedSeats());
+	}
+
+	/**
+	 * Occupa in modo atomico tutti i posti indicati, oppure nessuno se almeno uno
+	 * di essi è già occupato.
+	 * 
+	 * @param seatIndexes indici dei posti da occupare (si veda
+	 *                    {@link #getSeatIndex(int, int)}).
+	 * @return True: tutti i posti sono stati occupati, False: nessun posto è stato
+	 *         occupato.
+	 * @throws RoomException qualora uno dei posti indicati non esista.
+	 */
+	public boolean claimSeats(int[] seatIndexes) throws RoomException {
+		return seats.claimSeats(seatIndexes);
+	}
+
+	/**
+	 * Libera tutti i posti indicati, precedentemente occupati con
+	 * {@link #claimSeats(int[])}.
+	 * 
+	 * @param seatIndexes indici dei posti da liberare.
+	 * @throws RoomException qualora uno dei posti indicati non esista.
+	 */
+	public void releaseSeats(int[] seatIndexes) throws RoomException {
+		seats.releaseSeats(seatIndexes);
+	}
+
+	/**
+	 * Restituisce l'indice di un posto all'interno dello stato dei posti della
+	 * proiezione.
+	 * 
+	 * @param row coordinata riga.
+	 * @param col coordinata colonna.
+	 * @return indice del posto.
+	 * @throws RoomException qualora il posto selezionato non esista.
+	 */
+	public int getSeatIndex(int row, int col) throws RoomException {
+		return seats.getSeatIndex(row, col);
 	}
 
 	/**
@@ -226,25 +243,39 @@ public class Projection implements Comparable<Projection> {
 	 *                       del cinema.
 	 */
 	public PhysicalSeat getPhysicalSeat(int row, int col) throws RoomException {
-		return this.getSeats().get(row).get(col).getPhysicalSeat();
+		try {
+			return room.getSeat(row, col);
+		} catch (IndexOutOfBoundsException e) {
+			throw new RoomException(
+					"Il posto selezionato (" + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + " non esiste.");
+		}
 	}
 
 	/**
 	 * Restituisce le coordinate di un posto.
 	 * 
 	 * @param s posto fisico.
-	 * @return coordinate del posto.
+	 * @return coordinate del posto, o null se il posto non appartiene alla sala
+	 *         della proiezione.
 	 * @throws RoomException qualora vi siano errori legati alla gestione della sala
 	 *                       del cinema.
 	 */
 	public String getSeatCoordinates(PhysicalSeat s) throws RoomException {
-		for (int i = 0; i < room.getNumberOfRows(); i++) {
-			for (int j = 0; j < room.getNumberOfCols(); j++) {
-				if (getPhysicalSeat(i, j) == s)
-					return Room.rowIndexToRowLetter(i) + (j + 1);
-			}
-		}
-		return null;
+		if (s.getRow() < 0 || s.getRow() >= room.getNumberOfRows() || s.getCol() < 0
+				|| s.getCol() >= room.getNumberOfCols() || getPhysicalSeat(s.getRow(), s.getCol()) != s)
+			return null;
+		return s.getCoordinates();
+	}
+
+	/**
+	 * Restituisce l'occupazione corrente dei posti della proiezione.
+	 * 
+	 * @return mappa dei posti della proiezione.
+	 * @throws RoomException qualora vi siano errori legati alla gestione della sala
+	 *                       del cinema.
+	 */
+	public ProjectionSeatMap getSeatMap() throws RoomException {
+		return seats.toSeatMap(id);
 	}
 
 	@Override
@@ -288,8 +319,29 @@ public class Projection implements Comparable<Projection> {
 		return id;
 	}
 
+	/**
+	 * Restituisce i posti della proiezione organizzati per fila.
+	 * 
+	 * <p>
+	 * La struttura restituita è una vista costruita a partire dallo stato corrente
+	 * dei posti: modificarla non ha effetto sulla proiezione.
+	 * 
+	 * @return i posti della proiezione organizzati per fila.
+	 */
 	public ArrayList<ArrayList<ProjectionSeat>> getSeats() {
-		return seats;
+		ArrayList<ArrayList<ProjectionSeat>> seatsView = new ArrayList<ArrayList<ProjectionSeat>>();
+		for (int i = 0; i < room.getNumberOfRows(); i++) {
+			ArrayList<ProjectionSeat> row = new ArrayList<ProjectionSeat>();
+			for (int j = 0; j < room.getNumberOfCols(); j++) {
+				try {
+					row.add(new ProjectionSeat(room.getSeat(i, j), seats.isAvailable(i, j)));
+				} catch (RoomException exception) {
+					// Le coordinate appartengono sempre alla sala
+				}
+			}
+			seatsView.add(row);
+		}
+		return seatsView;
 	}
 
 	public Movie getMovie() {
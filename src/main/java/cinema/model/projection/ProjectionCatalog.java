@@ -0,0 +1,381 @@
+package cinema.model.projection;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import cinema.model.Movie;
+import cinema.model.cinema.util.RoomException;
+
+/**
+ * Mantiene in memoria le proiezioni del cinema indicizzandole per
+ * identificativo, per film e per data e ora.
+ *
+ * <p>
+ * Il catalogo permette di rispondere alle richieste sulle proiezioni senza
+ * interrogare ogni volta il meccanismo di persistenza dei dati: la ricerca per
+ * identificativo avviene in tempo costante, mentre le proiezioni di un film e
+ * quelle successive ad un certo istante sono già ordinate cronologicamente.
+ * L'accesso concorrente è regolato da un lock di lettura/scrittura.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ProjectionCatalog {
+
+	/**
+	 * Ordinamento cronologico delle proiezioni, a parità di data e ora per
+	 * identificativo.
+	 */
+	private static final Comparator<Projection> CHRONOLOGICAL_ORDER = Comparator
+			.comparing(Projection::getDateTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparingInt(Projection::getId);
+
+	/**
+	 * Proiezioni indicizzate per identificativo.
+	 */
+	private HashMap<Integer, Projection> projectionsById;
+
+	/**
+	 * Proiezioni indicizzate per identificativo del film, in ordine cronologico.
+	 */
+	private HashMap<Integer, ArrayList<Projection>> projectionsByMovie;
+
+	/**
+	 * Proiezioni indicizzate per data e ora.
+	 */
+	private NavigableMap<LocalDateTime, ArrayList<Projection>> projectionsByDateTime;
+
+	/**
+	 * Numero di proiezioni aggiunte o rimosse con {@link #put(Projection)} e
+	 * {@link #remove(int)}.
+	 */
+	private long version;
+
+	/**
+	 * Versione del catalogo in cui ogni proiezione è stata aggiunta o rimossa,
+	 * mantenuta finché un allineamento successivo non la rende superflua.
+	 */
+	private HashMap<Integer, Long> localChanges;
+
+	/**
+	 * Lock che regola l'accesso concorrente agli indici.
+	 */
+	private ReentrantReadWriteLock lock;
+
+	/**
+	 * Costruttore del catalogo.
+	 *
+	 * @param projections proiezioni con cui inizializzare il catalogo.
+	 */
+	public ProjectionCatalog(Collection<Projection> projections) {
+		lock = new ReentrantReadWriteLock();
+		projectionsById = new HashMap<Integer, Projection>();
+		projectionsByMovie = new HashMap<Integer, ArrayList<Projection>>();
+		projectionsByDateTime = new TreeMap<LocalDateTime, ArrayList<Projection>>();
+		version = 0;
+		localChanges = new HashMap<Integer, Long>();
+		for (Projection projection : projections)
+			index(projection);
+	}
+
+	/**
+	 * Sostituisce l'intero contenuto del catalogo.
+	 *
+	 * @param projections nuove proiezioni del catalogo.
+	 */
+	public void replaceAll(Collection<Projection> projections) {
+		lock.writeLock().lock();
+		try {
+			projectionsById.clear();
+			projectionsByMovie.clear();
+			projectionsByDateTime.clear();
+			for (Projection projection : projections)
+				index(projection);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Allinea il catalogo alle proiezioni modificate nel meccanismo di
+	 * persistenza, senza sostituire le proiezioni già presenti.
+	 *
+	 * <p>
+	 * Le prenotazioni in corso mantengono un riferimento alla propria proiezione:
+	 * per le proiezioni già presenti vengono quindi solo occupati i posti
+	 * risultati occupati, mentre le proiezioni nuove vengono aggiunte e quelle non
+	 * più presenti rimosse. Una proiezione la cui sala ha cambiato dimensioni
+	 * viene sostituita. Il lock di scrittura viene mantenuto solo per le
+	 * proiezioni modificate.
+	 *
+	 * <p>
+	 * Le proiezioni aggiunte o rimosse nel catalogo dopo la versione
+	 * {@code since} non vengono modificate: la lettura dal meccanismo di
+	 * persistenza potrebbe precedere la loro modifica, che verrà comunque
+	 * recepita dall'allineamento successivo.
+	 *
+	 * @param changes proiezioni modificate lette dal meccanismo di persistenza,
+	 *                con i relativi posti occupati, indicizzate per
+	 *                identificativo; il valore è null per le proiezioni non più
+	 *                presenti.
+	 * @param since   versione del catalogo (si veda {@link #getVersion()}) letta
+	 *                prima di interrogare il meccanismo di persistenza.
+	 * @return numero di posti che risultavano ancora liberi nel catalogo.
+	 */
+	public int merge(Map<Integer, Projection> changes, long since) {
+		int takenSeats = 0;
+		lock.writeLock().lock();
+		try {
+			for (Map.Entry<Integer, Projection> change : changes.entrySet()) {
+				Long changed = localChanges.get(change.getKey());
+				if (changed != null && changed > since)
+					continue;
+				Projection projection = change.getValue();
+				if (projection == null) {
+					unindex(change.getKey());
+					continue;
+				}
+				Projection current = projectionsById.get(projection.getId());
+				if (current != null) {
+					try {
+						takenSeats += current.occupySeats(projection.getSeatMap());
+						continue;
+					} catch (RoomException e) {
+						unindex(projection.getId());
+					}
+				}
+				index(projection);
+			}
+			localChanges.values().removeIf(changed -> changed <= since);
+		} finally {
+			lock.writeLock().unlock();
+		}
+		return takenSeats;
+	}
+
+	/**
+	 * Restituisce la versione corrente del catalogo, che aumenta ad ogni
+	 * proiezione aggiunta o rimossa con {@link #put(Projection)} e
+	 * {@link #remove(int)}.
+	 *
+	 * @return la versione corrente del catalogo.
+	 */
+	public long getVersion() {
+		lock.readLock().lock();
+		try {
+			return version;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Aggiunge una proiezione al catalogo, sostituendo l'eventuale proiezione con
+	 * lo stesso identificativo.
+	 *
+	 * @param projection proiezione da aggiungere.
+	 */
+	public void put(Projection projection) {
+		lock.writeLock().lock();
+		try {
+			unindex(projection.getId());
+			index(projection);
+			localChanges.put(projection.getId(), ++version);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rimuove una proiezione dal catalogo.
+	 *
+	 * @param projectionId codice identificativo della proiezione.
+	 * @return la proiezione rimossa, o null se non era presente.
+	 */
+	public Projection remove(int projectionId) {
+		lock.writeLock().lock();
+		try {
+			localChanges.put(projectionId, ++version);
+			return unindex(projectionId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Restituisce una proiezione, dato il suo id.
+	 *
+	 * @param projectionId codice identificativo della proiezione.
+	 * @return la proiezione cercata, o null se non è presente.
+	 */
+	public Projection get(int projectionId) {
+		lock.readLock().lock();
+		try {
+			return projectionsById.get(projectionId);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Restituisce tutte le proiezioni del catalogo ordinate per identificativo.
+	 *
+	 * @return la lista di tutte le proiezioni.
+	 */
+	public List<Projection> getAll() {
+		ArrayList<Projection> projections;
+		lock.readLock().lock();
+		try {
+			projections = new ArrayList<Projection>(projectionsById.values());
+		} finally {
+			lock.readLock().unlock();
+		}
+		projections.sort(Comparator.comparingInt(Projection::getId));
+		return projections;
+	}
+
+	/**
+	 * Restituisce le proiezioni di un film in ordine cronologico.
+	 *
+	 * @param movieId codice identificativo del film.
+	 * @return la lista delle proiezioni del film.
+	 */
+	public List<Projection> getByMovie(int movieId) {
+		lock.readLock().lock();
+		try {
+			ArrayList<Projection> projections = projectionsByMovie.get(movieId);
+			return projections == null ? new ArrayList<Projection>() : new ArrayList<Projection>(projections);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Restituisce le proiezioni di un film successive all'istante indicato, in
+	 * ordine cronologico.
+	 *
+	 * @param movieId codice identificativo del film.
+	 * @param from    istante dopo il quale devono svolgersi le proiezioni.
+	 * @return la lista delle proiezioni del film successive a {@code from}.
+	 */
+	public List<Projection> getUpcomingByMovie(int movieId, LocalDateTime from) {
+		List<Projection> upcoming = new ArrayList<Projection>();
+		for (Projection projection : getByMovie(movieId)) {
+			if (projection.getDateTime() != null && projection.getDateTime().isAfter(from))
+				upcoming.add(projection);
+		}
+		return upcoming;
+	}
+
+	/**
+	 * Restituisce le proiezioni successive all'istante indicato, in ordine
+	 * cronologico.
+	 *
+	 * @param from istante dopo il quale devono svolgersi le proiezioni.
+	 * @return la lista delle proiezioni successive a {@code from}.
+	 */
+	public List<Projection> getUpcoming(LocalDateTime from) {
+		List<Projection> upcoming = new ArrayList<Projection>();
+		lock.readLock().lock();
+		try {
+			for (ArrayList<Projection> projections : projectionsByDateTime.tailMap(from, false).values())
+				upcoming.addAll(projections);
+		} finally {
+			lock.readLock().unlock();
+		}
+		return upcoming;
+	}
+
+	/**
+	 * Restituisce i film che hanno almeno una proiezione successiva all'istante
+	 * indicato, nell'ordine cronologico della loro prima proiezione.
+	 *
+	 * @param from istante dopo il quale devono svolgersi le proiezioni.
+	 * @return la lista dei film in programmazione dopo {@code from}.
+	 */
+	public List<Movie> getUpcomingMovies(LocalDateTime from) {
+		Map<Integer, Movie> movies = new LinkedHashMap<Integer, Movie>();
+		for (Projection projection : getUpcoming(from))
+			movies.putIfAbsent(projection.getMovie().getId(), projection.getMovie());
+		return new ArrayList<Movie>(movies.values());
+	}
+
+	/**
+	 * Inserisce una proiezione negli indici; va chiamato possedendo il lock di
+	 * scrittura.
+	 *
+	 * @param projection proiezione da indicizzare.
+	 */
+	private void index(Projection projection) {
+		projectionsById.put(projection.getId(), projection);
+		if (projection.getMovie() != null) {
+			ArrayList<Projection> movieProjections = projectionsByMovie.get(projection.getMovie().getId());
+			if (movieProjections == null) {
+				movieProjections = new ArrayList<Projection>();
+				projectionsByMovie.put(projection.getMovie().getId(), movieProjections);
+			}
+			insertSorted(movieProjections, projection);
+		}
+		if (projection.getDateTime() != null) {
+			ArrayList<Projection> sameDateTime = projectionsByDateTime.get(projection.getDateTime());
+			if (sameDateTime == null) {
+				sameDateTime = new ArrayList<Projection>();
+				projectionsByDateTime.put(projection.getDateTime(), sameDateTime);
+			}
+			insertSorted(sameDateTime, projection);
+		}
+	}
+
+	/**
+	 * Rimuove una proiezione dagli indici; va chiamato possedendo il lock di
+	 * scrittura.
+	 *
+	 * @param projectionId codice identificativo della proiezione.
+	 * @return la proiezione rimossa, o null se non era presente.
+	 */
+	private Projection unindex(int projectionId) {
+		Projection projection = projectionsById.remove(projectionId);
+		if (projection == null)
+			return null;
+		if (projection.getMovie() != null) {
+			ArrayList<Projection> movieProjections = projectionsByMovie.get(projection.getMovie().getId());
+			if (movieProjections != null) {
+				movieProjections.remove(projection);
+				if (movieProjections.isEmpty())
+					projectionsByMovie.remove(projection.getMovie().getId());
+			}
+		}
+		if (projection.getDateTime() != null) {
+			ArrayList<Projection> sameDateTime = projectionsByDateTime.get(projection.getDateTime());
+			if (sameDateTime != null) {
+				sameDateTime.remove(projection);
+				if (sameDateTime.isEmpty())
+					projectionsByDateTime.remove(projection.getDateTime());
+			}
+		}
+		return projection;
+	}
+
+	/**
+	 * Inserisce una proiezione in una lista ordinata cronologicamente mantenendone
+	 * l'ordinamento.
+	 *
+	 * @param projections lista ordinata cronologicamente.
+	 * @param projection  proiezione da inserire.
+	 */
+	private static void insertSorted(ArrayList<Projection> projections, Projection projection) {
+		int position = Collections.binarySearch(projections, projection, CHRONOLOGICAL_ORDER);
+		projections.add(position < 0 ? -position - 1 : position, projection);
+	}
+
+}
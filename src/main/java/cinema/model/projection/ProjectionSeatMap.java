@@ -0,0 +1,160 @@
+package cinema.model.projection;
+
+import java.util.BitSet;
+
+import cinema.model.cinema.Room;
+import cinema.model.cinema.util.RoomException;
+
+/**
+ * Rappresenta in forma compatta l'occupazione dei posti di una proiezione.
+ *
+ * <p>
+ * L'occupazione è mantenuta in una mappa di bit, un bit per posto, in cui il
+ * posto alla fila {@code row} e alla colonna {@code col} corrisponde al bit di
+ * indice {@code row * numero di colonne + col}: il bit vale 1 se il posto è
+ * occupato, 0 se è libero.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ProjectionSeatMap {
+
+	/**
+	 * Codice identificativo della proiezione.
+	 */
+	private int projectionId;
+
+	/**
+	 * Numero di file della sala.
+	 */
+	private int rows;
+
+	/**
+	 * Numero di colonne della sala.
+	 */
+	private int cols;
+
+	/**
+	 * Mappa di bit dei posti occupati.
+	 */
+	private long[] occupiedSeats;
+
+	/**
+	 * Costruttore della mappa dei posti, inizialmente tutti liberi.
+	 *
+	 * @param projectionId codice identificativo della proiezione.
+	 * @param rows         numero di file della sala.
+	 * @param cols         numero di colonne della sala.
+	 */
+	public ProjectionSeatMap(int projectionId, int rows, int cols) {
+		this.projectionId = projectionId;
+		this.rows = rows;
+		this.cols = cols;
+		this.occupiedSeats = new long[(rows * cols + 63) >>> 6];
+	}
+
+	/**
+	 * Costruttore della mappa dei posti a partire da una mappa di bit esistente.
+	 *
+	 * @param projectionId  codice identificativo della proiezione.
+	 * @param rows          numero di file della sala.
+	 * @param cols          numero di colonne della sala.
+	 * @param occupiedSeats mappa di bit dei posti occupati, non più modificata
+	 *                      dal chiamante.
+	 */
+	ProjectionSeatMap(int projectionId, int rows, int cols, long[] occupiedSeats) {
+		this.projectionId = projectionId;
+		this.rows = rows;
+		this.cols = cols;
+		this.occupiedSeats = occupiedSeats;
+	}
+
+	/**
+	 * Segna come occupato il posto indicato.
+	 *
+	 * @param row coordinata riga.
+	 * @param col coordinata colonna.
+	 * @throws RoomException qualora il posto selezionato non esista.
+	 */
+	public void setOccupied(int row, int col) throws RoomException {
+		int index = getSeatIndex(row, col);
+		occupiedSeats[index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 * Verifica se un posto specifico sia libero.
+	 *
+	 * @param row coordinata riga.
+	 * @param col coordinata colonna.
+	 * @return True: libero, False: occupato.
+	 * @throws RoomException qualora il posto selezionato non esista.
+	 */
+	public boolean isAvailable(int row, int col) throws RoomException {
+		int index = getSeatIndex(row, col);
+		return (occupiedSeats[index >>> 6] & (1L << index)) == 0;
+	}
+
+	/**
+	 * Restituisce il numero di posti liberi della proiezione.
+	 *
+	 * @return numero di posti disponibili/liberi.
+	 */
+	public int getNumberAvailableSeats() {
+		int occupied = 0;
+		for (long word : occupiedSeats)
+			occupied += Long.bitCount(word);
+		return rows * cols - occupied;
+	}
+
+	/**
+	 * Restituisce una copia della mappa dei posti occupati, in cui il posto di
+	 * indice {@code i} è occupato se il bit {@code i} vale 1.
+	 *
+	 * @return mappa di bit dei posti occupati.
+	 */
+	public BitSet getOccupiedSeats() {
+		return BitSet.valueOf(occupiedSeats);
+	}
+
+	/**
+	 * Restituisce la mappa dei posti occupati come sequenza di byte, in cui il
+	 * posto di indice {@code i} corrisponde al bit {@code i % 8} del byte
+	 * {@code i / 8}.
+	 *
+	 * @return mappa di bit dei posti occupati.
+	 */
+	public byte[] toByteArray() {
+		byte[] bytes = new byte[(rows * cols + 7) >>> 3];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) (occupiedSeats[i >>> 3] >>> ((i & 7) << 3));
+		return bytes;
+	}
+
+	/**
+	 * Calcola l'indice del bit associato al posto indicato.
+	 *
+	 * @param row coordinata riga.
+	 * @param col coordinata colonna.
+	 * @return indice del bit associato al posto.
+	 * @throws RoomException qualora il posto selezionato non esista.
+	 */
+	private int getSeatIndex(int row, int col) throws RoomException {
+		if (row < 0 || row >= rows || col < 0 || col >= cols)
+			throw new RoomException(
+					"Il posto selezionato (" + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + ") non esiste.");
+		return row * cols + col;
+	}
+
+	public int getProjectionId() {
+		return projectionId;
+	}
+
+	public int getNumberOfRows() {
+		return rows;
+	}
+
+	public int getNumberOfCols() {
+		return cols;
+	}
+
+}
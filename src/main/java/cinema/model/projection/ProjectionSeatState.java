@@ -0,0 +1,273 @@
+package cinema.model.projection;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import cinema.model.cinema.Room;
+import cinema.model.cinema.util.RoomException;
+
+/**
+ * Mantiene lo stato di occupazione dei posti di una proiezione.
+ *
+ * <p>
+ * Lo stato è rappresentato da una mappa di bit, un bit per posto, in cui il
+ * posto alla fila {@code row} e alla colonna {@code col} corrisponde al bit di
+ * indice {@code row * numero di colonne + col}: il bit vale 1 se il posto è
+ * occupato, 0 se è libero. Tutte le operazioni sul singolo posto richiedono
+ * tempo costante.
+ *
+ * <p>
+ * La mappa di bit è un {@code AtomicLongArray}: le modifiche avvengono tramite
+ * compare-and-set sulle singole parole da 64 bit, senza lock, e più thread
+ * possono occupare e liberare posti della stessa proiezione in modo
+ * concorrente. {@link #claimSeats(int[])} occupa un gruppo di posti in modo
+ * atomico (o tutti o nessuno).
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ProjectionSeatState {
+
+	/**
+	 * Numero di file della sala.
+	 */
+	private final int rows;
+
+	/**
+	 * Numero di colonne della sala.
+	 */
+	private final int cols;
+
+	/**
+	 * Mappa di bit dei posti occupati.
+	 */
+	private final AtomicLongArray occupiedSeats;
+
+	/**
+	 * Costruttore dello stato dei posti, inizialmente tutti liberi.
+	 *
+	 * @param rows numero di file della sala.
+	 * @param cols numero di colonne della sala.
+	 */
+	public ProjectionSeatState(int rows, int cols) {
+		this.rows = rows;
+		this.cols = cols;
+		this.occupiedSeats = new AtomicLongArray((rows * cols + 63) >>> 6);
+	}
+
+	/**
+	 * Verifica se un posto specifico sia libero.
+	 *
+	 * @param row coordinata riga.
+	 * @param col coordinata colonna.
+	 * @return True: libero, False: occupato.
+	 * @throws RoomException qualora il posto selezionato non esista.
+	 */
+	public boolean isAvailable(int row, int col) throws RoomException {
+		int index = getSeatIndex(row, col);
+		return (occupiedSeats.get(index >>> 6) & (1L << index)) == 0;
+	}
+
+	/**
+	 * Occupa un posto se è libero.
+	 *
+	 * @param row coordinata riga.
+	 * @param col coordinata colonna.
+	 * @return True: posto occupato con successo, False: il posto era già occupato.
+	 * @throws RoomException qualora il posto selezionato non esista.
+	 */
+	public boolean take(int row, int col) throws RoomException {
+		int index = getSeatIndex(row, col);
+		long mask = 1L << index;
+		long current;
+		do {
+			current = occupiedSeats.get(index >>> 6);
+			if ((current & mask) != 0)
+				return false;
+		} while (!occupiedSeats.compareAndSet(index >>> 6, current, current | mask));
+		return true;
+	}
+
+	/**
+	 * Libera un posto se è occupato.
+	 *
+	 * @param row coordinata riga.
+	 * @param col coordinata colonna.
+	 * @return True: posto liberato con successo, False: il posto era già libero.
+	 * @throws RoomException qualora il posto selezionato non esista.
+	 */
+	public boolean free(int row, int col) throws RoomException {
+		int index = getSeatIndex(row, col);
+		long mask = 1L << index;
+		long current;
+		do {
+			current = occupiedSeats.get(index >>> 6);
+			if ((current & mask) == 0)
+				return false;
+		} while (!occupiedSeats.compareAndSet(index >>> 6, current, current & ~mask));
+		return true;
+	}
+
+	/**
+	 * Occupa tutti i posti indicati oppure nessuno.
+	 *
+	 * <p>
+	 * I posti vengono raggruppati per parola della mappa di bit e ogni parola è
+	 * aggiornata con un singolo compare-and-set, in ordine crescente. Se uno dei
+	 * posti risulta già occupato le parole aggiornate fino a quel momento vengono
+	 * ripristinate e il metodo restituisce false. L'ordine crescente garantisce
+	 * che, tra due richieste concorrenti in conflitto, almeno una vada a buon
+	 * fine.
+	 *
+	 * @param seatIndexes indici dei posti da occupare (si veda
+	 *                    {@link #getSeatIndex(int, int)}).
+	 * @return True: tutti i posti sono stati occupati, False: almeno un posto era
+	 *         già occupato e nessun posto è stato occupato.
+	 * @throws RoomException qualora uno dei posti indicati non esista.
+	 */
+	public boolean claimSeats(int[] seatIndexes) throws RoomException {
+		int[] words = new int[seatIndexes.length];
+		long[] masks = new long[seatIndexes.length];
+		int nWords = groupByWord(seatIndexes, words, masks);
+		for (int i = 0; i < nWords; i++) {
+			long current;
+			do {
+				current = occupiedSeats.get(words[i]);
+				if ((current & masks[i]) != 0) {
+					for (int j = 0; j < i; j++)
+						clear(words[j], masks[j]);
+					return false;
+				}
+			} while (!occupiedSeats.compareAndSet(words[i], current, current | masks[i]));
+		}
+		return true;
+	}
+
+	/**
+	 * Libera tutti i posti indicati, che devono essere stati occupati dal
+	 * chiamante.
+	 *
+	 * @param seatIndexes indici dei posti da liberare (si veda
+	 *                    {@link #getSeatIndex(int, int)}).
+	 * @throws RoomException qualora uno dei posti indicati non esista.
+	 */
+	public void releaseSeats(int[] seatIndexes) throws RoomException {
+		int[] words = new int[seatIndexes.length];
+		long[] masks = new long[seatIndexes.length];
+		int nWords = groupByWord(seatIndexes, words, masks);
+		for (int i = 0; i < nWords; i++)
+			clear(words[i], masks[i]);
+	}
+
+	/**
+	 * Occupa tutti i posti indicati che risultano ancora liberi, lasciando
+	 * invariati gli altri.
+	 *
+	 * @param occupied mappa di bit dei posti da occupare, con lo stesso
+	 *                 ordinamento dello stato dei posti.
+	 * @return numero di posti occupati dalla chiamata.
+	 */
+	public int occupy(BitSet occupied) {
+		long[] words = occupied.toLongArray();
+		int taken = 0;
+		for (int i = 0; i < Math.min(words.length, occupiedSeats.length()); i++) {
+			if (words[i] == 0)
+				continue;
+			long current;
+			do {
+				current = occupiedSeats.get(i);
+			} while (!occupiedSeats.compareAndSet(i, current, current | words[i]));
+			taken += Long.bitCount(words[i] & ~current);
+		}
+		return taken;
+	}
+
+	/**
+	 * Restituisce il numero di posti liberi.
+	 *
+	 * @return numero di posti disponibili/liberi.
+	 */
+	public int getNumberAvailableSeats() {
+		int occupied = 0;
+		for (int i = 0; i < occupiedSeats.length(); i++)
+			occupied += Long.bitCount(occupiedSeats.get(i));
+		return rows * cols - occupied;
+	}
+
+	/**
+	 * Restituisce un'istantanea dello stato corrente dei posti.
+	 *
+	 * @param projectionId codice identificativo della proiezione.
+	 * @return mappa dei posti della proiezione.
+	 */
+	public ProjectionSeatMap toSeatMap(int projectionId) {
+		long[] snapshot = new long[occupiedSeats.length()];
+		for (int i = 0; i < snapshot.length; i++)
+			snapshot[i] = occupiedSeats.get(i);
+		return new ProjectionSeatMap(projectionId, rows, cols, snapshot);
+	}
+
+	/**
+	 * Calcola l'indice del bit associato al posto indicato.
+	 *
+	 * @param row coordinata riga.
+	 * @param col coordinata colonna.
+	 * @return indice del bit associato al posto.
+	 * @throws RoomException qualora il posto selezionato non esista.
+	 */
+	public int getSeatIndex(int row, int col) throws RoomException {
+		if (row < 0 || row >= rows || col < 0 || col >= cols)
+			throw new RoomException(
+					"Il posto selezionato (" + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + ") non esiste.");
+		return row * cols + col;
+	}
+
+	/**
+	 * Raggruppa gli indici dei posti per parola della mappa di bit.
+	 *
+	 * @param seatIndexes indici dei posti.
+	 * @param words       riempito con gli indici delle parole, in ordine
+	 *                    crescente.
+	 * @param masks       riempito con la maschera dei posti di ciascuna parola.
+	 * @return numero di parole coinvolte.
+	 * @throws RoomException qualora uno dei posti indicati non esista.
+	 */
+	private int groupByWord(int[] seatIndexes, int[] words, long[] masks) throws RoomException {
+		int[] sorted = seatIndexes.clone();
+		Arrays.sort(sorted);
+		int nWords = 0;
+		for (int index : sorted) {
+			if (index < 0 || index >= rows * cols)
+				throw new RoomException("Il posto selezionato non esiste.");
+			if (nWords == 0 || words[nWords - 1] != index >>> 6) {
+				words[nWords] = index >>> 6;
+				masks[nWords++] = 0;
+			}
+			masks[nWords - 1] |= 1L << index;
+		}
+		return nWords;
+	}
+
+	/**
+	 * Azzera i bit indicati da {@code mask} nella parola {@code word}.
+	 *
+	 * @param word indice della parola.
+	 * @param mask bit da azzerare.
+	 */
+	private void clear(int word, long mask) {
+		long current;
+		do {
+			current = occupiedSeats.get(word);
+		} while (!occupiedSeats.compareAndSet(word, current, current & ~mask));
+	}
+
+	public int getNumberOfRows() {
+		return rows;
+	}
+
+	public int getNumberOfCols() {
+		return cols;
+	}
+
+}
@@ -3,6 +3,8 @@ package cinema.model.reservation;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 import cinema.model.payment.GreatNorthernAccountingAdapter;
 import cinema.model.payment.methods.paymentCard.PaymentCard;
@@ -52,9 +54,24 @@ public class Reservation {
 	private Spectator purchaser;
 
 	/**
-	 * Posti selezionati associati alla prenotazione.
+	 * Posti selezionati associati alla prenotazione, indicati dal loro indice
+	 * nella proiezione (si veda {@link Projection#getSeatIndex(int, int)}).
 	 */
-	private ArrayList<PhysicalSeat> seats;
+	private BitSet seats;
+
+	/**
+	 * Posti selezionati effettivamente occupati dalla prenotazione nella
+	 * proiezione, in modo temporaneo (si veda {@link #holdSeat(int, int)}) o per
+	 * l'acquisto.
+	 */
+	private BitSet heldSeats;
+
+	/**
+	 * Indica se i posti selezionati sono stati occupati per l'acquisto con
+	 * {@link #takeSeat()}: da quel momento l'occupazione temporanea dei posti non
+	 * può più scadere.
+	 */
+	private boolean seatsTaken;
 
 	/**
 	 * Proiezione per la quale lo spettatore desidera prenotare dei posti.
@@ -97,6 +114,13 @@ public class Reservation {
 	 */
 	private IReservationDiscountStrategy rd;
 
+	/**
+	 * Importo effettivamente pagato, impostato solo per le prenotazioni
+	 * ripristinate dal meccanismo di persistenza (si veda
+	 * {@link #restorePurchase(List, double)}).
+	 */
+	private Double paidTotal;
+
 	/**
 	 * Costruttore della prenotazione.
 	 * 
@@ -106,13 +130,16 @@ public class Reservation {
 	public Reservation(IReservationDiscountStrategy strategy, long id) {
 		progressive = id;
 		purchaseDate = java.time.LocalDate.now();
-		seats = new ArrayList<PhysicalSeat>();
+		seats = new BitSet();
+		heldSeats = new BitSet();
+		seatsTaken = false;
 		paymentCard = null;
 		reportLocation = null;
 		coupon = null;
 		numberPeopleUntilMinAge = 0;
 		numberPeopleOverMaxAge = 0;
 		rd = strategy;
+		paidTotal = null;
 	}
 
 	/**
@@ -126,35 +153,82 @@ public class Reservation {
 	 *                                   all'interno della sala associata alla
 	 *                                   prenotazione.
 	 */
-	public void addSeat(int row, int col) throws SeatAvailabilityException, RoomException {
-		boolean findDuplicate = false;
-		if (projection.checkIfSeatIsAvailable(row, col)) {
-			for (PhysicalSeat s : seats) {
-				if (s == projection.getPhysicalSeat(row, col)) {
-					findDuplicate = true;
-				}
-			}
-			if (!findDuplicate) {
-				seats.add(projection.getPhysicalSeat(row, col));
-			} else {
-				throw new SeatAvailabilityException(
-						"Il posto " + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + " è già stato selezionato.");
-			}
-		} else
+	public synchronized void addSeat(int row, int col) throws SeatAvailabilityException, RoomException {
+		int index = projection.getSeatIndex(row, col);
+		if (seats.get(index))
+			throw new SeatAvailabilityException(
+					"Il posto " + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + " è già stato selezionato.");
+		if (!projection.checkIfSeatIsAvailable(row, col))
+			throw new SeatAvailabilityException(
+					"Il posto " + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + " è già occupato.");
+		seats.set(index);
+	}
+
+	/**
+	 * Aggiunge un posto alla prenotazione occupandolo temporaneamente nella
+	 * proiezione, in modo che non possa essere selezionato da altri spettatori.
+	 * 
+	 * <p>
+	 * Il posto viene occupato in modo atomico: se due spettatori selezionano
+	 * contemporaneamente lo stesso posto solo uno dei due lo ottiene.
+	 * L'occupazione temporanea viene annullata da {@link #releaseHold(int)}, da
+	 * {@link #removeSeat(int, int)} o da {@link #freeAllSeats()}.
+	 * 
+	 * @param row fila del posto da occupare.
+	 * @param col posto all'interno della fila {@code row} da occupare.
+	 * @return indice del posto nella proiezione.
+	 * @throws SeatAvailabilityException se il posto scelto è già stato selezionato
+	 *                                   o occupato precedentemente.
+	 * @throws RoomException             se il posto selezionato non esiste
+	 *                                   all'interno della sala associata alla
+	 *                                   prenotazione.
+	 */
+	public synchronized int holdSeat(int row, int col) throws SeatAvailabilityException, RoomException {
+		int index = projection.getSeatIndex(row, col);
+		if (seats.get(index))
+			throw new SeatAvailabilityException(
+					"Il posto " + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + " è già stato selezionato.");
+		if (!projection.claimSeats(new int[] { index }))
 			throw new SeatAvailabilityException(
 					"Il posto " + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + " è già occupato.");
+		seats.set(index);
+		heldSeats.set(index);
+		return index;
+	}
+
+	/**
+	 * Annulla l'occupazione temporanea di un posto, che resta comunque tra i posti
+	 * selezionati e verrà nuovamente occupato al momento dell'acquisto.
+	 * 
+	 * <p>
+	 * Se i posti sono già stati occupati per l'acquisto il metodo non ha effetto.
+	 * 
+	 * @param index indice del posto nella proiezione.
+	 * @return true se l'occupazione temporanea è stata annullata.
+	 * @throws RoomException se il posto non esiste all'interno della sala
+	 *                       associata alla prenotazione.
+	 */
+	public synchronized boolean releaseHold(int index) throws RoomException {
+		if (seatsTaken || !heldSeats.get(index))
+			return false;
+		projection.releaseSeats(new int[] { index });
+		heldSeats.clear(index);
+		return true;
 	}
 
 	/**
-	 * Rimuove un posto dalla prenotazione.
+	 * Rimuove un posto dalla prenotazione, liberandolo se era occupato
+	 * temporaneamente.
 	 * 
 	 * @param row fila del posto da rimuovere.
 	 * @param col posto all'interno della fila {@code row} da rimuovere.
 	 * @throws RoomException se il posto selezionato non esiste all'interno della
 	 *                       sala associata alla prenotazione.
 	 */
-	public void removeSeat(int row, int col) throws RoomException {
-		seats.remove(projection.getPhysicalSeat(row, col));
+	public synchronized void removeSeat(int row, int col) throws RoomException {
+		int index = projection.getSeatIndex(row, col);
+		releaseHold(index);
+		seats.clear(index);
 	}
 
 	/**
@@ -164,6 +238,8 @@ public class Reservation {
 	 * @return costo totale della prenotazione una volta applicati eventuali coupon.
 	 */
 	public double getTotal() {
+		if (paidTotal != null)
+			return paidTotal;
 		double total = rd.getTotal(this);
 
 		// Se alla prenotazione è associato un coupon esistente si sottrae
@@ -211,7 +287,7 @@ public class Reservation {
 	 * @return the number of currently occupied seats for the reservation.
 	 */
 	public int getNSeats() {
-		return seats.size();
+		return seats.cardinality();
 	}
 
 	/**
@@ -239,11 +315,31 @@ public class Reservation {
 	public void buy() throws SeatAvailabilityException, NumberFormatException, RoomException, ReservationException,
 			PaymentErrorException, PersistenceException {
 		takeSeat();
+		payTakenSeats();
+	}
+
+	/**
+	 * Avvia il pagamento dei posti già occupati con {@link #takeSeat()}; se il
+	 * pagamento non va a buon fine i posti vengono liberati e la selezione viene
+	 * svuotata.
+	 *
+	 * @throws RoomException         se ci sono errori legati alla gestione della
+	 *                               sala del cinema.
+	 * @throws ReservationException  se la prenotazione non è associata ad alcuna
+	 *                               carta di credito, oppure non è stato
+	 *                               selezionato alcun posto.
+	 * @throws PaymentErrorException se il pagamento non è andato a buon fine.
+	 * @throws PersistenceException  se ci sono errori riscontrati durante l'uso dei
+	 *                               meccanismi di persistenza.
+	 */
+	public void payTakenSeats() throws RoomException, ReservationException, PaymentErrorException, PersistenceException {
 		try {
 			pay();
 		} catch (ReservationException | PaymentErrorException | PersistenceException exception) {
-			freeAllSeats();
-			seats.removeAll(seats);
+			synchronized (this) {
+				freeAllSeats();
+				seats.clear();
+			}
 			throw exception;
 		}
 	}
@@ -255,10 +351,12 @@ public class Reservation {
 	 * <p>
 	 * Viene effettuata la prenotazione effettiva dei posti aggiunti alla
 	 * prenotazione in modo tale che essi risultino occupati per altri spettatori
-	 * concorrenti o futuri. Se un posto non può essere riservato al momento della
-	 * chiamata tutti i posti già occupati vengono liberati e viene lanciata
-	 * un'eccezione {@code SeatAvailabilityException} per notificare il chiamante
-	 * dell'errore riscontrato.
+	 * concorrenti o futuri. I posti vengono occupati in modo atomico: se anche uno
+	 * solo di essi non può essere riservato al momento della chiamata nessun posto
+	 * viene occupato, la selezione viene svuotata e viene lanciata un'eccezione
+	 * {@code SeatAvailabilityException} per notificare il chiamante dell'errore
+	 * riscontrato. I posti già occupati temporaneamente dalla prenotazione non
+	 * vengono occupati di nuovo.
 	 *
 	 * @throws RoomException             se un posto non può essere considerato
 	 *                                   parte della sala della quale dovrebbe fare
@@ -267,17 +365,16 @@ public class Reservation {
 	 *                                   effettivamente prenotato da un altro
 	 *                                   spettatore concorrente.
 	 */
-	public void takeSeat() throws RoomException, SeatAvailabilityException {
-		for (int i = 0; i < seats.size(); i++) {
-			String coordinates = projection.getSeatCoordinates(seats.get(i));
-			int row = Room.rowLetterToRowIndex(coordinates.replaceAll("\\d", ""));
-			int col = Integer.valueOf(coordinates.replaceAll("[\\D]", "")) - 1;
-			if (!projection.takeSeat(row, col)) {
-				freeAllSeats();
-				seats.removeAll(seats);
-				throw new SeatAvailabilityException("Uno dei posti selezionati è già stato occupato.");
-			}
+	public synchronized void takeSeat() throws RoomException, SeatAvailabilityException {
+		BitSet toClaim = (BitSet) seats.clone();
+		toClaim.andNot(heldSeats);
+		if (!projection.claimSeats(toClaim.stream().toArray())) {
+			freeAllSeats();
+			seats.clear();
+			throw new SeatAvailabilityException("Uno dei posti selezionati è già stato occupato.");
 		}
+		heldSeats.or(toClaim);
+		seatsTaken = true;
 	}
 
 	/**
@@ -305,19 +402,47 @@ public class Reservation {
 	}
 
 	/**
-	 * Libera tutti i posti della prenotazione.
+	 * Libera tutti i posti occupati dalla prenotazione, temporaneamente o con
+	 * {@link #takeSeat()}.
 	 * 
+	 * <p>
+	 * Vengono liberati solamente i posti effettivamente occupati da questa
+	 * prenotazione, in modo da non rilasciare posti occupati da altre prenotazioni
+	 * concorrenti.
+	 * 
+	 * @return numero di posti liberati.
 	 * @throws RoomException se un posto non può essere considerato parte della sala
 	 *                       della quale dovrebbe fare parte.
 	 */
-	public void freeAllSeats() throws RoomException {
-		for (int i = 0; i < seats.size(); i++) {
-			String coordinates = projection.getSeatCoordinates(seats.get(i));
-			int row = Room.rowLetterToRowIndex(coordinates.replaceAll("\\d", ""));
-			int col = Integer.valueOf(coordinates.replaceAll("[\\D]", "")) - 1;
-			if (projection.checkIfSeatIsAvailable(row, col))
-				projection.freeSeat(row, col);
-		}
+	public synchronized int freeAllSeats() throws RoomException {
+		int released = heldSeats.cardinality();
+		if (released > 0)
+			projection.releaseSeats(heldSeats.stream().toArray());
+		heldSeats.clear();
+		seatsTaken = false;
+		return released;
+	}
+
+	/**
+	 * Ripristina i posti e l'importo di una prenotazione già acquistata, letti dal
+	 * meccanismo di persistenza.
+	 *
+	 * <p>
+	 * I posti vengono associati alla prenotazione senza occuparli nella
+	 * proiezione, dove risultano già occupati dall'acquisto, e il totale resta
+	 * quello pagato, indipendentemente dalla strategia di sconto corrente del
+	 * cinema. La proiezione deve essere già stata impostata.
+	 *
+	 * @param seatCoordinates posti acquistati, indicati dalla coppia {fila,
+	 *                        colonna}.
+	 * @param total           importo pagato.
+	 * @throws RoomException se un posto non esiste all'interno della sala della
+	 *                       proiezione.
+	 */
+	public synchronized void restorePurchase(List<int[]> seatCoordinates, double total) throws RoomException {
+		for (int[] seat : seatCoordinates)
+			seats.set(projection.getSeatIndex(seat[0], seat[1]));
+		paidTotal = total;
 	}
 
 	/**
@@ -389,8 +514,19 @@ public class Reservation {
 		return purchaseDate;
 	}
 
+	/**
+	 * Restituisce i posti selezionati, ordinati per fila e per posto.
+	 * 
+	 * @return i posti fisici selezionati.
+	 */
 	public ArrayList<PhysicalSeat> getSeats() {
-		return seats;
+		ArrayList<PhysicalSeat> physicalSeats = new ArrayList<PhysicalSeat>(seats.cardinality());
+		if (projection == null)
+			return physicalSeats;
+		int cols = projection.getRoom().getNumberOfCols();
+		for (int index = seats.nextSetBit(0); index >= 0; index = seats.nextSetBit(index + 1))
+			physicalSeats.add(projection.getRoom().getSeat(index / cols, index % cols));
+		return physicalSeats;
 	}
 
 	public IReservationDiscountStrategy getStrategy() {
@@ -401,7 +537,16 @@ public class Reservation {
 		return paymentCard;
 	}
 
-	public void setProjection(Projection projection) {
+	public synchronized void setProjection(Projection projection) {
+		// I posti selezionati si riferiscono alla sala della proiezione precedente
+		if (this.projection != projection) {
+			try {
+				freeAllSeats();
+			} catch (RoomException e) {
+				// Gli indici dei posti occupati provengono dalla stessa proiezione
+			}
+			seats.clear();
+		}
 		this.projection = projection;
 	}
 
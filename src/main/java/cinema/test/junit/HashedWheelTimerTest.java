@@ -0,0 +1,119 @@
+package cinema.test.junit;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cinema.controller.handlers.HashedWheelTimer;
+import cinema.controller.handlers.HashedWheelTimer.Timeout;
+
+/**
+ * Effettua il test di unità (tramite JUnit) sulla classe HashedWheelTimer.
+ *
+ * <p>
+ * La ruota usata nei test ha pochi tick brevi, in modo che un ritardo di poche
+ * centinaia di millisecondi richieda più giri completi.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class HashedWheelTimerTest {
+
+	/**
+	 * Durata di un tick della ruota, in millisecondi.
+	 */
+	private static final long TICK_MILLIS = 10;
+
+	/**
+	 * Numero di posizioni della ruota (un giro completo dura 40 ms).
+	 */
+	private static final int WHEEL_SIZE = 4;
+
+	/**
+	 * Ruota utilizzata nel test.
+	 */
+	private HashedWheelTimer timer;
+
+	/**
+	 * Avvia una nuova ruota prima di ogni test.
+	 */
+	@Before
+	public void setUp() {
+		timer = new HashedWheelTimer("test-timer", TICK_MILLIS, WHEEL_SIZE);
+	}
+
+	/**
+	 * Ferma la ruota dopo ogni test.
+	 */
+	@After
+	public void tearDown() {
+		timer.stop();
+	}
+
+	/**
+	 * Test sull'esecuzione di un compito il cui ritardo richiede più giri della
+	 * ruota: il compito non deve essere eseguito al primo passaggio sulla sua
+	 * posizione, ma solo alla scadenza.
+	 *
+	 * @throws InterruptedException se il test viene interrotto.
+	 */
+	@Test
+	public void testMultipleRounds() throws InterruptedException {
+		final long delayMillis = 200;
+		CountDownLatch fired = new CountDownLatch(1);
+		long start = System.nanoTime();
+		Timeout timeout = timer.newTimeout(fired::countDown, delayMillis, TimeUnit.MILLISECONDS);
+		assertTrue(fired.await(5, TimeUnit.SECONDS));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(elapsedMillis >= delayMillis);
+		assertTrue(timeout.isExpired());
+		assertFalse(timeout.cancel());
+	}
+
+	/**
+	 * Test su due compiti assegnati alla stessa posizione della ruota ma con un
+	 * numero di giri diverso: il secondo non deve essere eseguito insieme al
+	 * primo.
+	 *
+	 * @throws InterruptedException se il test viene interrotto.
+	 */
+	@Test
+	public void testSameBucketDifferentRounds() throws InterruptedException {
+		final long shortDelay = 3 * TICK_MILLIS;
+		final long longDelay = shortDelay + 3 * WHEEL_SIZE * TICK_MILLIS;
+		CountDownLatch shortFired = new CountDownLatch(1);
+		CountDownLatch longFired = new CountDownLatch(1);
+		Timeout longTimeout = timer.newTimeout(longFired::countDown, longDelay, TimeUnit.MILLISECONDS);
+		timer.newTimeout(shortFired::countDown, shortDelay, TimeUnit.MILLISECONDS);
+		assertTrue(shortFired.await(5, TimeUnit.SECONDS));
+		assertFalse(longTimeout.isExpired());
+		assertTrue(longFired.await(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Test sulla cancellazione di un compito prima della scadenza.
+	 *
+	 * @throws InterruptedException se il test viene interrotto.
+	 */
+	@Test
+	public void testCancel() throws InterruptedException {
+		AtomicBoolean fired = new AtomicBoolean(false);
+		Timeout timeout = timer.newTimeout(() -> fired.set(true), 5 * TICK_MILLIS, TimeUnit.MILLISECONDS);
+		assertTrue(timeout.cancel());
+		assertFalse(timeout.cancel());
+		// Un compito successivo garantisce che la ruota abbia superato la scadenza
+		CountDownLatch later = new CountDownLatch(1);
+		timer.newTimeout(later::countDown, 3 * WHEEL_SIZE * TICK_MILLIS, TimeUnit.MILLISECONDS);
+		assertTrue(later.await(5, TimeUnit.SECONDS));
+		assertFalse(fired.get());
+		assertTrue(timeout.isCancelled());
+		assertFalse(timeout.isExpired());
+	}
+
+}
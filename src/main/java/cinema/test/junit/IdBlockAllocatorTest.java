@@ -0,0 +1,148 @@
+package cinema.test.junit;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import cinema.model.persistence.IdBlockAllocator;
+import cinema.model.persistence.dao.interfaces.ISequenceDao;
+
+/**
+ * Effettua il test di unità (tramite JUnit) sulla classe IdBlockAllocator.
+ *
+ * <p>
+ * La persistenza delle sequenze è sostituita da una sequenza in memoria che
+ * conta gli accessi.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class IdBlockAllocatorTest {
+
+	/**
+	 * Test sull'assegnazione di identificativi consecutivi, riservando un nuovo
+	 * blocco solo quando il precedente è esaurito.
+	 *
+	 * @throws SQLException se vengono riscontrati errori nel riservare i blocchi.
+	 */
+	@Test
+	public void testConsecutiveIds() throws SQLException {
+		InMemorySequence sequence = new InMemorySequence(100);
+		IdBlockAllocator allocator = new IdBlockAllocator(sequence, "Reservation", 4);
+		for (long expected = 100; expected < 110; expected++)
+			assertEquals(expected, allocator.nextId());
+		assertEquals(3, sequence.reservations.get());
+	}
+
+	/**
+	 * Test sull'assegnazione concorrente: gli identificativi sono tutti distinti e
+	 * nessun blocco viene riservato inutilmente.
+	 *
+	 * @throws InterruptedException se il test viene interrotto.
+	 */
+	@Test
+	public void testConcurrentIdsAreUnique() throws InterruptedException {
+		final int THREADS = 8;
+		final int IDS_PER_THREAD = 1000;
+		final int BLOCK_SIZE = 32;
+		InMemorySequence sequence = new InMemorySequence(1);
+		IdBlockAllocator allocator = new IdBlockAllocator(sequence, "Reservation", BLOCK_SIZE);
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		AtomicInteger errors = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREADS; i++) {
+			Thread thread = new Thread(() -> {
+				for (int j = 0; j < IDS_PER_THREAD; j++) {
+					try {
+						if (!ids.add(allocator.nextId()))
+							errors.incrementAndGet();
+					} catch (SQLException e) {
+						errors.incrementAndGet();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(0, errors.get());
+		assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+		assertEquals(THREADS * IDS_PER_THREAD / BLOCK_SIZE, sequence.reservations.get());
+	}
+
+	/**
+	 * Test sul comportamento dopo un errore nel riservare un blocco: l'errore
+	 * viene propagato e la richiesta successiva riserva nuovamente il blocco.
+	 *
+	 * @throws SQLException se vengono riscontrati errori nel riservare i blocchi
+	 *                      dopo il primo.
+	 */
+	@Test
+	public void testFailedReservationIsRetried() throws SQLException {
+		InMemorySequence sequence = new InMemorySequence(1);
+		sequence.failures = 1;
+		IdBlockAllocator allocator = new IdBlockAllocator(sequence, "Reservation", 8);
+		try {
+			allocator.nextId();
+			fail("L'errore della persistenza deve essere propagato.");
+		} catch (SQLException e) {
+			assertEquals(0, sequence.reservations.get());
+		}
+		assertEquals(1, allocator.nextId());
+		assertEquals(2, allocator.nextId());
+		assertEquals(1, sequence.reservations.get());
+	}
+
+	/**
+	 * Sequenza di identificativi mantenuta in memoria.
+	 */
+	private static class InMemorySequence implements ISequenceDao {
+
+		/**
+		 * Primo identificativo non ancora riservato.
+		 */
+		private long next;
+
+		/**
+		 * Numero di blocchi riservati.
+		 */
+		private final AtomicInteger reservations;
+
+		/**
+		 * Numero di richieste che devono ancora fallire.
+		 */
+		private int failures;
+
+		/**
+		 * Costruttore della sequenza.
+		 *
+		 * @param first primo identificativo della sequenza.
+		 */
+		private InMemorySequence(long first) {
+			this.next = first;
+			this.reservations = new AtomicInteger();
+			this.failures = 0;
+		}
+
+		@Override
+		public synchronized long reserveIds(String table, int size) throws SQLException {
+			if (failures > 0) {
+				failures--;
+				throw new SQLException("Errore simulato.");
+			}
+			reservations.incrementAndGet();
+			long first = next;
+			next += size;
+			return first;
+		}
+	}
+
+}
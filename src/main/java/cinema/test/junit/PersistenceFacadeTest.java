@@ -0,0 +1,167 @@
+package cinema.test.junit;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cinema.model.persistence.OutboxMessage;
+import cinema.model.persistence.PersistenceFacade;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.types.DiscountNumberSpectators;
+import cinema.model.spectator.Spectator;
+
+/**
+ * Effettua il test di unità (tramite JUnit) sulla transazione di acquisto della
+ * classe PersistenceFacade.
+ *
+ * <p>
+ * Ogni test utilizza una copia del database del cinema in una cartella
+ * temporanea, in modo da non modificare il database originale.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class PersistenceFacadeTest {
+
+	/**
+	 * Database del cinema da cui viene creata la copia.
+	 */
+	private static final String DATABASE = "persistence/cinemaDb.db";
+
+	/**
+	 * Proiezione per cui vengono acquistate le prenotazioni.
+	 */
+	private static final int PROJECTION_ID = 2;
+
+	/**
+	 * Cartella temporanea del test.
+	 */
+	private Path folder;
+
+	/**
+	 * Permette di accedere alla copia del database.
+	 */
+	private PersistenceFacade persistenceFacade;
+
+	/**
+	 * Impostazione di ogni test, copiando il database in una cartella temporanea.
+	 *
+	 * @throws Exception se non è possibile copiare o aprire il database.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		folder = Files.createTempDirectory("persistenceFacadeTest");
+		Path database = folder.resolve("cinemaDb.db");
+		Files.copy(Paths.get(DATABASE), database);
+		persistenceFacade = new PersistenceFacade("jdbc:sqlite:" + database);
+	}
+
+	/**
+	 * Elimina la cartella temporanea dopo ogni test.
+	 *
+	 * @throws IOException se non è possibile eliminare la cartella temporanea.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(folder)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	/**
+	 * Test sull'annullamento dell'acquisto: un errore successivo alla scrittura
+	 * della prenotazione e dei posti, ma precedente a quella del messaggio con la
+	 * ricevuta, non lascia alcuna modifica nel database. La connessione torna
+	 * utilizzabile per gli acquisti successivi.
+	 *
+	 * @throws Exception se vengono riscontrati errori nella preparazione delle
+	 *                   prenotazioni.
+	 */
+	@Test
+	public void testFailedPurchaseIsRolledBack() throws Exception {
+		Reservation failing = purchase(new FailingReservation(persistenceFacade.getNextReservationId()), 0);
+		try {
+			persistenceFacade.commitPurchase(failing);
+			fail("L'errore nella scrittura del messaggio deve essere propagato.");
+		} catch (IllegalStateException e) {
+			assertFalse(persistenceFacade.getOccupiedSeat(PROJECTION_ID, 0, 0));
+			assertTrue(persistenceFacade.getPurchasedReservations(PROJECTION_ID, failing.getProgressive() - 1, 1)
+					.isEmpty());
+			assertFalse(isInOutbox(failing.getProgressive()));
+		}
+
+		Reservation reservation = purchase(
+				new Reservation(new DiscountNumberSpectators(5, 0.1, 1), persistenceFacade.getNextReservationId()), 1);
+		persistenceFacade.commitPurchase(reservation);
+		assertTrue(persistenceFacade.getOccupiedSeat(PROJECTION_ID, 0, 1));
+		assertFalse(persistenceFacade.getOccupiedSeat(PROJECTION_ID, 0, 0));
+		assertTrue(isInOutbox(reservation.getProgressive()));
+	}
+
+	/**
+	 * Prepara l'acquisto di una prenotazione con un solo posto, inserendola vuota
+	 * nel database.
+	 *
+	 * @param reservation prenotazione da preparare.
+	 * @param col         posto della prima fila da selezionare.
+	 * @return la prenotazione.
+	 * @throws Exception se vengono riscontrati errori nella preparazione.
+	 */
+	private Reservation purchase(Reservation reservation, int col) throws Exception {
+		Projection projection = persistenceFacade.getProjection(PROJECTION_ID);
+		reservation.setProjection(projection);
+		reservation.addSeat(0, col);
+		reservation.setPurchaser(new Spectator("Mario", "Rossi", "mario.rossi@example.com"));
+		reservation.setPaymentCard("4444333322221111", "Mario Rossi", "123", YearMonth.now().plusYears(1));
+		persistenceFacade.putEmptyReservation(reservation);
+		return reservation;
+	}
+
+	/**
+	 * Verifica se il messaggio con la ricevuta di una prenotazione è in attesa di
+	 * consegna.
+	 *
+	 * @param reservationId identificativo della prenotazione.
+	 * @return true se il messaggio è presente.
+	 * @throws Exception se vengono riscontrati errori nella lettura.
+	 */
+	private boolean isInOutbox(long reservationId) throws Exception {
+		for (OutboxMessage message : persistenceFacade.getPendingOutboxMessages(Integer.MAX_VALUE, Integer.MAX_VALUE))
+			if (message.getReservationId() == reservationId)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Prenotazione il cui importo non può essere calcolato, in modo da far
+	 * fallire l'acquisto alla scrittura del messaggio con la ricevuta.
+	 */
+	private static class FailingReservation extends Reservation {
+
+		/**
+		 * Costruttore della prenotazione.
+		 *
+		 * @param id identificativo della prenotazione.
+		 */
+		private FailingReservation(long id) {
+			super(new DiscountNumberSpectators(5, 0.1, 1), id);
+		}
+
+		@Override
+		public double getTotal() {
+			throw new IllegalStateException("Errore simulato.");
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+package cinema.test.junit;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import cinema.model.cinema.util.RoomException;
+import cinema.model.projection.ProjectionSeatState;
+
+/**
+ * Effettua il test di unità (tramite JUnit) sulla classe ProjectionSeatState,
+ * verificando in particolare l'occupazione atomica dei posti da parte di più
+ * thread concorrenti.
+ *
+ * <p>
+ * Il test non utilizza il database.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ProjectionSeatStateTest {
+
+	/**
+	 * Numero di file della sala usata nei test (la sala occupa più parole della
+	 * mappa di bit).
+	 */
+	private static final int ROWS = 7;
+
+	/**
+	 * Numero di colonne della sala usata nei test.
+	 */
+	private static final int COLS = 15;
+
+	/**
+	 * Numero di thread concorrenti usati nei test di stress.
+	 */
+	private static final int THREADS = 16;
+
+	/**
+	 * Test sull'occupazione atomica di un gruppo di posti: se uno dei posti è già
+	 * occupato nessun posto deve essere occupato.
+	 *
+	 * @throws RoomException se i posti usati nel test non esistono.
+	 */
+	@Test
+	public void testClaimSeatsAllOrNothing() throws RoomException {
+		ProjectionSeatState state = new ProjectionSeatState(ROWS, COLS);
+		int[] first = { state.getSeatIndex(0, 0), state.getSeatIndex(4, 5), state.getSeatIndex(6, 14) };
+		assertTrue(state.claimSeats(first));
+		assertEquals(ROWS * COLS - 3, state.getNumberAvailableSeats());
+
+		int[] overlapping = { state.getSeatIndex(1, 0), state.getSeatIndex(4, 5) };
+		assertFalse(state.claimSeats(overlapping));
+		assertTrue(state.isAvailable(1, 0));
+		assertEquals(ROWS * COLS - 3, state.getNumberAvailableSeats());
+
+		state.releaseSeats(first);
+		assertEquals(ROWS * COLS, state.getNumberAvailableSeats());
+		assertTrue(state.claimSeats(overlapping));
+	}
+
+	/**
+	 * Test sulla gestione dei posti non esistenti.
+	 */
+	@Test
+	public void testClaimSeatNotExists() {
+		ProjectionSeatState state = new ProjectionSeatState(ROWS, COLS);
+		int error = 0;
+		try {
+			state.claimSeats(new int[] { 0, ROWS * COLS });
+		} catch (RoomException exception) {
+			error++;
+		}
+		assertEquals(1, error);
+		assertEquals(ROWS * COLS, state.getNumberAvailableSeats());
+	}
+
+	/**
+	 * Test di stress: molti thread acquistano e rilasciano gruppi casuali di posti
+	 * della stessa proiezione. Ogni posto deve risultare assegnato ad al più un
+	 * acquirente alla volta e al termine lo stato deve corrispondere ai posti
+	 * ancora assegnati.
+	 *
+	 * @throws Exception se uno dei thread del test termina con un errore.
+	 */
+	@Test
+	public void testConcurrentClaimsNeverOversell() throws Exception {
+		final ProjectionSeatState state = new ProjectionSeatState(ROWS, COLS);
+		final AtomicIntegerArray owners = new AtomicIntegerArray(ROWS * COLS);
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (int t = 1; t <= THREADS; t++) {
+			final int buyer = t;
+			results.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					Random random = new Random(buyer);
+					List<int[]> held = new ArrayList<int[]>();
+					int oversold = 0;
+					start.await();
+					for (int i = 0; i < 20000; i++) {
+						if (!held.isEmpty() && random.nextInt(3) == 0) {
+							int[] seats = held.remove(random.nextInt(held.size()));
+							for (int seat : seats)
+								owners.set(seat, 0);
+							state.releaseSeats(seats);
+							continue;
+						}
+						int[] seats = new int[1 + random.nextInt(4)];
+						for (int j = 0; j < seats.length; j++)
+							seats[j] = (random.nextInt(ROWS * COLS) + j * 61) % (ROWS * COLS);
+						if (state.claimSeats(seats)) {
+							for (int seat : distinct(seats)) {
+								if (!owners.compareAndSet(seat, 0, buyer))
+									oversold++;
+							}
+							held.add(distinct(seats));
+						}
+					}
+					return oversold;
+				}
+			}));
+		}
+		start.countDown();
+		int oversold = 0;
+		for (Future<Integer> result : results)
+			oversold += result.get();
+		executor.shutdown();
+
+		assertEquals(0, oversold);
+		int owned = 0;
+		for (int i = 0; i < ROWS * COLS; i++) {
+			if (owners.get(i) != 0) {
+				owned++;
+				assertFalse(state.isAvailable(i / COLS, i % COLS));
+			} else {
+				assertTrue(state.isAvailable(i / COLS, i % COLS));
+			}
+		}
+		assertEquals(ROWS * COLS - owned, state.getNumberAvailableSeats());
+	}
+
+	/**
+	 * Test di stress che simula l'apertura delle vendite di una prima: tutti i
+	 * thread tentano di acquistare coppie di posti sovrapposte finché la sala non
+	 * è esaurita. Tutti i posti devono essere venduti esattamente una volta.
+	 *
+	 * @throws Exception se uno dei thread del test termina con un errore.
+	 */
+	@Test
+	public void testSellOutAssignsEverySeatOnce() throws Exception {
+		final ProjectionSeatState state = new ProjectionSeatState(ROWS, COLS);
+		final AtomicIntegerArray sold = new AtomicIntegerArray(ROWS * COLS);
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < THREADS; t++) {
+			final int offset = t;
+			results.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					int claimed = 0;
+					start.await();
+					while (state.getNumberAvailableSeats() > 0) {
+						for (int seat = offset % 2; seat < ROWS * COLS; seat++) {
+							int[] pair = { seat, (seat + 1) % (ROWS * COLS) };
+							if (state.claimSeats(pair)) {
+								sold.incrementAndGet(pair[0]);
+								sold.incrementAndGet(pair[1]);
+								claimed += 2;
+							} else if (state.claimSeats(new int[] { seat })) {
+								sold.incrementAndGet(seat);
+								claimed++;
+							}
+						}
+					}
+					return claimed;
+				}
+			}));
+		}
+		start.countDown();
+		int claimed = 0;
+		for (Future<Integer> result : results)
+			claimed += result.get();
+		executor.shutdown();
+
+		assertEquals(ROWS * COLS, claimed);
+		for (int i = 0; i < ROWS * COLS; i++)
+			assertEquals(1, sold.get(i));
+		assertEquals(0, state.getNumberAvailableSeats());
+	}
+
+	/**
+	 * Restituisce gli indici distinti di un gruppo di posti.
+	 *
+	 * @param seats indici dei posti, eventualmente ripetuti.
+	 * @return indici distinti dei posti.
+	 */
+	private static int[] distinct(int[] seats) {
+		return Arrays.stream(seats).distinct().toArray();
+	}
+
+}
@@ -0,0 +1,178 @@
+package cinema.test.junit;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cinema.controller.handlers.ReportStore;
+import cinema.model.cinema.Room;
+import cinema.model.persistence.PersistenceFacade;
+import cinema.model.persistence.ReportEntry;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.types.DiscountNumberSpectators;
+
+/**
+ * Effettua il test di unità (tramite JUnit) sulla classe ReportStore.
+ *
+ * <p>
+ * Ogni test utilizza una cartella temporanea, che contiene sia i report sia il
+ * database con l'indice dei report.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ReportStoreTest {
+
+	/**
+	 * Giorni di conservazione dei report dopo la proiezione.
+	 */
+	private static final int RETENTION_DAYS = 1;
+
+	/**
+	 * Cartella temporanea del test.
+	 */
+	private Path folder;
+
+	/**
+	 * Permette di accedere all'indice dei report.
+	 */
+	private PersistenceFacade persistenceFacade;
+
+	/**
+	 * Archivio dei report utilizzato nel test.
+	 */
+	private ReportStore reportStore;
+
+	/**
+	 * Impostazione di ogni test, creando l'archivio in una cartella temporanea.
+	 *
+	 * @throws Exception se non è possibile creare la cartella o il database.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		folder = Files.createTempDirectory("reportStoreTest");
+		persistenceFacade = new PersistenceFacade("jdbc:sqlite:" + folder.resolve("index.db"));
+		reportStore = new ReportStore(persistenceFacade, folder.resolve("reports"), RETENTION_DAYS);
+	}
+
+	/**
+	 * Interrompe la manutenzione ed elimina la cartella temporanea dopo ogni test.
+	 *
+	 * @throws IOException se non è possibile eliminare la cartella temporanea.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		reportStore.shutdown();
+		try (Stream<Path> files = Files.walk(folder)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	/**
+	 * Test sull'archiviazione e sulla lettura di un report.
+	 *
+	 * @throws Exception se vengono riscontrati errori nell'archiviazione.
+	 */
+	@Test
+	public void testPutAndGet() throws Exception {
+		byte[] report = content(1);
+		String path = reportStore.put(reservation(1, LocalDateTime.now().plusDays(1)), report);
+		assertTrue(Files.exists(Paths.get(path)));
+		assertArrayEquals(report, reportStore.get(1));
+		assertNull(reportStore.get(2));
+	}
+
+	/**
+	 * Test sulla verifica dell'impronta: un report modificato su disco non viene
+	 * restituito.
+	 *
+	 * @throws Exception se vengono riscontrati errori nell'archiviazione.
+	 */
+	@Test
+	public void testCorruptedReportIsNotServed() throws Exception {
+		String path = reportStore.put(reservation(1, LocalDateTime.now().plusDays(1)), content(1));
+		Files.write(Paths.get(path), content(2));
+		assertNull(reportStore.get(1));
+	}
+
+	/**
+	 * Test sulla compressione dei report delle proiezioni già iniziate: il file
+	 * originale viene sostituito da quello compresso, che viene letto in modo
+	 * trasparente.
+	 *
+	 * @throws Exception se vengono riscontrati errori nell'archiviazione.
+	 */
+	@Test
+	public void testCompress() throws Exception {
+		byte[] report = content(1);
+		String path = reportStore.put(reservation(1, LocalDateTime.now().minusHours(1)), report);
+		reportStore.runMaintenance();
+		ReportEntry entry = persistenceFacade.getReport(1);
+		assertNotNull(entry);
+		assertTrue(entry.isCompressed());
+		assertTrue(entry.getPath().endsWith(".gz"));
+		assertFalse(Files.exists(Paths.get(path)));
+		assertArrayEquals(report, reportStore.get(1));
+	}
+
+	/**
+	 * Test sull'eliminazione dei report scaduti, che riguarda sia il file sia la
+	 * voce dell'indice.
+	 *
+	 * @throws Exception se vengono riscontrati errori nell'archiviazione.
+	 */
+	@Test
+	public void testExpire() throws Exception {
+		String expired = reportStore.put(reservation(1, LocalDateTime.now().minusDays(RETENTION_DAYS + 1)),
+				content(1));
+		String kept = reportStore.put(reservation(2, LocalDateTime.now().plusDays(1)), content(2));
+		reportStore.runMaintenance();
+		assertNull(persistenceFacade.getReport(1));
+		assertNull(reportStore.get(1));
+		assertFalse(Files.exists(Paths.get(expired)));
+		assertTrue(Files.exists(Paths.get(kept)));
+		assertArrayEquals(content(2), reportStore.get(2));
+	}
+
+	/**
+	 * Crea una prenotazione per una proiezione che si svolge all'istante
+	 * indicato.
+	 *
+	 * @param id       identificativo della prenotazione.
+	 * @param dateTime data e ora della proiezione.
+	 * @return la prenotazione.
+	 * @throws Exception se vengono riscontrati errori nella creazione della sala.
+	 */
+	private static Reservation reservation(long id, LocalDateTime dateTime) throws Exception {
+		Reservation reservation = new Reservation(new DiscountNumberSpectators(5, 0.1, 1), id);
+		reservation.setProjection(new Projection(1, null, dateTime, 8.5, new Room(1, 3, 4)));
+		return reservation;
+	}
+
+	/**
+	 * Restituisce un contenuto di prova, abbastanza ripetitivo da essere
+	 * compresso.
+	 *
+	 * @param seed valore che distingue contenuti diversi.
+	 * @return il contenuto.
+	 */
+	private static byte[] content(int seed) {
+		StringBuilder content = new StringBuilder("%PDF-1.4\n");
+		for (int i = 0; i < 200; i++)
+			content.append("Report ").append(seed).append(" riga ").append(i).append('\n');
+		return content.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+}
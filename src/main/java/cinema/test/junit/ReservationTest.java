@@ -6,6 +6,8 @@ import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -238,9 +240,9 @@ public class ReservationTest {
 		try {
 			// Modificare i dati seguenti per testare il corretto invio dell'e-mail
 			r.setPurchaser(new Spectator("Francesco", "Amato", "francesco.amato01@universitadipavia.it"));
-			Thread emailThread = cinema.sendReservationEmail(r.getProgressive());
-			emailThread.join();
-		} catch (HandlerException | InterruptedException | ReservationException exception) {
+			Future<Void> emailSending = cinema.sendReservationEmail(r.getProgressive());
+			emailSending.get();
+		} catch (HandlerException | InterruptedException | ExecutionException | ReservationException exception) {
 			System.out.println(exception.getMessage());
 		}
 	}
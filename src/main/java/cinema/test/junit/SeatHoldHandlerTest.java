@@ -0,0 +1,152 @@
+package cinema.test.junit;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cinema.controller.handlers.SeatHoldHandler;
+import cinema.model.cinema.Room;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.types.DiscountNumberSpectators;
+import cinema.model.reservation.util.SeatAvailabilityException;
+
+/**
+ * Effettua il test di unità (tramite JUnit) sulla classe SeatHoldHandler.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatHoldHandlerTest {
+
+	/**
+	 * Durata dell'occupazione temporanea di un posto nel test, in secondi.
+	 */
+	private static final long TTL_SECONDS = 1;
+
+	/**
+	 * Gestore delle occupazioni temporanee utilizzato nel test.
+	 */
+	private SeatHoldHandler seatHoldHandler;
+
+	/**
+	 * Proiezione utilizzata nel test.
+	 */
+	private Projection projection;
+
+	/**
+	 * Prenotazione che occupa temporaneamente il posto.
+	 */
+	private Reservation first;
+
+	/**
+	 * Prenotazione concorrente, che prova ad occupare lo stesso posto.
+	 */
+	private Reservation second;
+
+	/**
+	 * Impostazione di ogni test, creando una proiezione con tutti i posti liberi e
+	 * due prenotazioni associate ad essa.
+	 *
+	 * @throws RoomException se vengono riscontrati errori nella creazione della
+	 *                       sala.
+	 */
+	@Before
+	public void setUp() throws RoomException {
+		seatHoldHandler = new SeatHoldHandler(TTL_SECONDS);
+		projection = new Projection(1, null, LocalDateTime.now().plusDays(1), 8.5, new Room(1, 3, 4));
+		DiscountNumberSpectators strategy = new DiscountNumberSpectators(5, 0.1, 1);
+		first = new Reservation(strategy, 1);
+		first.setProjection(projection);
+		second = new Reservation(strategy, 2);
+		second.setProjection(projection);
+	}
+
+	/**
+	 * Interrompe la gestione delle scadenze dopo ogni test.
+	 */
+	@After
+	public void tearDown() {
+		seatHoldHandler.shutdown();
+	}
+
+	/**
+	 * Test sull'occupazione temporanea: il posto non è più disponibile per le
+	 * altre prenotazioni.
+	 *
+	 * @throws Exception se vengono riscontrati errori nell'occupazione del posto.
+	 */
+	@Test
+	public void testHoldTakesSeat() throws Exception {
+		seatHoldHandler.hold(first, 1, 2);
+		assertFalse(projection.checkIfSeatIsAvailable(1, 2));
+		assertEquals(1, seatHoldHandler.getActiveHolds());
+		try {
+			seatHoldHandler.hold(second, 1, 2);
+			fail("Il posto risulta occupato da un'altra prenotazione.");
+		} catch (SeatAvailabilityException e) {
+			assertEquals(0, second.getNSeats());
+		}
+	}
+
+	/**
+	 * Test sul rilascio di un posto occupato temporaneamente: il posto torna
+	 * disponibile e può essere occupato da un'altra prenotazione.
+	 *
+	 * @throws Exception se vengono riscontrati errori nell'occupazione del posto.
+	 */
+	@Test
+	public void testReleaseFreesSeat() throws Exception {
+		seatHoldHandler.hold(first, 1, 2);
+		seatHoldHandler.release(first, 1, 2);
+		assertTrue(projection.checkIfSeatIsAvailable(1, 2));
+		assertEquals(0, first.getNSeats());
+		assertEquals(0, seatHoldHandler.getActiveHolds());
+		seatHoldHandler.hold(second, 1, 2);
+		assertFalse(projection.checkIfSeatIsAvailable(1, 2));
+	}
+
+	/**
+	 * Test sulla scadenza di un'occupazione temporanea: il posto torna
+	 * disponibile, ma resta selezionato nella prenotazione.
+	 *
+	 * @throws Exception se vengono riscontrati errori nell'occupazione del posto.
+	 */
+	@Test
+	public void testExpiredHoldFreesSeat() throws Exception {
+		seatHoldHandler.hold(first, 1, 2);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!projection.checkIfSeatIsAvailable(1, 2) && System.currentTimeMillis() < deadline)
+			Thread.sleep(50);
+		assertTrue(projection.checkIfSeatIsAvailable(1, 2));
+		assertEquals(1, first.getNSeats());
+		assertEquals(0, seatHoldHandler.getActiveHolds());
+		assertEquals(1, seatHoldHandler.getExpiredHolds());
+		// Il posto è già stato liberato dalla scadenza
+		assertEquals(0, first.freeAllSeats());
+	}
+
+	/**
+	 * Test sull'annullamento delle scadenze di una prenotazione: il posto resta
+	 * occupato anche dopo la durata dell'occupazione temporanea.
+	 *
+	 * @throws Exception se vengono riscontrati errori nell'occupazione del posto.
+	 */
+	@Test
+	public void testClearCancelsExpiry() throws Exception {
+		seatHoldHandler.hold(first, 1, 2);
+		seatHoldHandler.clear(first.getProgressive());
+		assertEquals(0, seatHoldHandler.getActiveHolds());
+		Thread.sleep(TTL_SECONDS * 1000 + 1500);
+		assertFalse(projection.checkIfSeatIsAvailable(1, 2));
+		assertEquals(0, seatHoldHandler.getExpiredHolds());
+		assertEquals(1, first.freeAllSeats());
+		assertTrue(projection.checkIfSeatIsAvailable(1, 2));
+	}
+
+}
@@ -1,11 +1,13 @@
 package cinema.view.cli.admin;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Scanner;
 
 import cinema.controller.Cinema;
 import cinema.controller.util.DiscountNotFoundException;
 import cinema.controller.util.NoMovieException;
+import cinema.controller.handlers.ReportBatchProgress;
 import cinema.controller.util.PasswordException;
 import cinema.model.Movie;
 import cinema.model.cinema.Room;
@@ -17,7 +19,7 @@ import cinema.model.projection.util.ProjectionException;
 /**
  * Permette all'amministratore del cinema di poter effettuare le operazioni
  * principali richieste dalle specifiche di progetto (login, aggiunta/rimozione
- * di prenotazioni e modifica delle politiche di sconto).
+ * di prenotazioni, modifica delle politiche di sconto e ristampa dei report).
  * 
  * @author Screaming Hairy Armadillo Team
  * 
@@ -75,7 +77,8 @@ public class CLIAdminMain {
 			System.out.println(SEPARATOR + "\nMenu\n");
 			System.out.println("Inserisci il numero corrispondente all'azione che vuoi effettuare:\n\n"
 					+ "1) Reimpostare la password\n2) Cambiare il tipo di sconto applicato alle prenotazioni future\n"
-					+ "3) Inserire/rimuovere proiezioni\n4) Uscire dall'applicazione\n");
+					+ "3) Inserire/rimuovere proiezioni\n4) Ristampare i report di una proiezione o di un giorno\n"
+					+ "5) Inviare di nuovo le ricevute non consegnate\n6) Uscire dall'applicazione\n");
 			switch (inputInt("Scelta: ")) {
 			case 1:
 				changePassword();
@@ -90,6 +93,14 @@ public class CLIAdminMain {
 				end = !backToMenu();
 				break;
 			case 4:
+				reprintReports();
+				end = !backToMenu();
+				break;
+			case 5:
+				resendFailedReceipts();
+				end = !backToMenu();
+				break;
+			case 6:
 				System.out.println();
 				end = true;
 				break;
@@ -420,6 +431,57 @@ public class CLIAdminMain {
 		}
 	}
 
+	/**
+	 * Permette all'amministratore di generare di nuovo i report di tutte le
+	 * prenotazioni acquistate per una proiezione o per le proiezioni di un
+	 * giorno, mostrando l'avanzamento della generazione.
+	 */
+	private void reprintReports() {
+		System.out.println("\n" + SEPARATOR + "\nRistampa dei report:\n");
+		ReportBatchProgress result;
+		try {
+			if (inputBoolean("Vuoi ristampare i report di una proiezione (P) o di un giorno (G)? ", "P", "G")) {
+				showAllProjections();
+				result = cinema.reprintProjectionReports(inputInt("Inserisci l'ID della proiezione: "),
+						progress -> System.out.println(progress));
+			} else {
+				result = cinema.reprintDayReports(inputDate("Inserisci il giorno delle proiezioni (DD-MM-YYYY): "),
+						progress -> System.out.println(progress));
+			}
+		} catch (ProjectionException | PersistenceException exception) {
+			System.out.println(exception.getMessage() + "\n");
+			return;
+		}
+		if (result.getCompletedReports() == 0 && result.getFailedReports() == 0)
+			System.out.println("\nNessuna prenotazione acquistata da ristampare.\n");
+		else
+			System.out.println("\nRistampa completata.\n" + result + "\n");
+	}
+
+	/**
+	 * Permette all'amministratore di inviare di nuovo tutte le ricevute degli
+	 * acquisti la cui consegna è fallita.
+	 *
+	 * <p>
+	 * La consegna delle ricevute viene avviata anche in questa applicazione, in
+	 * modo che le ricevute vengano inviate anche se il server web non è attivo;
+	 * quelle non ancora inviate alla chiusura vengono inviate al successivo avvio
+	 * di un'applicazione che consegna le ricevute.
+	 */
+	private void resendFailedReceipts() {
+		System.out.println("\n" + SEPARATOR + "\nInvio delle ricevute non consegnate:\n");
+		cinema.startReceiptDelivery();
+		try {
+			int requeued = cinema.resendFailedReservationEmails();
+			if (requeued == 0)
+				System.out.println("Nessuna ricevuta da inviare di nuovo.\n");
+			else
+				System.out.println("Ricevute rimesse in coda per l'invio: " + requeued + ".\n");
+		} catch (PersistenceException exception) {
+			System.out.println(exception.getMessage() + "\n");
+		}
+	}
+
 	/**
 	 * Stampa sul terminale il messaggio di chiusura dell'applicazione.
 	 */
@@ -449,6 +511,26 @@ public class CLIAdminMain {
 		} while (true);
 	}
 
+	/**
+	 * Permette all'amministratore di inserire una data da terminale.
+	 *
+	 * @param question messaggio da stampare sul terminale prima dell'input
+	 *                 dell'amministratore.
+	 * @return la data letta.
+	 */
+	private LocalDate inputDate(String question) {
+		do {
+			System.out.print(question);
+			try {
+				String[] tokens = keyboard.nextLine().split("-");
+				return LocalDate.of(Integer.parseInt(tokens[2]), Integer.parseInt(tokens[1]),
+						Integer.parseInt(tokens[0]));
+			} catch (Exception exception) {
+				System.out.println("Data non valida.\n");
+			}
+		} while (true);
+	}
+
 	/**
 	 * Permette all'amministratore di effettuare una scelta binaria.
 	 *
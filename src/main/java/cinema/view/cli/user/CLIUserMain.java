@@ -5,7 +5,6 @@ import java.time.YearMonth;
 import java.util.Scanner;
 
 import cinema.controller.Cinema;
-import cinema.controller.handlers.util.HandlerException;
 import cinema.controller.util.NoMovieException;
 import cinema.model.Movie;
 import cinema.model.cinema.Room;
@@ -70,6 +69,8 @@ public class CLIUserMain {
 	public CLIUserMain() {
 		keyboard = new Scanner(System.in);
 		cinema = new Cinema();
+		// Le ricevute degli acquisti vengono consegnate in background
+		cinema.startReceiptDelivery();
 
 		// Informazioni generali sul cinema, e messaggio di benvenuto
 		printWelcomeMessage();
@@ -181,7 +182,7 @@ public class CLIUserMain {
 			insertDiscountData(reservation);
 			insertCouponInfo(reservation);
 			if (buy(reservation)) {
-				sendEmail(reservation);
+				showEmailNotice();
 			}
 		} catch (ProjectionException | ReservationException | PersistenceException exception) {
 			System.out.println(exception.getMessage() + "\n");
@@ -507,24 +508,20 @@ public class CLIUserMain {
 	}
 
 	/**
-	 * Invia allo spettatore che ha effettuato l'acquisto l'e-mail contenente la
-	 * ricevuta di avvenuta prenotazione e pagamento completato.
+	 * Informa lo spettatore che ha effettuato l'acquisto dell'invio dell'e-mail
+	 * contenente la ricevuta di avvenuta prenotazione e pagamento completato.
 	 *
-	 * @param reservation id della prenotazione della quale inviare una ricevuta
-	 *                    tramite e-mail allo spettatore che ha effettuato
-	 *                    l'acquisto.
+	 * <p>
+	 * La ricevuta viene registrata insieme all'acquisto e inviata in background;
+	 * se l'applicazione viene chiusa prima dell'invio, viene inviata al
+	 * successivo avvio di questa applicazione o del server web.
 	 */
-	private void sendEmail(long reservation) {
+	private void showEmailNotice() {
 		System.out.println("\n" + SEPARATOR);
 		System.out.println("Invio prenotazione per e-mail:\n");
-		try {
-			cinema.sendReservationEmail(reservation);
-			System.out.println("Controlla la tua casella di posta.\n"
-					+ "A breve riceverai un'e-mail contenente la ricevuta della tua prenotazione.\n\n"
-					+ "Grazie di averci scelto!\n");
-		} catch (ReservationException | HandlerException exception) {
-			System.out.println(exception.getMessage() + "\n");
-		}
+		System.out.println("Controlla la tua casella di posta.\n"
+				+ "A breve riceverai un'e-mail contenente la ricevuta della tua prenotazione.\n\n"
+				+ "Grazie di averci scelto!\n");
 	}
 
 	/**
@@ -0,0 +1,432 @@
+package cinema.view.webgui;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import cinema.controller.Cinema;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.util.PersistenceException;
+import cinema.model.projection.ProjectionSeatMap;
+import cinema.model.projection.util.ProjectionException;
+
+/**
+ * Invia ai client degli spettatori le variazioni di disponibilità dei posti
+ * delle proiezioni tramite Server-Sent Events.
+ *
+ * <p>
+ * Ogni client che visualizza la pagina di checkout mantiene aperta una sola
+ * connessione (/seat-events), gestita in modo asincrono senza occupare un
+ * thread del server. Alla connessione il client riceve lo stato completo dei
+ * posti (evento {@code snapshot}); successivamente un thread in background
+ * confronta ad ogni tick lo stato dei posti di ciascuna proiezione seguita con
+ * quello inviato in precedenza e invia a tutti i client della proiezione un
+ * solo messaggio con i posti occupati e liberati nel frattempo (evento
+ * {@code seats}): una serie di acquisti ravvicinati produce quindi un unico
+ * messaggio. Le scritture sulle connessioni non sono bloccanti e i client che
+ * non riescono a ricevere i messaggi abbastanza velocemente vengono
+ * disconnessi.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatEventBroadcaster {
+
+	/**
+	 * Intervallo tra due controlli dello stato dei posti, in millisecondi.
+	 */
+	public static final long TICK_MILLIS = 250;
+
+	/**
+	 * Intervallo tra due messaggi di keep-alive, in millisecondi.
+	 */
+	private static final long HEARTBEAT_MILLIS = 15000;
+
+	/**
+	 * Numero massimo di messaggi in attesa di essere scritti su una connessione.
+	 */
+	private static final int MAX_PENDING_MESSAGES = 64;
+
+	/**
+	 * Messaggio di keep-alive, ignorato dai client.
+	 */
+	private static final byte[] HEARTBEAT = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Controller di dominio da cui leggere lo stato dei posti.
+	 */
+	private final Cinema cinema;
+
+	/**
+	 * Proiezioni seguite da almeno un client, indicizzate per identificativo.
+	 */
+	private final ConcurrentHashMap<Integer, Channel> channels;
+
+	/**
+	 * Esecutore del controllo periodico dello stato dei posti.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Numero di client attualmente connessi.
+	 */
+	private final AtomicInteger subscribers;
+
+	/**
+	 * Costruttore del gestore degli eventi, che avvia il controllo periodico
+	 * dello stato dei posti.
+	 *
+	 * @param cinema controller di dominio da cui leggere lo stato dei posti.
+	 */
+	public SeatEventBroadcaster(Cinema cinema) {
+		this.cinema = cinema;
+		this.channels = new ConcurrentHashMap<Integer, Channel>();
+		this.subscribers = new AtomicInteger();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "seat-events");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::broadcastChanges, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(this::sendHeartbeat, HEARTBEAT_MILLIS, HEARTBEAT_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Apre il flusso di eventi di una proiezione sulla risposta indicata e vi
+	 * scrive lo stato corrente dei posti. La richiesta rimane aperta in modalità
+	 * asincrona fino alla disconnessione del client.
+	 *
+	 * @param req          richiesta del client.
+	 * @param resp         risposta su cui scrivere gli eventi.
+	 * @param projectionId codice identificativo della proiezione.
+	 * @throws IOException          se non risulta possibile scrivere nel buffer
+	 *                              di risposta alla richiesta.
+	 * @throws RoomException        qualora la sala della proiezione non esista.
+	 * @throws ProjectionException  qualora la proiezione non esista.
+	 * @throws PersistenceException se si verificano errori durante la lettura dei
+	 *                              dati dalla persistenza.
+	 */
+	public void subscribe(HttpServletRequest req, HttpServletResponse resp, int projectionId)
+			throws IOException, RoomException, ProjectionException, PersistenceException {
+		ProjectionSeatMap seatMap = cinema.getProjectionSeatMap(projectionId);
+		resp.setContentType("text/event-stream");
+		resp.setCharacterEncoding("UTF-8");
+		resp.setHeader("Cache-Control", "no-cache");
+		AsyncContext asyncContext = req.startAsync();
+		asyncContext.setTimeout(0);
+		Subscriber subscriber = new Subscriber(asyncContext, resp.getOutputStream());
+		asyncContext.addListener(subscriber);
+		channels.compute(projectionId, (id, channel) -> {
+			if (channel == null)
+				channel = new Channel(id, seatMap.getOccupiedSeats());
+			subscriber.channel = channel;
+			channel.subscribers.add(subscriber);
+			return channel;
+		});
+		subscribers.incrementAndGet();
+		// Lo stato completo viene scritto alla prima chiamata di onWritePossible()
+		subscriber.send(formatSnapshot(seatMap));
+		resp.getOutputStream().setWriteListener(subscriber);
+	}
+
+	/**
+	 * Confronta lo stato dei posti di ogni proiezione seguita con l'ultimo
+	 * inviato e notifica le differenze ai client. Le proiezioni senza più client
+	 * smettono di essere seguite.
+	 */
+	private void broadcastChanges() {
+		for (Channel channel : channels.values()) {
+			if (channel.subscribers.isEmpty()) {
+				channels.computeIfPresent(channel.projectionId, (id, c) -> c.subscribers.isEmpty() ? null : c);
+				continue;
+			}
+			BitSet occupied;
+			try {
+				occupied = cinema.getProjectionSeatMap(channel.projectionId).getOccupiedSeats();
+			} catch (RoomException | ProjectionException | PersistenceException e) {
+				System.out.println(e.getMessage());
+				continue;
+			}
+			BitSet changed = (BitSet) occupied.clone();
+			changed.xor(channel.lastSent);
+			if (changed.isEmpty())
+				continue;
+			BitSet taken = (BitSet) changed.clone();
+			taken.and(occupied);
+			changed.andNot(occupied);
+			channel.lastSent = occupied;
+			byte[] message = formatDelta(taken, changed);
+			for (Subscriber subscriber : channel.subscribers)
+				subscriber.send(message);
+		}
+	}
+
+	/**
+	 * Invia a tutti i client un messaggio di keep-alive, che permette anche di
+	 * rilevare le connessioni chiuse.
+	 */
+	private void sendHeartbeat() {
+		for (Channel channel : channels.values())
+			for (Subscriber subscriber : channel.subscribers)
+				subscriber.send(HEARTBEAT);
+	}
+
+	/**
+	 * Costruisce l'evento con lo stato completo dei posti di una proiezione, con
+	 * la mappa di bit dei posti occupati codificata come nella risposta di
+	 * /seat-map.
+	 *
+	 * @param seatMap mappa dei posti della proiezione.
+	 * @return l'evento da inviare.
+	 */
+	private static byte[] formatSnapshot(ProjectionSeatMap seatMap) {
+		return String.format("retry: 3000\nevent: snapshot\ndata: {\"rows\":%d,\"cols\":%d,\"occupied\":\"%s\"}\n\n",
+				seatMap.getNumberOfRows(), seatMap.getNumberOfCols(),
+				Base64.getEncoder().encodeToString(seatMap.toByteArray())).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Costruisce l'evento con gli indici dei posti occupati e liberati dall'ultimo
+	 * messaggio.
+	 *
+	 * @param taken    posti occupati.
+	 * @param released posti liberati.
+	 * @return l'evento da inviare.
+	 */
+	private static byte[] formatDelta(BitSet taken, BitSet released) {
+		StringBuilder message = new StringBuilder("event: seats\ndata: {\"taken\":");
+		appendIndexes(message, taken);
+		message.append(",\"released\":");
+		appendIndexes(message, released);
+		return message.append("}\n\n").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Aggiunge al messaggio gli indici dei bit a 1 come array JSON.
+	 *
+	 * @param message messaggio in costruzione.
+	 * @param seats   posti da aggiungere.
+	 */
+	private static void appendIndexes(StringBuilder message, BitSet seats) {
+		message.append('[');
+		for (int i = seats.nextSetBit(0); i >= 0; i = seats.nextSetBit(i + 1)) {
+			if (message.charAt(message.length() - 1) != '[')
+				message.append(',');
+			message.append(i);
+		}
+		message.append(']');
+	}
+
+	/**
+	 * Restituisce il numero di client attualmente connessi.
+	 *
+	 * @return numero di client connessi.
+	 */
+	public int getSubscribers() {
+		return subscribers.get();
+	}
+
+	/**
+	 * Proiezione seguita da almeno un client.
+	 */
+	private static class Channel {
+
+		/**
+		 * Codice identificativo della proiezione.
+		 */
+		private final int projectionId;
+
+		/**
+		 * Client che seguono la proiezione.
+		 */
+		private final CopyOnWriteArraySet<Subscriber> subscribers;
+
+		/**
+		 * Posti occupati secondo l'ultimo messaggio inviato (acceduto solo dal
+		 * thread in background).
+		 */
+		private BitSet lastSent;
+
+		/**
+		 * Costruttore della proiezione seguita.
+		 *
+		 * @param projectionId codice identificativo della proiezione.
+		 * @param occupied     posti attualmente occupati.
+		 */
+		private Channel(int projectionId, BitSet occupied) {
+			this.projectionId = projectionId;
+			this.subscribers = new CopyOnWriteArraySet<Subscriber>();
+			this.lastSent = occupied;
+		}
+	}
+
+	/**
+	 * Connessione aperta da un client, su cui i messaggi vengono scritti senza
+	 * bloccare il thread che li invia.
+	 */
+	private class Subscriber implements WriteListener, AsyncListener {
+
+		/**
+		 * Contesto della richiesta asincrona.
+		 */
+		private final AsyncContext asyncContext;
+
+		/**
+		 * Flusso di uscita della risposta.
+		 */
+		private final ServletOutputStream output;
+
+		/**
+		 * Messaggi in attesa di essere scritti.
+		 */
+		private final ConcurrentLinkedQueue<byte[]> pending;
+
+		/**
+		 * Numero di messaggi in attesa di essere scritti.
+		 */
+		private final AtomicInteger pendingCount;
+
+		/**
+		 * Proiezione seguita dal client.
+		 */
+		private volatile Channel channel;
+
+		/**
+		 * Indica se il flusso di uscita è passato in modalità non bloccante e può
+		 * essere scritto.
+		 */
+		private volatile boolean writable;
+
+		/**
+		 * Indica se ci sono dati scritti e non ancora inviati al client.
+		 */
+		private boolean unflushed;
+
+		/**
+		 * Indica se la connessione è stata chiusa.
+		 */
+		private volatile boolean closed;
+
+		/**
+		 * Costruttore della connessione.
+		 *
+		 * @param asyncContext contesto della richiesta asincrona.
+		 * @param output       flusso di uscita della risposta.
+		 */
+		private Subscriber(AsyncContext asyncContext, ServletOutputStream output) {
+			this.asyncContext = asyncContext;
+			this.output = output;
+			this.pending = new ConcurrentLinkedQueue<byte[]>();
+			this.pendingCount = new AtomicInteger();
+		}
+
+		/**
+		 * Accoda un messaggio e prova a scriverlo subito; se il client ha troppi
+		 * messaggi in attesa la connessione viene chiusa.
+		 *
+		 * @param message messaggio da inviare.
+		 */
+		private void send(byte[] message) {
+			if (closed)
+				return;
+			if (pendingCount.incrementAndGet() > MAX_PENDING_MESSAGES) {
+				close();
+				return;
+			}
+			pending.add(message);
+			if (writable)
+				write();
+		}
+
+		/**
+		 * Scrive i messaggi in attesa finché il flusso di uscita lo consente; la
+		 * scrittura riprende in {@link #onWritePossible()} quando il flusso torna
+		 * disponibile.
+		 */
+		private synchronized void write() {
+			try {
+				while (!closed && output.isReady()) {
+					byte[] message = pending.poll();
+					if (message == null) {
+						if (!unflushed)
+							return;
+						unflushed = false;
+						output.flush();
+						continue;
+					}
+					pendingCount.decrementAndGet();
+					output.write(message);
+					unflushed = true;
+				}
+			} catch (IOException | IllegalStateException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Chiude la connessione e smette di inviarle messaggi.
+		 */
+		private void close() {
+			if (closed)
+				return;
+			closed = true;
+			Channel current = channel;
+			if (current != null && current.subscribers.remove(this))
+				subscribers.decrementAndGet();
+			try {
+				asyncContext.complete();
+			} catch (IllegalStateException e) {
+				// La richiesta è già stata completata
+			}
+		}
+
+		@Override
+		public void onWritePossible() {
+			writable = true;
+			write();
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			close();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			close();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			close();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			close();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// Nessuna azione richiesta
+		}
+	}
+
+}
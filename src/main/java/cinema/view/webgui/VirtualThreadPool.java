@@ -0,0 +1,128 @@
+package cinema.view.webgui;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Pool di thread per il server web che esegue ogni compito su un nuovo virtual
+ * thread.
+ *
+ * <p>
+ * I virtual thread sono disponibili a partire da Java 21: l'esecutore viene
+ * quindi ottenuto tramite reflection, in modo che il progetto possa essere
+ * compilato ed eseguito anche con versioni precedenti, in cui questa modalità
+ * non è disponibile. Poiché il numero di virtual thread non è limitato, le
+ * richieste che si bloccano in attesa del database, del pagamento o dell'invio
+ * delle e-mail non esauriscono i thread del server; l'accesso al database va
+ * invece limitato dal {@code ConnectionPool}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class VirtualThreadPool implements ThreadPool {
+
+	/**
+	 * Esecutore che crea un virtual thread per ogni compito.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Numero di compiti in esecuzione.
+	 */
+	private final AtomicInteger activeThreads;
+
+	/**
+	 * Costruttore del pool di thread.
+	 *
+	 * @param executor esecutore che crea un virtual thread per ogni compito.
+	 */
+	private VirtualThreadPool(ExecutorService executor) {
+		this.executor = executor;
+		this.activeThreads = new AtomicInteger();
+	}
+
+	/**
+	 * Crea un pool di virtual thread.
+	 *
+	 * @return il pool di thread.
+	 * @throws UnsupportedOperationException se la versione di Java in uso non
+	 *                                       supporta i virtual thread.
+	 */
+	public static VirtualThreadPool create() {
+		try {
+			return new VirtualThreadPool(
+					(ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("I virtual thread richiedono Java 21 o versioni successive.");
+		}
+	}
+
+	/**
+	 * Verifica se la versione di Java in uso supporta i virtual thread.
+	 *
+	 * @return True: virtual thread supportati, False: non supportati.
+	 */
+	public static boolean isSupported() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		executor.execute(() -> {
+			activeThreads.incrementAndGet();
+			try {
+				task.run();
+			} finally {
+				activeThreads.decrementAndGet();
+			}
+		});
+	}
+
+	/**
+	 * Attende la terminazione di tutti i compiti dopo {@link #shutdown()}.
+	 */
+	@Override
+	public void join() throws InterruptedException {
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Interrompe l'accettazione di nuovi compiti.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public int getThreads() {
+		return activeThreads.get();
+	}
+
+	/**
+	 * Restituisce il numero di thread inattivi, sempre 0 perché ogni virtual
+	 * thread termina insieme al proprio compito.
+	 */
+	@Override
+	public int getIdleThreads() {
+		return 0;
+	}
+
+	/**
+	 * Indica se i thread stanno per esaurirsi, cosa che non può accadere con i
+	 * virtual thread.
+	 */
+	@Override
+	public boolean isLowOnThreads() {
+		return false;
+	}
+
+}
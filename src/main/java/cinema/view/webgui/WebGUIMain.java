@@ -7,6 +7,15 @@ package cinema.view.webgui;
  * relativi dettagli, selezionare una specifica proiezione e acquistare
  * biglietti all'interno di un'unica prenotazione per una determinata
  * proiezione).
+ *
+ * <p>
+ * Avviando l'applicazione con la proprietà di sistema
+ * {@code -Dcinema.virtualThreads=true} le richieste vengono eseguite su virtual
+ * thread, se la versione di Java in uso li supporta; in questa modalità il
+ * numero di thread che accedono contemporaneamente al database viene limitato
+ * (per impostazione predefinita a {@value #DEFAULT_PERSISTENCE_CONCURRENCY}).
+ * Il limite può essere modificato, o imposto anche con i thread predefiniti,
+ * con {@code -Dcinema.persistence.maxConcurrency=<thread>}.
  * 
  * @author Screaming Hairy Armadillo Team
  * 
@@ -19,6 +28,12 @@ public class WebGUIMain {
 	 */
 	public static final int PORT = 8080;
 
+	/**
+	 * Numero predefinito di thread che possono accedere contemporaneamente al
+	 * database quando le richieste vengono eseguite su virtual thread.
+	 */
+	public static final int DEFAULT_PERSISTENCE_CONCURRENCY = 32;
+
 	/**
 	 * Avvia il server web in ascolto sulla porta specificata.
 	 *
@@ -30,10 +45,49 @@ public class WebGUIMain {
 	 */
 	public static void main(String[] args) {
 		try {
-			new WebGUIServer(PORT, new WebGUIServlet()).start();
+			boolean virtualThreads = configureVirtualThreads(Boolean.getBoolean("cinema.virtualThreads"));
+			WebGUIServlet servlet = new WebGUIServlet(getPersistenceConcurrency(virtualThreads));
+			// Solo il server web consegna le ricevute, anche degli acquisti effettuati
+			// dalle interfacce a riga di comando
+			servlet.startReceiptDelivery();
+			new WebGUIServer(PORT, servlet, virtualThreads).start();
 		} catch (Exception exception) {
 			System.out.println(exception.getMessage());
 		}
 	}
 
+	/**
+	 * Verifica se le richieste possono essere eseguite su virtual thread: se la
+	 * modalità è richiesta ma non supportata viene segnalato e si usano i thread
+	 * predefiniti.
+	 *
+	 * @param virtualThreads true se è richiesta l'esecuzione su virtual thread.
+	 * @return true se le richieste verranno eseguite su virtual thread.
+	 */
+	public static boolean configureVirtualThreads(boolean virtualThreads) {
+		if (!virtualThreads)
+			return false;
+		if (!VirtualThreadPool.isSupported()) {
+			System.out.println("I virtual thread richiedono Java 21 o versioni successive: verranno usati i thread predefiniti.");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Restituisce il numero massimo di thread che possono accedere
+	 * contemporaneamente al database, da passare alla servlet.
+	 *
+	 * @param virtualThreads true se le richieste vengono eseguite su virtual
+	 *                       thread.
+	 * @return il limite configurato con
+	 *         {@code -Dcinema.persistence.maxConcurrency}, altrimenti
+	 *         {@value #DEFAULT_PERSISTENCE_CONCURRENCY} con i virtual thread e 0
+	 *         (nessun limite) con i thread predefiniti.
+	 */
+	public static int getPersistenceConcurrency(boolean virtualThreads) {
+		return Integer.getInteger("cinema.persistence.maxConcurrency",
+				virtualThreads ? DEFAULT_PERSISTENCE_CONCURRENCY : 0);
+	}
+
 }
@@ -6,6 +6,7 @@ import java.util.Map;
 import javax.servlet.Servlet;
 
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.servlet.DefaultServlet;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
@@ -19,7 +20,13 @@ import org.rythmengine.Rythm;
  * Una volta aperta una connessione la richiesta viene gestita da un'istanza di
  * {@code WebGUIServlet}, tramite una servlet Jetty, sfruttando il motore di
  * rendering Rhythm per la generazione dinamica delle pagine web da mostrare
- * allo spettatore.
+ * allo spettatore. La servlet supporta le richieste asincrone, usate per
+ * mantenere aperte le connessioni che ricevono gli aggiornamenti dei posti.
+ *
+ * <p>
+ * Le richieste vengono normalmente eseguite dal pool limitato di thread
+ * predefinito di Jetty; in alternativa possono essere eseguite su virtual
+ * thread (si veda {@link VirtualThreadPool}).
  * 
  * @author Screaming Hairy Armadillo Team
  *
@@ -37,6 +44,22 @@ public class WebGUIServer {
 	 */
 	private Servlet servlet;
 
+	/**
+	 * Indica se le richieste vengono eseguite su virtual thread.
+	 */
+	private boolean virtualThreads;
+
+	/**
+	 * Server web avviato, null se il server non è in esecuzione.
+	 */
+	private Server server;
+
+	/**
+	 * Pool di virtual thread usato dal server, null se le richieste vengono
+	 * eseguite dal pool predefinito.
+	 */
+	private VirtualThreadPool virtualThreadPool;
+
 	/**
 	 * Costruttore del server web.
 	 *
@@ -44,8 +67,23 @@ public class WebGUIServer {
 	 * @param servlet servlet utilizzata per gestire le richieste dei client.
 	 */
 	public WebGUIServer(int port, Servlet servlet) {
+		this(port, servlet, false);
+	}
+
+	/**
+	 * Costruttore del server web che permette di scegliere il tipo di thread che
+	 * esegue le richieste.
+	 *
+	 * @param port           porta aperta dal server web.
+	 * @param servlet        servlet utilizzata per gestire le richieste dei
+	 *                       client.
+	 * @param virtualThreads true per eseguire le richieste su virtual thread
+	 *                       (richiede Java 21 o versioni successive).
+	 */
+	public WebGUIServer(int port, Servlet servlet, boolean virtualThreads) {
 		this.port = port;
 		this.servlet = servlet;
+		this.virtualThreads = virtualThreads;
 	}
 
 	/**
@@ -60,14 +98,42 @@ public class WebGUIServer {
 	 */
 	public void start() throws Exception {
 		initRythm();
-		Server server = new Server(port);
+		if (virtualThreads) {
+			virtualThreadPool = VirtualThreadPool.create();
+			server = new Server(virtualThreadPool);
+			ServerConnector connector = new ServerConnector(server);
+			connector.setPort(port);
+			server.addConnector(connector);
+		} else {
+			server = new Server(port);
+		}
 		ServletContextHandler handler = new ServletContextHandler();
-		handler.addServlet(new ServletHolder(servlet), "/*");
+		ServletHolder servletHolder = new ServletHolder(servlet);
+		// Richiesto dal flusso di aggiornamenti dei posti (/seat-events)
+		servletHolder.setAsyncSupported(true);
+		handler.addServlet(servletHolder, "/*");
 		addStaticFileServing(handler);
 		server.setHandler(handler);
 		server.start();
 	}
 
+	/**
+	 * Arresta il server web avviato con {@link #start()}.
+	 *
+	 * @throws Exception in caso di errori riscontrati durante l'arresto del
+	 *                   server.
+	 */
+	public void stop() throws Exception {
+		if (server == null)
+			return;
+		server.stop();
+		server = null;
+		if (virtualThreadPool != null) {
+			virtualThreadPool.shutdown();
+			virtualThreadPool = null;
+		}
+	}
+
 	/**
 	 * Imposta il gestore dei file statici utilizzati dalle pagine web della GUI.
 	 *
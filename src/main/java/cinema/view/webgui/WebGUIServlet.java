@@ -1,14 +1,23 @@
 package cinema.view.webgui;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -17,12 +26,11 @@ import javax.servlet.http.HttpServletResponse;
 import org.rythmengine.Rythm;
 
 import cinema.controller.Cinema;
-import cinema.controller.handlers.util.HandlerException;
 import cinema.controller.util.NoMovieException;
 import cinema.model.Movie;
 import cinema.model.cinema.util.RoomException;
-import cinema.model.payment.util.PaymentErrorException;
 import cinema.model.persistence.util.PersistenceException;
+import cinema.model.projection.ProjectionSeatMap;
 import cinema.model.projection.util.ProjectionException;
 import cinema.model.reservation.discount.coupon.util.CouponException;
 import cinema.model.reservation.discount.types.util.DiscountException;
@@ -40,16 +48,56 @@ import cinema.model.spectator.util.InvalidSpectatorInfoException;
 @SuppressWarnings("serial")
 public class WebGUIServlet extends HttpServlet {
 
+	/**
+	 * Tempo massimo predefinito di attesa del termine di un acquisto, in
+	 * millisecondi; scaduto il tempo al client viene inviato un messaggio di
+	 * errore.
+	 */
+	public static final long DEFAULT_BUY_TIMEOUT_MILLIS = 30 * 1000L;
+
 	/**
 	 * Controller di dominio utilizzato come interfaccia verso il modello.
 	 */
 	private Cinema cinema;
 
+	/**
+	 * Invia ai client le variazioni di disponibilità dei posti.
+	 */
+	private SeatEventBroadcaster seatEvents;
+
+	/**
+	 * Tempo massimo di attesa del termine di un acquisto, in millisecondi.
+	 */
+	private long buyTimeoutMillis;
+
 	/**
 	 * Costruttore dell'interfaccia utente web.
 	 */
 	public WebGUIServlet() {
-		this.cinema = new Cinema();
+		this(0);
+	}
+
+	/**
+	 * Costruttore dell'interfaccia utente web che limita il numero di richieste
+	 * che accedono contemporaneamente al database.
+	 *
+	 * @param persistenceConcurrency numero massimo di richieste che usano o
+	 *                               attendono una connessione al database, o 0
+	 *                               per non porre limiti.
+	 */
+	public WebGUIServlet(int persistenceConcurrency) {
+		this.cinema = new Cinema(persistenceConcurrency);
+		this.seatEvents = new SeatEventBroadcaster(cinema);
+		// -Dcinema.buyTimeout=<millisecondi>
+		this.buyTimeoutMillis = Long.getLong("cinema.buyTimeout", DEFAULT_BUY_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Avvia la consegna in background delle ricevute degli acquisti (si veda
+	 * {@link Cinema#startReceiptDelivery()}).
+	 */
+	public void startReceiptDelivery() {
+		cinema.startReceiptDelivery();
 	}
 
 	/**
@@ -111,6 +159,10 @@ public class WebGUIServlet extends HttpServlet {
 				renderCheckout(req, resp);
 			} else if (req.getPathInfo().equals("/update-seat-status")) {
 				handleUpdateSeatStatus(req, resp);
+			} else if (req.getPathInfo().equals("/seat-map")) {
+				handleGetSeatMap(req, resp);
+			} else if (req.getPathInfo().equals("/seat-events")) {
+				handleSeatEvents(req, resp);
 			} else if (req.getPathInfo().equals("/get-checkout-info")) {
 				handleGetCheckoutInfo(req, resp);
 			} else if (req.getPathInfo().equals("/set-age-discount")) {
@@ -119,6 +171,8 @@ public class WebGUIServlet extends HttpServlet {
 				handleApplyCoupon(req, resp);
 			} else if (req.getPathInfo().equals("/buy")) {
 				handleBuy(req, resp);
+			} else if (req.getPathInfo().equals("/stats")) {
+				handleGetStatistics(req, resp);
 			} else {
 				renderError(req, resp);
 			}
@@ -321,6 +375,119 @@ public class WebGUIServlet extends HttpServlet {
 		resp.getWriter().write(Rythm.render(response));
 	}
 
+	/**
+	 * Gestisce le richieste corrispondenti alla mappa dei posti di una proiezione
+	 * (/seat-map).
+	 *
+	 * <p>
+	 * La richiesta deve contenere nel parametro {@code projection-id} l'id di una
+	 * proiezione. La risposta è un oggetto JSON con le dimensioni della sala, il
+	 * numero di posti disponibili e la mappa di bit dei posti occupati codificata
+	 * in Base64 (il posto alla fila {@code i} e alla colonna {@code j} corrisponde
+	 * al bit {@code (i * cols + j) % 8} del byte {@code (i * cols + j) / 8}, 1 se
+	 * il posto è occupato). Se il parametro {@code format} vale {@code binary} la
+	 * risposta contiene invece il numero di file e di colonne (interi a 32 bit
+	 * big-endian) seguiti direttamente dalla mappa di bit.
+	 *
+	 * <p>
+	 * Se il valore del parametro non è valido o si verificano errori durante la
+	 * lettura dei dati dalla persistenza viene inviato un messaggio di errore.
+	 *
+	 * @param req  parametri della richiesta.
+	 * @param resp risposta del server alla richiesta.
+	 * @throws ServletException se si verificano errori durante la gestione della
+	 *                          richiesta.
+	 * @throws IOException      se non risulta possibile scrivere nel buffer di
+	 *                          risposta alla richiesta.
+	 */
+	protected void handleGetSeatMap(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		ProjectionSeatMap seatMap;
+		try {
+			seatMap = cinema.getProjectionSeatMap(Integer.parseInt(req.getParameter("projection-id")));
+		} catch (NumberFormatException | RoomException | ProjectionException | PersistenceException exception) {
+			resp.getWriter().write(Rythm.render("error"));
+			return;
+		}
+		byte[] occupiedSeats = seatMap.toByteArray();
+		if ("binary".equals(req.getParameter("format"))) {
+			resp.setContentType("application/octet-stream");
+			resp.setContentLength(8 + occupiedSeats.length);
+			DataOutputStream output = new DataOutputStream(resp.getOutputStream());
+			output.writeInt(seatMap.getNumberOfRows());
+			output.writeInt(seatMap.getNumberOfCols());
+			output.write(occupiedSeats);
+			output.flush();
+		} else {
+			resp.setContentType("application/json");
+			resp.getWriter().write(String.format(
+					"{\"projection\":%d,\"rows\":%d,\"cols\":%d,\"available\":%d,\"occupied\":\"%s\"}",
+					seatMap.getProjectionId(), seatMap.getNumberOfRows(), seatMap.getNumberOfCols(),
+					seatMap.getNumberAvailableSeats(), Base64.getEncoder().encodeToString(occupiedSeats)));
+		}
+	}
+
+	/**
+	 * Gestisce le richieste corrispondenti al flusso di aggiornamenti dei posti di
+	 * una proiezione (/seat-events).
+	 *
+	 * <p>
+	 * La richiesta deve contenere nel parametro {@code projection-id} l'id di una
+	 * proiezione. La risposta è un flusso di Server-Sent Events che rimane aperto:
+	 * il primo evento ({@code snapshot}) contiene le dimensioni della sala e la
+	 * mappa di bit dei posti occupati nello stesso formato di /seat-map, i
+	 * successivi ({@code seats}) gli indici ({@code i * cols + j}) dei posti
+	 * occupati ({@code taken}) e liberati ({@code released}) nel frattempo.
+	 *
+	 * <p>
+	 * Se il valore del parametro non è valido o si verificano errori durante la
+	 * lettura dei dati dalla persistenza viene inviato un messaggio di errore.
+	 *
+	 * @param req  parametri della richiesta.
+	 * @param resp risposta del server alla richiesta.
+	 * @throws ServletException se si verificano errori durante la gestione della
+	 *                          richiesta.
+	 * @throws IOException      se non risulta possibile scrivere nel buffer di
+	 *                          risposta alla richiesta.
+	 */
+	protected void handleSeatEvents(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		try {
+			seatEvents.subscribe(req, resp, Integer.parseInt(req.getParameter("projection-id")));
+		} catch (NumberFormatException | RoomException | ProjectionException | PersistenceException exception) {
+			resp.getWriter().write(Rythm.render("error"));
+		}
+	}
+
+	/**
+	 * Gestisce le richieste corrispondenti alle statistiche di funzionamento del
+	 * server (/stats).
+	 *
+	 * <p>
+	 * La risposta è un oggetto JSON con i contatori esposti dal controller dal
+	 * momento dell'avvio: prenotazioni create, acquistate e scadute, e-mail
+	 * inviate e fallite e ricevute consegnate (si veda
+	 * {@link Cinema#getStatistics()}).
+	 *
+	 * @param req  parametri della richiesta.
+	 * @param resp risposta del server alla richiesta.
+	 * @throws ServletException se si verificano errori durante la gestione della
+	 *                          richiesta.
+	 * @throws IOException      se non risulta possibile scrivere nel buffer di
+	 *                          risposta alla richiesta.
+	 */
+	protected void handleGetStatistics(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		StringJoiner json = new StringJoiner(",", "{", "}");
+		for (Map.Entry<String, Number> statistic : cinema.getStatistics().entrySet()) {
+			Number value = statistic.getValue();
+			json.add("\"" + statistic.getKey() + "\":"
+					+ (value instanceof Double ? String.format(Locale.ROOT, "%.3f", value) : value));
+		}
+		resp.setContentType("application/json");
+		resp.getWriter().write(json.toString());
+	}
+
 	/**
 	 * Gestisce le richieste corrispondenti all'aggiornamento del carrello di una
 	 * prenotazione (/get-checkout-info).
@@ -468,7 +635,14 @@ public class WebGUIServlet extends HttpServlet {
 	 * prenotazione. Vengono impostati i vari campi necessari al corretto
 	 * completamento di una prenotazione in corso (si veda il corrispondente script
 	 * JavaScript per maggiori informazioni); viene poi avviato il processo di
-	 * pagamento e l'invio (asincrono) dell'e-mail.
+	 * pagamento e l'invio (asincrono) dell'e-mail. La richiesta viene gestita in
+	 * modo asincrono: il pagamento e la registrazione dell'acquisto vengono
+	 * eseguiti dai thread dedicati del controller e la risposta viene inviata al
+	 * loro termine, senza occupare nel frattempo un thread del server. Se
+	 * l'acquisto non termina entro il tempo massimo di attesa
+	 * ({@code -Dcinema.buyTimeout}) viene inviato il messaggio
+	 * {@code pending}: l'acquisto prosegue e il suo esito viene comunicato solo
+	 * con l'e-mail della ricevuta.
 	 *
 	 * <p>
 	 * Se i valori dei parametri non sono validi o si riscontra un errore nel
@@ -497,19 +671,70 @@ public class WebGUIServlet extends HttpServlet {
 		String ccExpiration = req.getParameter("cc-expiration");
 		String ccCvv = req.getParameter("cc-cvv");
 
-		String response = "ok";
-
 		try {
 			YearMonth ccExpirationDate = YearMonth.parse(ccExpiration, DateTimeFormatter.ofPattern("yyyy-MM"));
 			cinema.setReservationPurchaser(reservationId, name, surname, email);
 			cinema.setReservationPaymentCard(reservationId, ccNumber, ccName, ccCvv, ccExpirationDate);
-			cinema.buyReservation(reservationId);
-			cinema.sendReservationEmail(reservationId);
-		} catch (HandlerException | InvalidSpectatorInfoException | PaymentErrorException | PersistenceException
-				| ReservationException | RoomException | SeatAvailabilityException exception) {
-			response = "error";
+		} catch (InvalidSpectatorInfoException | ReservationException exception) {
+			resp.getWriter().write(Rythm.render("error"));
+			return;
+		}
+
+		// Il pagamento e la registrazione dell'acquisto non occupano il thread della
+		// richiesta, che viene completata al termine dell'acquisto
+		AsyncContext asyncContext = req.startAsync();
+		asyncContext.setTimeout(buyTimeoutMillis);
+		// Risponde una sola volta, al termine dell'acquisto o alla scadenza
+		AtomicBoolean answered = new AtomicBoolean(false);
+		asyncContext.addListener(new AsyncListener() {
+			@Override
+			public void onTimeout(AsyncEvent event) throws IOException {
+				// Il pagamento potrebbe ancora andare a buon fine: non è un errore
+				answerBuy(asyncContext, answered, "pending");
+			}
+
+			@Override
+			public void onError(AsyncEvent event) throws IOException {
+				answerBuy(asyncContext, answered, "error");
+			}
+
+			@Override
+			public void onComplete(AsyncEvent event) throws IOException {
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) throws IOException {
+			}
+		});
+		// La ricevuta viene registrata insieme all'acquisto e inviata in background
+		cinema.buyReservationAsync(reservationId).whenComplete(
+				(result, exception) -> answerBuy(asyncContext, answered, exception == null ? "ok" : "error"));
+	}
+
+	/**
+	 * Invia la risposta ad una richiesta di acquisto e la completa, a meno che
+	 * non sia già stata inviata.
+	 *
+	 * <p>
+	 * Se la risposta è stata inviata per la scadenza del tempo massimo di attesa,
+	 * l'esito dell'acquisto ancora in corso viene ignorato: lo spettatore riceve
+	 * comunque la ricevuta via e-mail se l'acquisto va a buon fine.
+	 *
+	 * @param asyncContext contesto asincrono della richiesta.
+	 * @param answered     indica se la risposta è già stata inviata.
+	 * @param response     nome del template della risposta ("ok", "pending" o
+	 *                     "error").
+	 */
+	private static void answerBuy(AsyncContext asyncContext, AtomicBoolean answered, String response) {
+		if (!answered.compareAndSet(false, true))
+			return;
+		try {
+			asyncContext.getResponse().getWriter().write(Rythm.render(response));
+		} catch (IOException | IllegalStateException e) {
+			// Il client si è disconnesso prima del termine dell'acquisto
+		} finally {
+			asyncContext.complete();
 		}
-		resp.getWriter().write(Rythm.render(response));
 	}
 
 }
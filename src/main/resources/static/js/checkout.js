@@ -7,8 +7,8 @@ $(window).on('load', function() {
         return new bootstrap.Tooltip(tooltipTriggerElement);
     });
 
-    // Add the listener used to track the available/selected state to every seat icon
-    $('.seat').on('click', function(event) {
+    // Add the listener used to track the available/selected state to every seat icon (seats freed later by other spectators included)
+    $(document).on('click', '.seat', function(event) {
         // Toggle the seat status between available and selected
         if (event.target.status == 'selezionato') {
             event.target.status = 'disponibile';
@@ -62,6 +62,31 @@ $(window).on('load', function() {
         });
     });
 
+    // Keep the seat icons in sync with the seats taken, held or released by other spectators
+    var seatMapColumns = 0;
+    var seatEvents = new EventSource('seat-events?projection-id=' + $('#seat-map').data('projection-id'));
+
+    // The first event carries the whole occupied seats bitmap (bit i % 8 of byte i / 8 is set if seat i is occupied)
+    seatEvents.addEventListener('snapshot', function(event) {
+        var snapshot = JSON.parse(event.data);
+        var occupied = atob(snapshot.occupied);
+        seatMapColumns = snapshot.cols;
+        for (var i = 0; i < snapshot.rows * snapshot.cols; i++) {
+            setSeatAvailability(i, (occupied.charCodeAt(i >> 3) & (1 << (i & 7))) == 0);
+        }
+    });
+
+    // The following events carry only the indexes of the seats taken or released since the previous one
+    seatEvents.addEventListener('seats', function(event) {
+        var delta = JSON.parse(event.data);
+        delta.taken.forEach(function(seatIndex) {
+            setSeatAvailability(seatIndex, false);
+        });
+        delta.released.forEach(function(seatIndex) {
+            setSeatAvailability(seatIndex, true);
+        });
+    });
+
     // Create the object that represents the collapsible checkout form
     var checkoutDetails = $('#checkout-details')[0];
     var checkoutDetailsCollapse = new bootstrap.Collapse(checkoutDetails, {
@@ -130,8 +155,15 @@ $(window).on('load', function() {
                 data: $('#buy-form').serialize()
             }).done(function(response) {
                 if (response == 'ok') {
+                    // The seat updates are not needed anymore
+                    seatEvents.close();
+
                     // Show the success modal if the request had a positive outcome
                     showAlert(true, true, 'Acquisto completato. Grazie!', 'Acquisto effettuato correttamente.<br>Riceverai un\'e-mail a breve con la ricevuta di prenotazione da presentare all\'ingresso.');
+                } else if (response == 'pending') {
+                    // The purchase is still running on the server: its outcome is only known by e-mail
+                    seatEvents.close();
+                    showAlert(false, true, 'Acquisto in elaborazione', 'Il completamento dell\'acquisto sta richiedendo pi&ugrave; tempo del previsto.<br>Se l\'acquisto andr&agrave; a buon fine riceverai un\'e-mail con la ricevuta di prenotazione: non ripetere l\'acquisto.');
                 } else {
                     // Show the error modal
                     showAlert(false, true, 'Errore durante l\'acquisto', 'Errore durante il completamento dell\'acquisto.');
@@ -297,6 +329,28 @@ $(window).on('load', function() {
         });
     }
 
+    /**
+     * Updates in place the icon of a seat taken or released by another spectator.
+     *
+     * Seats selected by the current spectator are left untouched, since they are held by their own reservation.
+     *
+     * @param number  seatIndex index of the seat (row * number of columns + column).
+     * @param boolean available true if the seat is now available, false if it is occupied.
+     */
+    function setSeatAvailability(seatIndex, available) {
+        var seat = document.getElementById('seat-' + Math.floor(seatIndex / seatMapColumns) + '-' + (seatIndex % seatMapColumns));
+        if (seat == null || seat.status == 'selezionato') {
+            return;
+        }
+        var seatStatus = available ? 'disponibile' : 'non disponibile';
+        var description = seat.alt.replace(/\(.*\)/, '(' + seatStatus + ')');
+        seat.status = seatStatus;
+        seat.src = available ? '/static/img/seat-available.svg' : '/static/img/seat-unavailable.svg';
+        seat.style.cursor = available ? 'pointer' : 'default';
+        $(seat).toggleClass('seat', available);
+        $(seat).attr({ 'alt': description, 'data-bs-original-title': description });
+    }
+
     /**
      * Returns the number of currently selected seats.
      *